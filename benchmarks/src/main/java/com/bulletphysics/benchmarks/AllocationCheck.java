@@ -0,0 +1,109 @@
+package com.bulletphysics.benchmarks;
+
+import com.bulletphysics.collision.broadphase.Dispatcher;
+import com.bulletphysics.collision.dispatch.CollisionObject;
+import com.bulletphysics.collision.narrowphase.PersistentManifold;
+import com.bulletphysics.dynamics.constraintsolver.ContactSolverInfo;
+import com.bulletphysics.dynamics.constraintsolver.SequentialImpulseConstraintSolver;
+import com.bulletphysics.dynamics.constraintsolver.TypedConstraint;
+import com.bulletphysics.linearmath.IDebugDraw;
+import com.bulletphysics.util.ObjectArrayList;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Allocation regression check of the constraint solver. Each scenario is simulated
+ * twice with the same solver, the first run grows the solver pools and arrays to the
+ * high-water mark of the simulation. In the second run the bytes allocated by the
+ * current thread are measured
+ * (using {@link com.sun.management.ThreadMXBean#getCurrentThreadAllocatedBytes})
+ * inside {@link SequentialImpulseConstraintSolver#solveGroup} and around the whole
+ * {@link BenchmarkWorld#step}. The check fails with exit status 1 when the solver
+ * allocated anything or was not called at all, the whole step allocation is reported
+ * for information:
+ *
+ * <pre>
+ * java -cp benchmarks/target/benchmarks.jar com.bulletphysics.benchmarks.AllocationCheck [SCENARIO...]
+ * </pre>
+ */
+public class AllocationCheck {
+
+    private static final int WARMUP_STEPS = 200;
+    private static final int MEASURED_STEPS = 100;
+
+    private static final com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    public static void main(String[] args) {
+        if (!threadBean.isThreadAllocatedMemorySupported()) {
+            System.err.println("thread allocation measurement is not supported by this JVM");
+            System.exit(2);
+        }
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+
+        Scenario[] scenarios = Scenario.values();
+        if (args.length > 0) {
+            scenarios = new Scenario[args.length];
+            for (int i = 0; i < args.length; i++) {
+                scenarios[i] = Scenario.valueOf(args[i]);
+            }
+        }
+
+        boolean failed = false;
+        for (Scenario scenario : scenarios) {
+            CountingSolver solver = new CountingSolver();
+            simulate(scenario, solver);
+
+            // the simulation is deterministic, repeat it with the grown pools:
+            solver.reset();
+            long stepBytes = simulate(scenario, solver);
+
+            // a run passes only when the solver actually solved something:
+            boolean ok = (solver.calls > 0 && solver.allocatedBytes == 0);
+            failed |= !ok;
+            System.out.printf("%-12s %s solver: %d B in %d solveGroup calls, whole step: %d B/step%n",
+                    scenario, ok ? "OK  " : "FAIL", solver.allocatedBytes, solver.calls, stepBytes / MEASURED_STEPS);
+        }
+
+        if (failed) {
+            System.err.println("constraint solver allocates in steady state");
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Simulates the scenario and returns the bytes allocated by the measured steps.
+     */
+    private static long simulate(Scenario scenario, CountingSolver solver) {
+        // single task, the parallel solving allocates in the worker threads:
+        BenchmarkWorld world = scenario.createWorld(1, solver);
+        for (int i = 0; i < WARMUP_STEPS; i++) {
+            world.step();
+        }
+
+        solver.allocatedBytes = 0;
+        solver.calls = 0;
+        long start = threadBean.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < MEASURED_STEPS; i++) {
+            world.step();
+        }
+        return threadBean.getCurrentThreadAllocatedBytes() - start;
+    }
+
+    /**
+     * Solver measuring the bytes allocated by the current thread in solveGroup.
+     */
+    private static class CountingSolver extends SequentialImpulseConstraintSolver {
+        long allocatedBytes;
+        long calls;
+
+        @Override
+        public float solveGroup(ObjectArrayList<CollisionObject> bodies, int numBodies, ObjectArrayList<PersistentManifold> manifoldPtr, int manifold_offset, int numManifolds, ObjectArrayList<TypedConstraint> constraints, int constraints_offset, int numConstraints, ContactSolverInfo infoGlobal, IDebugDraw debugDrawer, Dispatcher dispatcher) {
+            long start = threadBean.getCurrentThreadAllocatedBytes();
+            float result = super.solveGroup(bodies, numBodies, manifoldPtr, manifold_offset, numManifolds, constraints, constraints_offset, numConstraints, infoGlobal, debugDrawer, dispatcher);
+            allocatedBytes += threadBean.getCurrentThreadAllocatedBytes() - start;
+            calls++;
+            return result;
+        }
+    }
+
+}
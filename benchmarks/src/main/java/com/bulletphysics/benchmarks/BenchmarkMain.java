@@ -0,0 +1,28 @@
+package com.bulletphysics.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the GC profiler enabled, so allocation rate
+ * (gc.alloc.rate.norm, bytes per step) is reported together with the time.
+ * Accepts the usual JMH command line options, e.g.:
+ *
+ * <pre>
+ * java -jar benchmarks/target/benchmarks.jar PhaseBenchmark -p scenario=SPHERE_PILE
+ * </pre>
+ */
+public class BenchmarkMain {
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+
+}
@@ -0,0 +1,59 @@
+package com.bulletphysics.benchmarks;
+
+import com.bulletphysics.collision.broadphase.DbvtBroadphase;
+import com.bulletphysics.collision.dispatch.CollisionDispatcher;
+import com.bulletphysics.collision.dispatch.DefaultCollisionConfiguration;
+import com.bulletphysics.collision.dispatch.GhostPairCallback;
+import com.bulletphysics.collision.shapes.CollisionShape;
+import com.bulletphysics.dynamics.DiscreteDynamicsWorld;
+import com.bulletphysics.dynamics.RigidBody;
+import com.bulletphysics.dynamics.RigidBodyConstructionInfo;
+import com.bulletphysics.dynamics.constraintsolver.ConstraintSolver;
+import com.bulletphysics.dynamics.constraintsolver.SequentialImpulseConstraintSolver;
+import com.bulletphysics.linearmath.DefaultMotionState;
+import com.bulletphysics.linearmath.Transform;
+
+import javax.vecmath.Vector3f;
+
+/**
+ * Dynamics world used by the benchmarks.
+ */
+public class BenchmarkWorld extends DiscreteDynamicsWorld {
+
+    public static final float TIME_STEP = 1f / 60f;
+
+    public BenchmarkWorld() {
+        this(new SequentialImpulseConstraintSolver());
+    }
+
+    public BenchmarkWorld(ConstraintSolver constraintSolver) {
+        this(constraintSolver, new DefaultCollisionConfiguration());
+    }
+
+    private BenchmarkWorld(ConstraintSolver constraintSolver, DefaultCollisionConfiguration collisionConfiguration) {
+        super(new CollisionDispatcher(collisionConfiguration), new DbvtBroadphase(), constraintSolver, collisionConfiguration);
+        broadphase().getOverlappingPairCache().setInternalGhostPairCallback(new GhostPairCallback());
+        setGravity(new Vector3f(0f, -10f, 0f));
+    }
+
+    /**
+     * Performs one simulation step with fixed time step.
+     */
+    public void step() {
+        // variable time step mode always performs exactly one internal step
+        stepSimulation(TIME_STEP, 0);
+    }
+
+    public RigidBody addRigidBody(float mass, Transform startTransform, CollisionShape shape) {
+        Vector3f localInertia = new Vector3f(0f, 0f, 0f);
+        if (mass != 0f) {
+            shape.calculateLocalInertia(mass, localInertia);
+        }
+
+        RigidBodyConstructionInfo rbInfo = new RigidBodyConstructionInfo(mass, new DefaultMotionState(startTransform), shape, localInertia);
+        RigidBody body = new RigidBody(rbInfo);
+        addRigidBody(body);
+        return body;
+    }
+
+}
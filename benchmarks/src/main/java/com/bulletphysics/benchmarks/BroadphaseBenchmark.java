@@ -0,0 +1,115 @@
+package com.bulletphysics.benchmarks;
+
+import com.bulletphysics.collision.broadphase.AxisSweep3_32;
+import com.bulletphysics.collision.broadphase.BroadphaseInterface;
+import com.bulletphysics.collision.broadphase.BroadphaseProxy;
+import com.bulletphysics.collision.broadphase.DbvtBroadphase;
+import com.bulletphysics.collision.broadphase.HashedGridBroadphase;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.vecmath.Vector3f;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the broadphases on a swarm of equally sized boxes moving inside
+ * a cube, each operation moves all proxies and updates the overlapping pairs.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BroadphaseBenchmark {
+
+    public enum Broadphase {
+        DBVT, AXIS_SWEEP_32, HASHED_GRID
+    }
+
+    private static final float BOX_SIZE = 1f;
+    private static final float SPEED = 0.1f;
+
+    @Param({"DBVT", "AXIS_SWEEP_32", "HASHED_GRID"})
+    public Broadphase broadphase;
+
+    @Param({"10000", "50000"})
+    public int numProxies;
+
+    private BroadphaseInterface bp;
+    private BroadphaseProxy[] proxies;
+    private float[] pos;
+    private float[] vel;
+    private float side;
+    private final Vector3f aabbMin = new Vector3f();
+    private final Vector3f aabbMax = new Vector3f();
+
+    @Setup(Level.Trial)
+    public void setup() {
+        // about 1/27 of the volume is occupied:
+        side = (float) Math.cbrt(numProxies) * 3f * BOX_SIZE;
+
+        switch (broadphase) {
+            case DBVT:
+                bp = new DbvtBroadphase();
+                break;
+            case AXIS_SWEEP_32:
+                bp = new AxisSweep3_32(new Vector3f(-1f, -1f, -1f), new Vector3f(side + 2f, side + 2f, side + 2f), numProxies + 1);
+                break;
+            case HASHED_GRID:
+                bp = new HashedGridBroadphase(2f * BOX_SIZE);
+                break;
+        }
+
+        Random rand = new Random(1);
+        proxies = new BroadphaseProxy[numProxies];
+        pos = new float[numProxies * 3];
+        vel = new float[numProxies * 3];
+        for (int i = 0; i < numProxies * 3; i++) {
+            pos[i] = rand.nextFloat() * side;
+            vel[i] = (rand.nextFloat() - 0.5f) * 2f * SPEED;
+        }
+        for (int i = 0; i < numProxies; i++) {
+            setAabb(i);
+            proxies[i] = bp.createProxy(aabbMin, aabbMax, null, null, (short) 1, (short) -1, null, null);
+        }
+        bp.calculateOverlappingPairs(null);
+    }
+
+    private void setAabb(int i) {
+        aabbMin.set(pos[i * 3], pos[i * 3 + 1], pos[i * 3 + 2]);
+        aabbMax.set(aabbMin.x + BOX_SIZE, aabbMin.y + BOX_SIZE, aabbMin.z + BOX_SIZE);
+    }
+
+    /**
+     * Moves all proxies and calculates the overlapping pairs.
+     */
+    @Benchmark
+    public int moveAndUpdate() {
+        for (int i = 0; i < numProxies * 3; i++) {
+            float p = pos[i] + vel[i];
+            if (p < 0f || p > side) {
+                vel[i] = -vel[i];
+            }
+            pos[i] = p;
+        }
+        for (int i = 0; i < numProxies; i++) {
+            setAabb(i);
+            bp.setAabb(proxies[i], aabbMin, aabbMax, null);
+        }
+        bp.calculateOverlappingPairs(null);
+        return bp.getOverlappingPairCache().getNumOverlappingPairs();
+    }
+
+}
@@ -0,0 +1,130 @@
+package com.bulletphysics.benchmarks;
+
+import com.bulletphysics.linearmath.ProfileSection;
+import com.bulletphysics.linearmath.ProfileSnapshot;
+import com.bulletphysics.linearmath.Profiler;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the individual phases of the simulation step. Every invocation performs
+ * one full {@link BenchmarkWorld#step}, so the phases run on a world that keeps moving
+ * exactly as in {@link StepSimulationBenchmark}. The time of each phase is taken from
+ * the world {@link Profiler} and reported as secondary result in microseconds per step
+ * (the primary result is the whole step including the profiling overhead).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PhaseBenchmark {
+
+    private static final ProfileSection STEP = ProfileSection.get("stepSimulation");
+    private static final ProfileSection UPDATE_AABBS = ProfileSection.get("updateAabbs");
+    private static final ProfileSection CALCULATE_OVERLAPPING_PAIRS = ProfileSection.get("calculateOverlappingPairs");
+    private static final ProfileSection DISPATCH_ALL_COLLISION_PAIRS = ProfileSection.get("dispatchAllCollisionPairs");
+    private static final ProfileSection CALCULATE_SIMULATION_ISLANDS = ProfileSection.get("calculateSimulationIslands");
+    private static final ProfileSection SOLVE_CONSTRAINTS = ProfileSection.get("solveConstraints");
+    private static final ProfileSection PREDICT_UNCONSTRAINT_MOTION = ProfileSection.get("predictUnconstraintMotion");
+    private static final ProfileSection INTEGRATE_TRANSFORMS = ProfileSection.get("integrateTransforms");
+
+    @Param({"BOX_STACK", "SPHERE_PILE", "RAGDOLLS", "TERRAIN", "VEHICLES", "CHARACTER"})
+    public Scenario scenario;
+
+    @Param({"1"})
+    public int numTasks;
+
+    private BenchmarkWorld world;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        world = scenario.createWorld(numTasks);
+        world.getProfiler().setEnabled(true);
+    }
+
+    @Setup(Level.Iteration)
+    public void resetProfiler() {
+        world.getProfiler().reset();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        world.getProfiler().setEnabled(false);
+    }
+
+    @Benchmark
+    public BenchmarkWorld step(PhaseTimes phaseTimes) {
+        world.step();
+        phaseTimes.profiler = world.getProfiler();
+        return world;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Mean time of the phases per step in microseconds, collected over each iteration.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class PhaseTimes {
+
+        /** AABB update and overlapping pair calculation. */
+        public double broadphase;
+
+        /** Contact generation for all overlapping pairs. */
+        public double narrowphase;
+
+        /** Simulation island calculation. */
+        public double islands;
+
+        /** Contact and joint constraint solving. */
+        public double solver;
+
+        /** Velocity and position integration. */
+        public double integrate;
+
+        // profiler of the measured world, reset at start of each iteration:
+        Profiler profiler;
+
+        @TearDown(Level.Iteration)
+        public void collect() {
+            if (profiler == null) {
+                return;
+            }
+            ProfileSnapshot snapshot = profiler.snapshot();
+            long steps = Math.max(calls(snapshot, STEP), 1L);
+            broadphase = (totalTime(snapshot, UPDATE_AABBS) + totalTime(snapshot, CALCULATE_OVERLAPPING_PAIRS)) / 1e3 / steps;
+            narrowphase = totalTime(snapshot, DISPATCH_ALL_COLLISION_PAIRS) / 1e3 / steps;
+            islands = totalTime(snapshot, CALCULATE_SIMULATION_ISLANDS) / 1e3 / steps;
+            solver = totalTime(snapshot, SOLVE_CONSTRAINTS) / 1e3 / steps;
+            integrate = (totalTime(snapshot, PREDICT_UNCONSTRAINT_MOTION) + totalTime(snapshot, INTEGRATE_TRANSFORMS)) / 1e3 / steps;
+        }
+
+        private static long calls(ProfileSnapshot snapshot, ProfileSection section) {
+            ProfileSnapshot.Section s = snapshot.getSection(section);
+            return s != null ? s.getCalls() : 0L;
+        }
+
+        private static long totalTime(ProfileSnapshot snapshot, ProfileSection section) {
+            ProfileSnapshot.Section s = snapshot.getSection(section);
+            return s != null ? s.getTotalTime() : 0L;
+        }
+    }
+
+}
@@ -0,0 +1,206 @@
+package com.bulletphysics.benchmarks;
+
+import com.bulletphysics.collision.broadphase.BroadphaseNativeType;
+import com.bulletphysics.collision.broadphase.CollisionAlgorithm;
+import com.bulletphysics.collision.broadphase.CollisionAlgorithmConstructionInfo;
+import com.bulletphysics.collision.dispatch.BoxBoxCollisionAlgorithm;
+import com.bulletphysics.collision.dispatch.CapsuleCapsuleCollisionAlgorithm;
+import com.bulletphysics.collision.dispatch.CollisionAlgorithmCreateFunc;
+import com.bulletphysics.collision.dispatch.CollisionConfiguration;
+import com.bulletphysics.collision.dispatch.CollisionDispatcher;
+import com.bulletphysics.collision.dispatch.CollisionObject;
+import com.bulletphysics.collision.dispatch.CompoundCollisionAlgorithm;
+import com.bulletphysics.collision.dispatch.ConvexConcaveCollisionAlgorithm;
+import com.bulletphysics.collision.dispatch.ConvexConvexAlgorithm;
+import com.bulletphysics.collision.dispatch.ConvexPlaneCollisionAlgorithm;
+import com.bulletphysics.collision.dispatch.SphereBoxCollisionAlgorithm;
+import com.bulletphysics.collision.dispatch.SphereSphereCollisionAlgorithm;
+import com.bulletphysics.collision.dispatch.SphereTriangleCollisionAlgorithm;
+import com.bulletphysics.collision.narrowphase.PersistentManifold;
+import com.bulletphysics.util.ObjectArrayList;
+import com.bulletphysics.util.ObjectPool;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool regression check of the parallel narrowphase. Collision algorithms and manifolds
+ * are obtained in the worker threads and released in the simulation thread, they must
+ * return to the pool they came from. Each scenario is simulated with parallel tasks and
+ * the distinct instances of each pooled type used by the world are counted, when the
+ * instances are recycled their number stays within the highest number of live instances
+ * (or the instances already pooled by previous scenarios). The check fails with exit
+ * status 1 when more instances were used:
+ *
+ * <pre>
+ * java -cp benchmarks/target/benchmarks.jar com.bulletphysics.benchmarks.PoolCheck [SCENARIO...]
+ * </pre>
+ */
+public class PoolCheck {
+
+    private static final int NUM_TASKS = 4;
+    private static final int MEASURED_STEPS = 300;
+
+    // pooled algorithms of DefaultCollisionConfiguration:
+    private static final Class[] ALGORITHM_CLASSES = {
+            BoxBoxCollisionAlgorithm.class,
+            CapsuleCapsuleCollisionAlgorithm.class,
+            CompoundCollisionAlgorithm.class,
+            ConvexConcaveCollisionAlgorithm.class,
+            ConvexConvexAlgorithm.class,
+            ConvexPlaneCollisionAlgorithm.class,
+            SphereBoxCollisionAlgorithm.class,
+            SphereSphereCollisionAlgorithm.class,
+            SphereTriangleCollisionAlgorithm.class,
+    };
+
+    public static void main(String[] args) {
+        Scenario[] scenarios = Scenario.values();
+        if (args.length > 0) {
+            scenarios = new Scenario[args.length];
+            for (int i = 0; i < args.length; i++) {
+                scenarios[i] = Scenario.valueOf(args[i]);
+            }
+        }
+
+        boolean failed = false;
+        for (Scenario scenario : scenarios) {
+            BenchmarkWorld world = new BenchmarkWorld();
+            CollisionDispatcher dispatcher = (CollisionDispatcher) world.dispatcher();
+            AlgorithmCounter algorithms = new AlgorithmCounter(dispatcher);
+            TypeCounter manifolds = new TypeCounter(ObjectPool.getShared(PersistentManifold.class));
+
+            scenario.setUp(world, NUM_TASKS);
+            for (int i = 0; i < MEASURED_STEPS; i++) {
+                world.step();
+
+                // manifolds are sampled between the steps:
+                ObjectArrayList<PersistentManifold> manifoldArray = dispatcher.getInternalManifoldPointer();
+                for (int j = 0; j < manifoldArray.size(); j++) {
+                    manifolds.seen.add(manifoldArray.get(j));
+                }
+                manifolds.maxLive.accumulateAndGet(manifoldArray.size(), Math::max);
+            }
+
+            boolean ok = (algorithms.check() && manifolds.check());
+            failed |= !ok;
+            System.out.printf("%-12s %s algorithms: %d (limit %d), manifolds: %d (limit %d)%n",
+                    scenario, ok ? "OK  " : "FAIL", algorithms.instances(), algorithms.limit(), manifolds.seen.size(), manifolds.limit());
+        }
+
+        if (failed) {
+            System.err.println("parallel narrowphase leaks pooled instances");
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Wraps the create functions of the dispatcher and counts the live collision
+     * algorithms of each pooled type.
+     */
+    private static class AlgorithmCounter {
+        private final Map<Class, TypeCounter> counters = new HashMap<>();
+
+        AlgorithmCounter(CollisionDispatcher dispatcher) {
+            for (Class cls : ALGORITHM_CLASSES) {
+                counters.put(cls, new TypeCounter(ObjectPool.getShared(cls)));
+            }
+
+            CollisionConfiguration collisionConfiguration = dispatcher.getCollisionConfiguration();
+            int numTypes = BroadphaseNativeType.MAX_BROADPHASE_COLLISION_TYPES.ordinal();
+            for (int i = 0; i < numTypes; i++) {
+                for (int j = 0; j < numTypes; j++) {
+                    CollisionAlgorithmCreateFunc createFunc = collisionConfiguration.getCollisionAlgorithmCreateFunc(
+                            BroadphaseNativeType.forValue(i), BroadphaseNativeType.forValue(j));
+                    dispatcher.registerCollisionCreateFunc(i, j, new CountingCreateFunc(createFunc));
+                }
+            }
+        }
+
+        /**
+         * Returns true when no pooled type has more instances than its limit.
+         */
+        boolean check() {
+            boolean ok = true;
+            for (TypeCounter counter : counters.values()) {
+                ok &= counter.check();
+            }
+            return ok;
+        }
+
+        int instances() {
+            int instances = 0;
+            for (TypeCounter counter : counters.values()) {
+                instances += counter.seen.size();
+            }
+            return instances;
+        }
+
+        int limit() {
+            int limit = 0;
+            for (TypeCounter counter : counters.values()) {
+                limit += counter.limit();
+            }
+            return limit;
+        }
+
+        private class CountingCreateFunc extends CollisionAlgorithmCreateFunc {
+            private final CollisionAlgorithmCreateFunc createFunc;
+
+            CountingCreateFunc(CollisionAlgorithmCreateFunc createFunc) {
+                this.createFunc = createFunc;
+            }
+
+            @Override
+            public CollisionAlgorithm createCollisionAlgorithm(CollisionAlgorithmConstructionInfo ci, CollisionObject body0, CollisionObject body1) {
+                CollisionAlgorithm algo = createFunc.createCollisionAlgorithm(ci, body0, body1);
+                TypeCounter counter = counters.get(algo.getClass());
+                if (counter != null) {
+                    counter.seen.add(algo);
+                    counter.maxLive.accumulateAndGet(counter.live.incrementAndGet(), Math::max);
+                }
+                return algo;
+            }
+
+            @Override
+            public void releaseCollisionAlgorithm(CollisionAlgorithm algo) {
+                TypeCounter counter = counters.get(algo.getClass());
+                if (counter != null) {
+                    counter.live.decrementAndGet();
+                }
+                createFunc.releaseCollisionAlgorithm(algo);
+            }
+        }
+    }
+
+    /**
+     * Instances of a pooled type used by the world. A new instance may only be created
+     * when the pool is empty, so the number of distinct instances never exceeds the
+     * instances pooled before the world was created or the highest number of live
+     * instances.
+     */
+    private static class TypeCounter {
+        final Set<Object> seen = Collections.newSetFromMap(new ConcurrentHashMap<>());
+        final AtomicInteger live = new AtomicInteger();
+        // algorithms can be created and freed within a step (eg. for triangles of concave shapes):
+        final AtomicInteger maxLive = new AtomicInteger();
+        final int pooled;
+
+        TypeCounter(ObjectPool pool) {
+            pooled = pool.size();
+        }
+
+        boolean check() {
+            return seen.size() <= limit();
+        }
+
+        int limit() {
+            return Math.max(pooled, maxLive.get());
+        }
+    }
+
+}
@@ -0,0 +1,355 @@
+package com.bulletphysics.benchmarks;
+
+import com.bulletphysics.collision.broadphase.CollisionFilterGroups;
+import com.bulletphysics.collision.dispatch.CollisionFlags;
+import com.bulletphysics.collision.dispatch.CollisionObject;
+import com.bulletphysics.collision.dispatch.PairCachingGhostObject;
+import com.bulletphysics.collision.shapes.CollisionShape;
+import com.bulletphysics.collision.shapes.CompoundShape;
+import com.bulletphysics.collision.shapes.convex.ConvexHullShape;
+import com.bulletphysics.collision.shapes.convex.ConvexShape;
+import com.bulletphysics.collision.shapes.mesh.BvhTriangleMeshShape;
+import com.bulletphysics.collision.shapes.mesh.TriangleIndexVertexArray;
+import com.bulletphysics.collision.shapes.simple.BoxShape;
+import com.bulletphysics.collision.shapes.simple.CapsuleShape;
+import com.bulletphysics.collision.shapes.simple.CylinderShape;
+import com.bulletphysics.collision.shapes.simple.SphereShape;
+import com.bulletphysics.collision.shapes.simple.StaticPlaneShape;
+import com.bulletphysics.demos.genericjoint.RagDoll;
+import com.bulletphysics.dynamics.DynamicsWorld;
+import com.bulletphysics.dynamics.InternalTickCallback;
+import com.bulletphysics.dynamics.RigidBody;
+import com.bulletphysics.dynamics.character.KinematicCharacterController;
+import com.bulletphysics.dynamics.constraintsolver.ConstraintSolver;
+import com.bulletphysics.dynamics.constraintsolver.SequentialImpulseConstraintSolver;
+import com.bulletphysics.dynamics.vehicle.DefaultVehicleRaycaster;
+import com.bulletphysics.dynamics.vehicle.RaycastVehicle;
+import com.bulletphysics.dynamics.vehicle.VehicleTuning;
+import com.bulletphysics.dynamics.vehicle.WheelInfo;
+import com.bulletphysics.linearmath.Transform;
+import com.bulletphysics.util.ObjectArrayList;
+
+import javax.vecmath.Vector3f;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+/**
+ * Headless benchmark scenes. Every scene is built deterministically (fixed random
+ * seeds) and simulated for {@link #getSettleSteps} steps before measuring, so the
+ * measured steps work with resting contacts rather than free falling bodies. The
+ * dynamic bodies never deactivate, so the measured steps always simulate the whole scene.
+ */
+public enum Scenario {
+
+    /**
+     * Columns of stacked boxes, many persistent resting contacts in few islands.
+     */
+    BOX_STACK(120) {
+        @Override
+        public void populate(BenchmarkWorld world) {
+            addGroundPlane(world);
+
+            CollisionShape box = new BoxShape(new Vector3f(0.5f, 0.5f, 0.5f));
+            Transform tr = new Transform();
+            tr.setIdentity();
+            for (int x = 0; x < 10; x++) {
+                for (int z = 0; z < 10; z++) {
+                    for (int y = 0; y < 10; y++) {
+                        tr.origin.set(x * 1.5f - 7.5f, 0.5f + y * 1.0f, z * 1.5f - 7.5f);
+                        world.addRigidBody(1f, tr, box);
+                    }
+                }
+            }
+        }
+    },
+
+    /**
+     * 10000 spheres dropped into a pile, stresses broadphase and pair management.
+     */
+    SPHERE_PILE(120) {
+        @Override
+        public void populate(BenchmarkWorld world) {
+            addGroundPlane(world);
+
+            Random random = new Random(1);
+            CollisionShape sphere = new SphereShape(0.5f);
+            Transform tr = new Transform();
+            tr.setIdentity();
+            for (int i = 0; i < 10000; i++) {
+                int x = i % 25;
+                int z = (i / 25) % 25;
+                int y = i / (25 * 25);
+                tr.origin.set(x * 1.1f - 13.75f + random.nextFloat() * 0.05f, 0.5f + y * 1.1f, z * 1.1f - 13.75f + random.nextFloat() * 0.05f);
+                world.addRigidBody(1f, tr, sphere);
+            }
+        }
+    },
+
+    /**
+     * Ragdolls (as in GenericJointDemo) falling onto each other, joint heavy.
+     */
+    RAGDOLLS(120) {
+        @Override
+        public void populate(BenchmarkWorld world) {
+            addGroundPlane(world);
+
+            Vector3f offset = new Vector3f();
+            for (int x = 0; x < 8; x++) {
+                for (int z = 0; z < 8; z++) {
+                    for (int y = 0; y < 2; y++) {
+                        offset.set(x * 1.5f - 6f, y * 2.5f, z * 1.5f - 6f);
+                        new RagDoll(world, offset);
+                    }
+                }
+            }
+        }
+    },
+
+    /**
+     * BVH triangle mesh terrain (as in ConcaveDemo) with falling convex shapes.
+     */
+    TERRAIN(120) {
+        @Override
+        public void populate(BenchmarkWorld world) {
+            final int numVertsX = 30;
+            final int numVertsY = 30;
+            final float triangleSize = 8f;
+            final float waveHeight = 5f;
+
+            int totalVerts = numVertsX * numVertsY;
+            int totalTriangles = 2 * (numVertsX - 1) * (numVertsY - 1);
+
+            ByteBuffer vertices = ByteBuffer.allocateDirect(totalVerts * 3 * 4).order(ByteOrder.nativeOrder());
+            for (int i = 0; i < numVertsX; i++) {
+                for (int j = 0; j < numVertsY; j++) {
+                    int index = (i + j * numVertsX) * 3 * 4;
+                    vertices.putFloat(index, (i - numVertsX * 0.5f) * triangleSize);
+                    vertices.putFloat(index + 4, waveHeight * (float) Math.sin(i) * (float) Math.cos(j));
+                    vertices.putFloat(index + 8, (j - numVertsY * 0.5f) * triangleSize);
+                }
+            }
+
+            ByteBuffer indices = ByteBuffer.allocateDirect(totalTriangles * 3 * 4).order(ByteOrder.nativeOrder());
+            for (int i = 0; i < numVertsX - 1; i++) {
+                for (int j = 0; j < numVertsY - 1; j++) {
+                    indices.putInt(j * numVertsX + i);
+                    indices.putInt(j * numVertsX + i + 1);
+                    indices.putInt((j + 1) * numVertsX + i + 1);
+
+                    indices.putInt(j * numVertsX + i);
+                    indices.putInt((j + 1) * numVertsX + i + 1);
+                    indices.putInt((j + 1) * numVertsX + i);
+                }
+            }
+            indices.flip();
+
+            TriangleIndexVertexArray indexVertexArrays = new TriangleIndexVertexArray(totalTriangles, indices, 3 * 4, totalVerts, vertices, 3 * 4);
+            Transform tr = new Transform();
+            tr.setIdentity();
+            world.addRigidBody(0f, tr, new BvhTriangleMeshShape(indexVertexArrays, true));
+
+            ObjectArrayList<Vector3f> points = new ObjectArrayList<>();
+            Random random = new Random(2);
+            for (int i = 0; i < 16; i++) {
+                Vector3f v = new Vector3f(random.nextFloat() - 0.5f, random.nextFloat() - 0.5f, random.nextFloat() - 0.5f);
+                v.normalize();
+                points.add(v);
+            }
+
+            CollisionShape[] shapes = new CollisionShape[]{
+                    new BoxShape(new Vector3f(0.5f, 0.5f, 0.5f)),
+                    new SphereShape(0.5f),
+                    new CylinderShape(new Vector3f(0.5f, 0.5f, 0.5f)),
+                    new CapsuleShape(0.3f, 0.8f),
+                    new ConvexHullShape(points),
+            };
+
+            for (int i = 0; i < 1000; i++) {
+                int x = i % 20;
+                int z = (i / 20) % 20;
+                int y = i / (20 * 20);
+                tr.origin.set(x * 5f - 50f, 8f + y * 3f, z * 5f - 50f);
+                world.addRigidBody(1f, tr, shapes[i % shapes.length]);
+            }
+        }
+    },
+
+    /**
+     * Raycast vehicles (as in VehicleDemo) driving in circles, raycast and action heavy.
+     */
+    VEHICLES(60) {
+        @Override
+        public void populate(BenchmarkWorld world) {
+            addGroundPlane(world);
+
+            VehicleTuning tuning = new VehicleTuning();
+            DefaultVehicleRaycaster raycaster = new DefaultVehicleRaycaster(world);
+            CollisionShape chassisShape = new BoxShape(new Vector3f(1f, 0.5f, 2f));
+            CompoundShape compound = new CompoundShape();
+            Transform localTrans = new Transform();
+            localTrans.setIdentity();
+            // localTrans effectively shifts the center of mass with respect to the chassis
+            localTrans.origin.set(0f, 1f, 0f);
+            compound.addChildShape(localTrans, chassisShape);
+
+            Vector3f wheelDirection = new Vector3f(0f, -1f, 0f);
+            Vector3f wheelAxle = new Vector3f(-1f, 0f, 0f);
+            float wheelRadius = 0.5f;
+            float wheelWidth = 0.4f;
+            float connectionHeight = 1.2f;
+            Vector3f connectionPoint = new Vector3f();
+
+            Transform tr = new Transform();
+            tr.setIdentity();
+            for (int i = 0; i < 100; i++) {
+                tr.origin.set((i % 10) * 20f - 100f, 1f, (i / 10) * 20f - 100f);
+                RigidBody chassis = world.addRigidBody(800f, tr, compound);
+
+                RaycastVehicle vehicle = new RaycastVehicle(tuning, chassis, raycaster);
+                vehicle.setCoordinateSystem(0, 1, 2);
+                world.addVehicle(vehicle);
+
+                connectionPoint.set(1f - 0.3f * wheelWidth, connectionHeight, 2f - wheelRadius);
+                vehicle.addWheel(connectionPoint, wheelDirection, wheelAxle, 0.6f, wheelRadius, tuning, true);
+                connectionPoint.set(-1f + 0.3f * wheelWidth, connectionHeight, 2f - wheelRadius);
+                vehicle.addWheel(connectionPoint, wheelDirection, wheelAxle, 0.6f, wheelRadius, tuning, true);
+                connectionPoint.set(-1f + 0.3f * wheelWidth, connectionHeight, -2f + wheelRadius);
+                vehicle.addWheel(connectionPoint, wheelDirection, wheelAxle, 0.6f, wheelRadius, tuning, false);
+                connectionPoint.set(1f - 0.3f * wheelWidth, connectionHeight, -2f + wheelRadius);
+                vehicle.addWheel(connectionPoint, wheelDirection, wheelAxle, 0.6f, wheelRadius, tuning, false);
+
+                for (int w = 0; w < vehicle.getNumWheels(); w++) {
+                    WheelInfo wheel = vehicle.getWheelInfo(w);
+                    wheel.suspensionStiffness = 20f;
+                    wheel.wheelsDampingRelaxation = 2.3f;
+                    wheel.wheelsDampingCompression = 4.4f;
+                    wheel.frictionSlip = 1000f;
+                    wheel.rollInfluence = 0.1f;
+                }
+
+                vehicle.setSteeringValue(0.3f, 0);
+                vehicle.setSteeringValue(0.3f, 1);
+                vehicle.applyEngineForce(500f, 2);
+                vehicle.applyEngineForce(500f, 3);
+            }
+        }
+    },
+
+    /**
+     * Kinematic character controllers (as in CharacterDemo) walking in circles among obstacles.
+     */
+    CHARACTER(60) {
+        @Override
+        public void populate(BenchmarkWorld world) {
+            // convex sweeps of the character don't support plane shapes, use box ground instead
+            Transform tr = new Transform();
+            tr.setIdentity();
+            tr.origin.set(0f, -3f, 0f);
+            world.addRigidBody(0f, tr, new BoxShape(new Vector3f(100f, 3f, 100f)));
+
+            Random random = new Random(3);
+            CollisionShape obstacle = new BoxShape(new Vector3f(1f, 1f, 1f));
+            for (int i = 0; i < 200; i++) {
+                tr.origin.set(random.nextFloat() * 80f - 40f, 1f, random.nextFloat() * 80f - 40f);
+                world.addRigidBody(0f, tr, obstacle);
+            }
+
+            final ObjectArrayList<KinematicCharacterController> characters = new ObjectArrayList<>();
+            ConvexShape capsule = new CapsuleShape(0.5f, 1.75f);
+            for (int i = 0; i < 64; i++) {
+                tr.origin.set((i % 8) * 10f - 35f, 2f, (i / 8) * 10f - 35f);
+
+                PairCachingGhostObject ghostObject = new PairCachingGhostObject();
+                ghostObject.setWorldTransform(tr);
+                ghostObject.setCollisionShape(capsule);
+                ghostObject.setCollisionFlags(CollisionFlags.CHARACTER_OBJECT);
+
+                KinematicCharacterController character = new KinematicCharacterController(ghostObject, capsule, 0.35f);
+                world.addCollisionObject(ghostObject, CollisionFilterGroups.CHARACTER_FILTER, (short) (CollisionFilterGroups.STATIC_FILTER | CollisionFilterGroups.DEFAULT_FILTER));
+                world.addAction(character);
+                characters.add(character);
+            }
+
+            world.setInternalTickCallback(new InternalTickCallback() {
+                private final Vector3f walkDirection = new Vector3f();
+                private int tick;
+
+                @Override
+                public void internalTick(DynamicsWorld world, float timeStep) {
+                    tick++;
+                    for (int i = 0; i < characters.size(); i++) {
+                        double angle = (tick + i * 10) * 0.01;
+                        walkDirection.set((float) Math.cos(angle) * 0.1f, 0f, (float) Math.sin(angle) * 0.1f);
+                        characters.get(i).setWalkDirection(walkDirection);
+                    }
+                }
+            }, null);
+        }
+    };
+
+    private final int settleSteps;
+
+    Scenario(int settleSteps) {
+        this.settleSteps = settleSteps;
+    }
+
+    /**
+     * Adds the scene objects to given world.
+     */
+    public abstract void populate(BenchmarkWorld world);
+
+    /**
+     * Returns number of steps simulated before the measurement.
+     */
+    public int getSettleSteps() {
+        return settleSteps;
+    }
+
+    /**
+     * Creates world with the scene and simulates it for the settle steps.
+     */
+    public BenchmarkWorld createWorld(int numTasks) {
+        return createWorld(numTasks, new SequentialImpulseConstraintSolver());
+    }
+
+    /**
+     * Creates world using given constraint solver with the scene and simulates it
+     * for the settle steps.
+     */
+    public BenchmarkWorld createWorld(int numTasks, ConstraintSolver constraintSolver) {
+        BenchmarkWorld world = new BenchmarkWorld(constraintSolver);
+        setUp(world, numTasks);
+        return world;
+    }
+
+    /**
+     * Adds the scene to given empty world and simulates it for the settle steps.
+     */
+    public void setUp(BenchmarkWorld world, int numTasks) {
+        if (numTasks > 1) {
+            world.setNumTasks(numTasks);
+        }
+        populate(world);
+
+        // keep the scene awake, the measured steps would otherwise time sleeping bodies:
+        ObjectArrayList<CollisionObject> objects = world.getCollisionObjectArray();
+        for (int i = 0; i < objects.size(); i++) {
+            RigidBody body = RigidBody.upcast(objects.get(i));
+            if (body != null && !body.isStaticOrKinematicObject()) {
+                body.setActivationState(CollisionObject.DISABLE_DEACTIVATION);
+            }
+        }
+
+        for (int i = 0; i < settleSteps; i++) {
+            world.step();
+        }
+    }
+
+    private static void addGroundPlane(BenchmarkWorld world) {
+        Transform tr = new Transform();
+        tr.setIdentity();
+        world.addRigidBody(0f, tr, new StaticPlaneShape(new Vector3f(0f, 1f, 0f), 0f));
+    }
+
+}
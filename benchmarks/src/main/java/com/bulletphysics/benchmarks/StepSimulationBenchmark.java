@@ -0,0 +1,51 @@
+package com.bulletphysics.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures whole simulation step ({@link BenchmarkWorld#stepSimulation}).<p>
+ *
+ * The scene is built and settled once per fork, the measured steps then continue
+ * the same deterministic simulation in every run.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StepSimulationBenchmark {
+
+    @Param({"BOX_STACK", "SPHERE_PILE", "RAGDOLLS", "TERRAIN", "VEHICLES", "CHARACTER"})
+    public Scenario scenario;
+
+    @Param({"1"})
+    public int numTasks;
+
+    private BenchmarkWorld world;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        world = scenario.createWorld(numTasks);
+    }
+
+    @Benchmark
+    public BenchmarkWorld stepSimulation() {
+        world.step();
+        return world;
+    }
+
+}
@@ -25,6 +25,8 @@ package com.bulletphysics;
 
 import com.bulletphysics.linearmath.CProfileManager;
 import com.bulletphysics.linearmath.Clock;
+import com.bulletphysics.linearmath.ProfileSection;
+import com.bulletphysics.linearmath.Profiler;
 
 import javax.vecmath.Vector3f;
 
@@ -88,6 +90,21 @@ public class BulletStats {
 		if (enableProfile) {
 			CProfileManager.startProfile(name);
 		}
+		if (Profiler.isAnyEnabled()) {
+			Profiler.start(ProfileSection.get(name));
+		}
+	}
+	
+	/**
+	 * Pushes profile node for given section. Measures the section both in
+	 * {@link CProfileManager} (when enabled) and in the {@link Profiler} bound
+	 * to current thread. Use try/finally block to call {@link #popProfile} method.
+	 */
+	public static void pushProfile(ProfileSection section) {
+		if (enableProfile) {
+			CProfileManager.startProfile(section.getName());
+		}
+		Profiler.start(section);
 	}
 	
 	/**
@@ -97,6 +114,7 @@ public class BulletStats {
 		if (enableProfile) {
 			CProfileManager.stopProfile();
 		}
+		Profiler.stop();
 	}
 	
 }
@@ -32,6 +32,7 @@ import com.bulletphysics.linearmath.VectorUtil;
 import com.bulletphysics.util.ObjectArrayList;
 
 import javax.vecmath.Vector3f;
+import java.util.Arrays;
 
 /**
  * AxisSweep3Internal is an internal base class that implements sweep and prune.
@@ -50,8 +51,8 @@ public abstract class AxisSweep3Internal extends BroadphaseInterface {
 	private final Vector3f quantize = new Vector3f();     // scaling factor for quantization
 
 	private int numHandles;                               // number of active handles
-	private final int maxHandles;                               // max number of handles
-	private final Handle[] pHandles;                            // handles pool
+	private int maxHandles;                                     // max number of handles
+	private Handle[] pHandles;                                  // handles pool
 	private int firstFreeHandle;		                    // free handles list
 
 	private final EdgeArray[] pEdges = new EdgeArray[3];      // edge arrays for the 3 axes (each array has m_maxHandles * 2 + 2 sentinel entries)
@@ -67,6 +68,20 @@ public abstract class AxisSweep3Internal extends BroadphaseInterface {
 	
 	// JAVA NOTE: added
 	private final int mask;
+
+	// JAVA NOTE: added, temporaries for batch updates
+	private int[] sortPos = new int[0];
+	private int[] sortHandle = new int[0];
+	private int[] sortTmpPos = new int[0];
+	private int[] sortTmpHandle = new int[0];
+	private final int[] radixCounts = new int[256];
+	private int[] activeHandles;
+	private int[] activeIndices;
+
+	// cost of rebuild per handle (without the sweep) in edge swaps
+	private static final int REBUILD_SWAPS_PER_HANDLE = 16;
+	// number of updated handles used to choose between incremental update and rebuild
+	private static final int ESTIMATE_SAMPLES = 64;
 	
 	AxisSweep3Internal(Vector3f worldAabbMin, Vector3f worldAabbMax, int handleMask, int handleSentinel, int userMaxHandles/* = 16384*/, OverlappingPairCache pairCache/*=0*/) {
 		this.bpHandleMask = handleMask;
@@ -150,6 +165,57 @@ public abstract class AxisSweep3Internal extends BroadphaseInterface {
 		return handle;
 	}
 	
+	private int allocHandle(Object pOwner, short collisionFilterGroup, short collisionFilterMask, Object multiSapProxy) {
+		int handle = allocHandle();
+
+		Handle pHandle = getHandle(handle);
+
+		pHandle.uniqueId = handle;
+		//pHandle->m_pOverlaps = 0;
+		pHandle.clientObject = pOwner;
+		pHandle.collisionFilterGroup = collisionFilterGroup;
+		pHandle.collisionFilterMask = collisionFilterMask;
+		pHandle.multiSapParentProxy = multiSapProxy;
+
+		return handle;
+	}
+
+	/**
+	 * Grows the handles pool and edge arrays to hold given number of handles, existing
+	 * handles and overlapping pairs are kept.
+	 */
+	void ensureCapacity(int userMaxHandles) {
+		int newMaxHandles = userMaxHandles + 1; // need to add one sentinel handle
+		if (newMaxHandles <= maxHandles) {
+			return;
+		}
+		assert (userMaxHandles < handleSentinel);
+
+		Handle[] newHandles = new Handle[newMaxHandles];
+		System.arraycopy(pHandles, 0, newHandles, 0, maxHandles);
+		for (int i=maxHandles; i<newMaxHandles; i++) {
+			newHandles[i] = createHandle();
+			newHandles[i].setNextFree(i + 1 < newMaxHandles ? i + 1 : firstFreeHandle);
+		}
+		firstFreeHandle = maxHandles;
+
+		int numEdges = numHandles * 2 + 2;
+		for (int axis = 0; axis < 3; axis++) {
+			EdgeArray oldEdges = pEdges[axis];
+			EdgeArray newEdges = createEdgeArray(newMaxHandles * 2);
+			for (int i=0; i<numEdges; i++) {
+				newEdges.setPos(i, oldEdges.getPos(i));
+				newEdges.setHandle(i, oldEdges.getHandle(i));
+			}
+			pEdges[axis] = newEdges;
+		}
+
+		pHandles = newHandles;
+		maxHandles = newMaxHandles;
+		activeHandles = null;
+		activeIndices = null;
+	}
+
 	private void freeHandle(int handle) {
 		assert (handle > 0 && handle < maxHandles);
 
@@ -441,17 +507,10 @@ public abstract class AxisSweep3Internal extends BroadphaseInterface {
 		quantize(max, aabbMax, 1);
 
 		// allocate a handle
-		int handle = allocHandle();
+		int handle = allocHandle(pOwner, collisionFilterGroup, collisionFilterMask, multiSapProxy);
 
 		Handle pHandle = getHandle(handle);
 
-		pHandle.uniqueId = handle;
-		//pHandle->m_pOverlaps = 0;
-		pHandle.clientObject = pOwner;
-		pHandle.collisionFilterGroup = collisionFilterGroup;
-		pHandle.collisionFilterMask = collisionFilterMask;
-		pHandle.multiSapParentProxy = multiSapProxy;
-
 		// compute current limit of edge arrays
 		int limit = numHandles * 2;
 
@@ -588,6 +647,273 @@ public abstract class AxisSweep3Internal extends BroadphaseInterface {
 	public void setAabb(BroadphaseProxy proxy, Vector3f aabbMin, Vector3f aabbMax, Dispatcher dispatcher) {
 		updateHandle(proxy.uniqueId, aabbMin, aabbMax, dispatcher);
 	}
+
+	/**
+	 * Creates multiple proxies at once. When sorting the new edges in one by one would
+	 * need too many swaps (e.g. when loading a level), the edge arrays are rebuilt using
+	 * radix sort and the overlapping pairs are found by single sweep instead.
+	 */
+	public void createProxies(int count, Vector3f[] aabbMin, Vector3f[] aabbMax, Object[] userPtr, short[] collisionFilterGroup, short[] collisionFilterMask, Dispatcher dispatcher, BroadphaseProxy[] proxies) {
+		assert (numHandles + count < maxHandles);
+
+		int[] min = new int[3], max = new int[3];
+
+		// new edges are inserted at the end of edge arrays:
+		int end = numHandles * 2 + 1;
+		long swaps = 0, span = 0;
+		int step = Math.max(1, count / ESTIMATE_SAMPLES), samples = 0;
+		for (int i=0; i<count; i+=step) {
+			quantize(min, aabbMin[i], 0);
+			quantize(max, aabbMax[i], 1);
+			for (int axis = 0; axis < 3; axis++) {
+				int emin = findEdge(axis, min[axis]);
+				int emax = findEdge(axis, max[axis]);
+				swaps += (end - emin) + (end - emax);
+				if (axis == 0) {
+					span += emax - emin;
+				}
+			}
+			samples++;
+		}
+
+		if (!isRebuildCheaper(swaps, span, samples, count, numHandles + count)) {
+			for (int i=0; i<count; i++) {
+				proxies[i] = createProxy(aabbMin[i], aabbMax[i], null, userPtr[i], collisionFilterGroup[i], collisionFilterMask[i], dispatcher, null);
+			}
+			return;
+		}
+
+		for (int i=0; i<count; i++) {
+			quantize(min, aabbMin[i], 0);
+			quantize(max, aabbMax[i], 1);
+
+			int handle = allocHandle(userPtr[i], collisionFilterGroup[i], collisionFilterMask[i], null);
+			Handle pHandle = getHandle(handle);
+
+			int limit = numHandles * 2;
+			for (int axis = 0; axis < 3; axis++) {
+				EdgeArray ee = pEdges[axis];
+				ee.setPos(limit - 1, min[axis]);
+				ee.setHandle(limit - 1, handle);
+				ee.setPos(limit, max[axis]);
+				ee.setHandle(limit, handle);
+
+				pHandle.setMinEdges(axis, limit - 1);
+				pHandle.setMaxEdges(axis, limit);
+			}
+			proxies[i] = pHandle;
+		}
+		rebuild(dispatcher);
+	}
+
+	/**
+	 * Updates AABBs of multiple proxies at once. When the proxies moved too far for the
+	 * incremental update (e.g. teleports or explosions), the edge arrays are rebuilt using
+	 * radix sort and the overlapping pairs are found by single sweep instead.
+	 */
+	public void setAabbs(int count, BroadphaseProxy[] proxies, Vector3f[] aabbMin, Vector3f[] aabbMax, Dispatcher dispatcher) {
+		int[] min = new int[3], max = new int[3];
+
+		long swaps = 0, span = 0;
+		int step = Math.max(1, count / ESTIMATE_SAMPLES), samples = 0;
+		for (int i=0; i<count; i+=step) {
+			Handle pHandle = getHandle(proxies[i].uniqueId);
+			quantize(min, aabbMin[i], 0);
+			quantize(max, aabbMax[i], 1);
+			for (int axis = 0; axis < 3; axis++) {
+				int emin = findEdge(axis, min[axis]);
+				int emax = findEdge(axis, max[axis]);
+				swaps += Math.abs(emin - pHandle.getMinEdges(axis)) + Math.abs(emax - pHandle.getMaxEdges(axis));
+				if (axis == 0) {
+					span += emax - emin;
+				}
+			}
+			samples++;
+		}
+
+		if (!isRebuildCheaper(swaps, span, samples, count, numHandles)) {
+			for (int i=0; i<count; i++) {
+				updateHandle(proxies[i].uniqueId, aabbMin[i], aabbMax[i], dispatcher);
+			}
+			return;
+		}
+
+		for (int i=0; i<count; i++) {
+			Handle pHandle = getHandle(proxies[i].uniqueId);
+			quantize(min, aabbMin[i], 0);
+			quantize(max, aabbMax[i], 1);
+			for (int axis = 0; axis < 3; axis++) {
+				pEdges[axis].setPos(pHandle.getMinEdges(axis), min[axis]);
+				pEdges[axis].setPos(pHandle.getMaxEdges(axis), max[axis]);
+			}
+		}
+		rebuild(dispatcher);
+	}
+
+	/**
+	 * Compares estimated number of edge swaps needed for incremental update with the
+	 * estimated cost of rebuild, which is the sort and the sweep. The sweep tests each
+	 * handle against all handles overlapping its start on x axis, that is estimated from
+	 * the number of edges spanned by the updated handles. Both are measured on sample
+	 * of the updated handles.
+	 */
+	private static boolean isRebuildCheaper(long swaps, long span, int samples, int count, int total) {
+		if (samples == 0) {
+			return false;
+		}
+		double incrementalCost = (double)swaps * count / samples;
+		double rebuildCost = (double)total * REBUILD_SWAPS_PER_HANDLE + (double)span / 2 * total / samples;
+		return incrementalCost > rebuildCost;
+	}
+
+	/**
+	 * Returns index of the first edge at given position or after it.
+	 */
+	private int findEdge(int axis, int pos) {
+		EdgeArray edgeArray = pEdges[axis];
+		int lo = 1, hi = numHandles * 2 + 1;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (edgeArray.getPos(mid) < pos) {
+				lo = mid + 1;
+			}
+			else {
+				hi = mid;
+			}
+		}
+		return lo;
+	}
+
+	/**
+	 * Sorts all edges from scratch and updates the overlapping pairs to match.
+	 */
+	private void rebuild(Dispatcher dispatcher) {
+		int limit = numHandles * 2;
+		if (sortPos.length < limit) {
+			sortPos = new int[limit];
+			sortHandle = new int[limit];
+			sortTmpPos = new int[limit];
+			sortTmpHandle = new int[limit];
+		}
+
+		for (int axis = 0; axis < 3; axis++) {
+			EdgeArray ee = pEdges[axis];
+			for (int i=0; i<limit; i++) {
+				sortPos[i] = ee.getPos(i + 1);
+				sortHandle[i] = ee.getHandle(i + 1);
+			}
+
+			radixSort(limit);
+
+			for (int i=0; i<limit; i++) {
+				int pos = sortPos[i];
+				int handle = sortHandle[i];
+				ee.setPos(i + 1, pos);
+				ee.setHandle(i + 1, handle);
+				if ((pos & 1) != 0) {
+					getHandle(handle).setMaxEdges(axis, i + 1);
+				}
+				else {
+					getHandle(handle).setMinEdges(axis, i + 1);
+				}
+			}
+
+			ee.setPos(limit + 1, handleSentinel);
+			ee.setHandle(limit + 1, 0);
+			pHandles[0].setMaxEdges(axis, limit + 1);
+		}
+
+		// sweep the x axis, handles with open interval overlap on it:
+		if (activeHandles == null) {
+			activeHandles = new int[maxHandles];
+			activeIndices = new int[maxHandles];
+		}
+		int numActive = 0;
+		EdgeArray edgeArray = pEdges[0];
+		for (int i=1; i<=limit; i++) {
+			int handle = edgeArray.getHandle(i);
+			if (edgeArray.isMax(i) == 0) {
+				Handle pHandle = getHandle(handle);
+				for (int j=0; j<numActive; j++) {
+					Handle pHandleActive = getHandle(activeHandles[j]);
+					if (testOverlap(0, pHandle, pHandleActive) && pairCache.findPair(pHandle, pHandleActive) == null) {
+						pairCache.addOverlappingPair(pHandle, pHandleActive);
+						if (userPairCallback != null) {
+							userPairCallback.addOverlappingPair(pHandle, pHandleActive);
+						}
+					}
+				}
+				activeIndices[handle] = numActive;
+				activeHandles[numActive++] = handle;
+			}
+			else {
+				int last = activeHandles[--numActive];
+				activeHandles[activeIndices[handle]] = last;
+				activeIndices[last] = activeIndices[handle];
+			}
+		}
+
+		// remove pairs that no longer overlap (deferred removal does it in calculateOverlappingPairs):
+		if (!pairCache.hasDeferredRemoval()) {
+			ObjectArrayList<BroadphasePair> overlappingPairArray = pairCache.getOverlappingPairArray();
+			for (int i=0; i<overlappingPairArray.size(); i++) {
+				BroadphasePair pair = overlappingPairArray.get(i);
+				if (!testAabbOverlap(pair.pProxy0, pair.pProxy1)) {
+					BroadphaseProxy proxy0 = pair.pProxy0;
+					BroadphaseProxy proxy1 = pair.pProxy1;
+					pairCache.removeOverlappingPair(proxy0, proxy1, dispatcher);
+					if (userPairCallback != null) {
+						userPairCallback.removeOverlappingPair(proxy0, proxy1, dispatcher);
+					}
+					i--;
+				}
+			}
+		}
+	}
+
+	/**
+	 * LSD radix sort of edges in sortPos/sortHandle by position, bytes that are the same
+	 * for all edges are skipped (the upper half with 16-bit quantization).
+	 */
+	private void radixSort(int count) {
+		int[] pos = sortPos, handle = sortHandle;
+		int[] tmpPos = sortTmpPos, tmpHandle = sortTmpHandle;
+		int[] counts = radixCounts;
+
+		for (int shift = 0; shift < 32; shift += 8) {
+			Arrays.fill(counts, 0);
+			for (int i=0; i<count; i++) {
+				counts[(pos[i] >>> shift) & 0xFF]++;
+			}
+			if (count == 0 || counts[(pos[0] >>> shift) & 0xFF] == count) {
+				continue;
+			}
+
+			int offset = 0;
+			for (int d=0; d<256; d++) {
+				int c = counts[d];
+				counts[d] = offset;
+				offset += c;
+			}
+			for (int i=0; i<count; i++) {
+				int dest = counts[(pos[i] >>> shift) & 0xFF]++;
+				tmpPos[dest] = pos[i];
+				tmpHandle[dest] = handle[i];
+			}
+
+			int[] t = pos;
+			pos = tmpPos;
+			tmpPos = t;
+			t = handle;
+			handle = tmpHandle;
+			tmpHandle = t;
+		}
+
+		sortPos = pos;
+		sortHandle = handle;
+		sortTmpPos = tmpPos;
+		sortTmpHandle = tmpHandle;
+	}
 	
 	private static boolean testAabbOverlap(BroadphaseProxy proxy0, BroadphaseProxy proxy1) {
 		Handle pHandleA = (Handle)proxy0;
@@ -604,6 +930,49 @@ public abstract class AxisSweep3Internal extends BroadphaseInterface {
 		return true;
 	}
 
+	public void rayTest(Vector3f rayFrom, Vector3f rayTo, BroadphaseRayCallback rayCallback, Vector3f aabbMin, Vector3f aabbMax) {
+		// JAVA NOTE: there is no ray accelerator, the handles are only culled against the quantized
+		// bounding box of the (swept) ray, the callback is expected to do the exact test
+		Vector3f tmp = new Vector3f();
+		int[] rayMin = new int[3], rayMax = new int[3];
+
+		tmp.set(rayFrom);
+		VectorUtil.setMin(tmp, rayTo);
+		tmp.add(aabbMin);
+		quantize(rayMin, tmp, 0);
+
+		tmp.set(rayFrom);
+		VectorUtil.setMax(tmp, rayTo);
+		tmp.add(aabbMax);
+		quantize(rayMax, tmp, 1);
+
+		// min edges on the x axis are sorted, so the scan can stop at the first one past the ray
+		EdgeArray edgeArray = pEdges[0];
+		for (int i = 1, ni = numHandles * 2 + 1; i < ni; i++) {
+			if (edgeArray.isMax(i) != 0) {
+				continue;
+			}
+			if (edgeArray.getPos(i) > rayMax[0]) {
+				break;
+			}
+			Handle pHandle = getHandle(edgeArray.getHandle(i));
+			if (testQuantizedOverlap(pHandle, rayMin, rayMax)) {
+				rayCallback.process(pHandle);
+			}
+		}
+	}
+
+	private boolean testQuantizedOverlap(Handle pHandle, int[] min, int[] max) {
+		for (int axis = 0; axis < 3; axis++) {
+			EdgeArray edgeArray = pEdges[axis];
+			if (edgeArray.getPos(pHandle.getMaxEdges(axis)) < min[axis] ||
+					edgeArray.getPos(pHandle.getMinEdges(axis)) > max[axis]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
 	public OverlappingPairCache getOverlappingPairCache() {
 		return pairCache;
 	}
@@ -32,6 +32,8 @@ import javax.vecmath.Vector3f;
  */
 public abstract class BroadphaseInterface {
 
+	private static final Vector3f ZERO = new Vector3f();
+
 	public abstract BroadphaseProxy createProxy(Vector3f aabbMin, Vector3f aabbMax, BroadphaseNativeType shapeType, Object userPtr, short collisionFilterGroup, short collisionFilterMask, Dispatcher dispatcher, Object multiSapProxy);
 
 	public abstract void destroyProxy(BroadphaseProxy proxy, Dispatcher dispatcher);
@@ -47,4 +49,12 @@ public abstract class BroadphaseInterface {
 	///will add some transform later
 	public abstract void getBroadphaseAabb(Vector3f aabbMin, Vector3f aabbMax);
 
+	public void rayTest(Vector3f rayFrom, Vector3f rayTo, BroadphaseRayCallback rayCallback) {
+		rayTest(rayFrom, rayTo, rayCallback, ZERO, ZERO);
+	}
+
+	///rayTest reports proxies whose AABB may be hit by the ray, optionally extended by aabbMin/aabbMax
+	///(given relative to the ray, used for swept volumes). The rayCallback must be initialized for this ray.
+	public abstract void rayTest(Vector3f rayFrom, Vector3f rayTo, BroadphaseRayCallback rayCallback, Vector3f aabbMin, Vector3f aabbMax);
+
 }
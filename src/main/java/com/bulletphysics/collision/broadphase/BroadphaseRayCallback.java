@@ -0,0 +1,63 @@
+/*
+ * Bullet Continuous Collision Detection and Physics Library
+ * Copyright (c) 2003-2008 Erwin Coumans  http://www.bulletphysics.com/
+ *
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from
+ * the use of this software.
+ * 
+ * Permission is granted to anyone to use this software for any purpose, 
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ * 
+ * 1. The origin of this software must not be misrepresented; you must not
+ *    claim that you wrote the original software. If you use this software
+ *    in a product, an acknowledgment in the product documentation would be
+ *    appreciated but is not required.
+ * 2. Altered source versions must be plainly marked as such, and must not be
+ *    misrepresented as being the original software.
+ * 3. This notice may not be removed or altered from any source distribution.
+ */
+
+package com.bulletphysics.collision.broadphase;
+
+import javax.vecmath.Vector3f;
+
+/**
+ * BroadphaseRayCallback is used for ray queries against the broadphase. Subclasses
+ * are expected to fill in the inverse ray direction, its signs and the ray length
+ * before passing the callback to {@link BroadphaseInterface#rayTest}.
+ */
+public abstract class BroadphaseRayCallback extends BroadphaseAabbCallback {
+
+	// added some cached data to accelerate ray-AABB tests
+	public final Vector3f rayDirectionInverse = new Vector3f();
+	public final int[] signs = new int[3];
+	public float lambdaMax;
+
+	/**
+	 * Computes cached ray data for ray going from rayFrom to rayTo.
+	 */
+	public void init(Vector3f rayFrom, Vector3f rayTo) {
+		float dx = rayTo.x - rayFrom.x;
+		float dy = rayTo.y - rayFrom.y;
+		float dz = rayTo.z - rayFrom.z;
+		float len = (float) Math.sqrt(dx*dx + dy*dy + dz*dz);
+		if (len > 0f) {
+			dx /= len;
+			dy /= len;
+			dz /= len;
+		}
+		
+		// what about division by zero? --> just set rayDirection[i] to INF/1e30
+		rayDirectionInverse.x = dx == 0f ? 1e30f : 1f / dx;
+		rayDirectionInverse.y = dy == 0f ? 1e30f : 1f / dy;
+		rayDirectionInverse.z = dz == 0f ? 1e30f : 1f / dz;
+		signs[0] = rayDirectionInverse.x < 0f ? 1 : 0;
+		signs[1] = rayDirectionInverse.y < 0f ? 1 : 0;
+		signs[2] = rayDirectionInverse.z < 0f ? 1 : 0;
+
+		lambdaMax = len;
+	}
+	
+}
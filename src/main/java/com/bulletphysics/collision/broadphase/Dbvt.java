@@ -26,12 +26,13 @@
 package com.bulletphysics.collision.broadphase;
 
 import com.bulletphysics.BulletGlobals;
+import com.bulletphysics.linearmath.AabbUtil2;
 import com.bulletphysics.linearmath.MiscUtil;
 import com.bulletphysics.linearmath.Transform;
-import com.bulletphysics.util.IntArrayList;
 import com.bulletphysics.util.ObjectArrayList;
 
 import javax.vecmath.Vector3f;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -44,16 +45,39 @@ public class Dbvt<X> {
 
     private static final int SIMPLE_STACKSIZE = 64;
     private static final int DOUBLE_STACKSIZE = SIMPLE_STACKSIZE * 2;
+    // JAVA NOTE: traversal stacks are reused per thread instead of allocating stack elements
+    private static final ThreadLocal<StackPool> stackPools = ThreadLocal.withInitial(StackPool::new);
     private static final Vector3f[] axis = new Vector3f[]{new Vector3f(1, 0, 0), new Vector3f(0, 1, 0), new Vector3f(0, 0, 1)};
     private final int lkhd = -1;
     public Node<X> root = null;
     public final AtomicInteger leaves = new AtomicInteger();
     private Node<X> free = null;
     private/*unsigned*/ int opath = 0;
+    private final Node[] rootRef = new Node[1];
+    private final DbvtAabbMm tmpVolume = new DbvtAabbMm();
+    private final Vector3f tmpMargin = new Vector3f();
 
     public Dbvt() {
     }
 
+    private static Stacks acquireStacks() {
+        StackPool pool = stackPools.get();
+        if (pool.depth == pool.levels.length) {
+            pool.levels = Arrays.copyOf(pool.levels, pool.depth * 2);
+        }
+        Stacks stacks = pool.levels[pool.depth];
+        if (stacks == null) {
+            stacks = new Stacks(pool);
+            pool.levels[pool.depth] = stacks;
+        }
+        pool.depth++;
+        return stacks;
+    }
+
+    private static void releaseStacks(Stacks stacks) {
+        stacks.pool.depth--;
+    }
+
     public static void write(IWriter iwriter) {
         throw new UnsupportedOperationException();
     }
@@ -105,76 +129,178 @@ public class Dbvt<X> {
     public static void collideTT(Node root0, Node root1, ICollide policy) {
         //DBVT_CHECKTYPE
         if (root0 != null && root1 != null) {
-            ObjectArrayList<sStkNN> stack = new ObjectArrayList<>(DOUBLE_STACKSIZE);
-            stack.add(new sStkNN(root0, root1));
-            do {
-                sStkNN p = stack.remove(stack.size() - 1);
-                if (p.a == p.b) {
-                    if (p.a.isinternal()) {
-                        stack.add(new sStkNN(p.a.childs[0], p.a.childs[0]));
-                        stack.add(new sStkNN(p.a.childs[1], p.a.childs[1]));
-                        stack.add(new sStkNN(p.a.childs[0], p.a.childs[1]));
+            Stacks stacks = acquireStacks();
+            try {
+                Node[] sa = stacks.a, sb = stacks.b;
+                int depth = 0;
+                sa[depth] = root0;
+                sb[depth] = root1;
+                depth++;
+                do {
+                    depth--;
+                    Node pa = sa[depth], pb = sb[depth];
+                    sa[depth] = null;
+                    sb[depth] = null;
+                    if (depth > stacks.capacity - 4) {
+                        stacks.grow();
+                        sa = stacks.a;
+                        sb = stacks.b;
                     }
-                } else if (DbvtAabbMm.intersects(p.a.volume, p.b.volume)) {
-                    if (p.a.isinternal()) {
-                        if (p.b.isinternal()) {
-                            stack.add(new sStkNN(p.a.childs[0], p.b.childs[0]));
-                            stack.add(new sStkNN(p.a.childs[1], p.b.childs[0]));
-                            stack.add(new sStkNN(p.a.childs[0], p.b.childs[1]));
-                            stack.add(new sStkNN(p.a.childs[1], p.b.childs[1]));
+                    if (pa == pb) {
+                        if (pa.isinternal()) {
+                            sa[depth] = pa.childs[0]; sb[depth++] = pa.childs[0];
+                            sa[depth] = pa.childs[1]; sb[depth++] = pa.childs[1];
+                            sa[depth] = pa.childs[0]; sb[depth++] = pa.childs[1];
+                        }
+                    } else if (DbvtAabbMm.intersects(pa.volume, pb.volume)) {
+                        if (pa.isinternal()) {
+                            if (pb.isinternal()) {
+                                sa[depth] = pa.childs[0]; sb[depth++] = pb.childs[0];
+                                sa[depth] = pa.childs[1]; sb[depth++] = pb.childs[0];
+                                sa[depth] = pa.childs[0]; sb[depth++] = pb.childs[1];
+                                sa[depth] = pa.childs[1]; sb[depth++] = pb.childs[1];
+                            } else {
+                                sa[depth] = pa.childs[0]; sb[depth++] = pb;
+                                sa[depth] = pa.childs[1]; sb[depth++] = pb;
+                            }
                         } else {
-                            stack.add(new sStkNN(p.a.childs[0], p.b));
-                            stack.add(new sStkNN(p.a.childs[1], p.b));
+                            if (pb.isinternal()) {
+                                sa[depth] = pa; sb[depth++] = pb.childs[0];
+                                sa[depth] = pa; sb[depth++] = pb.childs[1];
+                            } else {
+                                policy.accept(pa, pb);
+                            }
                         }
-                    } else {
-                        if (p.b.isinternal()) {
-                            stack.add(new sStkNN(p.a, p.b.childs[0]));
-                            stack.add(new sStkNN(p.a, p.b.childs[1]));
+                    }
+                }
+                while (depth > 0);
+            } finally {
+                releaseStacks(stacks);
+            }
+        }
+    }
+
+    /**
+     * Splits the traversal of {@link #collideTT(Node, Node, ICollide)} at the upper tree
+     * levels into independent node pairs, stored as consecutive elements in the pairs list.
+     * Node pairs are expanded until there are at least minPairs of them or the leaves are
+     * reached. Calling collideTT on the pairs in the resulting order reports the leaf
+     * pairs in the same order as a single call on the roots. Pairs are appended to the list.
+     */
+    static void splitTT(Node root0, Node root1, int minPairs, ObjectArrayList<Node> pairs, ObjectArrayList<Node> tmp0, ObjectArrayList<Node> tmp1) {
+        if (root0 == null || root1 == null) {
+            return;
+        }
+
+        ObjectArrayList<Node> src = tmp0;
+        ObjectArrayList<Node> dest = tmp1;
+        src.clear();
+        src.add(root0);
+        src.add(root1);
+        boolean expanded = true;
+        while (expanded && src.size() / 2 < minPairs) {
+            expanded = false;
+            dest.clear();
+            for (int i = 0; i < src.size(); i += 2) {
+                Node a = src.get(i);
+                Node b = src.get(i + 1);
+                // children are added in reverse order of collideTT pushing them to the stack:
+                if (a == b) {
+                    if (a.isinternal()) {
+                        addPair(dest, a.childs[0], a.childs[1]);
+                        addPair(dest, a.childs[1], a.childs[1]);
+                        addPair(dest, a.childs[0], a.childs[0]);
+                        expanded = true;
+                    }
+                } else if (DbvtAabbMm.intersects(a.volume, b.volume)) {
+                    if (a.isinternal()) {
+                        if (b.isinternal()) {
+                            addPair(dest, a.childs[1], b.childs[1]);
+                            addPair(dest, a.childs[0], b.childs[1]);
+                            addPair(dest, a.childs[1], b.childs[0]);
+                            addPair(dest, a.childs[0], b.childs[0]);
                         } else {
-                            policy.accept(p.a, p.b);
+                            addPair(dest, a.childs[1], b);
+                            addPair(dest, a.childs[0], b);
                         }
+                        expanded = true;
+                    } else if (b.isinternal()) {
+                        addPair(dest, a, b.childs[1]);
+                        addPair(dest, a, b.childs[0]);
+                        expanded = true;
+                    } else {
+                        addPair(dest, a, b);
                     }
                 }
             }
-            while (!stack.isEmpty());
+            ObjectArrayList<Node> t = src;
+            src = dest;
+            dest = t;
+        }
+
+        for (int i = 0; i < src.size(); i++) {
+            pairs.add(src.get(i));
         }
+        src.clear();
+        dest.clear();
+    }
+
+    private static void addPair(ObjectArrayList<Node> pairs, Node a, Node b) {
+        pairs.add(a);
+        pairs.add(b);
     }
 
     private static void collideTT(Node root0, Node root1, Transform xform, ICollide policy) {
         //DBVT_CHECKTYPE
         if (root0 != null && root1 != null) {
-            ObjectArrayList<sStkNN> stack = new ObjectArrayList<>(DOUBLE_STACKSIZE);
-            stack.add(new sStkNN(root0, root1));
-            do {
-                sStkNN p = stack.remove(stack.size() - 1);
-                if (p.a == p.b) {
-                    if (p.a.isinternal()) {
-                        stack.add(new sStkNN(p.a.childs[0], p.a.childs[0]));
-                        stack.add(new sStkNN(p.a.childs[1], p.a.childs[1]));
-                        stack.add(new sStkNN(p.a.childs[0], p.a.childs[1]));
+            Stacks stacks = acquireStacks();
+            try {
+                Node[] sa = stacks.a, sb = stacks.b;
+                int depth = 0;
+                sa[depth] = root0;
+                sb[depth] = root1;
+                depth++;
+                do {
+                    depth--;
+                    Node pa = sa[depth], pb = sb[depth];
+                    sa[depth] = null;
+                    sb[depth] = null;
+                    if (depth > stacks.capacity - 4) {
+                        stacks.grow();
+                        sa = stacks.a;
+                        sb = stacks.b;
                     }
-                } else if (DbvtAabbMm.intersects(p.a.volume, p.b.volume, xform)) {
-                    if (p.a.isinternal()) {
-                        if (p.b.isinternal()) {
-                            stack.add(new sStkNN(p.a.childs[0], p.b.childs[0]));
-                            stack.add(new sStkNN(p.a.childs[1], p.b.childs[0]));
-                            stack.add(new sStkNN(p.a.childs[0], p.b.childs[1]));
-                            stack.add(new sStkNN(p.a.childs[1], p.b.childs[1]));
-                        } else {
-                            stack.add(new sStkNN(p.a.childs[0], p.b));
-                            stack.add(new sStkNN(p.a.childs[1], p.b));
+                    if (pa == pb) {
+                        if (pa.isinternal()) {
+                            sa[depth] = pa.childs[0]; sb[depth++] = pa.childs[0];
+                            sa[depth] = pa.childs[1]; sb[depth++] = pa.childs[1];
+                            sa[depth] = pa.childs[0]; sb[depth++] = pa.childs[1];
                         }
-                    } else {
-                        if (p.b.isinternal()) {
-                            stack.add(new sStkNN(p.a, p.b.childs[0]));
-                            stack.add(new sStkNN(p.a, p.b.childs[1]));
+                    } else if (DbvtAabbMm.intersects(pa.volume, pb.volume, xform)) {
+                        if (pa.isinternal()) {
+                            if (pb.isinternal()) {
+                                sa[depth] = pa.childs[0]; sb[depth++] = pb.childs[0];
+                                sa[depth] = pa.childs[1]; sb[depth++] = pb.childs[0];
+                                sa[depth] = pa.childs[0]; sb[depth++] = pb.childs[1];
+                                sa[depth] = pa.childs[1]; sb[depth++] = pb.childs[1];
+                            } else {
+                                sa[depth] = pa.childs[0]; sb[depth++] = pb;
+                                sa[depth] = pa.childs[1]; sb[depth++] = pb;
+                            }
                         } else {
-                            policy.accept(p.a, p.b);
+                            if (pb.isinternal()) {
+                                sa[depth] = pa; sb[depth++] = pb.childs[0];
+                                sa[depth] = pa; sb[depth++] = pb.childs[1];
+                            } else {
+                                policy.accept(pa, pb);
+                            }
                         }
                     }
                 }
+                while (depth > 0);
+            } finally {
+                releaseStacks(stacks);
             }
-            while (!stack.isEmpty());
         }
     }
 
@@ -189,19 +315,30 @@ public class Dbvt<X> {
     public static <X> void collide(Node<X> root, DbvtAabbMm volume, ICollide<X> policy) {
         //DBVT_CHECKTYPE
         if (root != null) {
-            ObjectArrayList<Node> stack = new ObjectArrayList<>(SIMPLE_STACKSIZE);
-            stack.add(root);
-            do {
-                Node<X> n = stack.pop();
-                if (volume.intersects(n.volume)) {
-                    if (n.isinternal()) {
-                        stack.add(n.childs[0]);
-                        stack.add(n.childs[1]);
-                    } else {
-                        policy.accept(n);
+            Stacks stacks = acquireStacks();
+            try {
+                Node[] stack = stacks.a;
+                int depth = 0;
+                stack[depth++] = root;
+                do {
+                    Node<X> n = stack[--depth];
+                    stack[depth] = null;
+                    if (volume.intersects(n.volume)) {
+                        if (n.isinternal()) {
+                            if (depth > stacks.capacity - 2) {
+                                stack = stacks.grow();
+                            }
+                            stack[depth++] = n.childs[0];
+                            stack[depth++] = n.childs[1];
+                        } else {
+                            policy.accept(n);
+                        }
                     }
                 }
-            } while (!stack.isEmpty());
+                while (depth > 0);
+            } finally {
+                releaseStacks(stacks);
+            }
         }
     }
 
@@ -213,61 +350,130 @@ public class Dbvt<X> {
             Vector3f invdir = new Vector3f();
             invdir.set(1f / normal.x, 1f / normal.y, 1f / normal.z);
             int[] signs = new int[]{direction.x < 0 ? 1 : 0, direction.y < 0 ? 1 : 0, direction.z < 0 ? 1 : 0};
-            ObjectArrayList<Node> stack = new ObjectArrayList<>(SIMPLE_STACKSIZE);
-            stack.add(root);
-            do {
-                Node node = stack.remove(stack.size() - 1);
-                if (DbvtAabbMm.intersects(node.volume, origin, invdir, signs)) {
-                    if (node.isinternal()) {
-                        stack.add(node.childs[0]);
-                        stack.add(node.childs[1]);
-                    } else {
-                        policy.accept(node);
+            Stacks stacks = acquireStacks();
+            try {
+                Node[] stack = stacks.a;
+                int depth = 0;
+                stack[depth++] = root;
+                do {
+                    Node n = stack[--depth];
+                    stack[depth] = null;
+                    if (DbvtAabbMm.intersects(n.volume, origin, invdir, signs)) {
+                        if (n.isinternal()) {
+                            if (depth > stacks.capacity - 2) {
+                                stack = stacks.grow();
+                            }
+                            stack[depth++] = n.childs[0];
+                            stack[depth++] = n.childs[1];
+                        } else {
+                            policy.accept(n);
+                        }
+                    }
+                }
+                while (depth > 0);
+            } finally {
+                releaseStacks(stacks);
+            }
+        }
+    }
+
+    /**
+     * Bounded variant of {@link #collideRAY}: only nodes hit by the segment [0, lambdaMax] along the
+     * normalized ray direction are visited. Node volumes are extended by aabbMin/aabbMax, which allows
+     * sweeping a box along the ray.
+     */
+    public static void rayTestInternal(Node root, Vector3f rayFrom, Vector3f rayDirectionInverse, int[] signs, float lambdaMax, Vector3f aabbMin, Vector3f aabbMax, ICollide policy) {
+        //DBVT_CHECKTYPE
+        if (root != null) {
+            Stacks stacks = acquireStacks();
+            try {
+                Node[] stack = stacks.a;
+                int depth = 0;
+                stack[depth++] = root;
+                do {
+                    Node n = stack[--depth];
+                    stack[depth] = null;
+                    if (rayTestNode(n, rayFrom, rayDirectionInverse, signs, lambdaMax, aabbMin, aabbMax, stacks)) {
+                        if (n.isinternal()) {
+                            if (depth > stacks.capacity - 2) {
+                                stack = stacks.grow();
+                            }
+                            stack[depth++] = n.childs[0];
+                            stack[depth++] = n.childs[1];
+                        } else {
+                            policy.accept(n);
+                        }
                     }
                 }
+                while (depth > 0);
+            } finally {
+                releaseStacks(stacks);
             }
-            while (!stack.isEmpty());
         }
     }
 
+    private static boolean rayTestNode(Node node, Vector3f rayFrom, Vector3f rayDirectionInverse, int[] signs, float lambdaMax, Vector3f aabbMin, Vector3f aabbMax, Stacks stacks) {
+        Vector3f boundsMin = stacks.tmp0;
+        Vector3f boundsMax = stacks.tmp1;
+        boundsMin.sub(node.volume.min, aabbMax);
+        boundsMax.sub(node.volume.max, aabbMin);
+        return AabbUtil2.rayAabb2(rayFrom, rayDirectionInverse, signs, boundsMin, boundsMax, 0f, lambdaMax);
+    }
+
     public static void collideKDOP(Node root, Vector3f[] normals, float[] offsets, int count, ICollide policy) {
         //DBVT_CHECKTYPE
         if (root != null) {
             int inside = (1 << count) - 1;
-            ObjectArrayList<sStkNP> stack = new ObjectArrayList<>(SIMPLE_STACKSIZE);
-            int[] signs = new int[4 * 8];
-            assert (count < (/*sizeof(signs)*/128 / /*sizeof(signs[0])*/ 4));
-            for (int i = 0; i < count; ++i) {
-                signs[i] = ((normals[i].x >= 0) ? 1 : 0) +
-                        ((normals[i].y >= 0) ? 2 : 0) +
-                        ((normals[i].z >= 0) ? 4 : 0);
-            }
-            stack.add(new sStkNP(root, 0));
-            do {
-                final sStkNP se = stack.remove(stack.size() - 1);
-                final Node seNode = se.node;
-
-                boolean out = false;
-                for (int i = 0, j = 1; (!out) && (i < count); ++i, j <<= 1) {
-                    if (0 == (se.mask & j)) {
-                        int side = seNode.volume.Classify(normals[i], offsets[i], signs[i]);
-                        switch (side) {
-                            case -1 -> out = true;
-                            case +1 -> se.mask |= j;
+            Stacks stacks = acquireStacks();
+            try {
+                int[] signs = stacks.signs;
+                assert (count < (/*sizeof(signs)*/128 / /*sizeof(signs[0])*/ 4));
+                for (int i = 0; i < count; ++i) {
+                    signs[i] = ((normals[i].x >= 0) ? 1 : 0) +
+                            ((normals[i].y >= 0) ? 2 : 0) +
+                            ((normals[i].z >= 0) ? 4 : 0);
+                }
+                Node[] stack = stacks.a;
+                int[] masks = stacks.masks;
+                int depth = 0;
+                stack[depth] = root;
+                masks[depth++] = 0;
+                do {
+                    depth--;
+                    final Node seNode = stack[depth];
+                    int seMask = masks[depth];
+                    stack[depth] = null;
+
+                    boolean out = false;
+                    for (int i = 0, j = 1; (!out) && (i < count); ++i, j <<= 1) {
+                        if (0 == (seMask & j)) {
+                            int side = seNode.volume.Classify(normals[i], offsets[i], signs[i]);
+                            switch (side) {
+                                case -1 -> out = true;
+                                case +1 -> seMask |= j;
+                            }
                         }
                     }
-                }
-                if (!out) {
-                    if ((se.mask != inside) && (seNode.isinternal())) {
-                        stack.add(new sStkNP(seNode.childs[0], se.mask));
-                        stack.add(new sStkNP(seNode.childs[1], se.mask));
-                    } else {
-                        if (policy.allLeaves(seNode))
-                            visit(seNode, policy);
+                    if (!out) {
+                        if ((seMask != inside) && (seNode.isinternal())) {
+                            if (depth > stacks.capacity - 2) {
+                                stack = stacks.grow();
+                                masks = stacks.masks;
+                            }
+                            stack[depth] = seNode.childs[0];
+                            masks[depth++] = seMask;
+                            stack[depth] = seNode.childs[1];
+                            masks[depth++] = seMask;
+                        } else {
+                            if (policy.allLeaves(seNode))
+                                visit(seNode, policy);
+                        }
                     }
                 }
+                while (depth > 0);
+            } finally {
+                releaseStacks(stacks);
             }
-            while (!stack.isEmpty());
         }
     }
 
@@ -282,109 +488,108 @@ public class Dbvt<X> {
                     (sortaxis.y >= 0 ? 2 : 0) +
                     (sortaxis.z >= 0 ? 4 : 0);
             int inside = (1 << count) - 1;
-            ObjectArrayList<sStkNPS> stock = new ObjectArrayList<>();
-            IntArrayList ifree = new IntArrayList();
-            IntArrayList stack = new IntArrayList();
-            int[] signs = new int[/*sizeof(unsigned)*8*/4 * 8];
-            assert (count < (/*sizeof(signs)*/128 / /*sizeof(signs[0])*/ 4));
-            for (int i = 0; i < count; i++) {
-                signs[i] = ((normals[i].x >= 0) ? 1 : 0) +
-                        ((normals[i].y >= 0) ? 2 : 0) +
-                        ((normals[i].z >= 0) ? 4 : 0);
-            }
-            //stock.reserve(SIMPLE_STACKSIZE);
-            //stack.reserve(SIMPLE_STACKSIZE);
-            //ifree.reserve(SIMPLE_STACKSIZE);
-            stack.add(allocate(ifree, stock, new sStkNPS(root, 0, root.volume.ProjectMinimum(sortaxis, srtsgns))));
-            do {
-                // JAVA NOTE: check
-                int id = stack.remove(stack.size() - 1);
-                sStkNPS se = stock.get(id);
-                ifree.add(id);
-                if (se.mask != inside) {
-                    boolean out = false;
-                    for (int i = 0, j = 1; (!out) && (i < count); ++i, j <<= 1) {
-                        if (0 == (se.mask & j)) {
-                            int side = se.node.volume.Classify(normals[i], offsets[i], signs[i]);
-                            switch (side) {
-                                case -1 -> out = true;
-                                case +1 -> se.mask |= j;
+            Stacks stacks = acquireStacks();
+            try {
+                int[] signs = stacks.signs;
+                assert (count < (/*sizeof(signs)*/128 / /*sizeof(signs[0])*/ 4));
+                for (int i = 0; i < count; i++) {
+                    signs[i] = ((normals[i].x >= 0) ? 1 : 0) +
+                            ((normals[i].y >= 0) ? 2 : 0) +
+                            ((normals[i].z >= 0) ? 4 : 0);
+                }
+                // JAVA NOTE: stack entries are stored in parallel arrays (node, mask, value)
+                // instead of pooled stack element objects referenced by index
+                stacks.size = 0;
+                stacks.insert(stacks.size, root, 0, root.volume.ProjectMinimum(sortaxis, srtsgns));
+                do {
+                    int top = --stacks.size;
+                    Node seNode = stacks.a[top];
+                    int seMask = stacks.masks[top];
+                    float seValue = stacks.values[top];
+                    stacks.a[top] = null;
+                    if (seMask != inside) {
+                        boolean out = false;
+                        for (int i = 0, j = 1; (!out) && (i < count); ++i, j <<= 1) {
+                            if (0 == (seMask & j)) {
+                                int side = seNode.volume.Classify(normals[i], offsets[i], signs[i]);
+                                switch (side) {
+                                    case -1 -> out = true;
+                                    case +1 -> seMask |= j;
+                                }
                             }
                         }
+                        if (out) {
+                            continue;
+                        }
                     }
-                    if (out) {
-                        continue;
-                    }
-                }
-                if (policy.descend(se.node)) {
-                    if (se.node.isinternal()) {
-                        Node[] pns = new Node[]{se.node.childs[0], se.node.childs[1]};
-                        sStkNPS[] nes = new sStkNPS[]{new sStkNPS(pns[0], se.mask, pns[0].volume.ProjectMinimum(sortaxis, srtsgns)),
-                                new sStkNPS(pns[1], se.mask, pns[1].volume.ProjectMinimum(sortaxis, srtsgns))
-                        };
-                        int q = nes[0].value < nes[1].value ? 1 : 0;
-                        int j = stack.size();
-                        if (fullsort && (j > 0)) {
-                            /* Insert 0	*/
-                            j = nearest(stack, stock, nes[q].value, 0, stack.size());
-                            stack.add(0);
-                            //#if DBVT_USE_MEMMOVE
-                            //memmove(&stack[j+1],&stack[j],sizeof(int)*(stack.size()-j-1));
-                            //#else
-                            for (int k = stack.size() - 1; k > j; --k) {
-                                stack.set(k, stack.get(k - 1));
-                                //#endif
+                    if (policy.descend(seNode)) {
+                        if (seNode.isinternal()) {
+                            Node n0 = seNode.childs[0];
+                            Node n1 = seNode.childs[1];
+                            float v0 = n0.volume.ProjectMinimum(sortaxis, srtsgns);
+                            float v1 = n1.volume.ProjectMinimum(sortaxis, srtsgns);
+                            // nq is the child with higher projection, it is inserted first:
+                            Node nq = v0 < v1 ? n1 : n0, nr = v0 < v1 ? n0 : n1;
+                            float vq = v0 < v1 ? v1 : v0, vr = v0 < v1 ? v0 : v1;
+                            int j = stacks.size;
+                            if (fullsort && (j > 0)) {
+                                /* Insert 0	*/
+                                j = nearest(stacks.values, vq, 0, stacks.size);
+                                stacks.insert(j, nq, seMask, vq);
+                                /* Insert 1	*/
+                                j = nearest(stacks.values, vr, j, stacks.size);
+                                stacks.insert(j, nr, seMask, vr);
+                            } else {
+                                stacks.insert(stacks.size, nq, seMask, vq);
+                                stacks.insert(stacks.size, nr, seMask, vr);
                             }
-                            stack.set(j, allocate(ifree, stock, nes[q]));
-                            /* Insert 1	*/
-                            j = nearest(stack, stock, nes[1 - q].value, j, stack.size());
-                            stack.add(0);
-                            //#if DBVT_USE_MEMMOVE
-                            //memmove(&stack[j+1],&stack[j],sizeof(int)*(stack.size()-j-1));
-                            //#else
-                            for (int k = stack.size() - 1; k > j; --k) {
-                                stack.set(k, stack.get(k - 1));
-                                //#endif
-                            }
-                            stack.set(j, allocate(ifree, stock, nes[1 - q]));
                         } else {
-                            stack.add(allocate(ifree, stock, nes[q]));
-                            stack.add(allocate(ifree, stock, nes[1 - q]));
+                            policy.accept(seNode, seValue);
                         }
-                    } else {
-                        policy.accept(se.node, se.value);
                     }
                 }
+                while (stacks.size != 0);
+            } finally {
+                releaseStacks(stacks);
             }
-            while (stack.size() != 0);
         }
     }
 
     public static <X> void collideTU(Node<X> root, ICollide<X> policy) {
         //DBVT_CHECKTYPE
         if (root != null) {
-            ObjectArrayList<Node<X>> stack = new ObjectArrayList<>(SIMPLE_STACKSIZE);
-            stack.add(root);
-            do {
-                Node<X> n = stack.remove(stack.size() - 1);
-                if (policy.descend(n)) {
-                    if (n.isinternal()) {
-                        stack.add(n.childs[0]);
-                        stack.add(n.childs[1]);
-                    } else {
-                        policy.accept(n);
+            Stacks stacks = acquireStacks();
+            try {
+                Node[] stack = stacks.a;
+                int depth = 0;
+                stack[depth++] = root;
+                do {
+                    Node<X> n = stack[--depth];
+                    stack[depth] = null;
+                    if (policy.descend(n)) {
+                        if (n.isinternal()) {
+                            if (depth > stacks.capacity - 2) {
+                                stack = stacks.grow();
+                            }
+                            stack[depth++] = n.childs[0];
+                            stack[depth++] = n.childs[1];
+                        } else {
+                            policy.accept(n);
+                        }
                     }
                 }
+                while (depth > 0);
+            } finally {
+                releaseStacks(stacks);
             }
-            while (!stack.isEmpty());
         }
     }
 
-    private static int nearest(IntArrayList i, ObjectArrayList<sStkNPS> a, float v, int l, int h) {
+    private static int nearest(float[] values, float v, int l, int h) {
         int m;
         while (l < h) {
             m = (l + h) >> 1;
-            if (a.get(i.get(m)).value >= v) {
+            if (values[m] >= v) {
                 l = m + 1;
             } else {
                 h = m;
@@ -393,19 +598,6 @@ public class Dbvt<X> {
         return h;
     }
 
-    private static int allocate(IntArrayList ifree, ObjectArrayList<sStkNPS> stock, sStkNPS value) {
-        int i;
-        if (ifree.size() > 0) {
-            i = ifree.get(ifree.size() - 1);
-            ifree.remove(ifree.size() - 1);
-            stock.get(i).set(value);
-        } else {
-            i = stock.size();
-            stock.add(value);
-        }
-        return (i);
-    }
-
     private static int indexOf(Node node) {
         return (node.parent.childs[1] == node) ? 1 : 0;
     }
@@ -468,7 +660,7 @@ public class Dbvt<X> {
             }
 
             Node prev = root.parent;
-            Node node = node(pdbvt, prev, merge(leafVolume, root.volume, new DbvtAabbMm()), null);
+            Node node = node(pdbvt, prev, merge(leafVolume, root.volume, pdbvt.tmpVolume), null);
             if (prev != null) {
                 prev.childs[indexOf(root)] = node;
                 node.childs[0] = root;
@@ -735,7 +927,7 @@ public class Dbvt<X> {
         }
 
         if (root != null && (passes > 0)) {
-            Node[] root_ref = new Node[1];
+            Node[] root_ref = rootRef;
             do {
                 Node node = root;
                 int bit = 0;
@@ -803,7 +995,7 @@ public class Dbvt<X> {
         if (leaf.volume.contains(volume)) {
             return false;
         }
-        Vector3f tmp = new Vector3f();
+        Vector3f tmp = tmpMargin;
         tmp.set(margin, margin, margin);
         volume.expand(tmp);
         volume.expandSigned(velocity);
@@ -824,7 +1016,7 @@ public class Dbvt<X> {
         if (leaf.volume.contains(volume)) {
             return false;
         }
-        Vector3f tmp = new Vector3f();
+        Vector3f tmp = tmpMargin;
         tmp.set(margin, margin, margin);
         volume.expand(tmp);
         update(leaf, volume);
@@ -855,47 +1047,54 @@ public class Dbvt<X> {
     }
 
     /**
-     * Stack element
+     * Traversal stacks, reused by all traversals running on the same thread. Node pairs
+     * are stored in parallel arrays a and b, single nodes use a with optional masks and values.
      */
-    static class sStkNN {
-        final Node a;
-        final Node b;
-
-        sStkNN(Node na, Node nb) {
-            a = na;
-            b = nb;
+    static final class Stacks {
+        final StackPool pool;
+        int capacity = DOUBLE_STACKSIZE;
+        Node[] a = new Node[capacity];
+        Node[] b = new Node[capacity];
+        int[] masks = new int[capacity];
+        float[] values = new float[capacity];
+        int size;
+        final int[] signs = new int[4 * 8];
+        final Vector3f tmp0 = new Vector3f();
+        final Vector3f tmp1 = new Vector3f();
+
+        Stacks(StackPool pool) {
+            this.pool = pool;
         }
-    }
-
-    static class sStkNP {
-        final Node node;
-        int mask;
-
-        sStkNP(Node n, int m) {
-            node = n;
-            mask = m;
-        }
-    }
 
-    static class sStkNPS {
-        Node node;
-        int mask;
-        float value;
-
-        public sStkNPS() {
+        Node[] grow() {
+            capacity *= 2;
+            a = Arrays.copyOf(a, capacity);
+            b = Arrays.copyOf(b, capacity);
+            masks = Arrays.copyOf(masks, capacity);
+            values = Arrays.copyOf(values, capacity);
+            return a;
         }
 
-        sStkNPS(Node n, int m, float v) {
-            node = n;
-            mask = m;
-            value = v;
+        void insert(int index, Node node, int mask, float value) {
+            if (size == capacity) {
+                grow();
+            }
+            System.arraycopy(a, index, a, index + 1, size - index);
+            System.arraycopy(masks, index, masks, index + 1, size - index);
+            System.arraycopy(values, index, values, index + 1, size - index);
+            a[index] = node;
+            masks[index] = mask;
+            values[index] = value;
+            size++;
         }
+    }
 
-        void set(sStkNPS o) {
-            node = o.node;
-            mask = o.mask;
-            value = o.value;
-        }
+    /**
+     * Stacks of a thread, traversals started from policy callbacks use the next level.
+     */
+    private static final class StackPool {
+        Stacks[] levels = new Stacks[4];
+        int depth;
     }
 
     static class sStkCLN {
@@ -25,11 +25,32 @@
 
 package com.bulletphysics.collision.broadphase;
 
+import com.bulletphysics.linearmath.Profiler;
+import com.bulletphysics.util.IntArrayList;
 import com.bulletphysics.util.ObjectArrayList;
 
 import javax.vecmath.Vector3f;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
+ * Broadphase based on two dynamic AABB trees, one for the moving and one for
+ * the resting proxies.<p>
+ * 
+ * Pair finding can be run in parallel by setting an executor with
+ * {@link #setCollideExecutor}. The tree-vs-tree traversal is then split at the
+ * upper tree levels into independent subtree pairs, each collecting its pairs
+ * into own buffer. The buffers are added to the pair cache in the same order
+ * as when traversing serially.<p>
+ * 
+ * Pairs whose proxies no longer overlap are removed after each pair finding,
+ * either by checking all pairs or incrementally, see {@link #setCleanupMode}.<p>
+ * 
+ * The trees are either made of {@link Dbvt.Node} objects (default) or stored
+ * in flat arrays using {@link FlatDbvt}, see {@link #DbvtBroadphase(boolean)}.
+ * 
  * @author jezek2
  */
 public class DbvtBroadphase extends BroadphaseInterface {
@@ -38,8 +59,12 @@ public class DbvtBroadphase extends BroadphaseInterface {
     public static final int FIXED_SET = 1; // Fixed set index
     private static final float DBVT_BP_MARGIN = 0.05f;
     private static final int STAGECOUNT = 2; // Number of stages
+    private static final int PARALLEL_COLLIDE_THRESHOLD = 256; // Minimum number of dynamic proxies for parallel collide
+    private static final int SUBTREE_PAIRS_PER_TASK = 8; // Number of subtree pairs per parallel collide task
+    private static final int CUPDATES = 10; // % of pairs checked per frame by incremental cleanup
     public final OverlappingPairCache paircache;                         // Pair cache
     private final Dbvt[] sets = new Dbvt[2];                        // Dbvt sets
+    private final FlatDbvt[] flatSets;                               // Array based sets, or null
     private final DbvtProxy[] stageRoots = new DbvtProxy[STAGECOUNT + 1]; // Stages list
     private final float predictedframes;                                  // Frames predicted
     private final int fupdates;                                           // % of fixed updates per frame
@@ -48,6 +73,38 @@ public class DbvtBroadphase extends BroadphaseInterface {
     private int stageCurrent;                                       // Current stage
     private int pid;                                                // Parse id
     private int gid;                                                // Gen id
+    private CleanupMode cleanupmode = CleanupMode.FULL;             // Cleanup mode
+    private boolean needcleanup;                                    // Some proxy has moved since last cleanup
+    private int cid;                                                // Cleanup index
+    private int cpending;                                           // Pairs left to check by incremental cleanup
+
+    private Executor collideExecutor;
+    private int numCollideTasks = 1;
+    private final ObjectArrayList<Dbvt.Node> subtreePairs = new ObjectArrayList<>();
+    private final ObjectArrayList<Dbvt.Node> splitTmp0 = new ObjectArrayList<>();
+    private final ObjectArrayList<Dbvt.Node> splitTmp1 = new ObjectArrayList<>();
+    private final ObjectArrayList<PairBuffer> pairBuffers = new ObjectArrayList<>();
+    private final ObjectArrayList<PairCollector> pairCollectors = new ObjectArrayList<>();
+    private final DbvtTreeCollider collider;
+
+    // array based sets:
+    private DbvtProxy[] flatProxies = new DbvtProxy[16];
+    private int numFlatProxies;
+    private final IntArrayList freeFlatProxies = new IntArrayList();
+    private final IntArrayList flatSubtreePairs = new IntArrayList();
+    private final IntArrayList flatSplitTmp0 = new IntArrayList();
+    private final IntArrayList flatSplitTmp1 = new IntArrayList();
+    private int numFixedSubtreePairs;
+    private final FlatPairCollector flatCollider = new FlatPairCollector(this);
+
+    // setAabb temporaries:
+    private final DbvtAabbMm tmpAabb = new DbvtAabbMm();
+    private final Vector3f tmpDelta = new Vector3f();
+    private final Vector3f tmpCenter = new Vector3f();
+
+    // ray test traversal callbacks, reused by the queries of each thread:
+    private static final ThreadLocal<BroadphaseRayTester> rayTesters = ThreadLocal.withInitial(BroadphaseRayTester::new);
+    private final ThreadLocal<FlatRayTester> flatRayTesters = ThreadLocal.withInitial(() -> new FlatRayTester(this));
 
     //#if DBVT_BP_PROFILE
     //btClock					m_clock;
@@ -61,12 +118,35 @@ public class DbvtBroadphase extends BroadphaseInterface {
     //#endif
 
     public DbvtBroadphase() {
-        this(null);
+        this(null, false);
+    }
+
+    /**
+     * Creates broadphase with optional array based trees. Array based trees store
+     * node bounds and links in few large arrays instead of several objects per node,
+     * which improves cache locality of the traversals and reduces the GC work for
+     * worlds with large number of proxies.
+     * 
+     * @param flatTrees true to use {@link FlatDbvt} trees
+     */
+    public DbvtBroadphase(boolean flatTrees) {
+        this(null, flatTrees);
     }
 
-    private DbvtBroadphase(OverlappingPairCache paircache) {
-        sets[0] = new Dbvt();
-        sets[1] = new Dbvt();
+    /**
+     * Creates broadphase using given pair cache, e.g. {@link PackedOverlappingPairCache}.
+     * 
+     * @param paircache pair cache, or null for {@link HashedOverlappingPairCache}
+     * @param flatTrees true to use {@link FlatDbvt} trees
+     */
+    public DbvtBroadphase(OverlappingPairCache paircache, boolean flatTrees) {
+        if (flatTrees) {
+            flatSets = new FlatDbvt[]{new FlatDbvt(), new FlatDbvt()};
+        } else {
+            flatSets = null;
+            sets[0] = new Dbvt();
+            sets[1] = new Dbvt();
+        }
 
         //Dbvt.benchmark();
         releasepaircache = (paircache == null);
@@ -75,6 +155,7 @@ public class DbvtBroadphase extends BroadphaseInterface {
         fupdates = 1;
         dupdates = 1;
         this.paircache = (paircache != null ? paircache : new HashedOverlappingPairCache());
+        collider = new DbvtTreeCollider(this);
         gid = 0;
         pid = 0;
     }
@@ -104,6 +185,69 @@ public class DbvtBroadphase extends BroadphaseInterface {
     private void collide(Dispatcher dispatcher) {
         //SPC(m_profiling.m_total);
 
+        int numPairs = paircache.getNumOverlappingPairs();
+        if (flatSets != null) {
+            collideFlat();
+        } else {
+            collideNodes();
+        }
+        // JAVA NOTE: original counts all reported pairs, only the newly added are counted here
+        int newpairs = Math.max(1, paircache.getNumOverlappingPairs() - numPairs);
+
+        // clean up:
+        //SPC(m_profiling.m_cleanup);
+        ObjectArrayList<BroadphasePair> pairs = paircache.getOverlappingPairArray();
+        if (cleanupmode == CleanupMode.INCREMENTAL) {
+            // after any motion all pairs are checked once, in slices over the next frames:
+            if (needcleanup) {
+                cpending = pairs.size();
+            }
+            if (cpending > 0 && !pairs.isEmpty()) {
+                int ni = Math.min(pairs.size(), Math.max(newpairs, (pairs.size() * CUPDATES) / 100));
+                for (int i = 0; i < ni; i++) {
+                    final BroadphasePair p = pairs.get((cid + i) % pairs.size());
+                    if (removeIfSeparated(p, dispatcher)) {
+                        ni--;
+                        i--;
+                    }
+                }
+                cid = pairs.isEmpty() ? 0 : (cid + ni) % pairs.size();
+                cpending = Math.min(cpending - ni, pairs.size());
+            } else {
+                cpending = 0;
+            }
+        } else if (needcleanup) {
+            if (!pairs.isEmpty()) {
+                for (int i = 0, ni = pairs.size(); i < ni; i++) {
+                    final BroadphasePair p = pairs.get(i);
+                    if (removeIfSeparated(p, dispatcher)) {
+                        ni--;
+                        i--;
+                    }
+                }
+            }
+        }
+        pid++;
+        needcleanup = false;
+    }
+
+    private boolean removeIfSeparated(BroadphasePair p, Dispatcher dispatcher) {
+        DbvtProxy pa = (DbvtProxy) p.pProxy0;
+        DbvtProxy pb = (DbvtProxy) p.pProxy1;
+        if (!DbvtAabbMm.intersects(pa.aabb, pb.aabb)) {
+            //if(pa>pb) btSwap(pa,pb);
+            if (pa.hashCode() > pb.hashCode()) {
+                DbvtProxy tmp = pa;
+                pa = pb;
+                pb = tmp;
+            }
+            paircache.removeOverlappingPair(pa, pb, dispatcher);
+            return true;
+        }
+        return false;
+    }
+
+    private void collideNodes() {
         // optimize:
         final Dbvt s0 = sets[0], s1 = sets[1];
         s0.optimizeIncremental(1 + (s0.leaves.get() * dupdates) / 100);
@@ -114,7 +258,6 @@ public class DbvtBroadphase extends BroadphaseInterface {
         DbvtProxy current = stageRoots[stageCurrent];
         final Dbvt.Node s1r = s1.root;
         if (current != null) {
-            final DbvtTreeCollider collider = new DbvtTreeCollider(this);
             do {
                 final DbvtProxy next = current.links[1];
                 stageRoots[current.stage] = listremove(current, stageRoots[current.stage]);
@@ -128,8 +271,46 @@ public class DbvtBroadphase extends BroadphaseInterface {
         }
 
         // collide dynamics:
-        DbvtTreeCollider collider = new DbvtTreeCollider(this);
         final Dbvt.Node s0r = s0.root;
+        if (collideExecutor != null && s0.leaves.get() >= PARALLEL_COLLIDE_THRESHOLD) {
+            collideParallel(s0r, s1r);
+        } else {
+            collideSerial(s0r, s1r);
+        }
+    }
+
+    private void collideFlat() {
+        // optimize:
+        final FlatDbvt s0 = flatSets[0], s1 = flatSets[1];
+        s0.optimizeIncremental(1 + (s0.getNumLeaves() * dupdates) / 100);
+        s1.optimizeIncremental(1 + (s1.getNumLeaves() * fupdates) / 100);
+
+        // dynamic -> fixed set:
+        stageCurrent = (stageCurrent + 1) % STAGECOUNT;
+        DbvtProxy current = stageRoots[stageCurrent];
+        if (current != null) {
+            do {
+                final DbvtProxy next = current.links[1];
+                stageRoots[current.stage] = listremove(current, stageRoots[current.stage]);
+                stageRoots[STAGECOUNT] = listappend(current, stageRoots[STAGECOUNT]);
+                FlatDbvt.collideTT(s1, s1.getRoot(), s0, current.flatLeaf, flatCollider);
+                s0.remove(current.flatLeaf);
+                current.flatLeaf = s1.insert(current.aabb, current.flatIndex);
+                current.stage = STAGECOUNT;
+                current = next;
+            } while (current != null);
+        }
+
+        // collide dynamics:
+        if (collideExecutor != null && s0.getNumLeaves() >= PARALLEL_COLLIDE_THRESHOLD) {
+            collideFlatParallel(s0, s1);
+        } else {
+            FlatDbvt.collideTT(s0, s0.getRoot(), s1, s1.getRoot(), flatCollider);
+            FlatDbvt.collideTT(s0, s0.getRoot(), s0, s0.getRoot(), flatCollider);
+        }
+    }
+
+    private void collideSerial(Dbvt.Node s0r, Dbvt.Node s1r) {
         {
             //SPC(m_profiling.m_fdcollide);
             Dbvt.collideTT(s0r, s1r, collider);
@@ -138,37 +319,119 @@ public class DbvtBroadphase extends BroadphaseInterface {
             //SPC(m_profiling.m_ddcollide);
             Dbvt.collideTT(s0r, s0r, collider);
         }
+    }
 
-        // clean up:
-        {
-            //SPC(m_profiling.m_cleanup);
-            ObjectArrayList<BroadphasePair> pairs = paircache.getOverlappingPairArray();
-            if (!pairs.isEmpty()) {
-                for (int i = 0, ni = pairs.size(); i < ni; i++) {
-                    final BroadphasePair p = pairs.get(i);
-                    DbvtProxy pa = (DbvtProxy) p.pProxy0;
-                    DbvtProxy pb = (DbvtProxy) p.pProxy1;
-                    if (!DbvtAabbMm.intersects(pa.aabb, pb.aabb)) {
-                        //if(pa>pb) btSwap(pa,pb);
-                        if (pa.hashCode() > pb.hashCode()) {
-                            DbvtProxy tmp = pa;
-                            pa = pb;
-                            pb = tmp;
-                        }
-                        paircache.removeOverlappingPair(pa, pb, dispatcher);
-                        ni--;
-                        i--;
-                    }
-                }
+    private void collideParallel(Dbvt.Node s0r, Dbvt.Node s1r) {
+        int minPairs = numCollideTasks * SUBTREE_PAIRS_PER_TASK;
+        subtreePairs.clear();
+        Dbvt.splitTT(s0r, s1r, minPairs, subtreePairs, splitTmp0, splitTmp1);
+        Dbvt.splitTT(s0r, s0r, minPairs, subtreePairs, splitTmp0, splitTmp1);
+
+        runCollideJob(subtreePairs.size() / 2);
+        subtreePairs.clear();
+    }
+
+    private void collideFlatParallel(FlatDbvt s0, FlatDbvt s1) {
+        int minPairs = numCollideTasks * SUBTREE_PAIRS_PER_TASK;
+        flatSubtreePairs.clear();
+        FlatDbvt.splitTT(s0, s0.getRoot(), s1, s1.getRoot(), minPairs, flatSubtreePairs, flatSplitTmp0, flatSplitTmp1);
+        numFixedSubtreePairs = flatSubtreePairs.size() / 2;
+        FlatDbvt.splitTT(s0, s0.getRoot(), s0, s0.getRoot(), minPairs, flatSubtreePairs, flatSplitTmp0, flatSplitTmp1);
+
+        runCollideJob(flatSubtreePairs.size() / 2);
+        flatSubtreePairs.clear();
+    }
+
+    private void runCollideJob(int numSubtreePairs) {
+        while (pairBuffers.size() < numSubtreePairs) {
+            pairBuffers.add(new PairBuffer());
+        }
+        int numTasks = Math.min(numCollideTasks, numSubtreePairs);
+        while (pairCollectors.size() < numTasks) {
+            pairCollectors.add(new PairCollector(this));
+        }
+
+        CollideJob job = new CollideJob(this, numSubtreePairs);
+        for (int i = 1; i < numTasks; i++) {
+            PairCollector collector = pairCollectors.get(i);
+            collideExecutor.execute(() -> job.run(collector));
+        }
+        job.run(pairCollectors.get(0));
+        job.await();
+
+        // merge in the order of serial traversal:
+        for (int i = 0; i < numSubtreePairs; i++) {
+            PairBuffer buffer = pairBuffers.get(i);
+            DbvtProxy[] proxies = buffer.proxies;
+            for (int j = 0; j < buffer.size; j += 2) {
+                paircache.addOverlappingPair(proxies[j], proxies[j + 1]);
+                proxies[j] = null;
+                proxies[j + 1] = null;
             }
+            buffer.size = 0;
         }
-        pid++;
+    }
+
+    /**
+     * Sets executor used for parallel pair finding. The calling thread participates
+     * in the work, so numTasks-1 tasks are submitted to the executor. Passing null
+     * executor or numTasks lower than 2 restores serial pair finding.<p>
+     * 
+     * Pairs are found in parallel only when there are enough dynamic proxies, the
+     * resulting overlapping pair array is the same as with serial pair finding.
+     * 
+     * @param executor executor for worker tasks, or null
+     * @param numTasks number of tasks finding the pairs, including the calling thread
+     */
+    public void setCollideExecutor(Executor executor, int numTasks) {
+        if (executor == null || numTasks < 2) {
+            this.collideExecutor = null;
+            this.numCollideTasks = 1;
+        } else {
+            this.collideExecutor = executor;
+            this.numCollideTasks = numTasks;
+        }
+    }
+
+    public Executor getCollideExecutor() {
+        return collideExecutor;
+    }
+
+    public int getNumCollideTasks() {
+        return numCollideTasks;
+    }
+
+    /**
+     * Sets how pairs of separated proxies are removed. {@link CleanupMode#FULL} checks
+     * all pairs in every frame in which some proxy has moved. {@link CleanupMode#INCREMENTAL}
+     * checks only a slice of the pairs per frame (at least 10% of them and at least as many
+     * as were newly added), continuing in the next frames until all pairs were checked
+     * once since the last motion. Separated pairs may then stay in the pair cache for
+     * several frames. Default is FULL.
+     */
+    public void setCleanupMode(CleanupMode mode) {
+        cleanupmode = mode;
+        cpending = 0;
+        needcleanup = true;
+    }
+
+    public CleanupMode getCleanupMode() {
+        return cleanupmode;
+    }
+
+    public boolean isFlatTrees() {
+        return flatSets != null;
     }
 
     public BroadphaseProxy createProxy(Vector3f aabbMin, Vector3f aabbMax, BroadphaseNativeType shapeType, Object userPtr, short collisionFilterGroup, short collisionFilterMask, Dispatcher dispatcher, Object multiSapProxy) {
         DbvtProxy proxy = new DbvtProxy(userPtr, collisionFilterGroup, collisionFilterMask);
         DbvtAabbMm.fromMinMax(aabbMin, aabbMax, proxy.aabb);
-        proxy.leaf = sets[0].put(proxy, proxy.aabb);
+        if (flatSets != null) {
+            proxy.flatIndex = allocateFlatIndex(proxy);
+            proxy.flatLeaf = flatSets[0].insert(proxy.aabb, proxy.flatIndex);
+        } else {
+            proxy.leaf = sets[0].put(proxy, proxy.aabb);
+        }
         proxy.stage = stageCurrent;
         proxy.uniqueId = ++gid;
         stageRoots[stageCurrent] = listappend(proxy, stageRoots[stageCurrent]);
@@ -178,26 +441,55 @@ public class DbvtBroadphase extends BroadphaseInterface {
     public void destroyProxy(BroadphaseProxy absproxy, Dispatcher dispatcher) {
         DbvtProxy proxy = (DbvtProxy) absproxy;
         final int stage = proxy.stage;
-        sets[stage == STAGECOUNT ? 1 : 0].remove(proxy.leaf);
+        if (flatSets != null) {
+            flatSets[stage == STAGECOUNT ? 1 : 0].remove(proxy.flatLeaf);
+            freeFlatIndex(proxy.flatIndex);
+            proxy.flatLeaf = FlatDbvt.NULL_NODE;
+        } else {
+            sets[stage == STAGECOUNT ? 1 : 0].remove(proxy.leaf);
+        }
         stageRoots[stage] = listremove(proxy, stageRoots[stage]);
         paircache.removeOverlappingPairsContainingProxy(proxy, dispatcher);
         //btAlignedFree(proxy);
     }
 
+    private int allocateFlatIndex(DbvtProxy proxy) {
+        int index;
+        if (freeFlatProxies.size() > 0) {
+            index = freeFlatProxies.remove(freeFlatProxies.size() - 1);
+        } else {
+            if (numFlatProxies == flatProxies.length) {
+                DbvtProxy[] tmp = new DbvtProxy[flatProxies.length * 2];
+                System.arraycopy(flatProxies, 0, tmp, 0, numFlatProxies);
+                flatProxies = tmp;
+            }
+            index = numFlatProxies++;
+        }
+        flatProxies[index] = proxy;
+        return index;
+    }
+
+    private void freeFlatIndex(int index) {
+        flatProxies[index] = null;
+        freeFlatProxies.add(index);
+    }
+
     public void setAabb(BroadphaseProxy absproxy, Vector3f aabbMin, Vector3f aabbMax, Dispatcher dispatcher) {
         DbvtProxy proxy = (DbvtProxy) absproxy;
-        DbvtAabbMm aabb = DbvtAabbMm.fromMinMax(aabbMin, aabbMax, new DbvtAabbMm());
-        if (proxy.stage == STAGECOUNT) {
+        DbvtAabbMm aabb = DbvtAabbMm.fromMinMax(aabbMin, aabbMax, tmpAabb);
+        if (flatSets != null) {
+            setFlatAabb(proxy, aabbMin, aabbMax, aabb);
+        } else if (proxy.stage == STAGECOUNT) {
             // fixed -> dynamic set
             sets[1].remove(proxy.leaf);
             proxy.leaf = sets[0].put(proxy, aabb);
         } else {
             // dynamic set:
             if (DbvtAabbMm.intersects(proxy.leaf.volume, aabb)) {/* Moving				*/
-                Vector3f delta = new Vector3f();
+                Vector3f delta = tmpDelta;
                 delta.add(aabbMin, aabbMax);
                 delta.scale(0.5f);
-                delta.sub(proxy.aabb.center(new Vector3f()));
+                delta.sub(proxy.aabb.center(tmpCenter));
                 //#ifdef DBVT_BP_MARGIN
                 delta.scale(predictedframes);
                 sets[0].update(proxy.leaf, aabb, delta, DBVT_BP_MARGIN);
@@ -211,11 +503,36 @@ public class DbvtBroadphase extends BroadphaseInterface {
         }
 
         stageRoots[proxy.stage] = listremove(proxy, stageRoots[proxy.stage]);
+        if (DbvtAabbMm.notEqual(proxy.aabb, aabb)) {
+            needcleanup = true;
+        }
         proxy.aabb.set(aabb);
         proxy.stage = stageCurrent;
         stageRoots[stageCurrent] = listappend(proxy, stageRoots[stageCurrent]);
     }
 
+    private void setFlatAabb(DbvtProxy proxy, Vector3f aabbMin, Vector3f aabbMax, DbvtAabbMm aabb) {
+        if (proxy.stage == STAGECOUNT) {
+            // fixed -> dynamic set
+            flatSets[1].remove(proxy.flatLeaf);
+            proxy.flatLeaf = flatSets[0].insert(aabb, proxy.flatIndex);
+        } else {
+            // dynamic set:
+            FlatDbvt s0 = flatSets[0];
+            if (s0.intersects(proxy.flatLeaf, aabb)) {/* Moving				*/
+                Vector3f delta = tmpDelta;
+                delta.add(aabbMin, aabbMax);
+                delta.scale(0.5f);
+                delta.sub(proxy.aabb.center(tmpCenter));
+                delta.scale(predictedframes);
+                s0.update(proxy.flatLeaf, aabb, delta, DBVT_BP_MARGIN);
+            } else {
+                // teleporting:
+                s0.update(proxy.flatLeaf, aabb);
+            }
+        }
+    }
+
     public void calculateOverlappingPairs(Dispatcher dispatcher) {
         collide(dispatcher);
 
@@ -242,12 +559,55 @@ public class DbvtBroadphase extends BroadphaseInterface {
         //#endif
     }
 
+    public void rayTest(Vector3f rayFrom, Vector3f rayTo, BroadphaseRayCallback rayCallback, Vector3f aabbMin, Vector3f aabbMax) {
+        // the previous callback is restored for ray tests nested in rayCallback.process
+        if (flatSets != null) {
+            FlatRayTester callback = flatRayTesters.get();
+            BroadphaseRayCallback outerRayCallback = callback.rayCallback;
+            callback.rayCallback = rayCallback;
+            try {
+                for (FlatDbvt set : flatSets) {
+                    FlatDbvt.rayTestInternal(set, set.getRoot(), rayFrom, rayCallback.rayDirectionInverse, rayCallback.signs, rayCallback.lambdaMax, aabbMin, aabbMax, callback);
+                }
+            } finally {
+                callback.rayCallback = outerRayCallback;
+            }
+            return;
+        }
+        BroadphaseRayTester callback = rayTesters.get();
+        BroadphaseRayCallback outerRayCallback = callback.rayCallback;
+        callback.rayCallback = rayCallback;
+        try {
+            Dbvt.rayTestInternal(sets[DYNAMIC_SET].root, rayFrom, rayCallback.rayDirectionInverse, rayCallback.signs, rayCallback.lambdaMax, aabbMin, aabbMax, callback);
+            Dbvt.rayTestInternal(sets[FIXED_SET].root, rayFrom, rayCallback.rayDirectionInverse, rayCallback.signs, rayCallback.lambdaMax, aabbMin, aabbMax, callback);
+        } finally {
+            callback.rayCallback = outerRayCallback;
+        }
+    }
+
     public OverlappingPairCache getOverlappingPairCache() {
         return paircache;
     }
 
     public void getBroadphaseAabb(Vector3f aabbMin, Vector3f aabbMax) {
         DbvtAabbMm bounds = new DbvtAabbMm();
+        if (flatSets != null) {
+            final FlatDbvt s0 = flatSets[0];
+            final FlatDbvt s1 = flatSets[1];
+            if (!s0.empty()) {
+                s0.getBounds(s0.getRoot(), bounds);
+                if (!s1.empty()) {
+                    DbvtAabbMm.merge(bounds, s1.getBounds(s1.getRoot(), new DbvtAabbMm()), bounds);
+                }
+            } else if (!s1.empty()) {
+                s1.getBounds(s1.getRoot(), bounds);
+            } else {
+                DbvtAabbMm.fromRadius(new Vector3f(), 0f, bounds);
+            }
+            aabbMin.set(bounds.min);
+            aabbMax.set(bounds.max);
+            return;
+        }
 		final Dbvt s0 = sets[0];
 		final Dbvt s1 = sets[1];
 		if (!s0.empty()) {
@@ -265,4 +625,175 @@ public class DbvtBroadphase extends BroadphaseInterface {
         aabbMax.set(bounds.max);
     }
 
+    ////////////////////////////////////////////////////////////////////////////
+
+    public enum CleanupMode {
+        FULL,
+        INCREMENTAL
+    }
+
+    /**
+     * Candidate pairs found in single subtree pair, stored as consecutive proxies.
+     */
+    private static class PairBuffer {
+        DbvtProxy[] proxies = new DbvtProxy[64];
+        int size;
+
+        void add(DbvtProxy pa, DbvtProxy pb) {
+            if (size == proxies.length) {
+                DbvtProxy[] tmp = new DbvtProxy[proxies.length * 2];
+                System.arraycopy(proxies, 0, tmp, 0, size);
+                proxies = tmp;
+            }
+            proxies[size++] = pa;
+            proxies[size++] = pb;
+        }
+    }
+
+    /**
+     * Same as {@link DbvtTreeCollider}, but stores the pairs into buffer instead of pair cache.
+     */
+    private static class PairCollector extends Dbvt.ICollide {
+        PairBuffer buffer;
+        final FlatPairCollector flatCollector;
+
+        PairCollector(DbvtBroadphase broadphase) {
+            flatCollector = new FlatPairCollector(broadphase);
+        }
+
+        @Override
+        public void accept(Dbvt.Node na, Dbvt.Node nb) {
+            DbvtProxy pa = (DbvtProxy) na.data, pb = (DbvtProxy) nb.data;
+            if (DbvtAabbMm.intersects(pa.aabb, pb.aabb)) {
+                if (pa.hashCode() > pb.hashCode()) {
+                    DbvtProxy tmp = pa;
+                    pa = pb;
+                    pb = tmp;
+                }
+                buffer.add(pa, pb);
+            }
+        }
+    }
+
+    /**
+     * Pair callback for the {@link FlatDbvt} sets, leaf data are indices into the proxy
+     * table. Pairs are added to the pair cache, or stored into buffer when set.
+     */
+    private static class FlatPairCollector extends FlatDbvt.ICollide {
+        private final DbvtBroadphase broadphase;
+        PairBuffer buffer;
+
+        FlatPairCollector(DbvtBroadphase broadphase) {
+            this.broadphase = broadphase;
+        }
+
+        @Override
+        public void accept(int data0, int data1) {
+            DbvtProxy[] proxies = broadphase.flatProxies;
+            DbvtProxy pa = proxies[data0], pb = proxies[data1];
+            if (DbvtAabbMm.intersects(pa.aabb, pb.aabb)) {
+                if (pa.hashCode() > pb.hashCode()) {
+                    DbvtProxy tmp = pa;
+                    pa = pb;
+                    pb = tmp;
+                }
+                if (buffer != null) {
+                    buffer.add(pa, pb);
+                } else {
+                    broadphase.paircache.addOverlappingPair(pa, pb);
+                }
+            }
+        }
+    }
+
+    private static class CollideJob {
+        private final DbvtBroadphase broadphase;
+        private final int numSubtreePairs;
+        private final Profiler profiler = Profiler.getCurrent();
+        private final AtomicInteger nextPair = new AtomicInteger();
+        private final CountDownLatch pairsDone;
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        CollideJob(DbvtBroadphase broadphase, int numSubtreePairs) {
+            this.broadphase = broadphase;
+            this.numSubtreePairs = numSubtreePairs;
+            this.pairsDone = new CountDownLatch(numSubtreePairs);
+        }
+
+        void run(PairCollector collector) {
+            Profiler prevProfiler = Profiler.enter(profiler);
+            try {
+                int index;
+                while ((index = nextPair.getAndIncrement()) < numSubtreePairs) {
+                    try {
+                        if (failure.get() == null) {
+                            collector.buffer = broadphase.pairBuffers.get(index);
+                            FlatDbvt[] flatSets = broadphase.flatSets;
+                            if (flatSets != null) {
+                                // pairs of the dynamic set against the fixed set come first:
+                                FlatDbvt other = index < broadphase.numFixedSubtreePairs ? flatSets[1] : flatSets[0];
+                                IntArrayList pairs = broadphase.flatSubtreePairs;
+                                collector.flatCollector.buffer = collector.buffer;
+                                FlatDbvt.collideTT(flatSets[0], pairs.get(index * 2), other, pairs.get(index * 2 + 1), collector.flatCollector);
+                            } else {
+                                Dbvt.collideTT(broadphase.subtreePairs.get(index * 2), broadphase.subtreePairs.get(index * 2 + 1), collector);
+                            }
+                        }
+                    } catch (Throwable t) {
+                        failure.compareAndSet(null, t);
+                    } finally {
+                        pairsDone.countDown();
+                    }
+                }
+            } finally {
+                collector.buffer = null;
+                collector.flatCollector.buffer = null;
+                Profiler.exit(prevProfiler);
+            }
+        }
+
+        void await() {
+            try {
+                pairsDone.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("interrupted while waiting for broadphase tasks", e);
+            }
+
+            Throwable t = failure.get();
+            if (t instanceof RuntimeException) {
+                throw (RuntimeException) t;
+            }
+            if (t instanceof Error) {
+                throw (Error) t;
+            }
+            if (t != null) {
+                throw new IllegalStateException(t);
+            }
+        }
+    }
+
+    private static class BroadphaseRayTester extends Dbvt.ICollide {
+        BroadphaseRayCallback rayCallback;
+
+        @Override
+        public void accept(Dbvt.Node leaf) {
+            rayCallback.process((DbvtProxy) leaf.data);
+        }
+    }
+
+    private static class FlatRayTester extends FlatDbvt.ICollide {
+        private final DbvtBroadphase broadphase;
+        BroadphaseRayCallback rayCallback;
+
+        FlatRayTester(DbvtBroadphase broadphase) {
+            this.broadphase = broadphase;
+        }
+
+        @Override
+        public void accept(int data) {
+            rayCallback.process(broadphase.flatProxies[data]);
+        }
+    }
+
 }
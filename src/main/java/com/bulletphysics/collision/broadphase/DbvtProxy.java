@@ -33,6 +33,8 @@ public class DbvtProxy extends BroadphaseProxy {
 
 	public final DbvtAabbMm aabb = new DbvtAabbMm();
 	public Dbvt.Node leaf;
+	public int flatLeaf = FlatDbvt.NULL_NODE; // leaf node when using FlatDbvt
+	public int flatIndex = -1; // index in proxy table when using FlatDbvt
 	public final DbvtProxy[] links = new DbvtProxy[2];
 	public int stage;
 
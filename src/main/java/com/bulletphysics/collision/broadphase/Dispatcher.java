@@ -61,6 +61,18 @@ public abstract class Dispatcher {
 
 	public abstract ObjectArrayList<PersistentManifold> getInternalManifoldPointer();
 
+	/**
+	 * Returns total number of contact points in all manifolds.
+	 */
+	public int getNumContacts() {
+		int numContacts = 0;
+		int numManifolds = getNumManifolds();
+		for (int i=0; i<numManifolds; i++) {
+			numContacts += getManifoldByIndexInternal(i).getNumContacts();
+		}
+		return numContacts;
+	}
+
 	//public abstract Object allocateCollisionAlgorithm(int size);
 
 	public abstract void freeCollisionAlgorithm(CollisionAlgorithm algo);
@@ -42,6 +42,11 @@ public class DispatcherInfo {
 	public boolean enableSPU = true;
 	public boolean useEpa = true;
 	public final float allowedCcdPenetration = 0.04f;
+	/**
+	 * Warm starts GJK of convex pairs with the separating axis of the previous step and skips
+	 * it while the conservatively updated separating distance stays above contact breaking threshold.
+	 */
+	public boolean useConvexConservativeDistanceUtil;
 	//btStackAlloc*	m_stackAllocator;
 
 	public DispatcherInfo() {
@@ -0,0 +1,636 @@
+package com.bulletphysics.collision.broadphase;
+
+import com.bulletphysics.linearmath.AabbUtil2;
+import com.bulletphysics.util.IntArrayList;
+
+import javax.vecmath.Vector3f;
+import java.util.Arrays;
+
+/**
+ * Array based variant of {@link Dbvt}. Nodes are referenced by index, bounds of all
+ * nodes are stored in single float array (min x, y, z and max x, y, z per node) and
+ * children, parents and leaf data in int arrays. Removed nodes are kept in a free
+ * list and reused by later insertions.<p>
+ * 
+ * Leaves carry an int value chosen by the caller, typically an index into its own
+ * table of objects. Traversals report these values to the {@link ICollide} policy.
+ */
+public class FlatDbvt {
+
+    public static final int NULL_NODE = -1;
+
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int DOUBLE_STACKSIZE = 128;
+    private static final ThreadLocal<StackPool> stackPools = ThreadLocal.withInitial(StackPool::new);
+
+    private float[] bounds;
+    private int[] childs;
+    private int[] parents;
+    private int[] data;
+    private int capacity;
+    private int numNodes;
+    private int root = NULL_NODE;
+    private int free = NULL_NODE;
+    private int leaves;
+    private/*unsigned*/ int opath = 0;
+
+    public FlatDbvt() {
+        capacity = INITIAL_CAPACITY;
+        bounds = new float[capacity * 6];
+        childs = new int[capacity * 2];
+        parents = new int[capacity];
+        data = new int[capacity];
+    }
+
+    private static Stacks acquireStacks() {
+        StackPool pool = stackPools.get();
+        if (pool.depth == pool.levels.length) {
+            pool.levels = Arrays.copyOf(pool.levels, pool.depth * 2);
+        }
+        Stacks stacks = pool.levels[pool.depth];
+        if (stacks == null) {
+            stacks = new Stacks(pool);
+            pool.levels[pool.depth] = stacks;
+        }
+        pool.depth++;
+        return stacks;
+    }
+
+    private static void releaseStacks(Stacks stacks) {
+        stacks.pool.depth--;
+    }
+
+    public int getRoot() {
+        return root;
+    }
+
+    public int getNumLeaves() {
+        return leaves;
+    }
+
+    public boolean empty() {
+        return (root == NULL_NODE);
+    }
+
+    public boolean isLeaf(int node) {
+        return childs[node * 2 + 1] == NULL_NODE;
+    }
+
+    public int getData(int leaf) {
+        return data[leaf];
+    }
+
+    public DbvtAabbMm getBounds(int node, DbvtAabbMm out) {
+        float[] b = bounds;
+        int o = node * 6;
+        out.min.set(b[o], b[o + 1], b[o + 2]);
+        out.max.set(b[o + 3], b[o + 4], b[o + 5]);
+        return out;
+    }
+
+    public boolean intersects(int node, DbvtAabbMm volume) {
+        float[] b = bounds;
+        int o = node * 6;
+        return ((b[o] <= volume.max.x) &&
+                (b[o + 3] >= volume.min.x) &&
+                (b[o + 1] <= volume.max.y) &&
+                (b[o + 4] >= volume.min.y) &&
+                (b[o + 2] <= volume.max.z) &&
+                (b[o + 5] >= volume.min.z));
+    }
+
+    public boolean contains(int node, DbvtAabbMm volume) {
+        float[] b = bounds;
+        int o = node * 6;
+        return ((b[o] <= volume.min.x) &&
+                (b[o + 1] <= volume.min.y) &&
+                (b[o + 2] <= volume.min.z) &&
+                (b[o + 3] >= volume.max.x) &&
+                (b[o + 4] >= volume.max.y) &&
+                (b[o + 5] >= volume.max.z));
+    }
+
+    public void clear() {
+        root = NULL_NODE;
+        free = NULL_NODE;
+        numNodes = 0;
+        leaves = 0;
+        opath = 0;
+    }
+
+    /**
+     * Inserts new leaf with given bounds and data.
+     * 
+     * @return index of the leaf node, stays valid until the leaf is removed
+     */
+    public int insert(DbvtAabbMm volume, int leafData) {
+        int leaf = allocateNode(NULL_NODE, leafData);
+        setBounds(leaf, volume);
+        insertleaf(root, leaf);
+        leaves++;
+        return leaf;
+    }
+
+    public void remove(int leaf) {
+        removeleaf(leaf);
+        freeNode(leaf);
+        leaves--;
+    }
+
+    public void update(int leaf, DbvtAabbMm volume) {
+        removeleaf(leaf);
+        setBounds(leaf, volume);
+        insertleaf(root, leaf);
+    }
+
+    public boolean update(int leaf, DbvtAabbMm volume, Vector3f velocity, float margin) {
+        if (contains(leaf, volume)) {
+            return false;
+        }
+        volume.min.x -= margin;
+        volume.min.y -= margin;
+        volume.min.z -= margin;
+        volume.max.x += margin;
+        volume.max.y += margin;
+        volume.max.z += margin;
+        volume.expandSigned(velocity);
+        update(leaf, volume);
+        return true;
+    }
+
+    public void optimizeIncremental(int passes) {
+        if (passes < 0) {
+            passes = leaves;
+        }
+
+        if (root != NULL_NODE && (passes > 0)) {
+            do {
+                int node = root;
+                int bit = 0;
+                while (!isLeaf(node)) {
+                    node = childs[sort(node) * 2 + ((opath >>> bit) & 1)];
+                    bit = (bit + 1) & (/*sizeof(unsigned)*/4 * 8 - 1);
+                }
+                removeleaf(node);
+                insertleaf(root, node);
+                ++opath;
+            }
+            while ((--passes) != 0);
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+
+    private int allocateNode(int parent, int leafData) {
+        int node;
+        if (free != NULL_NODE) {
+            node = free;
+            free = parents[node];
+        } else {
+            if (numNodes == capacity) {
+                grow();
+            }
+            node = numNodes++;
+        }
+        parents[node] = parent;
+        childs[node * 2] = NULL_NODE;
+        childs[node * 2 + 1] = NULL_NODE;
+        data[node] = leafData;
+        return node;
+    }
+
+    private void freeNode(int node) {
+        // free nodes are linked through their parent index:
+        parents[node] = free;
+        free = node;
+    }
+
+    private void grow() {
+        capacity *= 2;
+        bounds = Arrays.copyOf(bounds, capacity * 6);
+        childs = Arrays.copyOf(childs, capacity * 2);
+        parents = Arrays.copyOf(parents, capacity);
+        data = Arrays.copyOf(data, capacity);
+    }
+
+    private void setBounds(int node, DbvtAabbMm volume) {
+        float[] b = bounds;
+        int o = node * 6;
+        b[o] = volume.min.x;
+        b[o + 1] = volume.min.y;
+        b[o + 2] = volume.min.z;
+        b[o + 3] = volume.max.x;
+        b[o + 4] = volume.max.y;
+        b[o + 5] = volume.max.z;
+    }
+
+    private void mergeBounds(int a, int b, int out) {
+        float[] bd = bounds;
+        int ao = a * 6, bo = b * 6, o = out * 6;
+        for (int i = 0; i < 3; i++) {
+            bd[o + i] = Math.min(bd[ao + i], bd[bo + i]);
+            bd[o + 3 + i] = Math.max(bd[ao + 3 + i], bd[bo + 3 + i]);
+        }
+    }
+
+    /**
+     * Sets bounds of internal node to the union of its children.
+     * 
+     * @return true when the bounds have changed
+     */
+    private boolean refit(int node) {
+        float[] bd = bounds;
+        int o = node * 6, ao = childs[node * 2] * 6, bo = childs[node * 2 + 1] * 6;
+        boolean changed = false;
+        for (int i = 0; i < 3; i++) {
+            float mi = Math.min(bd[ao + i], bd[bo + i]);
+            float mx = Math.max(bd[ao + 3 + i], bd[bo + 3 + i]);
+            if (bd[o + i] != mi || bd[o + 3 + i] != mx) {
+                bd[o + i] = mi;
+                bd[o + 3 + i] = mx;
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    private boolean containsNode(int node, int other) {
+        float[] b = bounds;
+        int o = node * 6, p = other * 6;
+        return ((b[o] <= b[p]) &&
+                (b[o + 1] <= b[p + 1]) &&
+                (b[o + 2] <= b[p + 2]) &&
+                (b[o + 3] >= b[p + 3]) &&
+                (b[o + 4] >= b[p + 4]) &&
+                (b[o + 5] >= b[p + 5]));
+    }
+
+    private float proximity(int a, int b) {
+        float[] bd = bounds;
+        int ao = a * 6, bo = b * 6;
+        return Math.abs((bd[ao] + bd[ao + 3]) - (bd[bo] + bd[bo + 3])) +
+                Math.abs((bd[ao + 1] + bd[ao + 4]) - (bd[bo + 1] + bd[bo + 4])) +
+                Math.abs((bd[ao + 2] + bd[ao + 5]) - (bd[bo + 2] + bd[bo + 5]));
+    }
+
+    private void swapBounds(int a, int b) {
+        float[] bd = bounds;
+        int ao = a * 6, bo = b * 6;
+        for (int i = 0; i < 6; i++) {
+            float tmp = bd[ao + i];
+            bd[ao + i] = bd[bo + i];
+            bd[bo + i] = tmp;
+        }
+    }
+
+    private int indexOf(int node) {
+        return (childs[parents[node] * 2 + 1] == node) ? 1 : 0;
+    }
+
+    private void insertleaf(int root, int leaf) {
+        if (this.root == NULL_NODE) {
+            this.root = leaf;
+            parents[leaf] = NULL_NODE;
+        } else {
+            while (!isLeaf(root)) {
+                int c0 = childs[root * 2], c1 = childs[root * 2 + 1];
+                root = proximity(c0, leaf) < proximity(c1, leaf) ? c0 : c1;
+            }
+
+            int prev = parents[root];
+            int node = allocateNode(prev, NULL_NODE);
+            mergeBounds(leaf, root, node);
+            childs[node * 2] = root;
+            parents[root] = node;
+            childs[node * 2 + 1] = leaf;
+            parents[leaf] = node;
+            if (prev != NULL_NODE) {
+                childs[prev * 2 + (childs[prev * 2 + 1] == root ? 1 : 0)] = node;
+                do {
+                    if (containsNode(prev, node))
+                        break;
+
+                    mergeBounds(childs[prev * 2], childs[prev * 2 + 1], prev);
+                    node = prev;
+                } while (NULL_NODE != (prev = parents[node]));
+            } else {
+                this.root = node;
+            }
+        }
+    }
+
+    private int removeleaf(int leaf) {
+        if (leaf == root) {
+            root = NULL_NODE;
+            return NULL_NODE;
+        } else {
+            int parent = parents[leaf];
+            int prev = parents[parent];
+            int sibling = childs[parent * 2 + 1 - indexOf(leaf)];
+            if (prev != NULL_NODE) {
+                childs[prev * 2 + indexOf(parent)] = sibling;
+                parents[sibling] = prev;
+                freeNode(parent);
+                while (prev != NULL_NODE) {
+                    if (!refit(prev))
+                        break;
+
+                    prev = parents[prev];
+                }
+                return (prev != NULL_NODE ? prev : root);
+            } else {
+                root = sibling;
+                parents[sibling] = NULL_NODE;
+                freeNode(parent);
+                return root;
+            }
+        }
+    }
+
+    private int sort(int n) {
+        final int p = parents[n];
+        // JAVA NOTE: nodes are ordered by index, original compares node addresses
+        if (p != NULL_NODE && p > n) {
+            final int q = parents[p];
+            int i = indexOf(n);
+            int j = 1 - i;
+            final int s = childs[p * 2 + j];
+            if (q != NULL_NODE) {
+                childs[q * 2 + indexOf(p)] = n;
+            } else {
+                root = n;
+            }
+            parents[s] = n;
+            parents[p] = n;
+            parents[n] = q;
+            int n0 = childs[n * 2], n1 = childs[n * 2 + 1];
+            childs[p * 2] = n0;
+            childs[p * 2 + 1] = n1;
+            parents[n0] = p;
+            parents[n1] = p;
+            childs[n * 2 + i] = p;
+            childs[n * 2 + j] = s;
+
+            swapBounds(p, n);
+            return p;
+        }
+        return n;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+
+    private static boolean intersects(float[] a, int ao, float[] b, int bo) {
+        return ((a[ao] <= b[bo + 3]) &&
+                (a[ao + 3] >= b[bo]) &&
+                (a[ao + 1] <= b[bo + 4]) &&
+                (a[ao + 4] >= b[bo + 1]) &&
+                (a[ao + 2] <= b[bo + 5]) &&
+                (a[ao + 5] >= b[bo + 2]));
+    }
+
+    /**
+     * Reports all pairs of intersecting leaves from subtree root0 of tree0 and subtree
+     * root1 of tree1. When both subtrees are the same node, pairs within the subtree are
+     * reported. Leaf pairs are reported in the same order as by {@link Dbvt#collideTT}
+     * for a tree of the same shape.
+     */
+    public static void collideTT(FlatDbvt tree0, int root0, FlatDbvt tree1, int root1, ICollide policy) {
+        if (root0 != NULL_NODE && root1 != NULL_NODE) {
+            final float[] b0 = tree0.bounds, b1 = tree1.bounds;
+            final int[] c0 = tree0.childs, c1 = tree1.childs;
+            final boolean same = (tree0 == tree1);
+            Stacks stacks = acquireStacks();
+            try {
+                int[] sa = stacks.a, sb = stacks.b;
+                int depth = 0;
+                sa[depth] = root0;
+                sb[depth] = root1;
+                depth++;
+                do {
+                    depth--;
+                    int pa = sa[depth], pb = sb[depth];
+                    if (depth > stacks.capacity - 4) {
+                        stacks.grow();
+                        sa = stacks.a;
+                        sb = stacks.b;
+                    }
+                    int pa0 = c0[pa * 2], pa1 = c0[pa * 2 + 1];
+                    if (same && pa == pb) {
+                        if (pa1 != NULL_NODE) {
+                            sa[depth] = pa0; sb[depth++] = pa0;
+                            sa[depth] = pa1; sb[depth++] = pa1;
+                            sa[depth] = pa0; sb[depth++] = pa1;
+                        }
+                    } else if (intersects(b0, pa * 6, b1, pb * 6)) {
+                        int pb0 = c1[pb * 2], pb1 = c1[pb * 2 + 1];
+                        if (pa1 != NULL_NODE) {
+                            if (pb1 != NULL_NODE) {
+                                sa[depth] = pa0; sb[depth++] = pb0;
+                                sa[depth] = pa1; sb[depth++] = pb0;
+                                sa[depth] = pa0; sb[depth++] = pb1;
+                                sa[depth] = pa1; sb[depth++] = pb1;
+                            } else {
+                                sa[depth] = pa0; sb[depth++] = pb;
+                                sa[depth] = pa1; sb[depth++] = pb;
+                            }
+                        } else {
+                            if (pb1 != NULL_NODE) {
+                                sa[depth] = pa; sb[depth++] = pb0;
+                                sa[depth] = pa; sb[depth++] = pb1;
+                            } else {
+                                policy.accept(tree0.data[pa], tree1.data[pb]);
+                            }
+                        }
+                    }
+                }
+                while (depth > 0);
+            } finally {
+                releaseStacks(stacks);
+            }
+        }
+    }
+
+    /**
+     * Splits the traversal of {@link #collideTT(FlatDbvt, int, FlatDbvt, int, ICollide)}
+     * at the upper tree levels into independent node pairs, stored as consecutive elements
+     * in the pairs list, see {@link Dbvt#splitTT}. Pairs are appended to the list.
+     */
+    static void splitTT(FlatDbvt tree0, int root0, FlatDbvt tree1, int root1, int minPairs, IntArrayList pairs, IntArrayList tmp0, IntArrayList tmp1) {
+        if (root0 == NULL_NODE || root1 == NULL_NODE) {
+            return;
+        }
+
+        final float[] b0 = tree0.bounds, b1 = tree1.bounds;
+        final int[] c0 = tree0.childs, c1 = tree1.childs;
+        final boolean same = (tree0 == tree1);
+        IntArrayList src = tmp0;
+        IntArrayList dest = tmp1;
+        src.clear();
+        addPair(src, root0, root1);
+        boolean expanded = true;
+        while (expanded && src.size() / 2 < minPairs) {
+            expanded = false;
+            dest.clear();
+            for (int i = 0; i < src.size(); i += 2) {
+                int a = src.get(i);
+                int b = src.get(i + 1);
+                int a0 = c0[a * 2], a1 = c0[a * 2 + 1];
+                // children are added in reverse order of collideTT pushing them to the stack:
+                if (same && a == b) {
+                    if (a1 != NULL_NODE) {
+                        addPair(dest, a0, a1);
+                        addPair(dest, a1, a1);
+                        addPair(dest, a0, a0);
+                        expanded = true;
+                    }
+                } else if (intersects(b0, a * 6, b1, b * 6)) {
+                    int bc0 = c1[b * 2], bc1 = c1[b * 2 + 1];
+                    if (a1 != NULL_NODE) {
+                        if (bc1 != NULL_NODE) {
+                            addPair(dest, a1, bc1);
+                            addPair(dest, a0, bc1);
+                            addPair(dest, a1, bc0);
+                            addPair(dest, a0, bc0);
+                        } else {
+                            addPair(dest, a1, b);
+                            addPair(dest, a0, b);
+                        }
+                        expanded = true;
+                    } else if (bc1 != NULL_NODE) {
+                        addPair(dest, a, bc1);
+                        addPair(dest, a, bc0);
+                        expanded = true;
+                    } else {
+                        addPair(dest, a, b);
+                    }
+                }
+            }
+            IntArrayList t = src;
+            src = dest;
+            dest = t;
+        }
+
+        for (int i = 0; i < src.size(); i++) {
+            pairs.add(src.get(i));
+        }
+        src.clear();
+        dest.clear();
+    }
+
+    private static void addPair(IntArrayList pairs, int a, int b) {
+        pairs.add(a);
+        pairs.add(b);
+    }
+
+    /**
+     * Reports all leaves of subtree intersecting given volume.
+     */
+    public static void collide(FlatDbvt tree, int root, DbvtAabbMm volume, ICollide policy) {
+        if (root != NULL_NODE) {
+            final int[] c = tree.childs;
+            Stacks stacks = acquireStacks();
+            try {
+                int[] stack = stacks.a;
+                int depth = 0;
+                stack[depth++] = root;
+                do {
+                    int n = stack[--depth];
+                    if (tree.intersects(n, volume)) {
+                        if (c[n * 2 + 1] != NULL_NODE) {
+                            if (depth > stacks.capacity - 2) {
+                                stack = stacks.grow();
+                            }
+                            stack[depth++] = c[n * 2];
+                            stack[depth++] = c[n * 2 + 1];
+                        } else {
+                            policy.accept(tree.data[n]);
+                        }
+                    }
+                }
+                while (depth > 0);
+            } finally {
+                releaseStacks(stacks);
+            }
+        }
+    }
+
+    /**
+     * Same as {@link Dbvt#rayTestInternal}: only leaves hit by the segment [0, lambdaMax] along
+     * the normalized ray direction are reported, node volumes are extended by aabbMin/aabbMax.
+     */
+    public static void rayTestInternal(FlatDbvt tree, int root, Vector3f rayFrom, Vector3f rayDirectionInverse, int[] signs, float lambdaMax, Vector3f aabbMin, Vector3f aabbMax, ICollide policy) {
+        if (root != NULL_NODE) {
+            final float[] b = tree.bounds;
+            final int[] c = tree.childs;
+            Stacks stacks = acquireStacks();
+            try {
+                Vector3f boundsMin = stacks.tmp0;
+                Vector3f boundsMax = stacks.tmp1;
+                int[] stack = stacks.a;
+                int depth = 0;
+                stack[depth++] = root;
+                do {
+                    int n = stack[--depth];
+                    int o = n * 6;
+                    boundsMin.set(b[o] - aabbMax.x, b[o + 1] - aabbMax.y, b[o + 2] - aabbMax.z);
+                    boundsMax.set(b[o + 3] - aabbMin.x, b[o + 4] - aabbMin.y, b[o + 5] - aabbMin.z);
+                    if (AabbUtil2.rayAabb2(rayFrom, rayDirectionInverse, signs, boundsMin, boundsMax, 0f, lambdaMax)) {
+                        if (c[n * 2 + 1] != NULL_NODE) {
+                            if (depth > stacks.capacity - 2) {
+                                stack = stacks.grow();
+                            }
+                            stack[depth++] = c[n * 2];
+                            stack[depth++] = c[n * 2 + 1];
+                        } else {
+                            policy.accept(tree.data[n]);
+                        }
+                    }
+                }
+                while (depth > 0);
+            } finally {
+                releaseStacks(stacks);
+            }
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Traversal stacks of node indices, reused by all traversals running on the same thread.
+     */
+    private static final class Stacks {
+        final StackPool pool;
+        int capacity = DOUBLE_STACKSIZE;
+        int[] a = new int[capacity];
+        int[] b = new int[capacity];
+        final Vector3f tmp0 = new Vector3f();
+        final Vector3f tmp1 = new Vector3f();
+
+        Stacks(StackPool pool) {
+            this.pool = pool;
+        }
+
+        int[] grow() {
+            capacity *= 2;
+            a = Arrays.copyOf(a, capacity);
+            b = Arrays.copyOf(b, capacity);
+            return a;
+        }
+    }
+
+    /**
+     * Stacks of a thread, traversals started from policy callbacks use the next level.
+     */
+    private static final class StackPool {
+        Stacks[] levels = new Stacks[4];
+        int depth;
+    }
+
+    public static class ICollide {
+
+        protected void accept(int data0, int data1) { }
+
+        protected void accept(int data) { }
+    }
+
+}
@@ -0,0 +1,534 @@
+package com.bulletphysics.collision.broadphase;
+
+import com.bulletphysics.linearmath.AabbUtil2;
+import com.bulletphysics.linearmath.VectorUtil;
+import com.bulletphysics.util.ObjectArrayList;
+
+import javax.vecmath.Vector3f;
+import java.util.Arrays;
+
+/**
+ * Broadphase based on hashed uniform grid. Suited for large number of similarly
+ * sized objects (e.g. particle-like swarms), where it avoids the tree rebalancing
+ * of {@link DbvtBroadphase} and the sorting churn of {@link AxisSweep3}.<p>
+ * 
+ * The grid is rebuilt from the proxy AABBs whenever some proxy has changed, cells
+ * are found by hashing their integer coordinates and each proxy is stored in all
+ * cells it overlaps. The cell size should be about the size of the typical object.
+ * Proxies overlapping too many cells (e.g. ground) are kept out of the grid and
+ * tested against all other proxies.<p>
+ * 
+ * Pairs are reported to the {@link OverlappingPairCache}, so the usual
+ * {@link OverlapFilterCallback} filtering applies. Besides {@link #rayTest} the
+ * proxies overlapping given AABB can be queried using {@link #aabbTest}. Queries
+ * only read the grid (it is rebuilt in {@link #calculateOverlappingPairs}), so they
+ * can be run from multiple threads at once. When proxies were changed after the
+ * last rebuild, queries fall back to testing all proxies.
+ */
+public class HashedGridBroadphase extends BroadphaseInterface {
+
+    private static final int MAX_PROXY_CELLS = 64; // Proxies overlapping more cells are not stored in grid
+    private static final int CELL_LIMIT = (1 << 20) - 1; // Cell coordinates are clamped to 21 bits
+    private static final long EMPTY_KEY = Long.MIN_VALUE;
+
+    private final float cellSize;
+    private final float invCellSize;
+    private final OverlappingPairCache pairCache;
+    private final ObjectArrayList<HashedGridBroadphaseProxy> handles = new ObjectArrayList<>();
+    private final ObjectArrayList<HashedGridBroadphaseProxy> largeProxies = new ObjectArrayList<>();
+    private int gid;
+    private boolean gridDirty = true;
+    private boolean pairsDirty = true;
+    private boolean needcleanup;
+    private int numPairs; // pairs in the cache after the last calculation
+
+    // grid (cell table maps cell keys to dense cell ids, proxies of a cell are
+    // stored at cellProxies[cellStart[id]..cellStart[id + 1]]):
+    private long[] tableKeys = new long[64];
+    private int[] tableCells = new int[64];
+    private int tableShift = 64 - 6;
+    private int numCells;
+    private long[] cellKeys = new long[64];
+    private int[] cellStart = new int[65];
+    private int[] cellFill = new int[64];
+    private int[] entryCells = new int[64];
+    private int[] cellProxies = new int[64];
+
+    // per-thread query state (visited marks and temporaries):
+    private final ThreadLocal<QueryState> queryStates = ThreadLocal.withInitial(QueryState::new);
+
+    public HashedGridBroadphase(float cellSize) {
+        this(cellSize, null);
+    }
+
+    /**
+     * @param cellSize size of grid cell, about the size of the typical object
+     * @param overlappingPairCache pair cache, or null for {@link HashedOverlappingPairCache}
+     */
+    public HashedGridBroadphase(float cellSize, OverlappingPairCache overlappingPairCache) {
+        if (!(cellSize > 0f)) {
+            throw new IllegalArgumentException("cell size must be positive");
+        }
+        this.cellSize = cellSize;
+        this.invCellSize = 1f / cellSize;
+        this.pairCache = (overlappingPairCache != null ? overlappingPairCache : new HashedOverlappingPairCache());
+    }
+
+    public float getCellSize() {
+        return cellSize;
+    }
+
+    public BroadphaseProxy createProxy(Vector3f aabbMin, Vector3f aabbMax, BroadphaseNativeType shapeType, Object userPtr, short collisionFilterGroup, short collisionFilterMask, Dispatcher dispatcher, Object multiSapProxy) {
+        assert (aabbMin.x <= aabbMax.x && aabbMin.y <= aabbMax.y && aabbMin.z <= aabbMax.z);
+
+        HashedGridBroadphaseProxy proxy = new HashedGridBroadphaseProxy(aabbMin, aabbMax, userPtr, collisionFilterGroup, collisionFilterMask, multiSapProxy);
+        proxy.uniqueId = ++gid;
+        proxy.index = handles.size();
+        handles.add(proxy);
+        gridDirty = true;
+        pairsDirty = true;
+        return proxy;
+    }
+
+    public void destroyProxy(BroadphaseProxy absproxy, Dispatcher dispatcher) {
+        HashedGridBroadphaseProxy proxy = (HashedGridBroadphaseProxy) absproxy;
+        int last = handles.size() - 1;
+        if (proxy.index != last) {
+            HashedGridBroadphaseProxy moved = handles.get(last);
+            moved.index = proxy.index;
+            handles.setQuick(proxy.index, moved);
+        }
+        handles.removeQuick(last);
+        gridDirty = true;
+        pairsDirty = true;
+
+        pairCache.removeOverlappingPairsContainingProxy(proxy, dispatcher);
+    }
+
+    public void setAabb(BroadphaseProxy absproxy, Vector3f aabbMin, Vector3f aabbMax, Dispatcher dispatcher) {
+        HashedGridBroadphaseProxy proxy = (HashedGridBroadphaseProxy) absproxy;
+        if (!proxy.min.equals(aabbMin) || !proxy.max.equals(aabbMax)) {
+            proxy.min.set(aabbMin);
+            proxy.max.set(aabbMax);
+            gridDirty = true;
+            pairsDirty = true;
+            needcleanup = true;
+        }
+    }
+
+    /**
+     * Finds the overlapping pairs when some proxy has changed or when the pair cache
+     * was changed from outside since the last call (eg. pairs removed by
+     * {@link OverlappingPairCache#removeOverlappingPairsContainingProxy}), the changes
+     * are detected by the number of pairs. Changes of the filtering that don't alter
+     * the pairs take effect once some proxy changes.
+     */
+    public void calculateOverlappingPairs(Dispatcher dispatcher) {
+        if (pairCache.getNumOverlappingPairs() != numPairs) {
+            // pairs added from outside may not overlap:
+            pairsDirty = true;
+            needcleanup = true;
+        }
+        if (!pairsDirty) {
+            return;
+        }
+        if (gridDirty) {
+            buildGrid();
+        }
+
+        // pairs within cells, each pair is reported only in the cell containing
+        // the minimum corner of the AABBs intersection:
+        ObjectArrayList<HashedGridBroadphaseProxy> proxies = handles;
+        for (int c = 0; c < numCells; c++) {
+            int start = cellStart[c], end = cellStart[c + 1];
+            if (end - start < 2) {
+                continue;
+            }
+            long key = cellKeys[c];
+            for (int i = start; i < end; i++) {
+                HashedGridBroadphaseProxy a = proxies.get(cellProxies[i]);
+                for (int j = i + 1; j < end; j++) {
+                    HashedGridBroadphaseProxy b = proxies.get(cellProxies[j]);
+                    if (aabbOverlap(a, b) &&
+                            key == cellKey(Math.max(a.minCellX, b.minCellX), Math.max(a.minCellY, b.minCellY), Math.max(a.minCellZ, b.minCellZ))) {
+                        pairCache.addOverlappingPair(a, b);
+                    }
+                }
+            }
+        }
+
+        // large proxies against all others:
+        for (int i = 0, ni = largeProxies.size(); i < ni; i++) {
+            HashedGridBroadphaseProxy a = largeProxies.get(i);
+            for (int j = 0, nj = proxies.size(); j < nj; j++) {
+                HashedGridBroadphaseProxy b = proxies.get(j);
+                if (b != a && (!b.large || b.index > a.index) && aabbOverlap(a, b)) {
+                    pairCache.addOverlappingPair(a, b);
+                }
+            }
+        }
+
+        // clean up:
+        if (needcleanup) {
+            ObjectArrayList<BroadphasePair> pairs = pairCache.getOverlappingPairArray();
+            for (int i = 0, ni = pairs.size(); i < ni; i++) {
+                BroadphasePair p = pairs.get(i);
+                if (!aabbOverlap((HashedGridBroadphaseProxy) p.pProxy0, (HashedGridBroadphaseProxy) p.pProxy1)) {
+                    pairCache.removeOverlappingPair(p.pProxy0, p.pProxy1, dispatcher);
+                    ni--;
+                    i--;
+                }
+            }
+            needcleanup = false;
+        }
+        pairsDirty = false;
+        numPairs = pairCache.getNumOverlappingPairs();
+    }
+
+    public void rayTest(Vector3f rayFrom, Vector3f rayTo, BroadphaseRayCallback rayCallback, Vector3f aabbMin, Vector3f aabbMax) {
+        QueryState q = beginQuery();
+        try {
+            rayTest(q, rayFrom, rayTo, rayCallback, aabbMin, aabbMax);
+        } finally {
+            q.busy = false;
+        }
+    }
+
+    private void rayTest(QueryState q, Vector3f rayFrom, Vector3f rayTo, BroadphaseRayCallback rayCallback, Vector3f aabbMin, Vector3f aabbMax) {
+        if (gridDirty) {
+            for (int i = 0, ni = handles.size(); i < ni; i++) {
+                rayTestProxy(handles.get(i), q, rayFrom, rayCallback, aabbMin, aabbMax);
+            }
+            return;
+        }
+        for (int i = 0, ni = largeProxies.size(); i < ni; i++) {
+            rayTestProxy(largeProxies.get(i), q, rayFrom, rayCallback, aabbMin, aabbMax);
+        }
+
+        float dx = rayTo.x - rayFrom.x;
+        float dy = rayTo.y - rayFrom.y;
+        float dz = rayTo.z - rayFrom.z;
+        int cx = cell(rayFrom.x), cy = cell(rayFrom.y), cz = cell(rayFrom.z);
+        int ex = cell(rayTo.x), ey = cell(rayTo.y), ez = cell(rayTo.z);
+        int steps = Math.abs(ex - cx) + Math.abs(ey - cy) + Math.abs(ez - cz);
+
+        // cells overlapped by the swept AABB, relative to the cell of the ray point:
+        int lox = (int) Math.floor(aabbMin.x * invCellSize), hix = (int) Math.ceil(aabbMax.x * invCellSize);
+        int loy = (int) Math.floor(aabbMin.y * invCellSize), hiy = (int) Math.ceil(aabbMax.y * invCellSize);
+        int loz = (int) Math.floor(aabbMin.z * invCellSize), hiz = (int) Math.ceil(aabbMax.z * invCellSize);
+        long cellsPerStep = (long) (hix - lox + 1) * (hiy - loy + 1) * (hiz - loz + 1);
+        if ((steps + 1) * cellsPerStep > handles.size()) {
+            for (int i = 0, ni = handles.size(); i < ni; i++) {
+                rayTestProxy(handles.get(i), q, rayFrom, rayCallback, aabbMin, aabbMax);
+            }
+            return;
+        }
+
+        // 3D DDA over the cells along the ray:
+        int stepX = dx > 0f ? 1 : -1, stepY = dy > 0f ? 1 : -1, stepZ = dz > 0f ? 1 : -1;
+        float tMaxX = dx != 0f ? ((cx + (dx > 0f ? 1 : 0)) * cellSize - rayFrom.x) / dx : Float.POSITIVE_INFINITY;
+        float tMaxY = dy != 0f ? ((cy + (dy > 0f ? 1 : 0)) * cellSize - rayFrom.y) / dy : Float.POSITIVE_INFINITY;
+        float tMaxZ = dz != 0f ? ((cz + (dz > 0f ? 1 : 0)) * cellSize - rayFrom.z) / dz : Float.POSITIVE_INFINITY;
+        float tDeltaX = dx != 0f ? cellSize / Math.abs(dx) : Float.POSITIVE_INFINITY;
+        float tDeltaY = dy != 0f ? cellSize / Math.abs(dy) : Float.POSITIVE_INFINITY;
+        float tDeltaZ = dz != 0f ? cellSize / Math.abs(dz) : Float.POSITIVE_INFINITY;
+        for (int s = 0; ; s++) {
+            for (int z = cz + loz; z <= cz + hiz; z++) {
+                for (int y = cy + loy; y <= cy + hiy; y++) {
+                    for (int x = cx + lox; x <= cx + hix; x++) {
+                        int c = findCell(cellKey(x, y, z));
+                        if (c >= 0) {
+                            for (int i = cellStart[c], end = cellStart[c + 1]; i < end; i++) {
+                                rayTestProxy(handles.get(cellProxies[i]), q, rayFrom, rayCallback, aabbMin, aabbMax);
+                            }
+                        }
+                    }
+                }
+            }
+            if (s == steps) {
+                break;
+            }
+            if (tMaxX <= tMaxY && tMaxX <= tMaxZ) {
+                cx += stepX;
+                tMaxX += tDeltaX;
+            } else if (tMaxY <= tMaxZ) {
+                cy += stepY;
+                tMaxY += tDeltaY;
+            } else {
+                cz += stepZ;
+                tMaxZ += tDeltaZ;
+            }
+        }
+    }
+
+    private static void rayTestProxy(HashedGridBroadphaseProxy proxy, QueryState q, Vector3f rayFrom, BroadphaseRayCallback rayCallback, Vector3f aabbMin, Vector3f aabbMax) {
+        if (!q.visit(proxy)) {
+            return;
+        }
+        Vector3f boundsMin = q.tmpMin;
+        Vector3f boundsMax = q.tmpMax;
+        boundsMin.sub(proxy.min, aabbMax);
+        boundsMax.sub(proxy.max, aabbMin);
+        if (AabbUtil2.rayAabb2(rayFrom, rayCallback.rayDirectionInverse, rayCallback.signs, boundsMin, boundsMax, 0f, rayCallback.lambdaMax)) {
+            rayCallback.process(proxy);
+        }
+    }
+
+    /**
+     * Reports all proxies overlapping given AABB.
+     */
+    public void aabbTest(Vector3f aabbMin, Vector3f aabbMax, BroadphaseAabbCallback callback) {
+        QueryState q = beginQuery();
+        try {
+            aabbTest(q, aabbMin, aabbMax, callback);
+        } finally {
+            q.busy = false;
+        }
+    }
+
+    private void aabbTest(QueryState q, Vector3f aabbMin, Vector3f aabbMax, BroadphaseAabbCallback callback) {
+        if (gridDirty) {
+            for (int i = 0, ni = handles.size(); i < ni; i++) {
+                aabbTestProxy(handles.get(i), q, aabbMin, aabbMax, callback);
+            }
+            return;
+        }
+        for (int i = 0, ni = largeProxies.size(); i < ni; i++) {
+            aabbTestProxy(largeProxies.get(i), q, aabbMin, aabbMax, callback);
+        }
+
+        int x0 = cell(aabbMin.x), y0 = cell(aabbMin.y), z0 = cell(aabbMin.z);
+        int x1 = cell(aabbMax.x), y1 = cell(aabbMax.y), z1 = cell(aabbMax.z);
+        if ((long) (x1 - x0 + 1) * (y1 - y0 + 1) * (z1 - z0 + 1) > handles.size()) {
+            for (int i = 0, ni = handles.size(); i < ni; i++) {
+                aabbTestProxy(handles.get(i), q, aabbMin, aabbMax, callback);
+            }
+            return;
+        }
+        for (int z = z0; z <= z1; z++) {
+            for (int y = y0; y <= y1; y++) {
+                for (int x = x0; x <= x1; x++) {
+                    int c = findCell(cellKey(x, y, z));
+                    if (c >= 0) {
+                        for (int i = cellStart[c], end = cellStart[c + 1]; i < end; i++) {
+                            aabbTestProxy(handles.get(cellProxies[i]), q, aabbMin, aabbMax, callback);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private static void aabbTestProxy(HashedGridBroadphaseProxy proxy, QueryState q, Vector3f aabbMin, Vector3f aabbMax, BroadphaseAabbCallback callback) {
+        if (!q.visit(proxy)) {
+            return;
+        }
+        if (AabbUtil2.testAabbAgainstAabb2(proxy.min, proxy.max, aabbMin, aabbMax)) {
+            callback.process(proxy);
+        }
+    }
+
+    public OverlappingPairCache getOverlappingPairCache() {
+        return pairCache;
+    }
+
+    public void getBroadphaseAabb(Vector3f aabbMin, Vector3f aabbMax) {
+        if (handles.isEmpty()) {
+            aabbMin.set(0f, 0f, 0f);
+            aabbMax.set(0f, 0f, 0f);
+            return;
+        }
+        aabbMin.set(Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY);
+        aabbMax.set(Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY);
+        for (int i = 0, ni = handles.size(); i < ni; i++) {
+            HashedGridBroadphaseProxy proxy = handles.get(i);
+            VectorUtil.setMin(aabbMin, proxy.min);
+            VectorUtil.setMax(aabbMax, proxy.max);
+        }
+    }
+
+    /**
+     * Returns query state of the current thread, a fresh one is used when a callback
+     * issues nested query from within another one.
+     */
+    private QueryState beginQuery() {
+        QueryState q = queryStates.get();
+        if (q.busy) {
+            q = new QueryState();
+        }
+        q.begin(handles.size());
+        return q;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+
+    private static boolean aabbOverlap(HashedGridBroadphaseProxy proxy0, HashedGridBroadphaseProxy proxy1) {
+        return proxy0.min.x <= proxy1.max.x && proxy1.min.x <= proxy0.max.x &&
+                proxy0.min.y <= proxy1.max.y && proxy1.min.y <= proxy0.max.y &&
+                proxy0.min.z <= proxy1.max.z && proxy1.min.z <= proxy0.max.z;
+    }
+
+    private int cell(float coord) {
+        float c = (float) Math.floor(coord * invCellSize);
+        // also handles NaN:
+        return c >= -CELL_LIMIT ? (c <= CELL_LIMIT ? (int) c : CELL_LIMIT) : -CELL_LIMIT;
+    }
+
+    private static long cellKey(int x, int y, int z) {
+        return ((long) (x & 0x1FFFFF) << 42) | ((long) (y & 0x1FFFFF) << 21) | (z & 0x1FFFFF);
+    }
+
+    private int getHash(long key) {
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> tableShift);
+    }
+
+    private int findCell(long key) {
+        long[] keys = tableKeys;
+        int mask = keys.length - 1;
+        int pos = getHash(key);
+        long k;
+        while ((k = keys[pos]) != EMPTY_KEY) {
+            if (k == key) {
+                return tableCells[pos];
+            }
+            pos = (pos + 1) & mask;
+        }
+        return -1;
+    }
+
+    private int findOrAddCell(long key) {
+        long[] keys = tableKeys;
+        int mask = keys.length - 1;
+        int pos = getHash(key);
+        long k;
+        while ((k = keys[pos]) != EMPTY_KEY) {
+            if (k == key) {
+                return tableCells[pos];
+            }
+            pos = (pos + 1) & mask;
+        }
+        int c = numCells++;
+        keys[pos] = key;
+        tableCells[pos] = c;
+        cellKeys[c] = key;
+        cellFill[c] = 0;
+        return c;
+    }
+
+    /**
+     * Stores the proxies into grid cells, cells and proxies within cells are ordered
+     * by the proxy order, so the resulting pair order is deterministic.
+     */
+    private void buildGrid() {
+        largeProxies.clear();
+        int numEntries = 0;
+        for (int i = 0, ni = handles.size(); i < ni; i++) {
+            HashedGridBroadphaseProxy p = handles.get(i);
+            p.minCellX = cell(p.min.x);
+            p.minCellY = cell(p.min.y);
+            p.minCellZ = cell(p.min.z);
+            p.maxCellX = cell(p.max.x);
+            p.maxCellY = cell(p.max.y);
+            p.maxCellZ = cell(p.max.z);
+            long cells = (long) (p.maxCellX - p.minCellX + 1) * (p.maxCellY - p.minCellY + 1) * (p.maxCellZ - p.minCellZ + 1);
+            p.large = (cells > MAX_PROXY_CELLS);
+            if (p.large) {
+                largeProxies.add(p);
+            } else {
+                numEntries += (int) cells;
+            }
+        }
+
+        // the table is kept at most half full:
+        int tableSize = tableKeys.length;
+        while (tableSize < numEntries * 2) {
+            tableSize *= 2;
+        }
+        if (tableSize != tableKeys.length) {
+            tableKeys = new long[tableSize];
+            tableCells = new int[tableSize];
+            tableShift = 64 - Integer.numberOfTrailingZeros(tableSize);
+        }
+        Arrays.fill(tableKeys, EMPTY_KEY);
+        if (entryCells.length < numEntries) {
+            entryCells = new int[numEntries];
+            cellProxies = new int[numEntries];
+            cellKeys = new long[numEntries];
+            cellFill = new int[numEntries];
+            cellStart = new int[numEntries + 1];
+        }
+
+        // assign cells and count their proxies:
+        numCells = 0;
+        int e = 0;
+        for (int i = 0, ni = handles.size(); i < ni; i++) {
+            HashedGridBroadphaseProxy p = handles.get(i);
+            if (p.large) {
+                continue;
+            }
+            for (int z = p.minCellZ; z <= p.maxCellZ; z++) {
+                for (int y = p.minCellY; y <= p.maxCellY; y++) {
+                    for (int x = p.minCellX; x <= p.maxCellX; x++) {
+                        int c = findOrAddCell(cellKey(x, y, z));
+                        cellFill[c]++;
+                        entryCells[e++] = c;
+                    }
+                }
+            }
+        }
+
+        int offset = 0;
+        for (int c = 0; c < numCells; c++) {
+            cellStart[c] = offset;
+            offset += cellFill[c];
+            cellFill[c] = cellStart[c];
+        }
+        cellStart[numCells] = offset;
+
+        // store proxies in the same order:
+        e = 0;
+        for (int i = 0, ni = handles.size(); i < ni; i++) {
+            HashedGridBroadphaseProxy p = handles.get(i);
+            if (p.large) {
+                continue;
+            }
+            int cells = (p.maxCellX - p.minCellX + 1) * (p.maxCellY - p.minCellY + 1) * (p.maxCellZ - p.minCellZ + 1);
+            for (int k = 0; k < cells; k++) {
+                cellProxies[cellFill[entryCells[e++]]++] = i;
+            }
+        }
+        gridDirty = false;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+
+    private static class QueryState {
+        // proxy (by index) was already tested in the query with current stamp:
+        int[] visited = new int[64];
+        int stamp;
+        boolean busy;
+
+        final Vector3f tmpMin = new Vector3f();
+        final Vector3f tmpMax = new Vector3f();
+
+        void begin(int numProxies) {
+            busy = true;
+            if (visited.length < numProxies) {
+                visited = new int[Math.max(numProxies, visited.length * 2)];
+            }
+            if (++stamp == 0) {
+                Arrays.fill(visited, 0);
+                stamp = 1;
+            }
+        }
+
+        boolean visit(HashedGridBroadphaseProxy proxy) {
+            if (visited[proxy.index] == stamp) {
+                return false;
+            }
+            visited[proxy.index] = stamp;
+            return true;
+        }
+    }
+
+}
@@ -0,0 +1,20 @@
+package com.bulletphysics.collision.broadphase;
+
+import javax.vecmath.Vector3f;
+
+class HashedGridBroadphaseProxy extends BroadphaseProxy {
+
+	final Vector3f min = new Vector3f();
+	final Vector3f max = new Vector3f();
+	int index; // index in the handles array
+	int minCellX, minCellY, minCellZ;
+	int maxCellX, maxCellY, maxCellZ;
+	boolean large; // not stored in the grid, tested against all proxies
+
+	HashedGridBroadphaseProxy(Vector3f aabbMin, Vector3f aabbMax, Object userPtr, short collisionFilterGroup, short collisionFilterMask, Object multiSapProxy) {
+		super(userPtr, collisionFilterGroup, collisionFilterMask, multiSapProxy);
+		min.set(aabbMin);
+		max.set(aabbMax);
+	}
+
+}
@@ -25,6 +25,8 @@ package com.bulletphysics.collision.broadphase;
 
 import com.bulletphysics.BulletStats;
 import com.bulletphysics.linearmath.MiscUtil;
+import com.bulletphysics.linearmath.ProfileCounter;
+import com.bulletphysics.linearmath.Profiler;
 import com.bulletphysics.util.IntArrayList;
 import com.bulletphysics.util.ObjectArrayList;
 import com.bulletphysics.util.ObjectPool;
@@ -60,6 +62,7 @@ public class HashedOverlappingPairCache extends OverlappingPairCache {
 	 */
 	public BroadphasePair addOverlappingPair(BroadphaseProxy proxy0, BroadphaseProxy proxy1) {
 		BulletStats.gAddedPairs++;
+		Profiler.count(ProfileCounter.ADDED_PAIRS);
 
 		if (!needsBroadphaseCollision(proxy0, proxy1)) {
 			return null;
@@ -70,6 +73,7 @@ public class HashedOverlappingPairCache extends OverlappingPairCache {
 
 	public Object removeOverlappingPair(BroadphaseProxy proxy0, BroadphaseProxy proxy1, Dispatcher dispatcher) {
 		BulletStats.gRemovePairs++;
+		Profiler.count(ProfileCounter.REMOVED_PAIRS);
 		if (proxy0.getUid() > proxy1.getUid()) {
 			BroadphaseProxy tmp = proxy0;
 			proxy0 = proxy1;
@@ -224,6 +228,7 @@ public class HashedOverlappingPairCache extends OverlappingPairCache {
 	@Override
 	public BroadphasePair findPair(BroadphaseProxy proxy0, BroadphaseProxy proxy1) {
 		BulletStats.gFindPairs++;
+		Profiler.count(ProfileCounter.FIND_PAIRS);
 		if (proxy0.getUid() > proxy1.getUid()) {
 			BroadphaseProxy tmp = proxy0;
 			proxy0 = proxy1;
@@ -0,0 +1,369 @@
+package com.bulletphysics.collision.broadphase;
+
+import com.bulletphysics.linearmath.AabbUtil2;
+import com.bulletphysics.linearmath.VectorUtil;
+import com.bulletphysics.util.ObjectArrayList;
+
+import javax.vecmath.Vector3f;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * MultiSapBroadphase is broadphase for large worlds without fixed bounds. The world
+ * is divided into cubic regions, each with its own {@link AxisSweep3_32} sweep and
+ * prune quantized over the region only. Proxies spanning region boundaries have child
+ * proxy in every region they overlap, the child proxies refer to the proxy through
+ * {@link BroadphaseProxy#multiSapParentProxy}.<p>
+ * 
+ * Regions are created when first proxy enters them, grow with the number of proxies
+ * and are dropped after staying empty for a while, so the memory scales with the
+ * occupied space. The region size
+ * should be much larger than typical objects, objects spanning many regions are
+ * supported but inserted into all of them.
+ */
+public class MultiSapBroadphase extends BroadphaseInterface {
+
+	private static final int REGION_LIMIT = (1 << 20) - 1; // region coordinates are clamped to 21 bits
+	private static final int EMPTY_REGION_FRAMES = 16; // empty regions are dropped after this number of frames
+	private static final int INITIAL_REGION_HANDLES = 16; // regions grow as needed
+
+	private final float regionSize;
+	private final float invRegionSize;
+	private final OverlappingPairCache pairCache;
+
+	private final HashMap<Long, Region> regionMap = new HashMap<>();
+	private final ObjectArrayList<Region> regions = new ObjectArrayList<>();
+
+	private static final ThreadLocal<RegionRayCallback> rayCallbacks = ThreadLocal.withInitial(RegionRayCallback::new);
+
+	private int gid;
+
+	public MultiSapBroadphase(float regionSize) {
+		this(regionSize, null);
+	}
+
+	/**
+	 * @param regionSize size of the cubic regions
+	 * @param overlappingPairCache pair cache, or null for {@link HashedOverlappingPairCache}
+	 */
+	public MultiSapBroadphase(float regionSize, OverlappingPairCache overlappingPairCache) {
+		if (!(regionSize > 0f)) {
+			throw new IllegalArgumentException("region size must be positive");
+		}
+		this.regionSize = regionSize;
+		this.invRegionSize = 1f / regionSize;
+		this.pairCache = (overlappingPairCache != null ? overlappingPairCache : new HashedOverlappingPairCache());
+	}
+
+	public float getRegionSize() {
+		return regionSize;
+	}
+
+	public int getNumRegions() {
+		return regions.size();
+	}
+
+	public BroadphaseProxy createProxy(Vector3f aabbMin, Vector3f aabbMax, BroadphaseNativeType shapeType, Object userPtr, short collisionFilterGroup, short collisionFilterMask, Dispatcher dispatcher, Object multiSapProxy) {
+		MultiSapProxy proxy = new MultiSapProxy(aabbMin, aabbMax, userPtr, collisionFilterGroup, collisionFilterMask, multiSapProxy);
+		proxy.uniqueId = ++gid;
+		updateRegions(proxy, dispatcher);
+		return proxy;
+	}
+
+	public void destroyProxy(BroadphaseProxy absproxy, Dispatcher dispatcher) {
+		MultiSapProxy proxy = (MultiSapProxy) absproxy;
+		for (int i=proxy.childRegions.size()-1; i>=0; i--) {
+			removeFromRegion(proxy, i, dispatcher);
+		}
+		proxy.minRegionX = proxy.minRegionY = proxy.minRegionZ = 1;
+		proxy.maxRegionX = proxy.maxRegionY = proxy.maxRegionZ = 0;
+
+		pairCache.removeOverlappingPairsContainingProxy(proxy, dispatcher);
+	}
+
+	public void setAabb(BroadphaseProxy absproxy, Vector3f aabbMin, Vector3f aabbMax, Dispatcher dispatcher) {
+		MultiSapProxy proxy = (MultiSapProxy) absproxy;
+		proxy.min.set(aabbMin);
+		proxy.max.set(aabbMax);
+		updateRegions(proxy, dispatcher);
+	}
+
+	public void calculateOverlappingPairs(Dispatcher dispatcher) {
+		// the pairs are updated immediately in setAabb, only drop the regions left empty:
+		for (int i=regions.size()-1; i>=0; i--) {
+			Region region = regions.get(i);
+			if (region.numProxies > 0) {
+				region.emptyFrames = 0;
+			}
+			else if (++region.emptyFrames > EMPTY_REGION_FRAMES) {
+				regionMap.remove(region.key);
+				int last = regions.size() - 1;
+				regions.setQuick(i, regions.get(last));
+				regions.removeQuick(last);
+			}
+		}
+	}
+
+	/**
+	 * Tests the ray against the regions it passes and reports the parent proxies. The
+	 * ray state is kept per thread, so rays can be tested from multiple threads at once.
+	 */
+	public void rayTest(Vector3f rayFrom, Vector3f rayTo, BroadphaseRayCallback rayCallback, Vector3f aabbMin, Vector3f aabbMax) {
+		RegionRayCallback callback = rayCallbacks.get();
+		if (callback.target != null) {
+			// nested ray test from the callback:
+			callback = new RegionRayCallback();
+		}
+		callback.set(rayCallback, rayFrom, aabbMin, aabbMax);
+		try {
+			rayTest(callback, rayFrom, rayTo, rayCallback, aabbMin, aabbMax);
+		}
+		finally {
+			callback.set(null, null, null, null);
+			if (!callback.reported.isEmpty()) {
+				callback.reported.clear();
+			}
+		}
+	}
+
+	private void rayTest(RegionRayCallback callback, Vector3f rayFrom, Vector3f rayTo, BroadphaseRayCallback rayCallback, Vector3f aabbMin, Vector3f aabbMax) {
+		callback.init(rayFrom, rayTo);
+
+		Vector3f boundsMin = callback.boundsMin;
+		Vector3f boundsMax = callback.boundsMax;
+		for (int i=0; i<regions.size(); i++) {
+			Region region = regions.get(i);
+			boundsMin.sub(region.min, aabbMax);
+			boundsMax.sub(region.max, aabbMin);
+			if (AabbUtil2.rayAabb2(rayFrom, rayCallback.rayDirectionInverse, rayCallback.signs, boundsMin, boundsMax, 0f, rayCallback.lambdaMax)) {
+				region.sweep.rayTest(rayFrom, rayTo, callback, aabbMin, aabbMax);
+			}
+		}
+	}
+
+	public OverlappingPairCache getOverlappingPairCache() {
+		return pairCache;
+	}
+
+	/**
+	 * Returns bounds of all regions.
+	 */
+	public void getBroadphaseAabb(Vector3f aabbMin, Vector3f aabbMax) {
+		if (regions.size() == 0) {
+			aabbMin.set(0f, 0f, 0f);
+			aabbMax.set(0f, 0f, 0f);
+			return;
+		}
+		aabbMin.set(Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY);
+		aabbMax.set(Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY);
+		for (int i=0; i<regions.size(); i++) {
+			Region region = regions.get(i);
+			VectorUtil.setMin(aabbMin, region.min);
+			VectorUtil.setMax(aabbMax, region.max);
+		}
+	}
+
+	////////////////////////////////////////////////////////////////////////////
+
+	private int region(float coord) {
+		float r = (float) Math.floor(coord * invRegionSize);
+		// also handles NaN:
+		return r >= -REGION_LIMIT ? (r <= REGION_LIMIT ? (int) r : REGION_LIMIT) : -REGION_LIMIT;
+	}
+
+	private static long regionKey(int x, int y, int z) {
+		return ((long) (x & 0x1FFFFF) << 42) | ((long) (y & 0x1FFFFF) << 21) | (z & 0x1FFFFF);
+	}
+
+	private Region getRegion(int x, int y, int z) {
+		long key = regionKey(x, y, z);
+		Region region = regionMap.get(key);
+		if (region == null) {
+			region = new Region(key, x, y, z);
+			regionMap.put(key, region);
+			regions.add(region);
+		}
+		return region;
+	}
+
+	/**
+	 * Moves the proxy to the regions overlapped by its AABB. The proxy is first added to
+	 * new regions and removed from old regions last, so the pairs staying in other regions
+	 * are kept in the pair cache.
+	 */
+	private void updateRegions(MultiSapProxy proxy, Dispatcher dispatcher) {
+		int x0 = region(proxy.min.x), y0 = region(proxy.min.y), z0 = region(proxy.min.z);
+		int x1 = region(proxy.max.x), y1 = region(proxy.max.y), z1 = region(proxy.max.z);
+
+		for (int z=z0; z<=z1; z++) {
+			for (int y=y0; y<=y1; y++) {
+				for (int x=x0; x<=x1; x++) {
+					if (!proxy.isInRegions(x, y, z)) {
+						Region region = getRegion(x, y, z);
+						if (region.numProxies == region.capacity) {
+							region.capacity *= 2;
+							region.sweep.ensureCapacity(region.capacity);
+						}
+						BroadphaseProxy child = region.sweep.createProxy(proxy.min, proxy.max, null, proxy.clientObject, proxy.collisionFilterGroup, proxy.collisionFilterMask, dispatcher, proxy);
+						proxy.childRegions.add(region);
+						proxy.childProxies.add(child);
+						region.numProxies++;
+					}
+				}
+			}
+		}
+
+		for (int i=proxy.childRegions.size()-1; i>=0; i--) {
+			Region region = proxy.childRegions.get(i);
+			boolean kept = region.x >= x0 && region.x <= x1 &&
+					region.y >= y0 && region.y <= y1 &&
+					region.z >= z0 && region.z <= z1;
+			if (kept && proxy.isInRegions(region.x, region.y, region.z)) {
+				region.sweep.setAabb(proxy.childProxies.get(i), proxy.min, proxy.max, dispatcher);
+			}
+		}
+
+		for (int i=proxy.childRegions.size()-1; i>=0; i--) {
+			Region region = proxy.childRegions.get(i);
+			boolean kept = region.x >= x0 && region.x <= x1 &&
+					region.y >= y0 && region.y <= y1 &&
+					region.z >= z0 && region.z <= z1;
+			if (!kept) {
+				removeFromRegion(proxy, i, dispatcher);
+			}
+		}
+
+		proxy.minRegionX = x0;
+		proxy.minRegionY = y0;
+		proxy.minRegionZ = z0;
+		proxy.maxRegionX = x1;
+		proxy.maxRegionY = y1;
+		proxy.maxRegionZ = z1;
+	}
+
+	private void removeFromRegion(MultiSapProxy proxy, int index, Dispatcher dispatcher) {
+		Region region = proxy.childRegions.get(index);
+		BroadphaseProxy child = proxy.childProxies.get(index);
+		proxy.childRegions.removeQuick(index);
+		proxy.childProxies.removeQuick(index);
+		region.sweep.destroyProxy(child, dispatcher);
+		region.numProxies--;
+	}
+
+	////////////////////////////////////////////////////////////////////////////
+
+	/**
+	 * Region with own sweep and prune, pairs found in it are forwarded to the main
+	 * pair cache (through the ghost pair callback of the region pair cache).
+	 */
+	class Region extends OverlappingPairCallback {
+		final long key;
+		final int x, y, z;
+		final Vector3f min = new Vector3f();
+		final Vector3f max = new Vector3f();
+		final AxisSweep3_32 sweep;
+		int numProxies;
+		int capacity = INITIAL_REGION_HANDLES;
+		int emptyFrames;
+
+		Region(long key, int x, int y, int z) {
+			this.key = key;
+			this.x = x;
+			this.y = y;
+			this.z = z;
+			min.set(x * regionSize, y * regionSize, z * regionSize);
+			max.set((x + 1) * regionSize, (y + 1) * regionSize, (z + 1) * regionSize);
+
+			OverlappingPairCache regionPairCache = new PackedOverlappingPairCache();
+			regionPairCache.setInternalGhostPairCallback(this);
+			sweep = new AxisSweep3_32(min, max, capacity, regionPairCache);
+		}
+
+		@Override
+		public BroadphasePair addOverlappingPair(BroadphaseProxy proxy0, BroadphaseProxy proxy1) {
+			MultiSapProxy parent0 = (MultiSapProxy) proxy0.multiSapParentProxy;
+			MultiSapProxy parent1 = (MultiSapProxy) proxy1.multiSapParentProxy;
+			BroadphasePair pair = pairCache.findPair(parent0, parent1);
+			if (pair == null) {
+				pair = pairCache.addOverlappingPair(parent0, parent1);
+			}
+			return pair;
+		}
+
+		@Override
+		public Object removeOverlappingPair(BroadphaseProxy proxy0, BroadphaseProxy proxy1, Dispatcher dispatcher) {
+			MultiSapProxy parent0 = (MultiSapProxy) proxy0.multiSapParentProxy;
+			MultiSapProxy parent1 = (MultiSapProxy) proxy1.multiSapParentProxy;
+
+			// keep the pair while it's still present in other region:
+			for (int i=0; i<parent0.childRegions.size(); i++) {
+				Region region = parent0.childRegions.get(i);
+				if (region == this) {
+					continue;
+				}
+				BroadphaseProxy child1 = parent1.getChildProxy(region);
+				if (child1 != null && region.sweep.getOverlappingPairCache().findPair(parent0.childProxies.get(i), child1) != null) {
+					return null;
+				}
+			}
+			return pairCache.removeOverlappingPair(parent0, parent1, dispatcher);
+		}
+
+		/**
+		 * Forwards removal of all region pairs of given child proxy to the main pair cache,
+		 * pairs of the parent proxy still present in other regions are kept.
+		 */
+		@Override
+		public void removeOverlappingPairsContainingProxy(BroadphaseProxy proxy0, Dispatcher dispatcher) {
+			ObjectArrayList<BroadphasePair> regionPairs = sweep.getOverlappingPairCache().getOverlappingPairArray();
+			for (int i=0; i<regionPairs.size(); i++) {
+				BroadphasePair pair = regionPairs.get(i);
+				if (pair.pProxy0 == proxy0 || pair.pProxy1 == proxy0) {
+					removeOverlappingPair(pair.pProxy0, pair.pProxy1, dispatcher);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Reports the parent proxies of proxies found in regions, each proxy just once.
+	 * Only proxies spanning multiple regions can be found twice, just these are
+	 * remembered.
+	 */
+	private static class RegionRayCallback extends BroadphaseRayCallback {
+		final Vector3f boundsMin = new Vector3f();
+		final Vector3f boundsMax = new Vector3f();
+		// identity set doesn't allocate entries:
+		final Set<MultiSapProxy> reported = Collections.newSetFromMap(new IdentityHashMap<>());
+		BroadphaseRayCallback target;
+		Vector3f rayFrom;
+		Vector3f aabbMin;
+		Vector3f aabbMax;
+
+		void set(BroadphaseRayCallback target, Vector3f rayFrom, Vector3f aabbMin, Vector3f aabbMax) {
+			this.target = target;
+			this.rayFrom = rayFrom;
+			this.aabbMin = aabbMin;
+			this.aabbMax = aabbMax;
+		}
+
+		public boolean process(BroadphaseProxy proxy) {
+			MultiSapProxy parent = (MultiSapProxy) proxy.multiSapParentProxy;
+			if (parent.childRegions.size() > 1) {
+				if (!reported.add(parent)) {
+					return true;
+				}
+			}
+
+			boundsMin.sub(parent.min, aabbMax);
+			boundsMax.sub(parent.max, aabbMin);
+			if (AabbUtil2.rayAabb2(rayFrom, target.rayDirectionInverse, target.signs, boundsMin, boundsMax, 0f, target.lambdaMax)) {
+				return target.process(parent);
+			}
+			return true;
+		}
+	}
+
+}
@@ -0,0 +1,43 @@
+package com.bulletphysics.collision.broadphase;
+
+import com.bulletphysics.util.ObjectArrayList;
+
+import javax.vecmath.Vector3f;
+
+/**
+ * Proxy of {@link MultiSapBroadphase}, has child proxy in each region it overlaps.
+ */
+class MultiSapProxy extends BroadphaseProxy {
+
+	final Vector3f min = new Vector3f();
+	final Vector3f max = new Vector3f();
+
+	// overlapped regions (empty when min > max):
+	int minRegionX = 1, minRegionY = 1, minRegionZ = 1;
+	int maxRegionX, maxRegionY, maxRegionZ;
+
+	final ObjectArrayList<MultiSapBroadphase.Region> childRegions = new ObjectArrayList<>();
+	final ObjectArrayList<BroadphaseProxy> childProxies = new ObjectArrayList<>();
+
+	MultiSapProxy(Vector3f aabbMin, Vector3f aabbMax, Object userPtr, short collisionFilterGroup, short collisionFilterMask, Object multiSapProxy) {
+		super(userPtr, collisionFilterGroup, collisionFilterMask, multiSapProxy);
+		min.set(aabbMin);
+		max.set(aabbMax);
+	}
+
+	BroadphaseProxy getChildProxy(MultiSapBroadphase.Region region) {
+		for (int i=0; i<childRegions.size(); i++) {
+			if (childRegions.get(i) == region) {
+				return childProxies.get(i);
+			}
+		}
+		return null;
+	}
+
+	boolean isInRegions(int x, int y, int z) {
+		return x >= minRegionX && x <= maxRegionX &&
+				y >= minRegionY && y <= maxRegionY &&
+				z >= minRegionZ && z <= maxRegionZ;
+	}
+
+}
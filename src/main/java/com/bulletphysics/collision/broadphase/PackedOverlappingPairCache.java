@@ -0,0 +1,296 @@
+package com.bulletphysics.collision.broadphase;
+
+import com.bulletphysics.BulletStats;
+import com.bulletphysics.linearmath.ProfileCounter;
+import com.bulletphysics.linearmath.Profiler;
+import com.bulletphysics.util.ObjectArrayList;
+
+import java.util.Arrays;
+
+/**
+ * {@link OverlappingPairCache} keyed by packed proxy uids. Each pair is identified
+ * by single long key (lower uid in the upper 32 bits), pairs are found using open
+ * addressing hash table made of primitive arrays holding the keys and indices into
+ * the pair array.<p>
+ * 
+ * Pair array is dense, its {@link BroadphasePair} entries are owned by the cache
+ * and reused for newly added pairs once removed, so references to pairs must not
+ * be kept after their removal. Algorithm and user info of pairs stay in the entries.
+ */
+public class PackedOverlappingPairCache extends OverlappingPairCache {
+
+	private static final long EMPTY_KEY = 0L; // uids of a pair differ, so no pair has this key
+	private static final int INITIAL_TABLE_SIZE = 64;
+
+	private final ObjectArrayList<BroadphasePair> overlappingPairArray = new ObjectArrayList<>();
+	private long[] pairKeys = new long[INITIAL_TABLE_SIZE / 2];
+	private final ObjectArrayList<BroadphasePair> freePairs = new ObjectArrayList<>();
+
+	private long[] tableKeys = new long[INITIAL_TABLE_SIZE];
+	private int[] tableIndices = new int[INITIAL_TABLE_SIZE];
+	private int tableShift = 64 - Integer.numberOfTrailingZeros(INITIAL_TABLE_SIZE);
+
+	private OverlapFilterCallback overlapFilterCallback;
+	private OverlappingPairCallback ghostPairCallback;
+
+	public BroadphasePair addOverlappingPair(BroadphaseProxy proxy0, BroadphaseProxy proxy1) {
+		BulletStats.gAddedPairs++;
+		Profiler.count(ProfileCounter.ADDED_PAIRS);
+
+		if (!needsBroadphaseCollision(proxy0, proxy1)) {
+			return null;
+		}
+
+		if (proxy0.getUid() > proxy1.getUid()) {
+			BroadphaseProxy tmp = proxy0;
+			proxy0 = proxy1;
+			proxy1 = tmp;
+		}
+		long key = getKey(proxy0.getUid(), proxy1.getUid());
+
+		int pos = findPosition(key);
+		if (pos >= 0) {
+			return overlappingPairArray.get(tableIndices[pos]);
+		}
+
+		// this is where we add an actual pair, so also call the 'ghost'
+		if (ghostPairCallback != null) {
+			ghostPairCallback.addOverlappingPair(proxy0, proxy1);
+		}
+
+		int count = overlappingPairArray.size();
+		if ((count + 1) * 2 > tableKeys.length) {
+			growTable();
+		}
+		if (count == pairKeys.length) {
+			pairKeys = Arrays.copyOf(pairKeys, count * 2);
+		}
+
+		BroadphasePair pair;
+		if (!freePairs.isEmpty()) {
+			pair = freePairs.get(freePairs.size() - 1);
+			freePairs.removeQuick(freePairs.size() - 1);
+		}
+		else {
+			pair = new BroadphasePair();
+		}
+		pair.pProxy0 = proxy0;
+		pair.pProxy1 = proxy1;
+
+		overlappingPairArray.add(pair);
+		pairKeys[count] = key;
+		insertKey(key, count);
+		return pair;
+	}
+
+	public Object removeOverlappingPair(BroadphaseProxy proxy0, BroadphaseProxy proxy1, Dispatcher dispatcher) {
+		BulletStats.gRemovePairs++;
+		Profiler.count(ProfileCounter.REMOVED_PAIRS);
+		if (proxy0.getUid() > proxy1.getUid()) {
+			BroadphaseProxy tmp = proxy0;
+			proxy0 = proxy1;
+			proxy1 = tmp;
+		}
+
+		int pos = findPosition(getKey(proxy0.getUid(), proxy1.getUid()));
+		if (pos < 0) {
+			return null;
+		}
+
+		int pairIndex = tableIndices[pos];
+		BroadphasePair pair = overlappingPairArray.get(pairIndex);
+		cleanOverlappingPair(pair, dispatcher);
+		Object userData = pair.userInfo;
+		removeKey(pos);
+
+		if (ghostPairCallback != null) {
+			ghostPairCallback.removeOverlappingPair(proxy0, proxy1, dispatcher);
+		}
+
+		// move the last pair into spot of the removed pair:
+		int lastPairIndex = overlappingPairArray.size() - 1;
+		if (pairIndex != lastPairIndex) {
+			long lastKey = pairKeys[lastPairIndex];
+			overlappingPairArray.setQuick(pairIndex, overlappingPairArray.get(lastPairIndex));
+			pairKeys[pairIndex] = lastKey;
+			tableIndices[findPosition(lastKey)] = pairIndex;
+		}
+		overlappingPairArray.removeQuick(lastPairIndex);
+
+		pair.pProxy0 = null;
+		pair.pProxy1 = null;
+		pair.algorithm = null;
+		pair.userInfo = null;
+		freePairs.add(pair);
+
+		return userData;
+	}
+
+	private boolean needsBroadphaseCollision(BroadphaseProxy proxy0, BroadphaseProxy proxy1) {
+		if (overlapFilterCallback != null) {
+			return overlapFilterCallback.needBroadphaseCollision(proxy0, proxy1);
+		}
+
+		boolean collides = (proxy0.collisionFilterGroup & proxy1.collisionFilterMask) != 0;
+		collides = collides && (proxy1.collisionFilterGroup & proxy0.collisionFilterMask) != 0;
+
+		return collides;
+	}
+
+	@Override
+	public void processAllOverlappingPairs(OverlapCallback callback, Dispatcher dispatcher) {
+		for (int i=0; i<overlappingPairArray.size(); ) {
+			BroadphasePair pair = overlappingPairArray.get(i);
+			if (callback.processOverlap(pair)) {
+				removeOverlappingPair(pair.pProxy0, pair.pProxy1, dispatcher);
+
+				BulletStats.gOverlappingPairs--;
+			}
+			else {
+				i++;
+			}
+		}
+	}
+
+	public void removeOverlappingPairsContainingProxy(BroadphaseProxy proxy, Dispatcher dispatcher) {
+		for (int i=0; i<overlappingPairArray.size(); ) {
+			BroadphasePair pair = overlappingPairArray.get(i);
+			if (pair.pProxy0 == proxy || pair.pProxy1 == proxy) {
+				removeOverlappingPair(pair.pProxy0, pair.pProxy1, dispatcher);
+
+				BulletStats.gOverlappingPairs--;
+			}
+			else {
+				i++;
+			}
+		}
+	}
+
+	@Override
+	public void cleanProxyFromPairs(BroadphaseProxy proxy, Dispatcher dispatcher) {
+		for (int i=0, n=overlappingPairArray.size(); i<n; i++) {
+			BroadphasePair pair = overlappingPairArray.get(i);
+			if (pair.pProxy0 == proxy || pair.pProxy1 == proxy) {
+				cleanOverlappingPair(pair, dispatcher);
+			}
+		}
+	}
+
+	@Override
+	public ObjectArrayList<BroadphasePair> getOverlappingPairArray() {
+		return overlappingPairArray;
+	}
+
+	@Override
+	public void cleanOverlappingPair(BroadphasePair pair, Dispatcher dispatcher) {
+		if (pair.algorithm != null) {
+			dispatcher.freeCollisionAlgorithm(pair.algorithm);
+			pair.algorithm = null;
+		}
+	}
+
+	@Override
+	public BroadphasePair findPair(BroadphaseProxy proxy0, BroadphaseProxy proxy1) {
+		BulletStats.gFindPairs++;
+		Profiler.count(ProfileCounter.FIND_PAIRS);
+		int uid0 = proxy0.getUid();
+		int uid1 = proxy1.getUid();
+		int pos = findPosition(uid0 < uid1 ? getKey(uid0, uid1) : getKey(uid1, uid0));
+		if (pos < 0) {
+			return null;
+		}
+		return overlappingPairArray.get(tableIndices[pos]);
+	}
+
+	public OverlapFilterCallback getOverlapFilterCallback() {
+		return overlapFilterCallback;
+	}
+
+	@Override
+	public void setOverlapFilterCallback(OverlapFilterCallback overlapFilterCallback) {
+		this.overlapFilterCallback = overlapFilterCallback;
+	}
+
+	@Override
+	public int getNumOverlappingPairs() {
+		return overlappingPairArray.size();
+	}
+
+	@Override
+	public boolean hasDeferredRemoval() {
+		return false;
+	}
+
+	public void setInternalGhostPairCallback(OverlappingPairCallback ghostPairCallback) {
+		this.ghostPairCallback = ghostPairCallback;
+	}
+
+	////////////////////////////////////////////////////////////////////////////
+
+	private static long getKey(int lowerUid, int higherUid) {
+		return ((long) lowerUid << 32) | (higherUid & 0xFFFFFFFFL);
+	}
+
+	private int getHash(long key) {
+		// Fibonacci hashing, takes the upper bits:
+		return (int) ((key * 0x9E3779B97F4A7C15L) >>> tableShift);
+	}
+
+	/**
+	 * Returns position of the key in the hash table, or -1 if it is not present.
+	 */
+	private int findPosition(long key) {
+		long[] keys = tableKeys;
+		int mask = keys.length - 1;
+		int pos = getHash(key);
+		long k;
+		while ((k = keys[pos]) != EMPTY_KEY) {
+			if (k == key) {
+				return pos;
+			}
+			pos = (pos + 1) & mask;
+		}
+		return -1;
+	}
+
+	private void insertKey(long key, int pairIndex) {
+		long[] keys = tableKeys;
+		int mask = keys.length - 1;
+		int pos = getHash(key);
+		while (keys[pos] != EMPTY_KEY) {
+			pos = (pos + 1) & mask;
+		}
+		keys[pos] = key;
+		tableIndices[pos] = pairIndex;
+	}
+
+	private void removeKey(int pos) {
+		// backward shift deletion, keeps the probe sequences without gaps:
+		long[] keys = tableKeys;
+		int[] indices = tableIndices;
+		int mask = keys.length - 1;
+		int hole = pos;
+		int i = pos;
+		long k;
+		while ((k = keys[i = (i + 1) & mask]) != EMPTY_KEY) {
+			int home = getHash(k);
+			if (((i - home) & mask) >= ((i - hole) & mask)) {
+				keys[hole] = k;
+				indices[hole] = indices[i];
+				hole = i;
+			}
+		}
+		keys[hole] = EMPTY_KEY;
+	}
+
+	private void growTable() {
+		int newSize = tableKeys.length * 2;
+		tableKeys = new long[newSize];
+		tableIndices = new int[newSize];
+		tableShift = 64 - Integer.numberOfTrailingZeros(newSize);
+		for (int i=0, n=overlappingPairArray.size(); i<n; i++) {
+			insertKey(pairKeys[i], i);
+		}
+	}
+
+}
@@ -108,6 +108,12 @@ public class SimpleBroadphase extends BroadphaseInterface {
         }
     }
 
+    public void rayTest(Vector3f rayFrom, Vector3f rayTo, BroadphaseRayCallback rayCallback, Vector3f aabbMin, Vector3f aabbMax) {
+        for (int i = 0; i < handles.size(); i++) {
+            rayCallback.process(handles.get(i));
+        }
+    }
+
     public OverlappingPairCache getOverlappingPairCache() {
         return pairCache;
     }
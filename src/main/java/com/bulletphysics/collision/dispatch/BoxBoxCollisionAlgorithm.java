@@ -0,0 +1,130 @@
+/*
+ * Bullet Continuous Collision Detection and Physics Library
+ * Copyright (c) 2003-2008 Erwin Coumans  http://www.bulletphysics.com/
+ *
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from
+ * the use of this software.
+ * 
+ * Permission is granted to anyone to use this software for any purpose, 
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ * 
+ * 1. The origin of this software must not be misrepresented; you must not
+ *    claim that you wrote the original software. If you use this software
+ *    in a product, an acknowledgment in the product documentation would be
+ *    appreciated but is not required.
+ * 2. Altered source versions must be plainly marked as such, and must not be
+ *    misrepresented as being the original software.
+ * 3. This notice may not be removed or altered from any source distribution.
+ */
+
+package com.bulletphysics.collision.dispatch;
+
+import com.bulletphysics.collision.broadphase.CollisionAlgorithm;
+import com.bulletphysics.collision.broadphase.CollisionAlgorithmConstructionInfo;
+import com.bulletphysics.collision.broadphase.DispatcherInfo;
+import com.bulletphysics.collision.narrowphase.BoxBoxDetector;
+import com.bulletphysics.collision.narrowphase.DiscreteCollisionDetectorInterface.ClosestPointInput;
+import com.bulletphysics.collision.narrowphase.PersistentManifold;
+import com.bulletphysics.collision.shapes.simple.BoxShape;
+import com.bulletphysics.util.ObjectArrayList;
+import com.bulletphysics.util.ObjectPool;
+
+/**
+ * Box-box collision detection using {@link BoxBoxDetector}. Unlike {@link ConvexConvexAlgorithm}
+ * it generates full contact manifold (up to four points) in a single pass.
+ */
+public class BoxBoxCollisionAlgorithm extends CollisionAlgorithm {
+
+	private final ObjectPool<ClosestPointInput> pointInputsPool = ObjectPool.get(ClosestPointInput.class);
+
+	private final BoxBoxDetector detector = new BoxBoxDetector();
+
+	private boolean ownManifold;
+	private PersistentManifold manifoldPtr;
+
+	private void init(PersistentManifold mf, CollisionAlgorithmConstructionInfo ci, CollisionObject body0, CollisionObject body1) {
+		super.init(ci);
+		this.ownManifold = false;
+		this.manifoldPtr = mf;
+
+		if (manifoldPtr == null && dispatcher.needsCollision(body0, body1)) {
+			manifoldPtr = dispatcher.getNewManifold(body0, body1);
+			ownManifold = true;
+		}
+	}
+
+	@Override
+	public void init(CollisionAlgorithmConstructionInfo ci) {
+		super.init(ci);
+	}
+
+	@Override
+	public void destroy() {
+		if (ownManifold) {
+			if (manifoldPtr != null) {
+				dispatcher.releaseManifold(manifoldPtr);
+			}
+			manifoldPtr = null;
+		}
+	}
+
+	@Override
+	public void processCollision(CollisionObject body0, CollisionObject body1, DispatcherInfo dispatchInfo, ManifoldResult resultOut) {
+		if (manifoldPtr == null) {
+			return;
+		}
+
+		BoxShape box0 = (BoxShape) body0.getCollisionShape();
+		BoxShape box1 = (BoxShape) body1.getCollisionShape();
+
+		// report a contact. internally this will be kept persistent, and contact reduction is done
+		resultOut.setPersistentManifold(manifoldPtr);
+
+		ClosestPointInput input = pointInputsPool.get();
+		input.init();
+		body0.getWorldTransform(input.transformA);
+		body1.getWorldTransform(input.transformB);
+
+		detector.init(box0, box1);
+		detector.getClosestPoints(input, resultOut, dispatchInfo.debugDraw);
+
+		pointInputsPool.release(input);
+
+		if (ownManifold) {
+			resultOut.refreshContactPoints();
+		}
+	}
+
+	@Override
+	public float calculateTimeOfImpact(CollisionObject body0, CollisionObject body1, DispatcherInfo dispatchInfo, ManifoldResult resultOut) {
+		return ConvexConvexAlgorithm.calculateConvexTimeOfImpact(body0, body1);
+	}
+
+	@Override
+	public void getAllContactManifolds(ObjectArrayList<PersistentManifold> manifoldArray) {
+		if (manifoldPtr != null && ownManifold) {
+			manifoldArray.add(manifoldPtr);
+		}
+	}
+
+	////////////////////////////////////////////////////////////////////////////
+
+	public static class CreateFunc extends CollisionAlgorithmCreateFunc {
+		private final ObjectPool<BoxBoxCollisionAlgorithm> pool = ObjectPool.getShared(BoxBoxCollisionAlgorithm.class);
+
+		@Override
+		public CollisionAlgorithm createCollisionAlgorithm(CollisionAlgorithmConstructionInfo ci, CollisionObject body0, CollisionObject body1) {
+			BoxBoxCollisionAlgorithm algo = pool.get();
+			algo.init(ci.manifold, ci, body0, body1);
+			return algo;
+		}
+
+		@Override
+		public void releaseCollisionAlgorithm(CollisionAlgorithm algo) {
+			pool.release((BoxBoxCollisionAlgorithm)algo);
+		}
+	}
+
+}
@@ -0,0 +1,237 @@
+/*
+ * Bullet Continuous Collision Detection and Physics Library
+ * Copyright (c) 2003-2008 Erwin Coumans  http://www.bulletphysics.com/
+ *
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from
+ * the use of this software.
+ * 
+ * Permission is granted to anyone to use this software for any purpose, 
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ * 
+ * 1. The origin of this software must not be misrepresented; you must not
+ *    claim that you wrote the original software. If you use this software
+ *    in a product, an acknowledgment in the product documentation would be
+ *    appreciated but is not required.
+ * 2. Altered source versions must be plainly marked as such, and must not be
+ *    misrepresented as being the original software.
+ * 3. This notice may not be removed or altered from any source distribution.
+ */
+
+package com.bulletphysics.collision.dispatch;
+
+import com.bulletphysics.collision.broadphase.CollisionAlgorithm;
+import com.bulletphysics.collision.broadphase.CollisionAlgorithmConstructionInfo;
+import com.bulletphysics.collision.broadphase.DispatcherInfo;
+import com.bulletphysics.collision.narrowphase.PersistentManifold;
+import com.bulletphysics.collision.shapes.simple.CapsuleShape;
+import com.bulletphysics.linearmath.Transform;
+import com.bulletphysics.linearmath.TransformUtil;
+import com.bulletphysics.util.ObjectArrayList;
+import com.bulletphysics.util.ObjectPool;
+
+import javax.vecmath.Vector3f;
+
+/**
+ * Provides collision detection between two capsules using the closest points
+ * of their core segments. Nearly parallel capsules get two contact points at
+ * the ends of the overlapping part of the segments.
+ */
+public class CapsuleCapsuleCollisionAlgorithm extends CollisionAlgorithm {
+
+	// cosine of the angle below which the capsules are treated as parallel:
+	private static final float PARALLEL_LIMIT = 0.999f;
+
+	private boolean ownManifold;
+	private PersistentManifold manifoldPtr;
+
+	private void init(PersistentManifold mf, CollisionAlgorithmConstructionInfo ci, CollisionObject col0, CollisionObject col1) {
+		super.init(ci);
+		this.ownManifold = false;
+		this.manifoldPtr = mf;
+
+		if (manifoldPtr == null && dispatcher.needsCollision(col0, col1)) {
+			manifoldPtr = dispatcher.getNewManifold(col0, col1);
+			ownManifold = true;
+		}
+	}
+
+	@Override
+	public void init(CollisionAlgorithmConstructionInfo ci) {
+		super.init(ci);
+	}
+
+	@Override
+	public void destroy() {
+		if (ownManifold) {
+			if (manifoldPtr != null) {
+				dispatcher.releaseManifold(manifoldPtr);
+			}
+			manifoldPtr = null;
+		}
+	}
+
+	@Override
+	public void processCollision(CollisionObject col0, CollisionObject col1, DispatcherInfo dispatchInfo, ManifoldResult resultOut) {
+		if (manifoldPtr == null) {
+			return;
+		}
+
+		CapsuleShape capsule0 = (CapsuleShape) col0.getCollisionShape();
+		CapsuleShape capsule1 = (CapsuleShape) col1.getCollisionShape();
+
+		resultOut.setPersistentManifold(manifoldPtr);
+
+		Transform trans0 = col0.getWorldTransform(new Transform());
+		Transform trans1 = col1.getWorldTransform(new Transform());
+
+		float halfHeight0 = capsule0.getHalfHeight();
+		float halfHeight1 = capsule1.getHalfHeight();
+		float radius0 = capsule0.getRadius();
+		float radius1 = capsule1.getRadius();
+
+		Vector3f dir0 = new Vector3f();
+		Vector3f dir1 = new Vector3f();
+		trans0.basis.getColumn(capsule0.getUpAxis(), dir0);
+		trans1.basis.getColumn(capsule1.getUpAxis(), dir1);
+
+		Vector3f c0 = new Vector3f();
+		Vector3f c1 = new Vector3f();
+
+		float cosAngle = dir0.dot(dir1);
+		if (Math.abs(cosAngle) > PARALLEL_LIMIT && halfHeight0 > 0f && halfHeight1 > 0f) {
+			// parallel segments, find the overlapping range on the first segment
+			Vector3f diff = new Vector3f();
+			diff.sub(trans1.origin, trans0.origin);
+			float mid = diff.dot(dir0);
+			float ext = Math.abs(cosAngle) * halfHeight1;
+			float lo = Math.max(-halfHeight0, mid - ext);
+			float hi = Math.min(halfHeight0, mid + ext);
+
+			if (hi - lo > 0.01f * (radius0 + radius1)) {
+				c0.scaleAdd(lo, dir0, trans0.origin);
+				closestPtPointSegment(c0, trans1.origin, dir1, halfHeight1, c1);
+				addContact(resultOut, c0, c1, radius0, radius1, dir0);
+
+				c0.scaleAdd(hi, dir0, trans0.origin);
+				closestPtPointSegment(c0, trans1.origin, dir1, halfHeight1, c1);
+				addContact(resultOut, c0, c1, radius0, radius1, dir0);
+
+				if (ownManifold) {
+					resultOut.refreshContactPoints();
+				}
+				return;
+			}
+		}
+
+		closestPtSegmentSegment(trans0.origin, dir0, halfHeight0, trans1.origin, dir1, halfHeight1, c0, c1);
+		addContact(resultOut, c0, c1, radius0, radius1, dir0);
+
+		if (ownManifold) {
+			resultOut.refreshContactPoints();
+		}
+	}
+
+	private static void addContact(ManifoldResult resultOut, Vector3f c0, Vector3f c1, float radius0, float radius1, Vector3f dir0) {
+		Vector3f normalOnB = new Vector3f();
+		normalOnB.sub(c0, c1);
+		float len = normalOnB.length();
+		float dist = len - (radius0 + radius1);
+		if (dist > PersistentManifold.getContactBreakingThreshold()) {
+			return;
+		}
+
+		if (len > 1e-6f) {
+			normalOnB.scale(1f / len);
+		}
+		else {
+			// segments intersect, use any direction perpendicular to the first capsule
+			Vector3f q = new Vector3f();
+			TransformUtil.planeSpace1(dir0, normalOnB, q);
+		}
+
+		// point on B (worldspace)
+		Vector3f pointOnB = new Vector3f();
+		pointOnB.scaleAdd(radius1, normalOnB, c1);
+
+		// report a contact. internally this will be kept persistent, and contact reduction is done
+		resultOut.addContactPoint(normalOnB, pointOnB, dist);
+	}
+
+	/**
+	 * Computes point on segment (center +/- dir*halfHeight) closest to point p.
+	 */
+	private static void closestPtPointSegment(Vector3f p, Vector3f center, Vector3f dir, float halfHeight, Vector3f out) {
+		out.sub(p, center);
+		float t = Math.max(-halfHeight, Math.min(halfHeight, out.dot(dir)));
+		out.scaleAdd(t, dir, center);
+	}
+
+	/**
+	 * Computes closest points c0 and c1 of two segments given by center, unit direction
+	 * and half height.
+	 */
+	private static void closestPtSegmentSegment(Vector3f center0, Vector3f dir0, float halfHeight0, Vector3f center1, Vector3f dir1, float halfHeight1, Vector3f c0, Vector3f c1) {
+		Vector3f r = new Vector3f();
+		r.sub(center0, center1);
+
+		float b = dir0.dot(dir1);
+		float c = dir0.dot(r);
+		float f = dir1.dot(r);
+		float denom = 1f - b*b;
+
+		float s, t;
+		if (denom > 1e-6f) {
+			s = Math.max(-halfHeight0, Math.min(halfHeight0, (b*f - c) / denom));
+		}
+		else {
+			// parallel segments, pick any point
+			s = 0f;
+		}
+
+		t = b*s + f;
+		if (t < -halfHeight1) {
+			t = -halfHeight1;
+			s = Math.max(-halfHeight0, Math.min(halfHeight0, -b*halfHeight1 - c));
+		}
+		else if (t > halfHeight1) {
+			t = halfHeight1;
+			s = Math.max(-halfHeight0, Math.min(halfHeight0, b*halfHeight1 - c));
+		}
+
+		c0.scaleAdd(s, dir0, center0);
+		c1.scaleAdd(t, dir1, center1);
+	}
+
+	@Override
+	public float calculateTimeOfImpact(CollisionObject body0, CollisionObject body1, DispatcherInfo dispatchInfo, ManifoldResult resultOut) {
+		return ConvexConvexAlgorithm.calculateConvexTimeOfImpact(body0, body1);
+	}
+
+	@Override
+	public void getAllContactManifolds(ObjectArrayList<PersistentManifold> manifoldArray) {
+		if (manifoldPtr != null && ownManifold) {
+			manifoldArray.add(manifoldPtr);
+		}
+	}
+
+	////////////////////////////////////////////////////////////////////////////
+
+	public static class CreateFunc extends CollisionAlgorithmCreateFunc {
+		private final ObjectPool<CapsuleCapsuleCollisionAlgorithm> pool = ObjectPool.getShared(CapsuleCapsuleCollisionAlgorithm.class);
+
+		@Override
+		public CollisionAlgorithm createCollisionAlgorithm(CollisionAlgorithmConstructionInfo ci, CollisionObject body0, CollisionObject body1) {
+			CapsuleCapsuleCollisionAlgorithm algo = pool.get();
+			algo.init(ci.manifold, ci, body0, body1);
+			return algo;
+		}
+
+		@Override
+		public void releaseCollisionAlgorithm(CollisionAlgorithm algo) {
+			pool.release((CapsuleCapsuleCollisionAlgorithm)algo);
+		}
+	}
+
+}
@@ -25,20 +25,38 @@ package com.bulletphysics.collision.dispatch;
 
 import com.bulletphysics.collision.broadphase.*;
 import com.bulletphysics.collision.narrowphase.PersistentManifold;
+import com.bulletphysics.linearmath.MiscUtil;
+import com.bulletphysics.linearmath.Profiler;
 import com.bulletphysics.util.ObjectArrayList;
 import com.bulletphysics.util.ObjectPool;
 
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * CollisionDispatcher supports algorithms that handle ConvexConvex and ConvexConcave collision pairs.
- * Time of Impact, Closest Points and Penetration Depth.
+ * Time of Impact, Closest Points and Penetration Depth.<p>
+ * 
+ * Discrete narrowphase can be run in parallel by setting an executor with
+ * {@link #setDispatchExecutor}. Overlapping pairs are split into chunks processed
+ * by several tasks, manifold creation and removal is deferred and applied in pair
+ * order afterwards, so the resulting manifold array is the same as when
+ * dispatching serially. Pairs with compound or GIMPACT shapes temporarily replace
+ * the collision shape of their objects and are processed serially after the
+ * parallel pass.
  * 
  * @author jezek2
  */
 public class CollisionDispatcher extends Dispatcher {
 	
-	private final ObjectPool<PersistentManifold> manifoldsPool = ObjectPool.get(PersistentManifold.class);
+	// JAVA NOTE: manifolds (and collision algorithms) created in the worker threads are released
+	// in the simulation thread, so they use shared pools
+	private final ObjectPool<PersistentManifold> manifoldsPool = ObjectPool.getShared(PersistentManifold.class);
 
 	private static final int MAX_BROADPHASE_COLLISION_TYPES = BroadphaseNativeType.MAX_BROADPHASE_COLLISION_TYPES.ordinal();
 	private final int count = 0;
@@ -54,6 +72,24 @@ public class CollisionDispatcher extends Dispatcher {
 	//private static int gNumManifold = 0;
 	
 	private final CollisionAlgorithmConstructionInfo tmpCI = new CollisionAlgorithmConstructionInfo();
+	private final Thread ownerThread = Thread.currentThread();
+	private final ThreadLocal<CollisionAlgorithmConstructionInfo> threadCI = ThreadLocal.withInitial(CollisionAlgorithmConstructionInfo::new);
+
+	private static final int DEFAULT_DISPATCH_GRAIN_SIZE = 64;
+
+	private Executor dispatchExecutor;
+	private int numDispatchTasks = 1;
+	private int dispatchGrainSize = DEFAULT_DISPATCH_GRAIN_SIZE;
+	private final ObjectArrayList<DispatchWorker> dispatchWorkers = new ObjectArrayList<>();
+	private final ThreadLocal<DispatchWorker> currentDispatchWorker = new ThreadLocal<>();
+
+	// manifold changes are deferred while dispatching in parallel:
+	private boolean deferManifoldChanges = false;
+	private final ObjectArrayList<ManifoldChange> manifoldChanges = new ObjectArrayList<>();
+	private int manifoldChangeCounter = 0;
+
+	// narrowphase time per pair of shape types, null when not measured:
+	private PairTypeTimes pairTypeTimes;
 
 	public CollisionDispatcher(CollisionConfiguration collisionConfiguration) {
 		this.collisionConfiguration = collisionConfiguration;
@@ -86,6 +122,125 @@ public class CollisionDispatcher extends Dispatcher {
 		this.nearCallback = nearCallback;
 	}
 
+	/**
+	 * Sets executor used for parallel discrete narrowphase. The calling thread
+	 * participates in the work, so numTasks-1 tasks are submitted to the executor.
+	 * Passing null executor or numTasks lower than 2 restores serial dispatching.<p>
+	 * 
+	 * Collision algorithms and contact callbacks are then called concurrently
+	 * for different pairs, custom ones must be thread-safe.
+	 * 
+	 * @param executor executor for worker tasks, or null
+	 * @param numTasks number of tasks processing the pairs, including the calling thread
+	 */
+	public void setDispatchExecutor(Executor executor, int numTasks) {
+		if (executor == null || numTasks < 2) {
+			this.dispatchExecutor = null;
+			this.numDispatchTasks = 1;
+		}
+		else {
+			this.dispatchExecutor = executor;
+			this.numDispatchTasks = numTasks;
+		}
+	}
+
+	public Executor getDispatchExecutor() {
+		return dispatchExecutor;
+	}
+
+	public int getNumDispatchTasks() {
+		return numDispatchTasks;
+	}
+
+	/**
+	 * Sets number of overlapping pairs processed by a task at once during parallel dispatching.
+	 */
+	public void setDispatchGrainSize(int grainSize) {
+		if (grainSize < 1) {
+			throw new IllegalArgumentException("grain size must be positive");
+		}
+		this.dispatchGrainSize = grainSize;
+	}
+
+	public int getDispatchGrainSize() {
+		return dispatchGrainSize;
+	}
+
+	/**
+	 * Enables measuring of narrowphase time per pair of shape types. Times are
+	 * accumulated until {@link #resetPairTypeTimes} is called, see
+	 * {@link #getMostExpensivePairTypes}. Measuring adds two calls of
+	 * {@link System#nanoTime} per processed pair.
+	 */
+	public void setPairTypeTimingEnabled(boolean enabled) {
+		if (enabled && pairTypeTimes == null) {
+			pairTypeTimes = new PairTypeTimes();
+			for (int i=0; i<dispatchWorkers.size(); i++) {
+				dispatchWorkers.get(i).pairTypeTimes = new PairTypeTimes();
+			}
+		}
+		else if (!enabled) {
+			pairTypeTimes = null;
+			for (int i=0; i<dispatchWorkers.size(); i++) {
+				dispatchWorkers.get(i).pairTypeTimes = null;
+			}
+		}
+	}
+
+	public boolean isPairTypeTimingEnabled() {
+		return pairTypeTimes != null;
+	}
+
+	public void resetPairTypeTimes() {
+		if (pairTypeTimes != null) {
+			pairTypeTimes.clear();
+			for (int i=0; i<dispatchWorkers.size(); i++) {
+				dispatchWorkers.get(i).pairTypeTimes.clear();
+			}
+		}
+	}
+
+	/**
+	 * Returns shape type pairs with the highest narrowphase time measured since
+	 * last {@link #resetPairTypeTimes reset}, one per line in format
+	 * {@code "BOX_SHAPE_PROXYTYPE/SPHERE_SHAPE_PROXYTYPE: 120 pairs, 0.532 ms"}.
+	 * Returns empty string when timing is not enabled.
+	 */
+	public String getMostExpensivePairTypes(int maxCount) {
+		if (pairTypeTimes == null) {
+			return "";
+		}
+
+		PairTypeTimes total = new PairTypeTimes();
+		total.add(pairTypeTimes);
+		for (int i=0; i<dispatchWorkers.size(); i++) {
+			total.add(dispatchWorkers.get(i).pairTypeTimes);
+		}
+
+		StringBuilder sb = new StringBuilder();
+		for (int n=0; n<maxCount; n++) {
+			int best = -1;
+			for (int i=0; i<total.times.length; i++) {
+				if (total.counts[i] > 0 && (best == -1 || total.times[i] > total.times[best])) {
+					best = i;
+				}
+			}
+			if (best == -1) {
+				break;
+			}
+
+			if (sb.length() > 0) {
+				sb.append('\n');
+			}
+			sb.append(BroadphaseNativeType.forValue(best / MAX_BROADPHASE_COLLISION_TYPES));
+			sb.append('/');
+			sb.append(BroadphaseNativeType.forValue(best % MAX_BROADPHASE_COLLISION_TYPES));
+			sb.append(String.format(": %d pairs, %.3f ms", total.counts[best], total.times[best] / 1e6));
+			total.counts[best] = 0;
+		}
+		return sb.toString();
+	}
+
 	public CollisionConfiguration getCollisionConfiguration() {
 		return collisionConfiguration;
 	}
@@ -96,7 +251,8 @@ public class CollisionDispatcher extends Dispatcher {
 
 	@Override
 	public CollisionAlgorithm findAlgorithm(CollisionObject body0, CollisionObject body1, PersistentManifold sharedManifold) {
-		CollisionAlgorithmConstructionInfo ci = tmpCI;
+		// JAVA NOTE: algorithms can be created from worker threads during parallel dispatching
+		CollisionAlgorithmConstructionInfo ci = Thread.currentThread() == ownerThread ? tmpCI : threadCI.get();
 		ci.dispatcher1 = this;
 		ci.manifold = sharedManifold;
 		CollisionAlgorithmCreateFunc createFunc = doubleDispatch[body0.getCollisionShape().getShapeType().ordinal()][body1.getCollisionShape().getShapeType().ordinal()];
@@ -141,6 +297,11 @@ public class CollisionDispatcher extends Dispatcher {
 		
 		PersistentManifold manifold = manifoldsPool.get();
 		manifold.init(body0,body1,0);
+
+		if (deferManifoldChanges) {
+			addManifoldChange(manifold, false);
+			return manifold;
+		}
 		
 		manifold.index1a = manifoldsPtr.size();
 		manifoldsPtr.add(manifold);
@@ -155,6 +316,15 @@ public class CollisionDispatcher extends Dispatcher {
 		//printf("releaseManifold: gNumManifold %d\n",gNumManifold);
 		clearManifold(manifold);
 
+		if (deferManifoldChanges) {
+			addManifoldChange(manifold, true);
+			return;
+		}
+
+		removeManifold(manifold);
+	}
+
+	private void removeManifold(PersistentManifold manifold) {
 		// TODO: optimize
 		int findIndex = manifold.index1a;
 		assert (findIndex < manifoldsPtr.size());
@@ -175,6 +345,43 @@ public class CollisionDispatcher extends Dispatcher {
 		*/
 	}
 
+	private void addManifoldChange(PersistentManifold manifold, boolean release) {
+		DispatchWorker worker = currentDispatchWorker.get();
+		assert (worker != null);
+
+		ManifoldChange change = new ManifoldChange();
+		change.manifold = manifold;
+		change.release = release;
+		change.pairIndex = worker.pairIndex;
+
+		synchronized (manifoldChanges) {
+			change.order = manifoldChangeCounter++;
+			manifoldChanges.add(change);
+		}
+	}
+
+	/**
+	 * Applies manifold changes recorded during parallel dispatching in the order
+	 * they would occur when dispatching serially.
+	 */
+	private void applyManifoldChanges() {
+		MiscUtil.quickSort(manifoldChanges, manifoldChangeComparator);
+
+		for (int i=0; i<manifoldChanges.size(); i++) {
+			ManifoldChange change = manifoldChanges.get(i);
+			if (change.release) {
+				removeManifold(change.manifold);
+			}
+			else {
+				change.manifold.index1a = manifoldsPtr.size();
+				manifoldsPtr.add(change.manifold);
+			}
+		}
+
+		manifoldChanges.clear();
+		manifoldChangeCounter = 0;
+	}
+
 	@Override
 	public void clearManifold(PersistentManifold manifold) {
 		manifold.clearManifold();
@@ -227,7 +434,7 @@ public class CollisionDispatcher extends Dispatcher {
 		}
 		
 		public boolean processOverlap(BroadphasePair pair) {
-			dispatcher.getNearCallback().handleCollision(pair, dispatcher, dispatchInfo);
+			dispatcher.handleCollision(dispatcher.getNearCallback(), dispatcher.pairTypeTimes, pair, dispatchInfo);
 			return false;
 		}
 	}
@@ -236,12 +443,91 @@ public class CollisionDispatcher extends Dispatcher {
 	
 	@Override
 	public void dispatchAllCollisionPairs(OverlappingPairCache pairCache, DispatcherInfo dispatchInfo, Dispatcher dispatcher) {
+		if (dispatchExecutor != null && dispatchInfo.dispatchFunc == DispatchFunc.DISPATCH_DISCRETE &&
+				pairCache.getNumOverlappingPairs() > dispatchGrainSize) {
+			dispatchAllCollisionPairsParallel(pairCache.getOverlappingPairArray(), dispatchInfo);
+			return;
+		}
+
 		//m_blockedForChanges = true;
 		collisionPairCallback.init(dispatchInfo, this);
 		pairCache.processAllOverlappingPairs(collisionPairCallback, dispatcher);
 		//m_blockedForChanges = false;
 	}
 
+	private void dispatchAllCollisionPairsParallel(ObjectArrayList<BroadphasePair> pairs, DispatcherInfo dispatchInfo) {
+		int numPairs = pairs.size();
+		int numChunks = (numPairs + dispatchGrainSize - 1) / dispatchGrainSize;
+		int numTasks = Math.min(numDispatchTasks, numChunks);
+
+		while (dispatchWorkers.size() < numTasks) {
+			DispatchWorker worker = new DispatchWorker();
+			if (pairTypeTimes != null) {
+				worker.pairTypeTimes = new PairTypeTimes();
+			}
+			dispatchWorkers.add(worker);
+		}
+
+		DispatchJob job = new DispatchJob(this, pairs, dispatchInfo, numChunks);
+
+		deferManifoldChanges = true;
+		try {
+			for (int i=1; i<numTasks; i++) {
+				DispatchWorker worker = dispatchWorkers.get(i);
+				dispatchExecutor.execute(() -> job.run(worker));
+			}
+			job.run(dispatchWorkers.get(0));
+			job.await();
+
+			// pairs that can't be processed concurrently:
+			DispatchWorker worker = dispatchWorkers.get(0);
+			currentDispatchWorker.set(worker);
+			try {
+				for (int i=0; i<numPairs; i++) {
+					BroadphasePair pair = pairs.get(i);
+					if (!isConcurrentPair(pair)) {
+						worker.pairIndex = i;
+						handleCollision(worker.nearCallback, worker.pairTypeTimes, pair, dispatchInfo);
+					}
+				}
+			}
+			finally {
+				currentDispatchWorker.remove();
+			}
+		}
+		finally {
+			deferManifoldChanges = false;
+			applyManifoldChanges();
+		}
+	}
+
+	private void handleCollision(NearCallback nearCallback, PairTypeTimes times, BroadphasePair pair, DispatcherInfo dispatchInfo) {
+		if (times == null) {
+			nearCallback.handleCollision(pair, this, dispatchInfo);
+			return;
+		}
+
+		long t0 = System.nanoTime();
+		nearCallback.handleCollision(pair, this, dispatchInfo);
+		times.record(pair, System.nanoTime() - t0);
+	}
+
+	/**
+	 * Returns true when the pair can be processed concurrently with other pairs.
+	 * Compound and GIMPACT algorithms temporarily replace the collision shape of
+	 * the objects, pairs with these are processed serially.
+	 */
+	private static boolean isConcurrentPair(BroadphasePair pair) {
+		CollisionObject colObj0 = (CollisionObject) pair.pProxy0.clientObject;
+		CollisionObject colObj1 = (CollisionObject) pair.pProxy1.clientObject;
+		return isConcurrentShape(colObj0.getCollisionShape().getShapeType()) &&
+				isConcurrentShape(colObj1.getCollisionShape().getShapeType());
+	}
+
+	private static boolean isConcurrentShape(BroadphaseNativeType shapeType) {
+		return !shapeType.isCompound() && shapeType != BroadphaseNativeType.GIMPACT_SHAPE_PROXYTYPE;
+	}
+
 	@Override
 	public int getNumManifolds() {
 		return manifoldsPtr.size();
@@ -256,5 +542,137 @@ public class CollisionDispatcher extends Dispatcher {
 	public ObjectArrayList<PersistentManifold> getInternalManifoldPointer() {
 		return manifoldsPtr;
 	}
+
+	////////////////////////////////////////////////////////////////////////////
+
+	private static class DispatchWorker {
+		// JAVA NOTE: DefaultNearCallback holds ManifoldResult, each worker needs its own
+		final NearCallback nearCallback = new DefaultNearCallback();
+		int pairIndex;
+		PairTypeTimes pairTypeTimes;
+	}
+
+	private static class PairTypeTimes {
+		final long[] times = new long[MAX_BROADPHASE_COLLISION_TYPES * MAX_BROADPHASE_COLLISION_TYPES];
+		final int[] counts = new int[MAX_BROADPHASE_COLLISION_TYPES * MAX_BROADPHASE_COLLISION_TYPES];
+
+		void record(BroadphasePair pair, long time) {
+			int type0 = ((CollisionObject) pair.pProxy0.clientObject).getCollisionShape().getShapeType().ordinal();
+			int type1 = ((CollisionObject) pair.pProxy1.clientObject).getCollisionShape().getShapeType().ordinal();
+			int index = Math.min(type0, type1) * MAX_BROADPHASE_COLLISION_TYPES + Math.max(type0, type1);
+			times[index] += time;
+			counts[index]++;
+		}
+
+		void add(PairTypeTimes other) {
+			for (int i=0; i<times.length; i++) {
+				times[i] += other.times[i];
+				counts[i] += other.counts[i];
+			}
+		}
+
+		void clear() {
+			Arrays.fill(times, 0L);
+			Arrays.fill(counts, 0);
+		}
+	}
+
+	private static class DispatchJob {
+		private final CollisionDispatcher dispatcher;
+		private final ObjectArrayList<BroadphasePair> pairs;
+		private final DispatcherInfo dispatchInfo;
+		private final Profiler profiler = Profiler.getCurrent();
+		private final int numChunks;
+		private final AtomicInteger nextChunk = new AtomicInteger();
+		private final CountDownLatch chunksDone;
+		private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+		DispatchJob(CollisionDispatcher dispatcher, ObjectArrayList<BroadphasePair> pairs, DispatcherInfo dispatchInfo, int numChunks) {
+			this.dispatcher = dispatcher;
+			this.pairs = pairs;
+			this.dispatchInfo = dispatchInfo;
+			this.numChunks = numChunks;
+			this.chunksDone = new CountDownLatch(numChunks);
+		}
+
+		void run(DispatchWorker worker) {
+			int chunk = nextChunk.getAndIncrement();
+			if (chunk >= numChunks) {
+				return;
+			}
+
+			dispatcher.currentDispatchWorker.set(worker);
+			Profiler prevProfiler = Profiler.enter(profiler);
+			try {
+				do {
+					try {
+						if (failure.get() == null) {
+							processChunk(worker, chunk);
+						}
+					}
+					catch (Throwable t) {
+						failure.compareAndSet(null, t);
+					}
+					finally {
+						chunksDone.countDown();
+					}
+					chunk = nextChunk.getAndIncrement();
+				}
+				while (chunk < numChunks);
+			}
+			finally {
+				Profiler.exit(prevProfiler);
+				dispatcher.currentDispatchWorker.remove();
+			}
+		}
+
+		private void processChunk(DispatchWorker worker, int chunk) {
+			int start = chunk * dispatcher.dispatchGrainSize;
+			int end = Math.min(start + dispatcher.dispatchGrainSize, pairs.size());
+
+			for (int i=start; i<end; i++) {
+				BroadphasePair pair = pairs.get(i);
+				if (isConcurrentPair(pair)) {
+					worker.pairIndex = i;
+					dispatcher.handleCollision(worker.nearCallback, worker.pairTypeTimes, pair, dispatchInfo);
+				}
+			}
+		}
+
+		void await() {
+			try {
+				chunksDone.await();
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("interrupted while waiting for narrowphase tasks", e);
+			}
+
+			Throwable t = failure.get();
+			if (t instanceof RuntimeException) {
+				throw (RuntimeException) t;
+			}
+			if (t instanceof Error) {
+				throw (Error) t;
+			}
+			if (t != null) {
+				throw new IllegalStateException(t);
+			}
+		}
+	}
+
+	private static class ManifoldChange {
+		PersistentManifold manifold;
+		boolean release;
+		int pairIndex;
+		int order;
+	}
+
+	private static final Comparator<ManifoldChange> manifoldChangeComparator = (c1, c2) -> {
+		if (c1.pairIndex != c2.pairIndex) {
+			return c1.pairIndex < c2.pairIndex ? -1 : 1;
+		}
+		return Integer.compare(c1.order, c2.order);
+	};
 	
 }
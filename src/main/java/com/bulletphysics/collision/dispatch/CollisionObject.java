@@ -66,6 +66,7 @@ public class CollisionObject {
 	protected int collisionFlags;
 	private int islandTag1;
 	private int companionId;
+	private int worldArrayIndex = -1; // index of object in world's collisionObjects array
 	private int activationState1;
 	protected float deactivationTime;
 	protected float friction;
@@ -88,6 +89,16 @@ public class CollisionObject {
 	/// If some object should have elaborate collision filtering by sub-classes
 	protected boolean checkCollideWith;
 
+	// JAVA NOTE: added, AABB last sent to broadphase (see CollisionWorld.setAabbUpdateMargin)
+	final Transform aabbTransform = new Transform();
+	final Vector3f aabbMin = new Vector3f();
+	final Vector3f aabbMax = new Vector3f();
+	final Vector3f aabbExtents = new Vector3f(); // maximum absolute coordinates of the shape in local space
+	CollisionShape aabbShape;
+	float aabbThreshold;
+	float aabbMargin;
+	boolean aabbValid;
+
 	protected CollisionObject() {
 		this.collisionFlags = CollisionFlags.STATIC_OBJECT;
 		this.islandTag1 = -1;
@@ -129,6 +140,16 @@ public class CollisionObject {
 	public void setCollisionShape(CollisionShape collisionShape) {
 		this.collisionShape = collisionShape;
 		this.rootCollisionShape = collisionShape;
+		this.aabbValid = false;
+	}
+
+	/**
+	 * Forces recomputation of the AABB in the next update. Needed after the collision
+	 * shape was changed in place (eg. scaling) when {@link CollisionWorld#setAabbUpdateMargin}
+	 * is used.
+	 */
+	public void invalidateAabb() {
+		aabbValid = false;
 	}
 
 	public CollisionShape getRootCollisionShape() {
@@ -216,6 +237,7 @@ public class CollisionObject {
 
 	public void setBroadphaseHandle(BroadphaseProxy broadphaseHandle) {
 		this.broadphaseHandle = broadphaseHandle;
+		this.aabbValid = false;
 	}
 
 	public Transform getInterpolationWorldTransform(Transform out) {
@@ -261,6 +283,14 @@ public class CollisionObject {
 		this.companionId = companionId;
 	}
 
+	public int getWorldArrayIndex() {
+		return worldArrayIndex;
+	}
+
+	public void setWorldArrayIndex(int worldArrayIndex) {
+		this.worldArrayIndex = worldArrayIndex;
+	}
+
 	public float getHitFraction() {
 		return hitFraction;
 	}
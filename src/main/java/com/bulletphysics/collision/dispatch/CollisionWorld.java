@@ -33,14 +33,18 @@ import com.bulletphysics.collision.shapes.CompoundShape;
 import com.bulletphysics.collision.shapes.convex.ConcaveShape;
 import com.bulletphysics.collision.shapes.convex.ConvexShape;
 import com.bulletphysics.collision.shapes.mesh.BvhTriangleMeshShape;
+import com.bulletphysics.collision.shapes.mesh.HeightfieldTerrainShape;
 import com.bulletphysics.collision.shapes.mesh.TriangleMeshShape;
 import com.bulletphysics.collision.shapes.simple.SphereShape;
+import com.bulletphysics.jfr.CollisionDetectionEvent;
 import com.bulletphysics.linearmath.*;
 import com.bulletphysics.util.ObjectArrayList;
 
 import javax.vecmath.Matrix3f;
 import javax.vecmath.Quat4f;
 import javax.vecmath.Vector3f;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import static com.bulletphysics.BulletGlobals.FLT_EPSILON;
 
@@ -51,6 +55,11 @@ import static com.bulletphysics.BulletGlobals.FLT_EPSILON;
  */
 public class CollisionWorld {
 
+	private static final ProfileSection PROFILE_PERFORM_DISCRETE_COLLISION_DETECTION = ProfileSection.get("performDiscreteCollisionDetection");
+	private static final ProfileSection PROFILE_CALCULATE_OVERLAPPING_PAIRS = ProfileSection.get("calculateOverlappingPairs");
+	private static final ProfileSection PROFILE_DISPATCH_ALL_COLLISION_PAIRS = ProfileSection.get("dispatchAllCollisionPairs");
+	private static final ProfileSection PROFILE_UPDATE_AABBS = ProfileSection.get("updateAabbs");
+
 	//protected final BulletStack stack = BulletStack.get();
 	
 	protected final ObjectArrayList<CollisionObject> collisionObjects = new ObjectArrayList<>();
@@ -59,6 +68,8 @@ public class CollisionWorld {
 	//protected btStackAlloc*	m_stackAlloc;
 	private final BroadphaseInterface broadphase;
 	protected IDebugDraw debugDrawer;
+	private final Profiler profiler = new Profiler();
+	private float aabbUpdateMargin = -1f;
 	
 	/**
 	 * This constructor doesn't own the dispatcher and paircache/broadphase.
@@ -92,6 +103,7 @@ public class CollisionWorld {
 		// check that the object isn't already added
 		assert (!collisionObjects.contains(collisionObject));
 
+		collisionObject.setWorldArrayIndex(collisionObjects.size());
 		collisionObjects.add(collisionObject);
 
 		// calculate new AABB
@@ -114,13 +126,16 @@ public class CollisionWorld {
 	}
 
 	protected void performDiscreteCollisionDetection() {
-		BulletStats.pushProfile("performDiscreteCollisionDetection");
+		CollisionDetectionEvent event = new CollisionDetectionEvent();
+		event.begin();
+		Profiler prevProfiler = Profiler.enter(profiler);
+		BulletStats.pushProfile(PROFILE_PERFORM_DISCRETE_COLLISION_DETECTION);
 		try {
 			//DispatcherInfo dispatchInfo = getDispatchInfo();
 
 			updateAabbs();
 
-			BulletStats.pushProfile("calculateOverlappingPairs");
+			BulletStats.pushProfile(PROFILE_CALCULATE_OVERLAPPING_PAIRS);
 			try {
 				broadphase.calculateOverlappingPairs(dispatcher);
 			}
@@ -130,7 +145,7 @@ public class CollisionWorld {
 
 			Dispatcher dispatcher = dispatcher();
 			{
-				BulletStats.pushProfile("dispatchAllCollisionPairs");
+				BulletStats.pushProfile(PROFILE_DISPATCH_ALL_COLLISION_PAIRS);
 				try {
 					if (dispatcher != null) {
 						dispatcher.dispatchAllCollisionPairs(broadphase.getOverlappingPairCache(), dispatchInfo, this.dispatcher);
@@ -140,9 +155,21 @@ public class CollisionWorld {
 					BulletStats.popProfile();
 				}
 			}
+
+			event.end();
+			if (event.shouldCommit()) {
+				event.collisionObjects = collisionObjects.size();
+				event.pairs = broadphase.getOverlappingPairCache().getNumOverlappingPairs();
+				if (dispatcher != null) {
+					event.manifolds = dispatcher.getNumManifolds();
+					event.contacts = dispatcher.getNumContacts();
+				}
+				event.commit();
+			}
 		}
 		finally {
 			BulletStats.popProfile();
+			Profiler.exit(prevProfiler);
 		}
 	}
 	
@@ -162,7 +189,14 @@ public class CollisionWorld {
 		}
 
 		//swapremove
-		collisionObjects.remove(collisionObject);
+		int index = collisionObjects.indexOf(collisionObject);
+		if (index >= 0) {
+			collisionObjects.remove(index);
+			for (int i = index; i < collisionObjects.size(); i++) {
+				collisionObjects.get(i).setWorldArrayIndex(i);
+			}
+		}
+		collisionObject.setWorldArrayIndex(-1);
 	}
 
 	
@@ -181,11 +215,43 @@ public class CollisionWorld {
 	public DispatcherInfo getDispatchInfo() {
 		return dispatchInfo;
 	}
+
+	/**
+	 * Returns profiler of this world. It is disabled by default.
+	 */
+	public Profiler getProfiler() {
+		return profiler;
+	}
 	
+	/**
+	 * Enables skipping of AABB updates for objects that moved only a little, eg. resting
+	 * objects that are not deactivated yet. The AABBs are enlarged by given margin when
+	 * sent to the broadphase and both the AABB computation and the broadphase update are
+	 * skipped while the change of transform guarantees the object is still enclosed.<p>
+	 * 
+	 * Zero margin skips only objects with unchanged transform, negative margin disables
+	 * the skipping (default). The margin should exceed the jitter of resting objects
+	 * (eg. 0.01), with {@link DbvtBroadphase} occasional updates are more expensive as
+	 * they move the proxy back from the fixed tree. Shapes changed in place need
+	 * {@link CollisionObject#invalidateAabb}.
+	 */
+	public void setAabbUpdateMargin(float margin) {
+		this.aabbUpdateMargin = margin;
+	}
+
+	public float getAabbUpdateMargin() {
+		return aabbUpdateMargin;
+	}
+
 	private static boolean updateAabbs_reportMe = true;
 
 	// JAVA NOTE: ported from 2.74, missing contact threshold stuff
 	private void updateSingleAabb(CollisionObject colObj) {
+		float margin = aabbUpdateMargin;
+		boolean cacheValid = margin >= 0f && isAabbCacheValid(colObj, margin);
+		if (cacheValid && isAabbEnclosed(colObj, margin)) {
+			return;
+		}
 
 		Transform tmpTrans = new Transform();
 
@@ -205,7 +271,17 @@ public class CollisionWorld {
 		Vector3f tmp = new Vector3f();
 		tmp.sub(maxAabb, minAabb); // TODO: optimize
 		if (colObj.isStaticObject() || (tmp.lengthSquared() < 1f/FLT_EPSILON /*1e12f*/)) {
-			bp.setAabb(colObj.getBroadphaseHandle(), minAabb, maxAabb, dispatcher);
+			if (margin >= 0f) {
+				// moved a bit more, but still can be inside the enlarged AABB:
+				if (cacheValid && isAabbInside(minAabb, maxAabb, colObj.aabbMin, colObj.aabbMax)) {
+					return;
+				}
+				cacheAabb(colObj, minAabb, maxAabb, margin);
+				bp.setAabb(colObj.getBroadphaseHandle(), colObj.aabbMin, colObj.aabbMax, dispatcher);
+			}
+			else {
+				bp.setAabb(colObj.getBroadphaseHandle(), minAabb, maxAabb, dispatcher);
+			}
 		} else {
 			// something went wrong, investigate
 			// this assert is unwanted in 3D modelers (danger of loosing work)
@@ -221,8 +297,60 @@ public class CollisionWorld {
 		}
 	}
 
+	private static boolean isAabbCacheValid(CollisionObject colObj, float margin) {
+		return colObj.aabbValid &&
+				colObj.aabbShape == colObj.getCollisionShape() &&
+				colObj.aabbMargin == margin &&
+				colObj.aabbThreshold == BulletGlobals.getContactBreakingThreshold();
+	}
+
+	/**
+	 * Checks if the object is still enclosed in the enlarged AABB, the movement of any
+	 * point of the shape is bounded using the change of the transform and the extents
+	 * of the shape.
+	 */
+	private static boolean isAabbEnclosed(CollisionObject colObj, float margin) {
+		Transform t0 = colObj.aabbTransform;
+		Transform t1 = colObj.worldTransform;
+		Matrix3f b0 = t0.basis;
+		Matrix3f b1 = t1.basis;
+		Vector3f e = colObj.aabbExtents;
+
+		float dx = Math.abs(t1.origin.x - t0.origin.x) + Math.abs(b1.m00 - b0.m00) * e.x + Math.abs(b1.m01 - b0.m01) * e.y + Math.abs(b1.m02 - b0.m02) * e.z;
+		float dy = Math.abs(t1.origin.y - t0.origin.y) + Math.abs(b1.m10 - b0.m10) * e.x + Math.abs(b1.m11 - b0.m11) * e.y + Math.abs(b1.m12 - b0.m12) * e.z;
+		float dz = Math.abs(t1.origin.z - t0.origin.z) + Math.abs(b1.m20 - b0.m20) * e.x + Math.abs(b1.m21 - b0.m21) * e.y + Math.abs(b1.m22 - b0.m22) * e.z;
+		return dx <= margin && dy <= margin && dz <= margin;
+	}
+
+	private static boolean isAabbInside(Vector3f aabbMin, Vector3f aabbMax, Vector3f boundsMin, Vector3f boundsMax) {
+		return aabbMin.x >= boundsMin.x && aabbMin.y >= boundsMin.y && aabbMin.z >= boundsMin.z &&
+				aabbMax.x <= boundsMax.x && aabbMax.y <= boundsMax.y && aabbMax.z <= boundsMax.z;
+	}
+
+	private static void cacheAabb(CollisionObject colObj, Vector3f minAabb, Vector3f maxAabb, float margin) {
+		CollisionShape shape = colObj.getCollisionShape();
+		if (!colObj.aabbValid || colObj.aabbShape != shape) {
+			Transform identity = new Transform();
+			identity.setIdentity();
+			Vector3f localMin = new Vector3f(), localMax = new Vector3f();
+			shape.getAabb(identity, localMin, localMax);
+			colObj.aabbExtents.set(
+					Math.max(Math.abs(localMin.x), Math.abs(localMax.x)),
+					Math.max(Math.abs(localMin.y), Math.abs(localMax.y)),
+					Math.max(Math.abs(localMin.z), Math.abs(localMax.z)));
+		}
+
+		colObj.aabbMin.set(minAabb.x - margin, minAabb.y - margin, minAabb.z - margin);
+		colObj.aabbMax.set(maxAabb.x + margin, maxAabb.y + margin, maxAabb.z + margin);
+		colObj.aabbTransform.set(colObj.worldTransform);
+		colObj.aabbShape = shape;
+		colObj.aabbMargin = margin;
+		colObj.aabbThreshold = BulletGlobals.getContactBreakingThreshold();
+		colObj.aabbValid = true;
+	}
+
 	protected void updateAabbs() {
-		BulletStats.pushProfile("updateAabbs");
+		BulletStats.pushProfile(PROFILE_UPDATE_AABBS);
 		try {
 			final int n = collisionObjects.size();
 			for (int i = 0; i< n; i++) {
@@ -247,25 +375,46 @@ public class CollisionWorld {
 		return collisionObjects.size();
 	}
 
+	private static final ThreadLocal<RayTestScratch> rayTestScratches = ThreadLocal.withInitial(RayTestScratch::new);
+
 	// TODO
 	public static void rayTestSingle(Transform rayFromTrans, Transform rayToTrans,
 			CollisionObject collisionObject,
 			CollisionShape collisionShape,
 			Transform colObjWorldTransform,
 			RayResultCallback resultCallback, double eps) {
-		SphereShape pointShape = new SphereShape(0f);
-		pointShape.setMargin(0f);
+		RayTestScratch scratch = rayTestScratches.get();
+		if (scratch.busy) {
+			// ray test nested in a result callback
+			scratch = new RayTestScratch();
+		}
+		scratch.busy = true;
+		try {
+			rayTestSingle(rayFromTrans, rayToTrans, collisionObject, collisionShape, colObjWorldTransform, resultCallback, eps, scratch);
+		}
+		finally {
+			scratch.busy = false;
+		}
+	}
 
+	private static void rayTestSingle(Transform rayFromTrans, Transform rayToTrans,
+			CollisionObject collisionObject,
+			CollisionShape collisionShape,
+			Transform colObjWorldTransform,
+			RayResultCallback resultCallback, double eps,
+			RayTestScratch scratch) {
 		if (collisionShape.isConvex()) {
-			CastResult castResult = new CastResult();
+			CastResult castResult = scratch.castResult;
+			castResult.normal.set(0f, 0f, 0f);
+			castResult.hitPoint.set(0f, 0f, 0f);
 			castResult.fraction = resultCallback.closestHitFraction;
 
 			ConvexShape convexShape = (ConvexShape) collisionShape;
-			VoronoiSimplexSolver simplexSolver = new VoronoiSimplexSolver();
 
 			//#define USE_SUBSIMPLEX_CONVEX_CAST 1
 			//#ifdef USE_SUBSIMPLEX_CONVEX_CAST
-			SubsimplexConvexCast convexCaster = new SubsimplexConvexCast(pointShape, convexShape, simplexSolver);
+			SubsimplexConvexCast convexCaster = scratch.convexCaster;
+			convexCaster.init(scratch.pointShape, convexShape);
 			//#else
 			//btGjkConvexCast	convexCaster(castShape,convexShape,&simplexSolver);
 			//btContinuousConvexCollision convexCaster(castShape,convexShape,&simplexSolver,0);
@@ -281,7 +430,8 @@ public class CollisionWorld {
 						//#endif //USE_SUBSIMPLEX_CONVEX_CAST
 
 						castResult.normal.normalize();
-						LocalRayResult localRayResult = new LocalRayResult(
+						LocalRayResult localRayResult = scratch.localRayResult;
+						localRayResult.set(
 								collisionObject,
 								null,
 								castResult.normal,
@@ -295,37 +445,37 @@ public class CollisionWorld {
 		}
 		else {
 			if (collisionShape.isConcave()) {
+				Transform worldTocollisionObject = scratch.worldToCollisionObject;
+				worldTocollisionObject.inverse(colObjWorldTransform);
+				Vector3f rayFromLocal = scratch.rayFromLocal;
+				rayFromLocal.set(rayFromTrans.origin);
+				worldTocollisionObject.transform(rayFromLocal);
+				Vector3f rayToLocal = scratch.rayToLocal;
+				rayToLocal.set(rayToTrans.origin);
+				worldTocollisionObject.transform(rayToLocal);
+
+				BridgeTriangleRaycastCallback rcb = scratch.triangleRaycastCallback;
+				rcb.init(rayFromLocal, rayToLocal, resultCallback, collisionObject);
+				rcb.hitFraction = resultCallback.closestHitFraction;
+
 				if (collisionShape.getShapeType() == BroadphaseNativeType.TRIANGLE_MESH_SHAPE_PROXYTYPE) {
 					// optimized version for BvhTriangleMeshShape
 					BvhTriangleMeshShape triangleMesh = (BvhTriangleMeshShape)collisionShape;
-					Transform worldTocollisionObject = new Transform();
-					worldTocollisionObject.inverse(colObjWorldTransform);
-					Vector3f rayFromLocal = new Vector3f(rayFromTrans.origin);
-					worldTocollisionObject.transform(rayFromLocal);
-					Vector3f rayToLocal = new Vector3f(rayToTrans.origin);
-					worldTocollisionObject.transform(rayToLocal);
-
-					BridgeTriangleRaycastCallback rcb = new BridgeTriangleRaycastCallback(rayFromLocal, rayToLocal, resultCallback, collisionObject, triangleMesh);
-					rcb.hitFraction = resultCallback.closestHitFraction;
 					triangleMesh.performRaycast(rcb, rayFromLocal, rayToLocal);
 				}
+				else if (collisionShape.getShapeType() == BroadphaseNativeType.TERRAIN_SHAPE_PROXYTYPE) {
+					// walks only the heightfield cells under the ray
+					HeightfieldTerrainShape terrain = (HeightfieldTerrainShape)collisionShape;
+					terrain.performRaycast(rcb, rayFromLocal, rayToLocal);
+				}
 				else {
 					ConcaveShape triangleMesh = (ConcaveShape)collisionShape;
 
-					Transform worldTocollisionObject = new Transform();
-					worldTocollisionObject.inverse(colObjWorldTransform);
-
-					Vector3f rayFromLocal = new Vector3f(rayFromTrans.origin);
-					worldTocollisionObject.transform(rayFromLocal);
-					Vector3f rayToLocal = new Vector3f(rayToTrans.origin);
-					worldTocollisionObject.transform(rayToLocal);
-
-					BridgeTriangleRaycastCallback rcb = new BridgeTriangleRaycastCallback(rayFromLocal, rayToLocal, resultCallback, collisionObject, triangleMesh);
-					rcb.hitFraction = resultCallback.closestHitFraction;
-
-					Vector3f rayAabbMinLocal = new Vector3f(rayFromLocal);
+					Vector3f rayAabbMinLocal = scratch.rayAabbMinLocal;
+					rayAabbMinLocal.set(rayFromLocal);
 					VectorUtil.setMin(rayAabbMinLocal, rayToLocal);
-					Vector3f rayAabbMaxLocal = new Vector3f(rayFromLocal);
+					Vector3f rayAabbMaxLocal = scratch.rayAabbMaxLocal;
+					rayAabbMaxLocal.set(rayFromLocal);
 					VectorUtil.setMax(rayAabbMaxLocal, rayToLocal);
 
 					triangleMesh.processAllTriangles(rcb, rayAabbMinLocal, rayAabbMaxLocal);
@@ -336,11 +486,12 @@ public class CollisionWorld {
 				if (collisionShape.isCompound()) {
 					CompoundShape compoundShape = (CompoundShape) collisionShape;
 					int i;
-					Transform childTrans = new Transform();
+					Transform childTrans = scratch.childTrans;
+					Transform childWorldTrans = scratch.childWorldTrans;
 					for (i = 0; i < compoundShape.getNumChildShapes(); i++) {
 						compoundShape.getChildTransform(i, childTrans);
 						CollisionShape childCollisionShape = compoundShape.getChildShape(i);
-						Transform childWorldTrans = new Transform(colObjWorldTransform);
+						childWorldTrans.set(colObjWorldTransform);
 						childWorldTrans.mul(childTrans);
 						// replace collision shape so that callback can determine the triangle
 						CollisionShape saveCollisionShape = collisionObject.getCollisionShape();
@@ -349,7 +500,7 @@ public class CollisionWorld {
 								collisionObject,
 								childCollisionShape,
 								childWorldTrans,
-								resultCallback, eps);
+								resultCallback, eps, scratch.child());
 						// restore
 						collisionObject.internalSetTemporaryCollisionShape(saveCollisionShape);
 					}
@@ -358,6 +509,41 @@ public class CollisionWorld {
 		}
 	}
 
+	/**
+	 * Temporaries of rayTestSingle, used by one ray test at a time.
+	 */
+	private static class RayTestScratch {
+		final SphereShape pointShape = new SphereShape(0f);
+		final CastResult castResult = new CastResult();
+		final VoronoiSimplexSolver simplexSolver = new VoronoiSimplexSolver();
+		final SubsimplexConvexCast convexCaster = new SubsimplexConvexCast(pointShape, null, simplexSolver);
+		final LocalRayResult localRayResult = new LocalRayResult();
+
+		final Transform worldToCollisionObject = new Transform();
+		final Vector3f rayFromLocal = new Vector3f();
+		final Vector3f rayToLocal = new Vector3f();
+		final Vector3f rayAabbMinLocal = new Vector3f();
+		final Vector3f rayAabbMaxLocal = new Vector3f();
+		final BridgeTriangleRaycastCallback triangleRaycastCallback = new BridgeTriangleRaycastCallback();
+
+		final Transform childTrans = new Transform();
+		final Transform childWorldTrans = new Transform();
+		private RayTestScratch child; // for the children of compound shapes
+
+		boolean busy;
+
+		RayTestScratch() {
+			pointShape.setMargin(0f);
+		}
+
+		RayTestScratch child() {
+			if (child == null) {
+				child = new RayTestScratch();
+			}
+			return child;
+		}
+	}
+
 	private static class BridgeTriangleConvexcastCallback extends TriangleConvexcastCallback {
 		final ConvexResultCallback resultCallback;
 		final CollisionObject collisionObject;
@@ -509,44 +695,47 @@ public class CollisionWorld {
 	 * This allows for several queries: first hit, all hits, any hit, dependent on the value returned by the callback.
 	 */
 	public void rayTest(Vector3f rayFromWorld, Vector3f rayToWorld, RayResultCallback resultCallback, double eps) {
-		Transform rayFromTrans = new Transform(), rayToTrans = new Transform();
-		rayFromTrans.setIdentity();
-		rayFromTrans.origin.set(rayFromWorld);
-		rayToTrans.setIdentity();
-
-		rayToTrans.origin.set(rayToWorld);
-
-		// go over all objects, and if the ray intersects their aabb, do a ray-shape query using convexCaster (CCD)
-		Vector3f collisionObjectAabbMin = new Vector3f(), collisionObjectAabbMax = new Vector3f();
-		float[] hitLambda = new float[1];
-
-		Transform tmpTrans = new Transform();
-		
-		for (int i = 0; i < collisionObjects.size(); i++) {
-			// terminate further ray tests, once the closestHitFraction reached zero
-			if (resultCallback.closestHitFraction == 0f) {
-				break;
-			}
+		// use the broadphase to accelerate the search for objects, based on their aabb
+		// and for each object with ray-aabb overlap, perform an exact ray test
+		SingleRayCallback rayCB = new SingleRayCallback(rayFromWorld, rayToWorld, resultCallback, eps);
+		broadphase.rayTest(rayFromWorld, rayToWorld, rayCB);
+	}
 
-			CollisionObject collisionObject = collisionObjects.get(i);
-			// only perform raycast if filterMask matches
-			if (resultCallback.needsCollision(collisionObject.getBroadphaseHandle())) {
-				//RigidcollisionObject* collisionObject = ctrl->GetRigidcollisionObject();
-				final CollisionShape shape = collisionObject.getCollisionShape();
-				shape.getAabb(collisionObject.getWorldTransform(tmpTrans), collisionObjectAabbMin, collisionObjectAabbMax);
+	/**
+	 * rayTestBatch performs a closest hit raycast for each ray given by flat arrays of start and
+	 * end points (three floats per ray) and writes the results into out. The query objects are
+	 * shared by the whole batch, so no garbage is produced per ray by the broadphase traversal
+	 * and by the ray tests against convex shapes.
+	 */
+	public void rayTestBatch(float[] from, float[] to, RayBatchResult out) {
+		int numRays = checkRayBatch(from, to, out);
+		RayBatchTester tester = new RayBatchTester(broadphase, from, to, out, null);
+		for (int i = 0; i < numRays; i++) {
+			tester.rayTest(i);
+		}
+	}
 
-				hitLambda[0] = resultCallback.closestHitFraction;
-				Vector3f hitNormal = new Vector3f();
-				if (AabbUtil2.rayAabb(rayFromWorld, rayToWorld, collisionObjectAabbMin, collisionObjectAabbMax, hitLambda, hitNormal)) {
-					rayTestSingle(rayFromTrans, rayToTrans,
-							collisionObject,
-							shape,
-							collisionObject.getWorldTransform(tmpTrans),
-							resultCallback, eps);
-				}
-			}
+	/**
+	 * Parallel variant of {@link #rayTestBatch(float[], float[], RayBatchResult)}, the batch is split
+	 * into chunks that are processed by the given pool. Broadphase traversal and tests against convex
+	 * shapes run concurrently, tests against concave and compound shapes are serialized as their
+	 * mesh data and temporary child shapes are not thread-safe. The world must not be modified or
+	 * stepped until this method returns.
+	 */
+	public void rayTestBatch(float[] from, float[] to, RayBatchResult out, ForkJoinPool pool) {
+		int numRays = checkRayBatch(from, to, out);
+		pool.invoke(new RayBatchTask(broadphase, from, to, out, new Object(), 0, numRays));
+	}
 
+	private static int checkRayBatch(float[] from, float[] to, RayBatchResult out) {
+		if (from.length != to.length || from.length % 3 != 0) {
+			throw new IllegalArgumentException("ray start and end arrays must have the same length, divisible by 3");
+		}
+		int numRays = from.length / 3;
+		if (numRays > out.capacity()) {
+			throw new IllegalArgumentException("result capacity " + out.capacity() + " is too small for " + numRays + " rays");
 		}
+		return numRays;
 	}
 
 	/**
@@ -574,34 +763,10 @@ public class CollisionWorld {
 			castShape.calculateTemporalAabb(R, linVel, angVel, 1f, castShapeAabbMin, castShapeAabbMax);
 		}
 
-		Transform tmpTrans = new Transform();
-		Vector3f collisionObjectAabbMin = new Vector3f();
-		Vector3f collisionObjectAabbMax = new Vector3f();
-		float[] hitLambda = new float[1];
-
-		// go over all objects, and if the ray intersects their aabb + cast shape aabb,
-		// do a ray-shape query using convexCaster (CCD)
-		for (int i = 0; i < collisionObjects.size(); i++) {
-			CollisionObject collisionObject = collisionObjects.get(i);
-
-			// only perform raycast if filterMask matches
-			if (resultCallback.needsCollision(collisionObject.getBroadphaseHandle())) {
-				//RigidcollisionObject* collisionObject = ctrl->GetRigidcollisionObject();
-				collisionObject.getWorldTransform(tmpTrans);
-				collisionObject.getCollisionShape().getAabb(tmpTrans, collisionObjectAabbMin, collisionObjectAabbMax);
-				AabbUtil2.aabbExpand(collisionObjectAabbMin, collisionObjectAabbMax, castShapeAabbMin, castShapeAabbMax);
-				hitLambda[0] = 1f; // could use resultCallback.closestHitFraction, but needs testing
-				Vector3f hitNormal = new Vector3f();
-				if (AabbUtil2.rayAabb(convexFromWorld.origin, convexToWorld.origin, collisionObjectAabbMin, collisionObjectAabbMax, hitLambda, hitNormal)) {
-					objectQuerySingle(castShape, convexFromTrans, convexToTrans,
-					                  collisionObject,
-					                  collisionObject.getCollisionShape(),
-					                  tmpTrans,
-					                  resultCallback,
-					                  getDispatchInfo().allowedCcdPenetration);
-				}
-			}
-		}
+		// use the broadphase to accelerate the search for objects, based on their aabb
+		// and for each object with ray-aabb overlap, perform an exact sweep test
+		SingleSweepCallback convexCB = new SingleSweepCallback(castShape, convexFromTrans, convexToTrans, castShapeAabbMin, castShapeAabbMax, resultCallback, getDispatchInfo().allowedCcdPenetration);
+		broadphase.rayTest(convexFromTrans.origin, convexToTrans.origin, convexCB, castShapeAabbMin, castShapeAabbMax);
 	}
 
 	public ObjectArrayList<CollisionObject> getCollisionObjectArray() {
@@ -622,12 +787,12 @@ public class CollisionWorld {
 	}
 	
 	public static class LocalRayResult {
-		public final CollisionObject collisionObject;
-		final LocalShapeInfo localShapeInfo;
+		public CollisionObject collisionObject;
+		LocalShapeInfo localShapeInfo;
 		final Vector3f hitNormalLocal = new Vector3f();
-		final float hitFraction;
+		float hitFraction;
 
-		LocalRayResult(CollisionObject collisionObject, LocalShapeInfo localShapeInfo, Vector3f hitNormalLocal, float hitFraction) {
+		void set(CollisionObject collisionObject, LocalShapeInfo localShapeInfo, Vector3f hitNormalLocal, float hitFraction) {
 			this.collisionObject = collisionObject;
 			this.localShapeInfo = localShapeInfo;
 			this.hitNormalLocal.set(hitNormalLocal);
@@ -739,24 +904,283 @@ public class CollisionWorld {
 		}
 	}
 	
-	private static class BridgeTriangleRaycastCallback extends TriangleRaycastCallback {
+	private static class SingleRayCallback extends BroadphaseRayCallback {
+		final Vector3f rayFromWorld = new Vector3f();
+		final Vector3f rayToWorld = new Vector3f();
+		final Transform rayFromTrans = new Transform();
+		final Transform rayToTrans = new Transform();
 		final RayResultCallback resultCallback;
-		final CollisionObject collisionObject;
-		final ConcaveShape triangleMesh;
+		final double eps;
+
+		final Transform tmpTrans = new Transform();
+		final Vector3f collisionObjectAabbMin = new Vector3f();
+		final Vector3f collisionObjectAabbMax = new Vector3f();
+		final Vector3f hitNormal = new Vector3f();
+		final float[] hitLambda = new float[1];
+
+		SingleRayCallback(Vector3f rayFromWorld, Vector3f rayToWorld, RayResultCallback resultCallback, double eps) {
+			this.rayFromWorld.set(rayFromWorld);
+			this.rayToWorld.set(rayToWorld);
+			this.resultCallback = resultCallback;
+			this.eps = eps;
+
+			rayFromTrans.setIdentity();
+			rayFromTrans.origin.set(rayFromWorld);
+			rayToTrans.setIdentity();
+			rayToTrans.origin.set(rayToWorld);
+
+			init(rayFromWorld, rayToWorld);
+		}
+
+		@Override
+		public boolean process(BroadphaseProxy proxy) {
+			// terminate further ray tests, once the closestHitFraction reached zero
+			if (resultCallback.closestHitFraction == 0f) {
+				return false;
+			}
+
+			CollisionObject collisionObject = (CollisionObject) proxy.clientObject;
+
+			// only perform raycast if filterMask matches
+			if (resultCallback.needsCollision(collisionObject.getBroadphaseHandle())) {
+				final CollisionShape shape = collisionObject.getCollisionShape();
+				collisionObject.getWorldTransform(tmpTrans);
+				shape.getAabb(tmpTrans, collisionObjectAabbMin, collisionObjectAabbMax);
+
+				hitLambda[0] = resultCallback.closestHitFraction;
+				if (AabbUtil2.rayAabb(rayFromWorld, rayToWorld, collisionObjectAabbMin, collisionObjectAabbMax, hitLambda, hitNormal)) {
+					rayTestSingle(rayFromTrans, rayToTrans,
+							collisionObject,
+							shape,
+							tmpTrans,
+							resultCallback, eps);
+				}
+			}
+			return true;
+		}
+	}
+
+	private static class RayBatchTester extends BroadphaseRayCallback {
+		final BroadphaseInterface broadphase;
+		final float[] from;
+		final float[] to;
+		final RayBatchResult out;
+		final Object narrowphaseLock;
+
+		final Vector3f rayFromWorld = new Vector3f();
+		final Vector3f rayToWorld = new Vector3f();
+		final Transform rayFromTrans = new Transform();
+		final Transform rayToTrans = new Transform();
+		final ClosestRayCallback resultCallback = new ClosestRayCallback();
+
+		final Transform tmpTrans = new Transform();
+		final Vector3f collisionObjectAabbMin = new Vector3f();
+		final Vector3f collisionObjectAabbMax = new Vector3f();
+		final Vector3f hitNormal = new Vector3f();
+		final float[] hitLambda = new float[1];
+		final RayTestScratch scratch = new RayTestScratch();
+
+		RayBatchTester(BroadphaseInterface broadphase, float[] from, float[] to, RayBatchResult out, Object narrowphaseLock) {
+			this.broadphase = broadphase;
+			this.from = from;
+			this.to = to;
+			this.out = out;
+			this.narrowphaseLock = narrowphaseLock;
+			rayFromTrans.setIdentity();
+			rayToTrans.setIdentity();
+		}
+
+		void rayTest(int ray) {
+			int i = ray * 3;
+			rayFromWorld.set(from[i], from[i + 1], from[i + 2]);
+			rayToWorld.set(to[i], to[i + 1], to[i + 2]);
+			rayFromTrans.origin.set(rayFromWorld);
+			rayToTrans.origin.set(rayToWorld);
+			init(rayFromWorld, rayToWorld);
+
+			resultCallback.closestHitFraction = 1f;
+			resultCallback.collisionObject = null;
+
+			broadphase.rayTest(rayFromWorld, rayToWorld, this);
+
+			if (resultCallback.hasHit()) {
+				Vector3f n = resultCallback.hitNormalWorld;
+				float f = resultCallback.closestHitFraction;
+				out.setHit(ray, resultCallback.collisionObject, f, n.x, n.y, n.z,
+						rayFromWorld.x + (rayToWorld.x - rayFromWorld.x) * f,
+						rayFromWorld.y + (rayToWorld.y - rayFromWorld.y) * f,
+						rayFromWorld.z + (rayToWorld.z - rayFromWorld.z) * f);
+			}
+			else {
+				out.setNoHit(ray);
+			}
+		}
+
+		@Override
+		public boolean process(BroadphaseProxy proxy) {
+			// terminate further ray tests, once the closestHitFraction reached zero
+			if (resultCallback.closestHitFraction == 0f) {
+				return false;
+			}
+
+			CollisionObject collisionObject = (CollisionObject) proxy.clientObject;
+
+			// only perform raycast if filterMask matches
+			if (resultCallback.needsCollision(collisionObject.getBroadphaseHandle())) {
+				final CollisionShape shape = collisionObject.getCollisionShape();
+				collisionObject.getWorldTransform(tmpTrans);
+				shape.getAabb(tmpTrans, collisionObjectAabbMin, collisionObjectAabbMax);
+
+				hitLambda[0] = resultCallback.closestHitFraction;
+				if (AabbUtil2.rayAabb(rayFromWorld, rayToWorld, collisionObjectAabbMin, collisionObjectAabbMax, hitLambda, hitNormal)) {
+					if (narrowphaseLock != null && !shape.isConvex()) {
+						synchronized (narrowphaseLock) {
+							rayTestSingle(rayFromTrans, rayToTrans, collisionObject, shape, tmpTrans, resultCallback, RayResultCallback.RAY_EPSILON, scratch);
+						}
+					}
+					else {
+						rayTestSingle(rayFromTrans, rayToTrans, collisionObject, shape, tmpTrans, resultCallback, RayResultCallback.RAY_EPSILON, scratch);
+					}
+				}
+			}
+			return true;
+		}
+	}
+
+	private static class ClosestRayCallback extends RayResultCallback {
+		final Vector3f hitNormalWorld = new Vector3f();
+		final Transform tmpTrans = new Transform();
+
+		@Override
+		public float addSingleResult(LocalRayResult rayResult, boolean normalInWorldSpace) {
+			// caller already does the filter on the closestHitFraction
+			assert (rayResult.hitFraction <= closestHitFraction);
+
+			closestHitFraction = rayResult.hitFraction;
+			collisionObject = rayResult.collisionObject;
+			hitNormalWorld.set(rayResult.hitNormalLocal);
+			if (!normalInWorldSpace) {
+				// need to transform normal into worldspace
+				collisionObject.getWorldTransform(tmpTrans).basis.transform(hitNormalWorld);
+			}
+			return rayResult.hitFraction;
+		}
+	}
+
+	private static class RayBatchTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private static final int BATCH_GRAIN = 64;
+
+		final BroadphaseInterface broadphase;
+		final float[] from;
+		final float[] to;
+		final RayBatchResult out;
+		final Object narrowphaseLock;
+		final int start;
+		final int end;
+
+		RayBatchTask(BroadphaseInterface broadphase, float[] from, float[] to, RayBatchResult out, Object narrowphaseLock, int start, int end) {
+			this.broadphase = broadphase;
+			this.from = from;
+			this.to = to;
+			this.out = out;
+			this.narrowphaseLock = narrowphaseLock;
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		protected void compute() {
+			if (end - start <= BATCH_GRAIN) {
+				RayBatchTester tester = new RayBatchTester(broadphase, from, to, out, narrowphaseLock);
+				for (int i = start; i < end; i++) {
+					tester.rayTest(i);
+				}
+			}
+			else {
+				int mid = (start + end) >>> 1;
+				invokeAll(new RayBatchTask(broadphase, from, to, out, narrowphaseLock, start, mid),
+						new RayBatchTask(broadphase, from, to, out, narrowphaseLock, mid, end));
+			}
+		}
+	}
+
+	private static class SingleSweepCallback extends BroadphaseRayCallback {
+		final Transform convexFromTrans = new Transform();
+		final Transform convexToTrans = new Transform();
+		final ConvexShape castShape;
+		final ConvexResultCallback resultCallback;
+		final float allowedCcdPenetration;
+
+		final Vector3f castShapeAabbMin = new Vector3f();
+		final Vector3f castShapeAabbMax = new Vector3f();
+		final Transform tmpTrans = new Transform();
+		final Vector3f collisionObjectAabbMin = new Vector3f();
+		final Vector3f collisionObjectAabbMax = new Vector3f();
+		final Vector3f hitNormal = new Vector3f();
+		final float[] hitLambda = new float[1];
+
+		SingleSweepCallback(ConvexShape castShape, Transform convexFromTrans, Transform convexToTrans, Vector3f castShapeAabbMin, Vector3f castShapeAabbMax, ConvexResultCallback resultCallback, float allowedCcdPenetration) {
+			this.castShape = castShape;
+			this.convexFromTrans.set(convexFromTrans);
+			this.convexToTrans.set(convexToTrans);
+			this.castShapeAabbMin.set(castShapeAabbMin);
+			this.castShapeAabbMax.set(castShapeAabbMax);
+			this.resultCallback = resultCallback;
+			this.allowedCcdPenetration = allowedCcdPenetration;
 
-		BridgeTriangleRaycastCallback(Vector3f from, Vector3f to, RayResultCallback resultCallback, CollisionObject collisionObject, ConcaveShape triangleMesh) {
-			super(from, to);
+			init(convexFromTrans.origin, convexToTrans.origin);
+		}
+
+		@Override
+		public boolean process(BroadphaseProxy proxy) {
+			// terminate further convex sweep tests, once the closestHitFraction reached zero
+			if (resultCallback.closestHitFraction == 0f) {
+				return false;
+			}
+
+			CollisionObject collisionObject = (CollisionObject) proxy.clientObject;
+
+			// only perform raycast if filterMask matches
+			if (resultCallback.needsCollision(collisionObject.getBroadphaseHandle())) {
+				collisionObject.getWorldTransform(tmpTrans);
+				collisionObject.getCollisionShape().getAabb(tmpTrans, collisionObjectAabbMin, collisionObjectAabbMax);
+				AabbUtil2.aabbExpand(collisionObjectAabbMin, collisionObjectAabbMax, castShapeAabbMin, castShapeAabbMax);
+				hitLambda[0] = 1f; // could use resultCallback.closestHitFraction, but needs testing
+				if (AabbUtil2.rayAabb(convexFromTrans.origin, convexToTrans.origin, collisionObjectAabbMin, collisionObjectAabbMax, hitLambda, hitNormal)) {
+					objectQuerySingle(castShape, convexFromTrans, convexToTrans,
+					                  collisionObject,
+					                  collisionObject.getCollisionShape(),
+					                  tmpTrans,
+					                  resultCallback,
+					                  allowedCcdPenetration);
+				}
+			}
+			return true;
+		}
+	}
+
+	private static class BridgeTriangleRaycastCallback extends TriangleRaycastCallback {
+		RayResultCallback resultCallback;
+		CollisionObject collisionObject;
+		final LocalShapeInfo shapeInfo = new LocalShapeInfo();
+		final LocalRayResult rayResult = new LocalRayResult();
+
+		BridgeTriangleRaycastCallback() {
+			super(new Vector3f(), new Vector3f());
+		}
+
+		void init(Vector3f from, Vector3f to, RayResultCallback resultCallback, CollisionObject collisionObject) {
+			init(from, to);
 			this.resultCallback = resultCallback;
 			this.collisionObject = collisionObject;
-			this.triangleMesh = triangleMesh;
 		}
 	
 		public float reportHit(Vector3f hitNormalLocal, float hitFraction, int partId, int triangleIndex) {
-			LocalShapeInfo shapeInfo = new LocalShapeInfo();
 			shapeInfo.shapePart = partId;
 			shapeInfo.triangleIndex = triangleIndex;
 
-			LocalRayResult rayResult = new LocalRayResult(collisionObject, shapeInfo, hitNormalLocal, hitFraction);
+			rayResult.set(collisionObject, shapeInfo, hitNormalLocal, hitFraction);
 
 			boolean normalInWorldSpace = false;
 			return resultCallback.addSingleResult(rayResult, normalInWorldSpace);
@@ -183,7 +183,7 @@ public class CompoundCollisionAlgorithm extends CollisionAlgorithm {
 	////////////////////////////////////////////////////////////////////////////
 	
 	public static class CreateFunc extends CollisionAlgorithmCreateFunc {
-		private final ObjectPool<CompoundCollisionAlgorithm> pool = ObjectPool.get(CompoundCollisionAlgorithm.class);
+		private final ObjectPool<CompoundCollisionAlgorithm> pool = ObjectPool.getShared(CompoundCollisionAlgorithm.class);
 
 		@Override
 		public CollisionAlgorithm createCollisionAlgorithm(CollisionAlgorithmConstructionInfo ci, CollisionObject body0, CollisionObject body1) {
@@ -199,7 +199,7 @@ public class CompoundCollisionAlgorithm extends CollisionAlgorithm {
 	}
 
 	public static class SwappedCreateFunc extends CollisionAlgorithmCreateFunc {
-		private final ObjectPool<CompoundCollisionAlgorithm> pool = ObjectPool.get(CompoundCollisionAlgorithm.class);
+		private final ObjectPool<CompoundCollisionAlgorithm> pool = ObjectPool.getShared(CompoundCollisionAlgorithm.class);
 
 		@Override
 		public CollisionAlgorithm createCollisionAlgorithm(CollisionAlgorithmConstructionInfo ci, CollisionObject body0, CollisionObject body1) {
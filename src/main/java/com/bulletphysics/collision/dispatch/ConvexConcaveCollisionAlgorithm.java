@@ -217,7 +217,7 @@ public class ConvexConcaveCollisionAlgorithm extends CollisionAlgorithm {
 	////////////////////////////////////////////////////////////////////////////
 
 	public static class CreateFunc extends CollisionAlgorithmCreateFunc {
-		private final ObjectPool<ConvexConcaveCollisionAlgorithm> pool = ObjectPool.get(ConvexConcaveCollisionAlgorithm.class);
+		private final ObjectPool<ConvexConcaveCollisionAlgorithm> pool = ObjectPool.getShared(ConvexConcaveCollisionAlgorithm.class);
 
 		@Override
 		public CollisionAlgorithm createCollisionAlgorithm(CollisionAlgorithmConstructionInfo ci, CollisionObject body0, CollisionObject body1) {
@@ -233,7 +233,7 @@ public class ConvexConcaveCollisionAlgorithm extends CollisionAlgorithm {
 	}
 	
 	public static class SwappedCreateFunc extends CollisionAlgorithmCreateFunc {
-		private final ObjectPool<ConvexConcaveCollisionAlgorithm> pool = ObjectPool.get(ConvexConcaveCollisionAlgorithm.class);
+		private final ObjectPool<ConvexConcaveCollisionAlgorithm> pool = ObjectPool.getShared(ConvexConcaveCollisionAlgorithm.class);
 		
 		@Override
 		public CollisionAlgorithm createCollisionAlgorithm(CollisionAlgorithmConstructionInfo ci, CollisionObject body0, CollisionObject body1) {
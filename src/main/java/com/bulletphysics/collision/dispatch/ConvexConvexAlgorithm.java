@@ -23,13 +23,19 @@
 
 package com.bulletphysics.collision.dispatch;
 
+import com.bulletphysics.BulletGlobals;
 import com.bulletphysics.collision.broadphase.CollisionAlgorithm;
 import com.bulletphysics.collision.broadphase.CollisionAlgorithmConstructionInfo;
 import com.bulletphysics.collision.broadphase.DispatcherInfo;
 import com.bulletphysics.collision.narrowphase.*;
 import com.bulletphysics.collision.narrowphase.DiscreteCollisionDetectorInterface.ClosestPointInput;
+import com.bulletphysics.collision.shapes.convex.ConvexPolyhedron;
 import com.bulletphysics.collision.shapes.convex.ConvexShape;
+import com.bulletphysics.collision.shapes.convex.PolyhedralConvexShape;
 import com.bulletphysics.collision.shapes.simple.SphereShape;
+import com.bulletphysics.linearmath.ConvexSeparatingDistanceUtil;
+import com.bulletphysics.linearmath.ProfileCounter;
+import com.bulletphysics.linearmath.Profiler;
 import com.bulletphysics.linearmath.Transform;
 import com.bulletphysics.util.ObjectArrayList;
 import com.bulletphysics.util.ObjectPool;
@@ -47,14 +53,19 @@ public class ConvexConvexAlgorithm extends CollisionAlgorithm {
 	private final ObjectPool<ClosestPointInput> pointInputsPool = ObjectPool.get(ClosestPointInput.class);
 
 	private final GjkPairDetector gjkPairDetector = new GjkPairDetector();
+	private final ConvexSeparatingDistanceUtil sepDistance = new ConvexSeparatingDistanceUtil();
+	private PolyhedralContactClipping polyhedralClipping;
 
+	private CreateFunc createFunc;
 	private boolean ownManifold;
 	private PersistentManifold manifoldPtr;
 	private boolean lowLevelOfDetail;
 	
-	private void init(PersistentManifold mf, CollisionAlgorithmConstructionInfo ci, CollisionObject body0, CollisionObject body1, SimplexSolverInterface simplexSolver, ConvexPenetrationDepthSolver pdSolver) {
+	private void init(PersistentManifold mf, CollisionAlgorithmConstructionInfo ci, CollisionObject body0, CollisionObject body1, CreateFunc createFunc) {
 		super.init(ci);
-		gjkPairDetector.init(null, null, simplexSolver, pdSolver);
+		gjkPairDetector.init(null, null, createFunc.simplexSolver, createFunc.pdSolver);
+		sepDistance.init(body0.getCollisionShape().getAngularMotionDisc(), body1.getCollisionShape().getAngularMotionDisc());
+		this.createFunc = createFunc;
 		this.manifoldPtr = mf;
 		this.ownManifold = false;
 		this.lowLevelOfDetail = false;
@@ -103,10 +114,27 @@ public class ConvexConvexAlgorithm extends CollisionAlgorithm {
 		ConvexShape min0 = (ConvexShape) body0.getCollisionShape();
 		ConvexShape min1 = (ConvexShape) body1.getCollisionShape();
 
+		boolean useSepDistance = dispatchInfo.useConvexConservativeDistanceUtil;
+		if (useSepDistance) {
+			Transform tmpTrans1 = new Transform();
+			Transform tmpTrans2 = new Transform();
+			sepDistance.updateSeparatingDistance(body0.getWorldTransform(tmpTrans1), body1.getWorldTransform(tmpTrans2));
+
+			// no contact point can be closer than the conservative separating distance
+			if (sepDistance.getConservativeSeparatingDistance() > PersistentManifold.getContactBreakingThreshold()) {
+				Profiler.count(ProfileCounter.SKIPPED_GJK_CHECKS);
+				if (ownManifold) {
+					resultOut.refreshContactPoints();
+				}
+				return;
+			}
+		}
+
 		ClosestPointInput input = pointInputsPool.get();
 		input.init();
 
 		// JAVA NOTE: original: TODO: if (dispatchInfo.m_useContinuous)
+		gjkPairDetector.setSimplexSolver(createFunc.getSimplexSolver());
 		gjkPairDetector.setMinkowskiA(min0);
 		gjkPairDetector.setMinkowskiB(min1);
 		input.maximumDistanceSquared = min0.getMargin() + min1.getMargin() + PersistentManifold.getContactBreakingThreshold();
@@ -118,7 +146,21 @@ public class ConvexConvexAlgorithm extends CollisionAlgorithm {
 		body0.getWorldTransform(input.transformA);
 		body1.getWorldTransform(input.transformB);
 
-		gjkPairDetector.getClosestPoints(input, resultOut, dispatchInfo.debugDraw);
+		gjkPairDetector.setWarmStart(useSepDistance);
+
+		ConvexPolyhedron polyA = (min0 instanceof PolyhedralConvexShape) ? ((PolyhedralConvexShape) min0).getConvexPolyhedron() : null;
+		ConvexPolyhedron polyB = (min1 instanceof PolyhedralConvexShape) ? ((PolyhedralConvexShape) min1).getConvexPolyhedron() : null;
+		if (polyA != null && polyB != null) {
+			clipPolyhedra(min0, min1, polyA, polyB, input, dispatchInfo, resultOut);
+		}
+		else {
+			gjkPairDetector.getClosestPoints(input, resultOut, dispatchInfo.debugDraw);
+		}
+
+		if (useSepDistance) {
+			Vector3f sepAxis = gjkPairDetector.getCachedSeparatingAxis(new Vector3f());
+			sepDistance.initSeparatingDistance(sepAxis, gjkPairDetector.getCachedSeparatingDistance(), input.transformA, input.transformB);
+		}
 		
 		pointInputsPool.release(input);
 		//	#endif
@@ -128,10 +170,49 @@ public class ConvexConvexAlgorithm extends CollisionAlgorithm {
 		}
 	}
 
+	/**
+	 * Generates full contact manifold of two polyhedra in one step: GJK gives the separating
+	 * normal (or SAT when the hulls without margin penetrate and it's enabled), then faces
+	 * are clipped against each other.
+	 */
+	private void clipPolyhedra(ConvexShape min0, ConvexShape min1, ConvexPolyhedron polyA, ConvexPolyhedron polyB, ClosestPointInput input, DispatcherInfo dispatchInfo, ManifoldResult resultOut) {
+		ClosestPointResult gjkResult = new ClosestPointResult();
+		gjkPairDetector.getClosestPoints(input, gjkResult, dispatchInfo.debugDraw);
+		if (!gjkResult.hasResult) {
+			return;
+		}
+
+		float marginA = min0.getMargin();
+		float marginB = min1.getMargin();
+
+		Vector3f sepNormal = gjkResult.normalOnBInWorld;
+		float minDist = gjkResult.distance + marginA + marginB;
+
+		if (dispatchInfo.enableSatConvex && minDist < BulletGlobals.SIMD_EPSILON) {
+			// normal of penetrating hulls given by EPA doesn't have to be a face normal or edge-edge direction:
+			float[] satDist = new float[1];
+			PolyhedralContactClipping.findSeparatingAxis(polyA, polyB, input.transformA, input.transformB, sepNormal, satDist);
+			minDist = satDist[0];
+		}
+
+		if (polyhedralClipping == null) {
+			polyhedralClipping = new PolyhedralContactClipping();
+		}
+		polyhedralClipping.clipHullAgainstHull(sepNormal, polyA, polyB, input.transformA, input.transformB,
+				minDist, PersistentManifold.getContactBreakingThreshold(), marginA, marginB, resultOut);
+	}
+
 	private static final boolean disableCcd = false;
 	
 	@Override
 	public float calculateTimeOfImpact(CollisionObject col0, CollisionObject col1, DispatcherInfo dispatchInfo, ManifoldResult resultOut) {
+		return calculateConvexTimeOfImpact(col0, col1);
+	}
+
+	/**
+	 * Computes time of impact of two convex objects, shared with the specialized convex algorithms.
+	 */
+	static float calculateConvexTimeOfImpact(CollisionObject col0, CollisionObject col1) {
 		Vector3f tmp = new Vector3f();
 		
 		Transform tmpTrans1 = new Transform();
@@ -243,12 +324,36 @@ public class ConvexConvexAlgorithm extends CollisionAlgorithm {
 	
 	////////////////////////////////////////////////////////////////////////////
 	
+	private static class ClosestPointResult extends DiscreteCollisionDetectorInterface.Result {
+		public final Vector3f normalOnBInWorld = new Vector3f();
+		public float distance;
+		public boolean hasResult;
+
+		@Override
+		public void setShapeIdentifiers(int partId0, int index0, int partId1, int index1) {
+		}
+
+		@Override
+		protected void addContactPoint(Vector3f normalOnBInWorld, Vector3f pointInWorld, float depth) {
+			this.normalOnBInWorld.set(normalOnBInWorld);
+			this.distance = depth;
+			this.hasResult = true;
+		}
+	}
+
+	////////////////////////////////////////////////////////////////////////////
+
 	public static class CreateFunc extends CollisionAlgorithmCreateFunc {
-		private final ObjectPool<ConvexConvexAlgorithm> pool = ObjectPool.get(ConvexConvexAlgorithm.class);
+		private final ObjectPool<ConvexConvexAlgorithm> pool = ObjectPool.getShared(ConvexConvexAlgorithm.class);
 
 		final ConvexPenetrationDepthSolver pdSolver;
 		final SimplexSolverInterface simplexSolver;
 
+		// JAVA NOTE: simplex solver keeps state during a query and is shared by all
+		// algorithms, threads other than the creating one use their own instance
+		private final Thread ownerThread = Thread.currentThread();
+		private final ThreadLocal<SimplexSolverInterface> threadSimplexSolvers = ThreadLocal.withInitial(VoronoiSimplexSolver::new);
+
 		public CreateFunc(SimplexSolverInterface simplexSolver, ConvexPenetrationDepthSolver pdSolver) {
 			this.simplexSolver = simplexSolver;
 			this.pdSolver = pdSolver;
@@ -257,10 +362,14 @@ public class ConvexConvexAlgorithm extends CollisionAlgorithm {
 		@Override
 		public CollisionAlgorithm createCollisionAlgorithm(CollisionAlgorithmConstructionInfo ci, CollisionObject body0, CollisionObject body1) {
 			ConvexConvexAlgorithm algo = pool.get();
-			algo.init(ci.manifold, ci, body0, body1, simplexSolver, pdSolver);
+			algo.init(ci.manifold, ci, body0, body1, this);
 			return algo;
 		}
 
+		SimplexSolverInterface getSimplexSolver() {
+			return Thread.currentThread() == ownerThread ? simplexSolver : threadSimplexSolvers.get();
+		}
+
 		@Override
 		public void releaseCollisionAlgorithm(CollisionAlgorithm algo) {
 			pool.release((ConvexConvexAlgorithm)algo);
@@ -100,10 +100,28 @@ class ConvexTriangleCallback extends TriangleCallback {
 
 		aabbMax.add(extra);
 		aabbMin.sub(extra);
+
+		updateTriObject();
 	}
 
 	private final CollisionAlgorithmConstructionInfo ci = new CollisionAlgorithmConstructionInfo();
 	private final TriangleShape tm = new TriangleShape();
+
+	// JAVA NOTE: triangles are collided using own collision object instead of temporarily
+	// replacing the shape of triBody, so the mesh can be processed by several threads at once
+	private final CollisionObject triObject = new CollisionObject();
+	private final Transform tmpTrans = new Transform();
+
+	private void updateTriObject() {
+		triObject.setWorldTransform(triBody.getWorldTransform(tmpTrans));
+		triObject.setInterpolationWorldTransform(triBody.getInterpolationWorldTransform(tmpTrans));
+		triObject.setCollisionFlags(triBody.getCollisionFlags());
+		triObject.setFriction(triBody.getFriction());
+		triObject.setRestitution(triBody.getRestitution());
+		triObject.setUserPointer(triBody.getUserPointer());
+		triObject.setCollisionShape(triBody.getRootCollisionShape());
+		triObject.internalSetTemporaryCollisionShape(tm);
+	}
 	
 	public void processTriangle(Vector3f[] triangle, int partId, int triangleIndex) {
 		// just for debugging purposes
@@ -113,7 +131,7 @@ class ConvexTriangleCallback extends TriangleCallback {
 
 		ci.dispatcher1 = dispatcher;
 
-		CollisionObject ob = triBody;
+		CollisionObject ob = triObject;
 
 		// debug drawing of the overlapping triangles
 		if (dispatchInfoPtr != null && dispatchInfoPtr.debugDraw != null && dispatchInfoPtr.debugDraw.getDebugMode() > 0) {
@@ -149,20 +167,16 @@ class ConvexTriangleCallback extends TriangleCallback {
 			tm.init(triangle[0], triangle[1], triangle[2]);
 			tm.setMargin(collisionMarginTriangle);
 
-			CollisionShape tmpShape = ob.getCollisionShape();
-			ob.internalSetTemporaryCollisionShape(tm);
-
-			CollisionAlgorithm colAlgo = ci.dispatcher1.findAlgorithm(convexBody, triBody, manifoldPtr);
+			CollisionAlgorithm colAlgo = ci.dispatcher1.findAlgorithm(convexBody, ob, manifoldPtr);
 			// this should use the btDispatcher, so the actual registered algorithm is used
 			//		btConvexConvexAlgorithm cvxcvxalgo(m_manifoldPtr,ci,m_convexBody,m_triBody);
 
 			resultOut.setShapeIdentifiers(-1, -1, partId, triangleIndex);
 			//cvxcvxalgo.setShapeIdentifiers(-1,-1,partId,triangleIndex);
 			//cvxcvxalgo.processCollision(m_convexBody,m_triBody,*m_dispatchInfoPtr,m_resultOut);
-			colAlgo.processCollision(convexBody, triBody, dispatchInfoPtr, resultOut);
+			colAlgo.processCollision(convexBody, ob, dispatchInfoPtr, resultOut);
 			//colAlgo.destroy();
 			ci.dispatcher1.freeCollisionAlgorithm(colAlgo);
-			ob.internalSetTemporaryCollisionShape(tmpShape);
 		}
 	}
 
@@ -29,8 +29,11 @@ import com.bulletphysics.collision.narrowphase.GjkEpaPenetrationDepthSolver;
 import com.bulletphysics.collision.narrowphase.VoronoiSimplexSolver;
 import com.bulletphysics.extras.gimpact.GImpactCollisionAlgorithm;
 
+import static com.bulletphysics.collision.broadphase.BroadphaseNativeType.BOX_SHAPE_PROXYTYPE;
+import static com.bulletphysics.collision.broadphase.BroadphaseNativeType.CAPSULE_SHAPE_PROXYTYPE;
 import static com.bulletphysics.collision.broadphase.BroadphaseNativeType.SPHERE_SHAPE_PROXYTYPE;
 import static com.bulletphysics.collision.broadphase.BroadphaseNativeType.STATIC_PLANE_PROXYTYPE;
+import static com.bulletphysics.collision.broadphase.BroadphaseNativeType.TRIANGLE_SHAPE_PROXYTYPE;
 
 /**
  * Default implementation of {@link CollisionConfiguration}. Provides all core
@@ -58,6 +61,7 @@ public class DefaultCollisionConfiguration extends CollisionConfiguration {
 	protected CollisionAlgorithmCreateFunc boxBoxCF;
 	protected CollisionAlgorithmCreateFunc sphereTriangleCF;
 	protected CollisionAlgorithmCreateFunc triangleSphereCF;
+	protected CollisionAlgorithmCreateFunc capsuleCapsuleCF;
 	private final CollisionAlgorithmCreateFunc planeConvexCF;
 	private final CollisionAlgorithmCreateFunc convexPlaneCF;
 	
@@ -82,17 +86,17 @@ public class DefaultCollisionConfiguration extends CollisionConfiguration {
 		emptyCreateFunc = new EmptyAlgorithm.CreateFunc();
 
 		sphereSphereCF = new SphereSphereCollisionAlgorithm.CreateFunc();
-		/*
-		m_sphereBoxCF = new(mem) btSphereBoxCollisionAlgorithm::CreateFunc;
-		m_boxSphereCF = new (mem)btSphereBoxCollisionAlgorithm::CreateFunc;
-		m_boxSphereCF->m_swapped = true;
-		m_sphereTriangleCF = new (mem)btSphereTriangleCollisionAlgorithm::CreateFunc;
-		m_triangleSphereCF = new (mem)btSphereTriangleCollisionAlgorithm::CreateFunc;
-		m_triangleSphereCF->m_swapped = true;
-
-		mem = btAlignedAlloc(sizeof(btBoxBoxCollisionAlgorithm::CreateFunc),16);
-		m_boxBoxCF = new(mem)btBoxBoxCollisionAlgorithm::CreateFunc;
-		*/
+		sphereBoxCF = new SphereBoxCollisionAlgorithm.CreateFunc();
+		boxSphereCF = new SphereBoxCollisionAlgorithm.CreateFunc();
+		boxSphereCF.swapped = true;
+		sphereTriangleCF = new SphereTriangleCollisionAlgorithm.CreateFunc();
+		triangleSphereCF = new SphereTriangleCollisionAlgorithm.CreateFunc();
+		triangleSphereCF.swapped = true;
+
+		boxBoxCF = new BoxBoxCollisionAlgorithm.CreateFunc();
+
+		// JAVA NOTE: added
+		capsuleCapsuleCF = new CapsuleCapsuleCollisionAlgorithm.CreateFunc();
 
 		// convex versus plane
 		convexPlaneCF = new ConvexPlaneCollisionAlgorithm.CreateFunc();
@@ -151,31 +155,29 @@ public class DefaultCollisionConfiguration extends CollisionConfiguration {
 			return sphereSphereCF;
 		}
 
-		/*
-		if ((proxyType0 == SPHERE_SHAPE_PROXYTYPE) && (proxyType1==BOX_SHAPE_PROXYTYPE))
-		{
-			return	m_sphereBoxCF;
+		if ((proxyType0 == SPHERE_SHAPE_PROXYTYPE) && (proxyType1 == BOX_SHAPE_PROXYTYPE)) {
+			return sphereBoxCF;
 		}
 
-		if ((proxyType0 == BOX_SHAPE_PROXYTYPE ) && (proxyType1==SPHERE_SHAPE_PROXYTYPE))
-		{
-			return	m_boxSphereCF;
+		if ((proxyType0 == BOX_SHAPE_PROXYTYPE) && (proxyType1 == SPHERE_SHAPE_PROXYTYPE)) {
+			return boxSphereCF;
 		}
 
-		if ((proxyType0 == SPHERE_SHAPE_PROXYTYPE ) && (proxyType1==TRIANGLE_SHAPE_PROXYTYPE))
-		{
-			return	m_sphereTriangleCF;
+		if ((proxyType0 == SPHERE_SHAPE_PROXYTYPE) && (proxyType1 == TRIANGLE_SHAPE_PROXYTYPE)) {
+			return sphereTriangleCF;
 		}
 
-		if ((proxyType0 == TRIANGLE_SHAPE_PROXYTYPE  ) && (proxyType1==SPHERE_SHAPE_PROXYTYPE))
-		{
-			return	m_triangleSphereCF;
+		if ((proxyType0 == TRIANGLE_SHAPE_PROXYTYPE) && (proxyType1 == SPHERE_SHAPE_PROXYTYPE)) {
+			return triangleSphereCF;
 		}
 
 		if ((proxyType0 == BOX_SHAPE_PROXYTYPE) && (proxyType1 == BOX_SHAPE_PROXYTYPE)) {
 			return boxBoxCF;
 		}
-		*/
+
+		if ((proxyType0 == CAPSULE_SHAPE_PROXYTYPE) && (proxyType1 == CAPSULE_SHAPE_PROXYTYPE)) {
+			return capsuleCapsuleCF;
+		}
 
 		if (proxyType0.isConvex() && (proxyType1 == STATIC_PLANE_PROXYTYPE))
 		{
@@ -0,0 +1,53 @@
+package com.bulletphysics.collision.dispatch;
+
+/**
+ * RayBatchResult receives the closest hits of {@link CollisionWorld#rayTestBatch}. All
+ * data is kept in preallocated primitive arrays indexed by ray number, vectors are
+ * stored as three consecutive floats. The same instance can be reused for every batch.
+ */
+public class RayBatchResult {
+
+	public final float[] hitFraction;
+	public final float[] hitNormalWorld;
+	public final float[] hitPointWorld;
+	
+	// index into CollisionWorld.getCollisionObjectArray(), -1 when the ray didn't hit anything
+	public final int[] objectIndex;
+	public final CollisionObject[] hitObject;
+
+	public RayBatchResult(int maxRays) {
+		hitFraction = new float[maxRays];
+		hitNormalWorld = new float[maxRays * 3];
+		hitPointWorld = new float[maxRays * 3];
+		objectIndex = new int[maxRays];
+		hitObject = new CollisionObject[maxRays];
+	}
+
+	public int capacity() {
+		return objectIndex.length;
+	}
+
+	public boolean hasHit(int ray) {
+		return objectIndex[ray] >= 0;
+	}
+
+	void setNoHit(int ray) {
+		hitFraction[ray] = 1f;
+		objectIndex[ray] = -1;
+		hitObject[ray] = null;
+	}
+
+	void setHit(int ray, CollisionObject collisionObject, float fraction, float nx, float ny, float nz, float px, float py, float pz) {
+		hitFraction[ray] = fraction;
+		objectIndex[ray] = collisionObject.getWorldArrayIndex();
+		hitObject[ray] = collisionObject;
+		int i = ray * 3;
+		hitNormalWorld[i] = nx;
+		hitNormalWorld[i + 1] = ny;
+		hitNormalWorld[i + 2] = nz;
+		hitPointWorld[i] = px;
+		hitPointWorld[i + 1] = py;
+		hitPointWorld[i + 2] = pz;
+	}
+	
+}
@@ -27,10 +27,15 @@ import com.bulletphysics.BulletStats;
 import com.bulletphysics.collision.broadphase.BroadphasePair;
 import com.bulletphysics.collision.broadphase.Dispatcher;
 import com.bulletphysics.collision.narrowphase.PersistentManifold;
-import com.bulletphysics.linearmath.MiscUtil;
+import com.bulletphysics.linearmath.ProfileSection;
+import com.bulletphysics.linearmath.Profiler;
 import com.bulletphysics.util.ObjectArrayList;
 
-import java.util.Comparator;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * SimulationIslandManager creates and handles simulation islands, using {@link UnionFind}.
@@ -39,10 +44,27 @@ import java.util.Comparator;
  */
 public class SimulationIslandManager {
 
+	private static final ProfileSection PROFILE_ISLAND_UNION_FIND_AND_QUICK_SORT = ProfileSection.get("islandUnionFindAndQuickSort");
+	private static final ProfileSection PROFILE_PROCESS_ISLANDS = ProfileSection.get("processIslands");
+
 	private final UnionFind unionFind = new UnionFind();
 
 	private final ObjectArrayList<PersistentManifold> islandmanifold = new ObjectArrayList<>();
 	private final ObjectArrayList<CollisionObject> islandBodies = new ObjectArrayList<>();
+
+	// temporary arrays for counting sort of islandmanifold:
+	private int[] manifoldIslandKeys = new int[16];
+	private int[] islandManifoldOffsets = new int[16];
+	private PersistentManifold[] manifoldSortBuffer = new PersistentManifold[16];
+
+	// islands collected for parallel processing:
+	private final ObjectArrayList<Island> islands = new ObjectArrayList<>();
+	private int numIslands = 0;
+
+	// statistics of the last processed islands:
+	private int numActiveIslands = 0;
+	private int largestIslandBodies = 0;
+	private int largestIslandManifolds = 0;
 	
 	private void initUnionFind(int n) {
 		unionFind.reset(n);
@@ -51,6 +73,27 @@ public class SimulationIslandManager {
 	public UnionFind getUnionFind() {
 		return unionFind;
 	}
+
+	/**
+	 * Returns number of islands that were awake in the last call of buildAndProcessIslands.
+	 */
+	public int getNumActiveIslands() {
+		return numActiveIslands;
+	}
+
+	/**
+	 * Returns number of bodies in the largest awake island of the last call of buildAndProcessIslands.
+	 */
+	public int getLargestIslandBodies() {
+		return largestIslandBodies;
+	}
+
+	/**
+	 * Returns number of manifolds in the largest awake island of the last call of buildAndProcessIslands.
+	 */
+	public int getLargestIslandManifolds() {
+		return largestIslandManifolds;
+	}
 	
 	private void findUnions(Dispatcher dispatcher, CollisionWorld colWorld) {
 		ObjectArrayList<BroadphasePair> pairPtr = colWorld.getPairCache().getOverlappingPairArray();
@@ -116,7 +159,7 @@ public class SimulationIslandManager {
 	}
 
 	private void buildIslands(Dispatcher dispatcher, ObjectArrayList<CollisionObject> collisionObjects) {
-		BulletStats.pushProfile("islandUnionFindAndQuickSort");
+		BulletStats.pushProfile(PROFILE_ISLAND_UNION_FIND_AND_QUICK_SORT);
 		try {
 			islandmanifold.clear();
 
@@ -240,12 +283,64 @@ public class SimulationIslandManager {
 	public void buildAndProcessIslands(Dispatcher dispatcher, ObjectArrayList<CollisionObject> collisionObjects, IslandCallback callback) {
 		buildIslands(dispatcher, collisionObjects);
 
+		BulletStats.pushProfile(PROFILE_PROCESS_ISLANDS);
+		try {
+			processIslands(collisionObjects, callback, false);
+		}
+		finally {
+			BulletStats.popProfile();
+		}
+	}
+
+	/**
+	 * Builds islands and processes them in parallel by numTasks tasks, the calling
+	 * thread is task 0 and the rest is run by given executor. Islands are first
+	 * passed to {@link IslandCallback#prepareIsland} serially in the same order as
+	 * {@link #buildAndProcessIslands(Dispatcher, ObjectArrayList, IslandCallback)}
+	 * would process them, then they're processed concurrently using
+	 * {@link IslandCallback#processIsland(int, int, ObjectArrayList, int, ObjectArrayList, int, int, int)}.
+	 */
+	public void buildAndProcessIslands(Dispatcher dispatcher, ObjectArrayList<CollisionObject> collisionObjects, IslandCallback callback, Executor executor, int numTasks) {
+		if (executor == null || numTasks < 2) {
+			buildAndProcessIslands(dispatcher, collisionObjects, callback);
+			return;
+		}
+
+		buildIslands(dispatcher, collisionObjects);
+
+		BulletStats.pushProfile(PROFILE_PROCESS_ISLANDS);
+		try {
+			numIslands = 0;
+			processIslands(collisionObjects, callback, true);
+
+			IslandJob job = new IslandJob(this, callback, numIslands);
+			int numWorkers = Math.min(numTasks, numIslands);
+			for (int i=1; i<numWorkers; i++) {
+				int taskIndex = i;
+				executor.execute(() -> job.run(taskIndex));
+			}
+			job.run(0);
+			job.await();
+		}
+		finally {
+			for (int i=0; i<numIslands; i++) {
+				islands.get(i).bodies.clear();
+			}
+			numIslands = 0;
+			BulletStats.popProfile();
+		}
+	}
+
+	private void processIslands(ObjectArrayList<CollisionObject> collisionObjects, IslandCallback callback, boolean collect) {
 		int endIslandIndex;
 		int startIslandIndex;
 		int numElem = getUnionFind().getNumElements();
 
-		BulletStats.pushProfile("processIslands");
-		try {
+		numActiveIslands = 0;
+		largestIslandBodies = 0;
+		largestIslandManifolds = 0;
+
+		{
 			//#ifndef SPLIT_ISLANDS
 			//btPersistentManifold** manifold = dispatcher->getInternalManifoldPointer();
 			//
@@ -260,9 +355,8 @@ public class SimulationIslandManager {
 			// we should do radix sort, it it much faster (O(n) instead of O (n log2(n))
 			//islandmanifold.heapSort(btPersistentManifoldSortPredicate());
 			
-			// JAVA NOTE: memory optimized sorting with caching of temporary array
-			//Collections.sort(islandmanifold, persistentManifoldComparator);
-			MiscUtil.quickSort(islandmanifold, persistentManifoldComparator);
+			// JAVA NOTE: island ids are dense indices into union find, counting sort is used instead
+			sortIslandManifolds(numElem);
 
 			// now process all active islands (sets of manifolds for now)
 
@@ -310,7 +404,18 @@ public class SimulationIslandManager {
 				}
 
 				if (!islandSleeping) {
-					callback.processIsland(islandBodies, islandBodies.size(), islandmanifold, startManifold_idx, numIslandManifolds, islandId);
+					numActiveIslands++;
+					if (islandBodies.size() > largestIslandBodies) {
+						largestIslandBodies = islandBodies.size();
+						largestIslandManifolds = numIslandManifolds;
+					}
+
+					if (collect) {
+						collectIsland(callback, startManifold_idx, numIslandManifolds, islandId);
+					}
+					else {
+						callback.processIsland(islandBodies, islandBodies.size(), islandmanifold, startManifold_idx, numIslandManifolds, islandId);
+					}
 					//printf("Island callback of size:%d bodies, %d manifolds\n",islandBodies.size(),numIslandManifolds);
 				}
 
@@ -322,17 +427,157 @@ public class SimulationIslandManager {
 			}
 			//#endif //SPLIT_ISLANDS
 		}
-		finally {
-			BulletStats.popProfile();
+	}
+
+	/**
+	 * Stable counting sort of islandmanifold by island id, island id -1 is sorted first.
+	 */
+	private void sortIslandManifolds(int numElem) {
+		int numManifolds = islandmanifold.size();
+		if (numManifolds < 2) {
+			return;
+		}
+
+		if (manifoldIslandKeys.length < numManifolds) {
+			int newSize = Math.max(numManifolds, manifoldIslandKeys.length * 2);
+			manifoldIslandKeys = new int[newSize];
+			manifoldSortBuffer = new PersistentManifold[newSize];
+		}
+
+		// keys are islandId + 1, island ids are bounded by the number of union find elements:
+		int numKeys = numElem + 1;
+		for (int i=0; i<numManifolds; i++) {
+			PersistentManifold manifold = islandmanifold.get(i);
+			int key = getIslandId(manifold) + 1;
+			if (key >= numKeys) {
+				numKeys = key + 1;
+			}
+			manifoldIslandKeys[i] = key;
+			manifoldSortBuffer[i] = manifold;
+		}
+
+		if (islandManifoldOffsets.length < numKeys + 1) {
+			islandManifoldOffsets = new int[Math.max(numKeys + 1, islandManifoldOffsets.length * 2)];
+		}
+		int[] offsets = islandManifoldOffsets;
+		Arrays.fill(offsets, 0, numKeys + 1, 0);
+		for (int i=0; i<numManifolds; i++) {
+			offsets[manifoldIslandKeys[i] + 1]++;
+		}
+		for (int k=1; k<=numKeys; k++) {
+			offsets[k] += offsets[k-1];
+		}
+
+		for (int i=0; i<numManifolds; i++) {
+			islandmanifold.setQuick(offsets[manifoldIslandKeys[i]]++, manifoldSortBuffer[i]);
+			manifoldSortBuffer[i] = null;
 		}
 	}
 
+	private void collectIsland(IslandCallback callback, int manifolds_offset, int numManifolds, int islandId) {
+		if (numIslands == islands.size()) {
+			islands.add(new Island());
+		}
+		Island island = islands.get(numIslands);
+		island.bodies.addAll(islandBodies);
+		island.manifolds_offset = manifolds_offset;
+		island.numManifolds = numManifolds;
+		island.islandId = islandId;
+
+		callback.prepareIsland(numIslands, island.bodies, island.bodies.size(), islandmanifold, manifolds_offset, numManifolds, islandId);
+		numIslands++;
+	}
+
 	////////////////////////////////////////////////////////////////////////////
 	
 	public static abstract class IslandCallback {
 		public abstract void processIsland(ObjectArrayList<CollisionObject> bodies, int numBodies, ObjectArrayList<PersistentManifold> manifolds, int manifolds_offset, int numManifolds, int islandId);
+
+		/**
+		 * Called serially for each island in processing order before the islands are processed in parallel.
+		 */
+		public void prepareIsland(int islandIndex, ObjectArrayList<CollisionObject> bodies, int numBodies, ObjectArrayList<PersistentManifold> manifolds, int manifolds_offset, int numManifolds, int islandId) {
+		}
+
+		/**
+		 * Processes island from parallel task (0 is the calling thread). Called concurrently
+		 * for different islands, default implementation serializes calls to processIsland.
+		 */
+		public void processIsland(int taskIndex, int islandIndex, ObjectArrayList<CollisionObject> bodies, int numBodies, ObjectArrayList<PersistentManifold> manifolds, int manifolds_offset, int numManifolds, int islandId) {
+			synchronized (this) {
+				processIsland(bodies, numBodies, manifolds, manifolds_offset, numManifolds, islandId);
+			}
+		}
+	}
+
+	private static class Island {
+		final ObjectArrayList<CollisionObject> bodies = new ObjectArrayList<>();
+		int manifolds_offset;
+		int numManifolds;
+		int islandId;
+	}
+
+	private static class IslandJob {
+		private final SimulationIslandManager islandManager;
+		private final IslandCallback callback;
+		private final Profiler profiler = Profiler.getCurrent();
+		private final int numIslands;
+		private final AtomicInteger nextIsland = new AtomicInteger();
+		private final CountDownLatch islandsDone;
+		private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+		IslandJob(SimulationIslandManager islandManager, IslandCallback callback, int numIslands) {
+			this.islandManager = islandManager;
+			this.callback = callback;
+			this.numIslands = numIslands;
+			this.islandsDone = new CountDownLatch(numIslands);
+		}
+
+		void run(int taskIndex) {
+			Profiler prevProfiler = Profiler.enter(profiler);
+			try {
+				int index;
+				while ((index = nextIsland.getAndIncrement()) < numIslands) {
+					try {
+						if (failure.get() == null) {
+							Island island = islandManager.islands.get(index);
+							callback.processIsland(taskIndex, index, island.bodies, island.bodies.size(),
+									islandManager.islandmanifold, island.manifolds_offset, island.numManifolds, island.islandId);
+						}
+					}
+					catch (Throwable t) {
+						failure.compareAndSet(null, t);
+					}
+					finally {
+						islandsDone.countDown();
+					}
+				}
+			}
+			finally {
+				Profiler.exit(prevProfiler);
+			}
+		}
+
+		void await() {
+			try {
+				islandsDone.await();
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("interrupted while waiting for island tasks", e);
+			}
+
+			Throwable t = failure.get();
+			if (t instanceof RuntimeException) {
+				throw (RuntimeException) t;
+			}
+			if (t instanceof Error) {
+				throw (Error) t;
+			}
+			if (t != null) {
+				throw new IllegalStateException(t);
+			}
+		}
 	}
-	
-	private static final Comparator<PersistentManifold> persistentManifoldComparator = (lhs, rhs) -> getIslandId(lhs) < getIslandId(rhs) ? -1 : +1;
 	
 }
@@ -0,0 +1,190 @@
+/*
+ * Bullet Continuous Collision Detection and Physics Library
+ * Copyright (c) 2003-2008 Erwin Coumans  http://www.bulletphysics.com/
+ *
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from
+ * the use of this software.
+ * 
+ * Permission is granted to anyone to use this software for any purpose, 
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ * 
+ * 1. The origin of this software must not be misrepresented; you must not
+ *    claim that you wrote the original software. If you use this software
+ *    in a product, an acknowledgment in the product documentation would be
+ *    appreciated but is not required.
+ * 2. Altered source versions must be plainly marked as such, and must not be
+ *    misrepresented as being the original software.
+ * 3. This notice may not be removed or altered from any source distribution.
+ */
+
+package com.bulletphysics.collision.dispatch;
+
+import com.bulletphysics.collision.broadphase.CollisionAlgorithm;
+import com.bulletphysics.collision.broadphase.CollisionAlgorithmConstructionInfo;
+import com.bulletphysics.collision.broadphase.DispatcherInfo;
+import com.bulletphysics.collision.narrowphase.PersistentManifold;
+import com.bulletphysics.collision.shapes.simple.BoxShape;
+import com.bulletphysics.collision.shapes.simple.SphereShape;
+import com.bulletphysics.linearmath.Transform;
+import com.bulletphysics.util.ObjectArrayList;
+import com.bulletphysics.util.ObjectPool;
+
+import javax.vecmath.Vector3f;
+
+/**
+ * Provides collision detection between sphere and box. The closest point is
+ * computed directly by clamping the sphere center to the box.
+ */
+public class SphereBoxCollisionAlgorithm extends CollisionAlgorithm {
+
+	private boolean ownManifold;
+	private PersistentManifold manifoldPtr;
+	private boolean isSwapped;
+
+	private void init(PersistentManifold mf, CollisionAlgorithmConstructionInfo ci, CollisionObject col0, CollisionObject col1, boolean isSwapped) {
+		super.init(ci);
+		this.ownManifold = false;
+		this.manifoldPtr = mf;
+		this.isSwapped = isSwapped;
+
+		CollisionObject sphereObj = isSwapped ? col1 : col0;
+		CollisionObject boxObj = isSwapped ? col0 : col1;
+
+		if (manifoldPtr == null && dispatcher.needsCollision(sphereObj, boxObj)) {
+			manifoldPtr = dispatcher.getNewManifold(sphereObj, boxObj);
+			ownManifold = true;
+		}
+	}
+
+	@Override
+	public void init(CollisionAlgorithmConstructionInfo ci) {
+		super.init(ci);
+	}
+
+	@Override
+	public void destroy() {
+		if (ownManifold) {
+			if (manifoldPtr != null) {
+				dispatcher.releaseManifold(manifoldPtr);
+			}
+			manifoldPtr = null;
+		}
+	}
+
+	@Override
+	public void processCollision(CollisionObject body0, CollisionObject body1, DispatcherInfo dispatchInfo, ManifoldResult resultOut) {
+		if (manifoldPtr == null) {
+			return;
+		}
+
+		Transform tmpTrans = new Transform();
+
+		CollisionObject sphereObj = isSwapped ? body1 : body0;
+		CollisionObject boxObj = isSwapped ? body0 : body1;
+
+		SphereShape sphere = (SphereShape) sphereObj.getCollisionShape();
+		BoxShape box = (BoxShape) boxObj.getCollisionShape();
+
+		resultOut.setPersistentManifold(manifoldPtr);
+
+		Transform boxTrans = boxObj.getWorldTransform(new Transform());
+		Vector3f sphereCenter = new Vector3f(sphereObj.getWorldTransform(tmpTrans).origin);
+		float radius = sphere.getRadius();
+
+		Vector3f halfExtents = box.getHalfExtentsWithMargin(new Vector3f());
+
+		// sphere center in box space, clamped to the box gives the closest point:
+		Vector3f center = new Vector3f();
+		boxTrans.invXform(sphereCenter, center);
+
+		Vector3f closest = new Vector3f();
+		closest.x = Math.max(-halfExtents.x, Math.min(halfExtents.x, center.x));
+		closest.y = Math.max(-halfExtents.y, Math.min(halfExtents.y, center.y));
+		closest.z = Math.max(-halfExtents.z, Math.min(halfExtents.z, center.z));
+
+		Vector3f normal = new Vector3f();
+		normal.sub(center, closest);
+		float len2 = normal.lengthSquared();
+		float dist;
+
+		if (len2 > 1e-12f) {
+			// center is outside of the box
+			float len = (float) Math.sqrt(len2);
+			dist = len - radius;
+			if (dist > PersistentManifold.getContactBreakingThreshold()) {
+				if (ownManifold) {
+					resultOut.refreshContactPoints();
+				}
+				return;
+			}
+			normal.scale(1f / len);
+		}
+		else {
+			// center is inside of the box, push out through the nearest face
+			float dx = halfExtents.x - Math.abs(center.x);
+			float dy = halfExtents.y - Math.abs(center.y);
+			float dz = halfExtents.z - Math.abs(center.z);
+			normal.set(0f, 0f, 0f);
+			if (dx <= dy && dx <= dz) {
+				normal.x = center.x < 0f ? -1f : 1f;
+				closest.x = normal.x * halfExtents.x;
+				dist = -dx - radius;
+			}
+			else if (dy <= dz) {
+				normal.y = center.y < 0f ? -1f : 1f;
+				closest.y = normal.y * halfExtents.y;
+				dist = -dy - radius;
+			}
+			else {
+				normal.z = center.z < 0f ? -1f : 1f;
+				closest.z = normal.z * halfExtents.z;
+				dist = -dz - radius;
+			}
+		}
+
+		// normal and point on the box, in worldspace
+		boxTrans.basis.transform(normal);
+		boxTrans.transform(closest);
+
+		// report a contact. internally this will be kept persistent, and contact reduction is done
+		// JAVA NOTE: the contact is reported in the order of the manifold bodies, ManifoldResult handles swapping
+		resultOut.addContactPoint(normal, closest, dist);
+
+		if (ownManifold) {
+			resultOut.refreshContactPoints();
+		}
+	}
+
+	@Override
+	public float calculateTimeOfImpact(CollisionObject body0, CollisionObject body1, DispatcherInfo dispatchInfo, ManifoldResult resultOut) {
+		return ConvexConvexAlgorithm.calculateConvexTimeOfImpact(body0, body1);
+	}
+
+	@Override
+	public void getAllContactManifolds(ObjectArrayList<PersistentManifold> manifoldArray) {
+		if (manifoldPtr != null && ownManifold) {
+			manifoldArray.add(manifoldPtr);
+		}
+	}
+
+	////////////////////////////////////////////////////////////////////////////
+
+	public static class CreateFunc extends CollisionAlgorithmCreateFunc {
+		private final ObjectPool<SphereBoxCollisionAlgorithm> pool = ObjectPool.getShared(SphereBoxCollisionAlgorithm.class);
+
+		@Override
+		public CollisionAlgorithm createCollisionAlgorithm(CollisionAlgorithmConstructionInfo ci, CollisionObject body0, CollisionObject body1) {
+			SphereBoxCollisionAlgorithm algo = pool.get();
+			algo.init(ci.manifold, ci, body0, body1, swapped);
+			return algo;
+		}
+
+		@Override
+		public void releaseCollisionAlgorithm(CollisionAlgorithm algo) {
+			pool.release((SphereBoxCollisionAlgorithm)algo);
+		}
+	}
+
+}
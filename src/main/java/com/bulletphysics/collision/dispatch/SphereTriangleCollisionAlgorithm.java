@@ -0,0 +1,247 @@
+/*
+ * Bullet Continuous Collision Detection and Physics Library
+ * Copyright (c) 2003-2008 Erwin Coumans  http://www.bulletphysics.com/
+ *
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from
+ * the use of this software.
+ * 
+ * Permission is granted to anyone to use this software for any purpose, 
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ * 
+ * 1. The origin of this software must not be misrepresented; you must not
+ *    claim that you wrote the original software. If you use this software
+ *    in a product, an acknowledgment in the product documentation would be
+ *    appreciated but is not required.
+ * 2. Altered source versions must be plainly marked as such, and must not be
+ *    misrepresented as being the original software.
+ * 3. This notice may not be removed or altered from any source distribution.
+ */
+
+package com.bulletphysics.collision.dispatch;
+
+import com.bulletphysics.collision.broadphase.CollisionAlgorithm;
+import com.bulletphysics.collision.broadphase.CollisionAlgorithmConstructionInfo;
+import com.bulletphysics.collision.broadphase.DispatcherInfo;
+import com.bulletphysics.collision.narrowphase.PersistentManifold;
+import com.bulletphysics.collision.shapes.simple.SphereShape;
+import com.bulletphysics.collision.shapes.simple.TriangleShape;
+import com.bulletphysics.linearmath.Transform;
+import com.bulletphysics.util.ObjectArrayList;
+import com.bulletphysics.util.ObjectPool;
+
+import javax.vecmath.Vector3f;
+
+/**
+ * Provides collision detection between sphere and triangle, mainly used for
+ * spheres colliding with triangle meshes. The closest point on the triangle
+ * is computed directly from its Voronoi regions.
+ */
+public class SphereTriangleCollisionAlgorithm extends CollisionAlgorithm {
+
+	private boolean ownManifold;
+	private PersistentManifold manifoldPtr;
+	private boolean isSwapped;
+
+	private void init(PersistentManifold mf, CollisionAlgorithmConstructionInfo ci, CollisionObject col0, CollisionObject col1, boolean isSwapped) {
+		super.init(ci);
+		this.ownManifold = false;
+		this.manifoldPtr = mf;
+		this.isSwapped = isSwapped;
+
+		CollisionObject sphereObj = isSwapped ? col1 : col0;
+		CollisionObject triObj = isSwapped ? col0 : col1;
+
+		if (manifoldPtr == null && dispatcher.needsCollision(sphereObj, triObj)) {
+			manifoldPtr = dispatcher.getNewManifold(sphereObj, triObj);
+			ownManifold = true;
+		}
+	}
+
+	@Override
+	public void init(CollisionAlgorithmConstructionInfo ci) {
+		super.init(ci);
+	}
+
+	@Override
+	public void destroy() {
+		if (ownManifold) {
+			if (manifoldPtr != null) {
+				dispatcher.releaseManifold(manifoldPtr);
+			}
+			manifoldPtr = null;
+		}
+	}
+
+	@Override
+	public void processCollision(CollisionObject body0, CollisionObject body1, DispatcherInfo dispatchInfo, ManifoldResult resultOut) {
+		if (manifoldPtr == null) {
+			return;
+		}
+
+		Transform tmpTrans = new Transform();
+
+		CollisionObject sphereObj = isSwapped ? body1 : body0;
+		CollisionObject triObj = isSwapped ? body0 : body1;
+
+		SphereShape sphere = (SphereShape) sphereObj.getCollisionShape();
+		TriangleShape triangle = (TriangleShape) triObj.getCollisionShape();
+
+		resultOut.setPersistentManifold(manifoldPtr);
+
+		Transform triTrans = triObj.getWorldTransform(new Transform());
+		Vector3f center = new Vector3f();
+		triTrans.invXform(sphereObj.getWorldTransform(tmpTrans).origin, center);
+
+		float radius = sphere.getRadius() + triangle.getMargin();
+
+		Vector3f closest = new Vector3f();
+		closestPtPointTriangle(center, triangle.vertices1[0], triangle.vertices1[1], triangle.vertices1[2], closest);
+
+		Vector3f normal = new Vector3f();
+		normal.sub(center, closest);
+		float len2 = normal.lengthSquared();
+		float threshold = radius + PersistentManifold.getContactBreakingThreshold();
+		if (len2 > threshold * threshold) {
+			if (ownManifold) {
+				resultOut.refreshContactPoints();
+			}
+			return;
+		}
+
+		float len = (float) Math.sqrt(len2);
+		if (len > 1e-6f) {
+			normal.scale(1f / len);
+		}
+		else {
+			// center lies on the triangle, use the triangle normal
+			Vector3f edge0 = new Vector3f();
+			Vector3f edge1 = new Vector3f();
+			edge0.sub(triangle.vertices1[1], triangle.vertices1[0]);
+			edge1.sub(triangle.vertices1[2], triangle.vertices1[0]);
+			normal.cross(edge0, edge1);
+			if (normal.lengthSquared() < 1e-12f) {
+				return;
+			}
+			normal.normalize();
+		}
+		float dist = len - radius;
+
+		// normal and point on the triangle surface (including margin), in worldspace
+		closest.scaleAdd(triangle.getMargin(), normal, closest);
+		triTrans.basis.transform(normal);
+		triTrans.transform(closest);
+
+		// report a contact. internally this will be kept persistent, and contact reduction is done
+		// JAVA NOTE: the contact is reported in the order of the manifold bodies, ManifoldResult handles swapping
+		resultOut.addContactPoint(normal, closest, dist);
+
+		if (ownManifold) {
+			resultOut.refreshContactPoints();
+		}
+	}
+
+	/**
+	 * Computes the point on triangle (a,b,c) closest to point p.
+	 */
+	private static void closestPtPointTriangle(Vector3f p, Vector3f a, Vector3f b, Vector3f c, Vector3f out) {
+		Vector3f ab = new Vector3f();
+		Vector3f ac = new Vector3f();
+		Vector3f ap = new Vector3f();
+		ab.sub(b, a);
+		ac.sub(c, a);
+		ap.sub(p, a);
+
+		// check if p in vertex region outside a
+		float d1 = ab.dot(ap);
+		float d2 = ac.dot(ap);
+		if (d1 <= 0f && d2 <= 0f) {
+			out.set(a);
+			return;
+		}
+
+		// check if p in vertex region outside b
+		Vector3f bp = new Vector3f();
+		bp.sub(p, b);
+		float d3 = ab.dot(bp);
+		float d4 = ac.dot(bp);
+		if (d3 >= 0f && d4 <= d3) {
+			out.set(b);
+			return;
+		}
+
+		// check if p in edge region of ab
+		float vc = d1*d4 - d3*d2;
+		if (vc <= 0f && d1 >= 0f && d3 <= 0f) {
+			float v = d1 / (d1 - d3);
+			out.scaleAdd(v, ab, a);
+			return;
+		}
+
+		// check if p in vertex region outside c
+		Vector3f cp = new Vector3f();
+		cp.sub(p, c);
+		float d5 = ab.dot(cp);
+		float d6 = ac.dot(cp);
+		if (d6 >= 0f && d5 <= d6) {
+			out.set(c);
+			return;
+		}
+
+		// check if p in edge region of ac
+		float vb = d5*d2 - d1*d6;
+		if (vb <= 0f && d2 >= 0f && d6 <= 0f) {
+			float w = d2 / (d2 - d6);
+			out.scaleAdd(w, ac, a);
+			return;
+		}
+
+		// check if p in edge region of bc
+		float va = d3*d6 - d5*d4;
+		if (va <= 0f && (d4 - d3) >= 0f && (d5 - d6) >= 0f) {
+			float w = (d4 - d3) / ((d4 - d3) + (d5 - d6));
+			out.sub(c, b);
+			out.scaleAdd(w, out, b);
+			return;
+		}
+
+		// p inside face region
+		float denom = 1f / (va + vb + vc);
+		float v = vb * denom;
+		float w = vc * denom;
+		out.scaleAdd(v, ab, a);
+		out.scaleAdd(w, ac, out);
+	}
+
+	@Override
+	public float calculateTimeOfImpact(CollisionObject body0, CollisionObject body1, DispatcherInfo dispatchInfo, ManifoldResult resultOut) {
+		return ConvexConvexAlgorithm.calculateConvexTimeOfImpact(body0, body1);
+	}
+
+	@Override
+	public void getAllContactManifolds(ObjectArrayList<PersistentManifold> manifoldArray) {
+		if (manifoldPtr != null && ownManifold) {
+			manifoldArray.add(manifoldPtr);
+		}
+	}
+
+	////////////////////////////////////////////////////////////////////////////
+
+	public static class CreateFunc extends CollisionAlgorithmCreateFunc {
+		private final ObjectPool<SphereTriangleCollisionAlgorithm> pool = ObjectPool.getShared(SphereTriangleCollisionAlgorithm.class);
+
+		@Override
+		public CollisionAlgorithm createCollisionAlgorithm(CollisionAlgorithmConstructionInfo ci, CollisionObject body0, CollisionObject body1) {
+			SphereTriangleCollisionAlgorithm algo = pool.get();
+			algo.init(ci.manifold, ci, body0, body1, swapped);
+			return algo;
+		}
+
+		@Override
+		public void releaseCollisionAlgorithm(CollisionAlgorithm algo) {
+			pool.release((SphereTriangleCollisionAlgorithm)algo);
+		}
+	}
+
+}
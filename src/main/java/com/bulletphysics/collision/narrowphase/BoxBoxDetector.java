@@ -0,0 +1,674 @@
+/*
+ * Bullet Continuous Collision Detection and Physics Library
+ * Copyright (c) 2003-2008 Erwin Coumans  http://www.bulletphysics.com/
+ *
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from
+ * the use of this software.
+ * 
+ * Permission is granted to anyone to use this software for any purpose, 
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ * 
+ * 1. The origin of this software must not be misrepresented; you must not
+ *    claim that you wrote the original software. If you use this software
+ *    in a product, an acknowledgment in the product documentation would be
+ *    appreciated but is not required.
+ * 2. Altered source versions must be plainly marked as such, and must not be
+ *    misrepresented as being the original software.
+ * 3. This notice may not be removed or altered from any source distribution.
+ */
+
+package com.bulletphysics.collision.narrowphase;
+
+import com.bulletphysics.BulletGlobals;
+import com.bulletphysics.collision.shapes.simple.BoxShape;
+import com.bulletphysics.linearmath.IDebugDraw;
+import com.bulletphysics.linearmath.Transform;
+
+import javax.vecmath.Matrix3f;
+import javax.vecmath.Vector3f;
+
+/**
+ * BoxBoxDetector wraps the ODE box-box collision detector. It uses the separating
+ * axis test to find the axis of least penetration and clips the incident face
+ * against the reference face, so up to four contact points are found in a single
+ * pass.<p>
+ * 
+ * Original version is from Open Dynamics Engine, Copyright (C) 2001,2002 Russell L. Smith,
+ * re-distributed under the ZLib license with permission.
+ */
+public class BoxBoxDetector extends DiscreteCollisionDetectorInterface {
+
+	private static final float FUDGE_FACTOR = 1.05f;
+	private static final float FUDGE2 = 1.0e-5f;
+	private static final int MAX_CONTACTS = 4;
+
+	private BoxShape box1;
+	private BoxShape box2;
+
+	// JAVA NOTE: temporary arrays are kept per detector to avoid allocations,
+	// matrices are stored row-major with stride of 4 as in the original code
+	private final float[] R1 = new float[12];
+	private final float[] R2 = new float[12];
+	private final float[] p1 = new float[3];
+	private final float[] p2 = new float[3];
+	private final float[] A = new float[3];
+	private final float[] B = new float[3];
+	private final float[] normal = new float[3];
+	private final float[] normalC = new float[3];
+	private final float[] normal2 = new float[3];
+	private final float[] p = new float[3];
+	private final float[] pp = new float[3];
+	private final float[] edgePa = new float[3];
+	private final float[] edgePb = new float[3];
+	private final float[] ua = new float[3];
+	private final float[] ub = new float[3];
+	private final float[] center = new float[3];
+	private final float[] quad = new float[8];
+	private final float[] rect = new float[2];
+	private final float[] ret = new float[16];
+	private final float[] buffer = new float[16];
+	private final float[] point = new float[3*8];
+	private final float[] dep = new float[8];
+	private final float[] angles = new float[8];
+	private final boolean[] avail = new boolean[8];
+	private final int[] iret = new int[8];
+	private float alpha, beta;
+
+	// state of the separating axis tests, JAVA NOTE: replaces the locals modified by the TST macro
+	private float s;
+	private int code;
+	private boolean invertNormal;
+	private float[] normalR;
+	private int normalROffset;
+
+	public BoxBoxDetector() {
+	}
+
+	public BoxBoxDetector(BoxShape box1, BoxShape box2) {
+		init(box1, box2);
+	}
+
+	public void init(BoxShape box1, BoxShape box2) {
+		this.box1 = box1;
+		this.box2 = box2;
+	}
+
+	@Override
+	public void getClosestPoints(ClosestPointInput input, Result output, IDebugDraw debugDraw, boolean swapResults) {
+		Transform transformA = input.transformA;
+		Transform transformB = input.transformB;
+
+		setMatrix(R1, transformA.basis);
+		setMatrix(R2, transformB.basis);
+
+		p1[0] = transformA.origin.x;
+		p1[1] = transformA.origin.y;
+		p1[2] = transformA.origin.z;
+		p2[0] = transformB.origin.x;
+		p2[1] = transformB.origin.y;
+		p2[2] = transformB.origin.z;
+
+		Vector3f tmp = new Vector3f();
+		box1.getHalfExtentsWithMargin(tmp);
+		A[0] = tmp.x;
+		A[1] = tmp.y;
+		A[2] = tmp.z;
+		box2.getHalfExtentsWithMargin(tmp);
+		B[0] = tmp.x;
+		B[1] = tmp.y;
+		B[2] = tmp.z;
+
+		boxBox(output);
+	}
+
+	private static void setMatrix(float[] R, Matrix3f basis) {
+		R[0] = basis.m00; R[1] = basis.m01; R[2] = basis.m02; R[3] = 0f;
+		R[4] = basis.m10; R[5] = basis.m11; R[6] = basis.m12; R[7] = 0f;
+		R[8] = basis.m20; R[9] = basis.m21; R[10] = basis.m22; R[11] = 0f;
+	}
+
+	// dot product of row vector a and column k of matrix b:
+	private static float dot14(float[] a, float[] b, int k) {
+		return a[0]*b[k] + a[1]*b[k+4] + a[2]*b[k+8];
+	}
+
+	// dot product of columns ka and kb of matrices a and b:
+	private static float dot44(float[] a, int ka, float[] b, int kb) {
+		return a[ka]*b[kb] + a[ka+4]*b[kb+4] + a[ka+8]*b[kb+8];
+	}
+
+	private static float dot(float[] a, float[] b, int offsetB) {
+		return a[0]*b[offsetB] + a[1]*b[offsetB+1] + a[2]*b[offsetB+2];
+	}
+
+	/**
+	 * Given two boxes (p1,R1,A) and (p2,R2,B) defined by position, rotation and
+	 * half extents, reports up to four contact points to the output. The normal
+	 * points from box 1 towards box 2.
+	 *
+	 * @return number of reported contacts
+	 */
+	private int boxBox(Result output) {
+		float s2;
+		int i, j;
+
+		// get vector from centers of box 1 to box 2, relative to box 1
+		p[0] = p2[0] - p1[0];
+		p[1] = p2[1] - p1[1];
+		p[2] = p2[2] - p1[2];
+		// get pp = p relative to body 1
+		pp[0] = dot14(p, R1, 0);
+		pp[1] = dot14(p, R1, 1);
+		pp[2] = dot14(p, R1, 2);
+
+		// Rij is R1'*R2, i.e. the relative rotation between R1 and R2
+		float R11 = dot44(R1, 0, R2, 0), R12 = dot44(R1, 0, R2, 1), R13 = dot44(R1, 0, R2, 2);
+		float R21 = dot44(R1, 1, R2, 0), R22 = dot44(R1, 1, R2, 1), R23 = dot44(R1, 1, R2, 2);
+		float R31 = dot44(R1, 2, R2, 0), R32 = dot44(R1, 2, R2, 1), R33 = dot44(R1, 2, R2, 2);
+
+		float Q11 = Math.abs(R11), Q12 = Math.abs(R12), Q13 = Math.abs(R13);
+		float Q21 = Math.abs(R21), Q22 = Math.abs(R22), Q23 = Math.abs(R23);
+		float Q31 = Math.abs(R31), Q32 = Math.abs(R32), Q33 = Math.abs(R33);
+
+		// for all 15 possible separating axes:
+		//   * see if the axis separates the boxes. if so, return 0.
+		//   * find the depth of the penetration along the separating axis (s2)
+		//   * if this is the largest depth so far, record it.
+		// the normal vector will be set to the separating axis with the smallest
+		// depth. note: normalR is set to point to a column of R1 or R2 if that is
+		// the smallest depth normal so far. otherwise normalR is null and normalC is
+		// set to a vector relative to body 1. invertNormal is true if the sign of
+		// the normal should be flipped.
+
+		s = -Float.MAX_VALUE;
+		invertNormal = false;
+		code = 0;
+		normalR = null;
+		normalROffset = 0;
+
+		// JAVA NOTE: TST macros are expanded by hand
+
+		// separating axis = u1,u2,u3
+		float expr1 = pp[0];
+		s2 = Math.abs(expr1) - (A[0] + B[0]*Q11 + B[1]*Q12 + B[2]*Q13);
+		if (s2 > 0f) return 0;
+		if (s2 > s) { s = s2; normalR = R1; normalROffset = 0; invertNormal = expr1 < 0f; code = 1; }
+
+		expr1 = pp[1];
+		s2 = Math.abs(expr1) - (A[1] + B[0]*Q21 + B[1]*Q22 + B[2]*Q23);
+		if (s2 > 0f) return 0;
+		if (s2 > s) { s = s2; normalR = R1; normalROffset = 1; invertNormal = expr1 < 0f; code = 2; }
+
+		expr1 = pp[2];
+		s2 = Math.abs(expr1) - (A[2] + B[0]*Q31 + B[1]*Q32 + B[2]*Q33);
+		if (s2 > 0f) return 0;
+		if (s2 > s) { s = s2; normalR = R1; normalROffset = 2; invertNormal = expr1 < 0f; code = 3; }
+
+		// separating axis = v1,v2,v3
+		expr1 = dot14(p, R2, 0);
+		s2 = Math.abs(expr1) - (A[0]*Q11 + A[1]*Q21 + A[2]*Q31 + B[0]);
+		if (s2 > 0f) return 0;
+		if (s2 > s) { s = s2; normalR = R2; normalROffset = 0; invertNormal = expr1 < 0f; code = 4; }
+
+		expr1 = dot14(p, R2, 1);
+		s2 = Math.abs(expr1) - (A[0]*Q12 + A[1]*Q22 + A[2]*Q32 + B[1]);
+		if (s2 > 0f) return 0;
+		if (s2 > s) { s = s2; normalR = R2; normalROffset = 1; invertNormal = expr1 < 0f; code = 5; }
+
+		expr1 = dot14(p, R2, 2);
+		s2 = Math.abs(expr1) - (A[0]*Q13 + A[1]*Q23 + A[2]*Q33 + B[2]);
+		if (s2 > 0f) return 0;
+		if (s2 > s) { s = s2; normalR = R2; normalROffset = 2; invertNormal = expr1 < 0f; code = 6; }
+
+		// note: cross product axes need to be scaled when s is computed.
+		// normal (n1,n2,n3) is relative to box 1.
+
+		Q11 += FUDGE2; Q12 += FUDGE2; Q13 += FUDGE2;
+		Q21 += FUDGE2; Q22 += FUDGE2; Q23 += FUDGE2;
+		Q31 += FUDGE2; Q32 += FUDGE2; Q33 += FUDGE2;
+
+		// separating axis = u1 x (v1,v2,v3)
+		if (testEdgeAxis(pp[2]*R21 - pp[1]*R31, A[1]*Q31 + A[2]*Q21 + B[1]*Q13 + B[2]*Q12, 0f, -R31, R21, 7)) return 0;
+		if (testEdgeAxis(pp[2]*R22 - pp[1]*R32, A[1]*Q32 + A[2]*Q22 + B[0]*Q13 + B[2]*Q11, 0f, -R32, R22, 8)) return 0;
+		if (testEdgeAxis(pp[2]*R23 - pp[1]*R33, A[1]*Q33 + A[2]*Q23 + B[0]*Q12 + B[1]*Q11, 0f, -R33, R23, 9)) return 0;
+
+		// separating axis = u2 x (v1,v2,v3)
+		if (testEdgeAxis(pp[0]*R31 - pp[2]*R11, A[0]*Q31 + A[2]*Q11 + B[1]*Q23 + B[2]*Q22, R31, 0f, -R11, 10)) return 0;
+		if (testEdgeAxis(pp[0]*R32 - pp[2]*R12, A[0]*Q32 + A[2]*Q12 + B[0]*Q23 + B[2]*Q21, R32, 0f, -R12, 11)) return 0;
+		if (testEdgeAxis(pp[0]*R33 - pp[2]*R13, A[0]*Q33 + A[2]*Q13 + B[0]*Q22 + B[1]*Q21, R33, 0f, -R13, 12)) return 0;
+
+		// separating axis = u3 x (v1,v2,v3)
+		if (testEdgeAxis(pp[1]*R11 - pp[0]*R21, A[0]*Q21 + A[1]*Q11 + B[1]*Q33 + B[2]*Q32, -R21, R11, 0f, 13)) return 0;
+		if (testEdgeAxis(pp[1]*R12 - pp[0]*R22, A[0]*Q22 + A[1]*Q12 + B[0]*Q33 + B[2]*Q31, -R22, R12, 0f, 14)) return 0;
+		if (testEdgeAxis(pp[1]*R13 - pp[0]*R23, A[0]*Q23 + A[1]*Q13 + B[0]*Q32 + B[1]*Q31, -R23, R13, 0f, 15)) return 0;
+
+		if (code == 0) {
+			return 0;
+		}
+
+		// if we get to this point, the boxes interpenetrate. compute the normal
+		// in global coordinates.
+		if (normalR != null) {
+			normal[0] = normalR[normalROffset];
+			normal[1] = normalR[normalROffset + 4];
+			normal[2] = normalR[normalROffset + 8];
+		}
+		else {
+			normal[0] = R1[0]*normalC[0] + R1[1]*normalC[1] + R1[2]*normalC[2];
+			normal[1] = R1[4]*normalC[0] + R1[5]*normalC[1] + R1[6]*normalC[2];
+			normal[2] = R1[8]*normalC[0] + R1[9]*normalC[1] + R1[10]*normalC[2];
+		}
+		if (invertNormal) {
+			normal[0] = -normal[0];
+			normal[1] = -normal[1];
+			normal[2] = -normal[2];
+		}
+		float depth = -s;
+
+		Vector3f normalOnB = new Vector3f(-normal[0], -normal[1], -normal[2]);
+		Vector3f pointInWorld = new Vector3f();
+
+		// compute contact point(s)
+
+		if (code > 6) {
+			// an edge from box 1 touches an edge from box 2.
+			// find a point edgePa on the intersecting edge of box 1
+			float sign;
+			for (i=0; i<3; i++) edgePa[i] = p1[i];
+			for (j=0; j<3; j++) {
+				sign = (dot14(normal, R1, j) > 0f) ? 1f : -1f;
+				for (i=0; i<3; i++) edgePa[i] += sign * A[j] * R1[i*4+j];
+			}
+
+			// find a point edgePb on the intersecting edge of box 2
+			for (i=0; i<3; i++) edgePb[i] = p2[i];
+			for (j=0; j<3; j++) {
+				sign = (dot14(normal, R2, j) > 0f) ? -1f : 1f;
+				for (i=0; i<3; i++) edgePb[i] += sign * B[j] * R2[i*4+j];
+			}
+
+			for (i=0; i<3; i++) ua[i] = R1[((code)-7)/3 + i*4];
+			for (i=0; i<3; i++) ub[i] = R2[((code)-7)%3 + i*4];
+
+			lineClosestApproach(edgePa, ua, edgePb, ub);
+			for (i=0; i<3; i++) edgePa[i] += ua[i]*alpha;
+			for (i=0; i<3; i++) edgePb[i] += ub[i]*beta;
+
+			pointInWorld.set(edgePb[0], edgePb[1], edgePb[2]);
+			output.addContactPoint(normalOnB, pointInWorld, -depth);
+			return 1;
+		}
+
+		// okay, we have a face-something intersection (because the separating
+		// axis is perpendicular to a face). define face 'a' to be the reference
+		// face (i.e. the normal vector is perpendicular to this) and face 'b' to be
+		// the incident face (the closest face of the other box).
+
+		float[] Ra, Rb, pa, pb, Sa, Sb;
+		if (code <= 3) {
+			Ra = R1; Rb = R2; pa = p1; pb = p2; Sa = A; Sb = B;
+		}
+		else {
+			Ra = R2; Rb = R1; pa = p2; pb = p1; Sa = B; Sb = A;
+		}
+
+		// nr = normal vector of reference face dotted with axes of incident box.
+		// anr = absolute values of nr.
+		if (code <= 3) {
+			normal2[0] = normal[0];
+			normal2[1] = normal[1];
+			normal2[2] = normal[2];
+		}
+		else {
+			normal2[0] = -normal[0];
+			normal2[1] = -normal[1];
+			normal2[2] = -normal[2];
+		}
+		float nr0 = dot14(normal2, Rb, 0);
+		float nr1 = dot14(normal2, Rb, 1);
+		float nr2 = dot14(normal2, Rb, 2);
+		float anr0 = Math.abs(nr0);
+		float anr1 = Math.abs(nr1);
+		float anr2 = Math.abs(nr2);
+
+		// find the largest compontent of anr: this corresponds to the normal
+		// for the indident face. the other axis numbers of the indicent face
+		// are stored in a1,a2.
+		int lanr, a1, a2;
+		if (anr1 > anr0) {
+			if (anr1 > anr2) {
+				a1 = 0; lanr = 1; a2 = 2;
+			}
+			else {
+				a1 = 0; a2 = 1; lanr = 2;
+			}
+		}
+		else {
+			if (anr0 > anr2) {
+				lanr = 0; a1 = 1; a2 = 2;
+			}
+			else {
+				a1 = 0; a2 = 1; lanr = 2;
+			}
+		}
+		float nrl = lanr == 0 ? nr0 : lanr == 1 ? nr1 : nr2;
+
+		// compute center point of incident face, in reference-face coordinates
+		if (nrl < 0f) {
+			for (i=0; i<3; i++) center[i] = pb[i] - pa[i] + Sb[lanr] * Rb[i*4+lanr];
+		}
+		else {
+			for (i=0; i<3; i++) center[i] = pb[i] - pa[i] - Sb[lanr] * Rb[i*4+lanr];
+		}
+
+		// find the normal and non-normal axis numbers of the reference box
+		int codeN, code1, code2;
+		if (code <= 3) codeN = code-1; else codeN = code-4;
+		if (codeN == 0) {
+			code1 = 1;
+			code2 = 2;
+		}
+		else if (codeN == 1) {
+			code1 = 0;
+			code2 = 2;
+		}
+		else {
+			code1 = 0;
+			code2 = 1;
+		}
+
+		// find the four corners of the incident face, in reference-face coordinates
+		float c1, c2, m11, m12, m21, m22;
+		c1 = dot14(center, Ra, code1);
+		c2 = dot14(center, Ra, code2);
+		// optimize this? - we have already computed this data above, but it is not
+		// stored in an easy-to-index format. for now it's quicker just to recompute
+		// the four dot products.
+		m11 = dot44(Ra, code1, Rb, a1);
+		m12 = dot44(Ra, code1, Rb, a2);
+		m21 = dot44(Ra, code2, Rb, a1);
+		m22 = dot44(Ra, code2, Rb, a2);
+		{
+			float k1 = m11*Sb[a1];
+			float k2 = m21*Sb[a1];
+			float k3 = m12*Sb[a2];
+			float k4 = m22*Sb[a2];
+			quad[0] = c1 - k1 - k3;
+			quad[1] = c2 - k2 - k4;
+			quad[2] = c1 - k1 + k3;
+			quad[3] = c2 - k2 + k4;
+			quad[4] = c1 + k1 + k3;
+			quad[5] = c2 + k2 + k4;
+			quad[6] = c1 + k1 - k3;
+			quad[7] = c2 + k2 - k4;
+		}
+
+		// find the size of the reference face
+		rect[0] = Sa[code1];
+		rect[1] = Sa[code2];
+
+		// intersect the incident and reference faces
+		int n = intersectRectQuad2(rect, quad, ret);
+		if (n < 1) return 0; // this should never happen
+
+		// convert the intersection points into reference-face coordinates,
+		// and compute the contact position and depth for each point. only keep
+		// those points that have a positive (penetrating) depth. delete points in
+		// the 'ret' array as necessary so that 'point' and 'ret' correspond.
+		float det1 = 1f/(m11*m22 - m12*m21);
+		m11 *= det1;
+		m12 *= det1;
+		m21 *= det1;
+		m22 *= det1;
+		int cnum = 0; // number of penetrating contact points found
+		for (j=0; j<n; j++) {
+			float k1 =  m22*(ret[j*2]-c1) - m12*(ret[j*2+1]-c2);
+			float k2 = -m21*(ret[j*2]-c1) + m11*(ret[j*2+1]-c2);
+			for (i=0; i<3; i++) point[cnum*3+i] = center[i] + k1*Rb[i*4+a1] + k2*Rb[i*4+a2];
+			dep[cnum] = Sa[codeN] - dot(normal2, point, cnum*3);
+			if (dep[cnum] >= 0f) {
+				ret[cnum*2] = ret[j*2];
+				ret[cnum*2+1] = ret[j*2+1];
+				cnum++;
+			}
+		}
+		if (cnum < 1) return 0; // this should never happen
+
+		// we can't generate more contacts than we actually have
+		int maxc = MAX_CONTACTS;
+		if (maxc > cnum) maxc = cnum;
+
+		if (cnum <= maxc) {
+			// we have less contacts than we need, so we use them all
+			for (j=0; j<cnum; j++) {
+				addContact(output, normalOnB, pointInWorld, code, pa, j);
+			}
+		}
+		else {
+			// we have more contacts than are wanted, pick the ones with the deepest
+			// penetration
+			int i1 = 0;
+			float maxdepth = dep[0];
+			for (i=1; i<cnum; i++) {
+				if (dep[i] > maxdepth) {
+					maxdepth = dep[i];
+					i1 = i;
+				}
+			}
+
+			cullPoints2(cnum, ret, maxc, i1, iret);
+
+			for (j=0; j<maxc; j++) {
+				addContact(output, normalOnB, pointInWorld, code, pa, iret[j]);
+			}
+			cnum = maxc;
+		}
+
+		return cnum;
+	}
+
+	/**
+	 * Tests cross product axis (n1,n2,n3) given relative to box 1, returns true when it separates the boxes.
+	 */
+	private boolean testEdgeAxis(float expr1, float expr2, float n1, float n2, float n3, int cc) {
+		float s2 = Math.abs(expr1) - expr2;
+		if (s2 > BulletGlobals.SIMD_EPSILON) {
+			return true;
+		}
+		float l = (float) Math.sqrt(n1*n1 + n2*n2 + n3*n3);
+		if (l > BulletGlobals.SIMD_EPSILON) {
+			s2 /= l;
+			if (s2*FUDGE_FACTOR > s) {
+				s = s2;
+				normalR = null;
+				normalC[0] = n1/l;
+				normalC[1] = n2/l;
+				normalC[2] = n3/l;
+				invertNormal = expr1 < 0f;
+				code = cc;
+			}
+		}
+		return false;
+	}
+
+	private void addContact(Result output, Vector3f normalOnB, Vector3f pointInWorld, int code, float[] pa, int index) {
+		float depth = dep[index];
+		if (code < 4) {
+			// points of the incident face are on box 2
+			pointInWorld.set(point[index*3] + pa[0], point[index*3+1] + pa[1], point[index*3+2] + pa[2]);
+		}
+		else {
+			// points of the incident face are on box 1, move them onto the reference face of box 2
+			pointInWorld.set(
+					point[index*3] + pa[0] - normal[0]*depth,
+					point[index*3+1] + pa[1] - normal[1]*depth,
+					point[index*3+2] + pa[2] - normal[2]*depth);
+		}
+		output.addContactPoint(normalOnB, pointInWorld, -depth);
+	}
+
+	private void lineClosestApproach(float[] pa, float[] ua, float[] pb, float[] ub) {
+		float p0 = pb[0] - pa[0];
+		float p1 = pb[1] - pa[1];
+		float p2 = pb[2] - pa[2];
+		float uaub = ua[0]*ub[0] + ua[1]*ub[1] + ua[2]*ub[2];
+		float q1 = ua[0]*p0 + ua[1]*p1 + ua[2]*p2;
+		float q2 = -(ub[0]*p0 + ub[1]*p1 + ub[2]*p2);
+		float d = 1f - uaub*uaub;
+		if (d <= 0.0001f) {
+			// @@@ this needs to be made more robust
+			alpha = 0f;
+			beta = 0f;
+		}
+		else {
+			d = 1f/d;
+			alpha = (q1 + uaub*q2)*d;
+			beta = (uaub*q1 + q2)*d;
+		}
+	}
+
+	/**
+	 * Finds all the intersection points between the 2D rectangle with vertices
+	 * at (+/-h[0],+/-h[1]) and the 2D quadrilateral with vertices (p[0],p[1]),
+	 * (p[2],p[3]),(p[4],p[5]),(p[6],p[7]).<p>
+	 *
+	 * The intersection points are returned as x,y pairs in the 'ret' array.
+	 * the number of intersection points is returned by the function (this will
+	 * be in the range 0 to 8).
+	 */
+	private int intersectRectQuad2(float[] h, float[] p, float[] ret) {
+		// q (and r) contain nq (and nr) coordinate points for the current (and
+		// chopped) polygons
+		int nq = 4, nr = 0;
+		float[] q = p;
+		float[] r = ret;
+
+		done:
+		for (int dir=0; dir <= 1; dir++) {
+			// direction notation: xy[0] = x axis, xy[1] = y axis
+			for (int sign=-1; sign <= 1; sign += 2) {
+				// chop q along the line xy[dir] = sign*h[dir]
+				int pq = 0;
+				int pr = 0;
+				nr = 0;
+				for (int i=nq; i > 0; i--) {
+					// go through all points in q and all lines between adjacent points
+					if (sign*q[pq+dir] < h[dir]) {
+						// this point is inside the chopping line
+						r[pr] = q[pq];
+						r[pr+1] = q[pq+1];
+						pr += 2;
+						nr++;
+						if ((nr & 8) != 0) {
+							q = r;
+							break done;
+						}
+					}
+					int nextq = (i > 1) ? pq+2 : 0;
+					if ((sign*q[pq+dir] < h[dir]) ^ (sign*q[nextq+dir] < h[dir])) {
+						// this line crosses the chopping line
+						r[pr+1-dir] = q[pq+1-dir] + (q[nextq+1-dir]-q[pq+1-dir]) /
+								(q[nextq+dir]-q[pq+dir]) * (sign*h[dir]-q[pq+dir]);
+						r[pr+dir] = sign*h[dir];
+						pr += 2;
+						nr++;
+						if ((nr & 8) != 0) {
+							q = r;
+							break done;
+						}
+					}
+					pq += 2;
+				}
+				q = r;
+				r = (q == ret) ? buffer : ret;
+				nq = nr;
+			}
+		}
+
+		if (q != ret) {
+			System.arraycopy(q, 0, ret, 0, nr*2);
+		}
+		return nr;
+	}
+
+	/**
+	 * Given n points in the plane (array p, of size 2*n), generate m points that
+	 * best represent the whole set. the definition of 'best' here is not
+	 * predetermined - the idea is to select points that give good box-box
+	 * collision detection behavior. the chosen point indexes are returned in the
+	 * array iret (of size m). 'i0' is always the first entry in the array.
+	 * n must be in the range [1..8]. m must be in the range [1..n]. i0 must be
+	 * in the range [0..n-1].
+	 */
+	private void cullPoints2(int n, float[] p, int m, int i0, int[] iret) {
+		// compute the centroid of the polygon in cx,cy
+		int i, j;
+		float a, cx, cy, q;
+		if (n == 1) {
+			cx = p[0];
+			cy = p[1];
+		}
+		else if (n == 2) {
+			cx = 0.5f*(p[0] + p[2]);
+			cy = 0.5f*(p[1] + p[3]);
+		}
+		else {
+			a = 0f;
+			cx = 0f;
+			cy = 0f;
+			for (i=0; i<(n-1); i++) {
+				q = p[i*2]*p[i*2+3] - p[i*2+2]*p[i*2+1];
+				a += q;
+				cx += q*(p[i*2] + p[i*2+2]);
+				cy += q*(p[i*2+1] + p[i*2+3]);
+			}
+			q = p[n*2-2]*p[1] - p[0]*p[n*2-1];
+			if (Math.abs(a+q) > BulletGlobals.SIMD_EPSILON) {
+				a = 1f/(3f*(a+q));
+			}
+			else {
+				a = 1e30f;
+			}
+			cx = a*(cx + q*(p[n*2-2] + p[0]));
+			cy = a*(cy + q*(p[n*2-1] + p[1]));
+		}
+
+		// compute the angle of each point w.r.t. the centroid
+		for (i=0; i<n; i++) {
+			angles[i] = (float) Math.atan2(p[i*2+1]-cy, p[i*2]-cx);
+		}
+
+		// search for points that have angles closest to A[i0] + i*(2*pi/m).
+		for (i=0; i<n; i++) {
+			avail[i] = true;
+		}
+		avail[i0] = false;
+		iret[0] = i0;
+		for (j=1; j<m; j++) {
+			a = (float) j*(2f*BulletGlobals.SIMD_PI/m) + angles[i0];
+			if (a > BulletGlobals.SIMD_PI) {
+				a -= 2f*BulletGlobals.SIMD_PI;
+			}
+			float maxdiff = 1e9f, diff;
+
+			iret[j] = i0; // iret is not allowed to keep this value, but it sometimes does, when diff=#QNAN0
+
+			for (i=0; i<n; i++) {
+				if (avail[i]) {
+					diff = Math.abs(angles[i]-a);
+					if (diff > BulletGlobals.SIMD_PI) {
+						diff = 2f*BulletGlobals.SIMD_PI - diff;
+					}
+					if (diff < maxdiff) {
+						maxdiff = diff;
+						iret[j] = i;
+					}
+				}
+			}
+			avail[iret[j]] = false;
+		}
+	}
+
+}
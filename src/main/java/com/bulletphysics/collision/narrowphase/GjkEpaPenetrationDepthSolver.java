@@ -37,7 +37,8 @@ import javax.vecmath.Vector3f;
  */
 public class GjkEpaPenetrationDepthSolver extends ConvexPenetrationDepthSolver {
 
-	private final GjkEpaSolver gjkEpaSolver = new GjkEpaSolver();
+	// JAVA NOTE: GjkEpaSolver keeps state during a query, so each thread uses its own
+	private final ThreadLocal<GjkEpaSolver> gjkEpaSolvers = ThreadLocal.withInitial(GjkEpaSolver::new);
 
 	public boolean calcPenDepth(SimplexSolverInterface simplexSolver,
 												  ConvexShape pConvexA, ConvexShape pConvexB,
@@ -50,7 +51,7 @@ public class GjkEpaPenetrationDepthSolver extends ConvexPenetrationDepthSolver {
 		// JAVA NOTE: 2.70b1: update when GjkEpaSolver2 is ported
 		
 		GjkEpaSolver.Results results = new GjkEpaSolver.Results();
-		if (gjkEpaSolver.collide(pConvexA, transformA,
+		if (gjkEpaSolvers.get().collide(pConvexA, transformA,
 				pConvexB, transformB,
 				radialmargin/*,stackAlloc*/, results)) {
 			//debugDraw->drawLine(results.witnesses[1],results.witnesses[1]+results.normal,btVector3(255,0,0));
@@ -26,8 +26,11 @@ package com.bulletphysics.collision.narrowphase;
 import com.bulletphysics.BulletGlobals;
 import com.bulletphysics.BulletStats;
 import com.bulletphysics.collision.shapes.convex.ConvexShape;
+import com.bulletphysics.collision.shapes.convex.OptimizedConvexHullShape;
 import com.bulletphysics.linearmath.IDebugDraw;
 import com.bulletphysics.linearmath.MatrixUtil;
+import com.bulletphysics.linearmath.ProfileCounter;
+import com.bulletphysics.linearmath.Profiler;
 import com.bulletphysics.linearmath.Transform;
 
 import javax.vecmath.Vector3f;
@@ -50,6 +53,14 @@ public class GjkPairDetector extends DiscreteCollisionDetectorInterface {
 	private ConvexShape minkowskiA;
 	private ConvexShape minkowskiB;
 	private boolean ignoreMargin;
+	private boolean warmStart;
+	private float cachedSeparatingDistance;
+
+	// last supporting vertices of optimized hulls, used as starting point of hill-climbing:
+	private ConvexShape supportShapeA;
+	private ConvexShape supportShapeB;
+	private int supportVertexA;
+	private int supportVertexB;
 	
 	// some debugging to fix degeneracy problems
 	private int lastUsedMethod;
@@ -59,7 +70,13 @@ public class GjkPairDetector extends DiscreteCollisionDetectorInterface {
 	
 	public void init(ConvexShape objectA, ConvexShape objectB, SimplexSolverInterface simplexSolver, ConvexPenetrationDepthSolver penetrationDepthSolver) {
 		this.cachedSeparatingAxis.set(0f, 0f, 1f);
+		this.cachedSeparatingDistance = 0f;
 		this.ignoreMargin = false;
+		this.warmStart = false;
+		this.supportShapeA = null;
+		this.supportShapeB = null;
+		this.supportVertexA = -1;
+		this.supportVertexB = -1;
 		this.lastUsedMethod = -1;
 		this.catchDegeneracies = 1;
 		
@@ -88,6 +105,7 @@ public class GjkPairDetector extends DiscreteCollisionDetectorInterface {
 		float marginB = minkowskiB.getMargin();
 
 		BulletStats.gNumGjkChecks++;
+		Profiler.count(ProfileCounter.GJK_CHECKS);
 
 		// for CCD we don't use margins
 		if (ignoreMargin) {
@@ -97,7 +115,13 @@ public class GjkPairDetector extends DiscreteCollisionDetectorInterface {
 
 		curIter = 0;
 		int gGjkMaxIter = 1000; // this is to catch invalid input, perhaps check for #NaN?
-		cachedSeparatingAxis.set(0f, 1f, 0f);
+		// JAVA NOTE: when warm starting the separating axis of the previous query is used as initial direction
+		float axisLenSqr = cachedSeparatingAxis.lengthSquared();
+		if (!warmStart || !(axisLenSqr > REL_ERROR2 && axisLenSqr < BulletGlobals.SIMD_INFINITY)) {
+			cachedSeparatingAxis.set(0f, 1f, 0f);
+		}
+		cachedSeparatingDistance = 0f;
+		int numIterations = 0;
 
 		boolean isValid = false;
 		boolean checkSimplex = false;
@@ -126,6 +150,23 @@ public class GjkPairDetector extends DiscreteCollisionDetectorInterface {
 			
 			Vector3f tmpPointOnA = new Vector3f(), tmpPointOnB = new Vector3f();
 			Vector3f tmpNormalInB = new Vector3f();
+
+			// hill-climbing of optimized hulls starts from supporting vertex of previous query of the same shape:
+			OptimizedConvexHullShape hullA = null, hullB = null;
+			if (minkowskiA instanceof OptimizedConvexHullShape) {
+				hullA = (OptimizedConvexHullShape) minkowskiA;
+				if (supportShapeA != minkowskiA) {
+					supportShapeA = minkowskiA;
+					supportVertexA = -1;
+				}
+			}
+			if (minkowskiB instanceof OptimizedConvexHullShape) {
+				hullB = (OptimizedConvexHullShape) minkowskiB;
+				if (supportShapeB != minkowskiB) {
+					supportShapeB = minkowskiB;
+					supportVertexB = -1;
+				}
+			}
 			
 			for (;;) //while (true)
 			{
@@ -135,8 +176,20 @@ public class GjkPairDetector extends DiscreteCollisionDetectorInterface {
 				seperatingAxisInB.set(cachedSeparatingAxis);
 				MatrixUtil.transposeTransform(seperatingAxisInB, seperatingAxisInB, input.transformB.basis);
 
-				minkowskiA.localGetSupportingVertexWithoutMargin(seperatingAxisInA, pInA);
-				minkowskiB.localGetSupportingVertexWithoutMargin(seperatingAxisInB, qInB);
+				if (hullA != null) {
+					supportVertexA = hullA.getSupportingVertexIndex(seperatingAxisInA, supportVertexA);
+					hullA.getVertex(supportVertexA, pInA);
+				}
+				else {
+					minkowskiA.localGetSupportingVertexWithoutMargin(seperatingAxisInA, pInA);
+				}
+				if (hullB != null) {
+					supportVertexB = hullB.getSupportingVertexIndex(seperatingAxisInB, supportVertexB);
+					hullB.getVertex(supportVertexB, qInB);
+				}
+				else {
+					minkowskiB.localGetSupportingVertexWithoutMargin(seperatingAxisInB, qInB);
+				}
 
 				pWorld.set(pInA);
 				localTransA.transform(pWorld);
@@ -145,11 +198,14 @@ public class GjkPairDetector extends DiscreteCollisionDetectorInterface {
 				localTransB.transform(qWorld);
 
 				w.sub(pWorld, qWorld);
+				numIterations++;
 
 				delta = cachedSeparatingAxis.dot(w);
 
 				// potential exit, they don't overlap
 				if ((delta > 0f) && (delta * delta > squaredDistance * input.maximumDistanceSquared)) {
+					// the support points give lower bound of the distance along the axis:
+					cachedSeparatingDistance = delta / (float) Math.sqrt(squaredDistance) - margin;
 					checkPenetration = false;
 					break;
 				}
@@ -250,6 +306,7 @@ public class GjkPairDetector extends DiscreteCollisionDetectorInterface {
 
 					distance = ((1f / rlen) - margin);
 					isValid = true;
+					cachedSeparatingDistance = distance;
 
 					lastUsedMethod = 1;
 				}
@@ -269,6 +326,7 @@ public class GjkPairDetector extends DiscreteCollisionDetectorInterface {
 				if (penetrationDepthSolver != null) {
 					// Penetration depth case.
 					BulletStats.gNumDeepPenetrationChecks++;
+					Profiler.count(ProfileCounter.DEEP_PENETRATION_CHECKS);
 
 					boolean isValid2 = penetrationDepthSolver.calcPenDepth(
 							simplexSolver,
@@ -288,11 +346,16 @@ public class GjkPairDetector extends DiscreteCollisionDetectorInterface {
 							// only replace valid penetrations when the result is deeper (check)
 							if (!isValid || (distance2 < distance)) {
 								distance = distance2;
+								cachedSeparatingDistance = 0f;
 								pointOnA.set(tmpPointOnA);
 								pointOnB.set(tmpPointOnB);
 								normalInB.set(tmpNormalInB);
 								isValid = true;
 								lastUsedMethod = 3;
+								if (warmStart) {
+									// simplex axis is degenerate when penetrating, start next query from the contact normal
+									cachedSeparatingAxis.set(tmpNormalInB);
+								}
 							}
 							else {
 
@@ -311,6 +374,8 @@ public class GjkPairDetector extends DiscreteCollisionDetectorInterface {
 			}
 		}
 
+		Profiler.count(ProfileCounter.GJK_ITERATIONS, numIterations);
+
 		if (isValid) {
 			//#ifdef __SPU__
 			//		//spu_printf("distance\n");
@@ -337,6 +402,38 @@ public class GjkPairDetector extends DiscreteCollisionDetectorInterface {
 		cachedSeparatingAxis.set(seperatingAxis);
 	}
 
+	/**
+	 * Returns separating axis (pointing from B towards A, not normalized) of the last query.
+	 */
+	public Vector3f getCachedSeparatingAxis(Vector3f out) {
+		out.set(cachedSeparatingAxis);
+		return out;
+	}
+
+	/**
+	 * Returns distance between the shapes found by the last query (or its lower bound when
+	 * the query exited early), it's not positive when the shapes were touching or penetrating.
+	 */
+	public float getCachedSeparatingDistance() {
+		return cachedSeparatingDistance;
+	}
+
+	/**
+	 * Sets whether the separating axis of the previous query is used as the initial
+	 * search direction, for queries of the same pair of shapes in consecutive steps.
+	 */
+	public void setWarmStart(boolean warmStart) {
+		this.warmStart = warmStart;
+	}
+
+	public boolean isWarmStart() {
+		return warmStart;
+	}
+
+	public void setSimplexSolver(SimplexSolverInterface simplexSolver) {
+		this.simplexSolver = simplexSolver;
+	}
+
 	public void setPenetrationDepthSolver(ConvexPenetrationDepthSolver penetrationDepthSolver) {
 		this.penetrationDepthSolver = penetrationDepthSolver;
 	}
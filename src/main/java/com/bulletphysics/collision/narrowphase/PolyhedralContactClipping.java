@@ -0,0 +1,262 @@
+/*
+ * Bullet Continuous Collision Detection and Physics Library
+ * Copyright (c) 2003-2008 Erwin Coumans  http://www.bulletphysics.com/
+ *
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from
+ * the use of this software.
+ * 
+ * Permission is granted to anyone to use this software for any purpose, 
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ * 
+ * 1. The origin of this software must not be misrepresented; you must not
+ *    claim that you wrote the original software. If you use this software
+ *    in a product, an acknowledgment in the product documentation would be
+ *    appreciated but is not required.
+ * 2. Altered source versions must be plainly marked as such, and must not be
+ *    misrepresented as being the original software.
+ * 3. This notice may not be removed or altered from any source distribution.
+ */
+
+package com.bulletphysics.collision.narrowphase;
+
+import com.bulletphysics.collision.narrowphase.DiscreteCollisionDetectorInterface.Result;
+import com.bulletphysics.collision.shapes.convex.ConvexPolyhedron;
+import com.bulletphysics.linearmath.Transform;
+
+import javax.vecmath.Vector3f;
+import javax.vecmath.Vector4f;
+
+/**
+ * PolyhedralContactClipping generates full contact manifold of two convex polyhedra
+ * in a single step. The incident face of hull B is clipped against side planes of
+ * the reference face of hull A (Sutherland-Hodgman) and the remaining points below
+ * the reference face are reported as contacts.<p>
+ * 
+ * Separating axis can be either given (eg. normal computed by GJK) or found using
+ * separating axis test over face normals and edge pairs of both hulls.
+ */
+public class PolyhedralContactClipping {
+
+	// clipped polygons, stored as x, y, z triples:
+	private float[] polygon1 = new float[3*16];
+	private float[] polygon2 = new float[3*16];
+
+	/**
+	 * Finds axis of minimum penetration (or maximum separation) using separating axis test.
+	 * 
+	 * @param sep     output separating axis, pointing from B towards A
+	 * @param minDist output signed distance along the axis, negative when penetrating
+	 */
+	public static void findSeparatingAxis(ConvexPolyhedron hullA, ConvexPolyhedron hullB, Transform transA, Transform transB, Vector3f sep, float[] minDist) {
+		float[] best = new float[] { -Float.MAX_VALUE };
+		float[] minMaxA = new float[2], minMaxB = new float[2];
+		Vector3f axis = new Vector3f();
+
+		for (int i=0; i<hullA.faces.size(); i++) {
+			Vector4f plane = hullA.faces.get(i).plane;
+			axis.set(plane.x, plane.y, plane.z);
+			transA.basis.transform(axis);
+			testAxis(hullA, hullB, transA, transB, axis, minMaxA, minMaxB, sep, best);
+		}
+
+		for (int i=0; i<hullB.faces.size(); i++) {
+			Vector4f plane = hullB.faces.get(i).plane;
+			axis.set(plane.x, plane.y, plane.z);
+			transB.basis.transform(axis);
+			testAxis(hullA, hullB, transA, transB, axis, minMaxA, minMaxB, sep, best);
+		}
+
+		Vector3f edgeA = new Vector3f(), edgeB = new Vector3f();
+		for (int i=0; i<hullA.uniqueEdges.size(); i++) {
+			edgeA.set(hullA.uniqueEdges.get(i));
+			transA.basis.transform(edgeA);
+
+			for (int j=0; j<hullB.uniqueEdges.size(); j++) {
+				edgeB.set(hullB.uniqueEdges.get(j));
+				transB.basis.transform(edgeB);
+
+				axis.cross(edgeA, edgeB);
+				float lenSqr = axis.lengthSquared();
+				// parallel edges are covered by face normals:
+				if (lenSqr < 1e-6f) continue;
+				axis.scale(1f / (float) Math.sqrt(lenSqr));
+				testAxis(hullA, hullB, transA, transB, axis, minMaxA, minMaxB, sep, best);
+			}
+		}
+
+		minDist[0] = best[0];
+	}
+
+	private static void testAxis(ConvexPolyhedron hullA, ConvexPolyhedron hullB, Transform transA, Transform transB, Vector3f axis, float[] minMaxA, float[] minMaxB, Vector3f sep, float[] best) {
+		hullA.project(transA, axis, minMaxA);
+		hullB.project(transB, axis, minMaxB);
+
+		// signed distance when A is on positive and negative side of B along the axis:
+		float distPositive = minMaxA[0] - minMaxB[1];
+		float distNegative = minMaxB[0] - minMaxA[1];
+		if (distPositive >= distNegative) {
+			if (distPositive > best[0]) {
+				best[0] = distPositive;
+				sep.set(axis);
+			}
+		}
+		else {
+			if (distNegative > best[0]) {
+				best[0] = distNegative;
+				sep.negate(axis);
+			}
+		}
+	}
+
+	/**
+	 * Generates contacts by clipping hulls (without margin) against each other.
+	 * 
+	 * @param separatingNormal normalized separating axis, pointing from B towards A
+	 * @param minDist          signed distance of the hulls along the axis, deeper points are clamped to it
+	 * @param maxDist          maximum distance (including margins) of reported contact points
+	 * @param marginA          margin of shape A, the contacts are reported on the rounded surface
+	 * @param marginB          margin of shape B
+	 */
+	public void clipHullAgainstHull(Vector3f separatingNormal, ConvexPolyhedron hullA, ConvexPolyhedron hullB, Transform transA, Transform transB, float minDist, float maxDist, float marginA, float marginB, Result resultOut) {
+		Vector3f worldNormal = new Vector3f();
+
+		// reference face of A is facing B, incident face of B is facing A:
+		int referenceFace = -1;
+		float dmin = Float.MAX_VALUE;
+		for (int i=0; i<hullA.faces.size(); i++) {
+			Vector4f plane = hullA.faces.get(i).plane;
+			worldNormal.set(plane.x, plane.y, plane.z);
+			transA.basis.transform(worldNormal);
+			float d = worldNormal.dot(separatingNormal);
+			if (d < dmin) {
+				dmin = d;
+				referenceFace = i;
+			}
+		}
+
+		int incidentFace = -1;
+		float dmax = -Float.MAX_VALUE;
+		for (int i=0; i<hullB.faces.size(); i++) {
+			Vector4f plane = hullB.faces.get(i).plane;
+			worldNormal.set(plane.x, plane.y, plane.z);
+			transB.basis.transform(worldNormal);
+			float d = worldNormal.dot(separatingNormal);
+			if (d > dmax) {
+				dmax = d;
+				incidentFace = i;
+			}
+		}
+
+		if (referenceFace < 0 || incidentFace < 0) {
+			return;
+		}
+
+		// incident polygon in world space:
+		int[] indices = hullB.faces.get(incidentFace).indices;
+		int count = indices.length;
+		ensureCapacity(count * 2);
+		Vector3f v = new Vector3f();
+		for (int i=0; i<count; i++) {
+			v.set(hullB.vertices.get(indices[i]));
+			transB.transform(v);
+			polygon1[i*3+0] = v.x;
+			polygon1[i*3+1] = v.y;
+			polygon1[i*3+2] = v.z;
+		}
+
+		// clip against side planes of the reference face:
+		ConvexPolyhedron.Face face = hullA.faces.get(referenceFace);
+		Vector4f plane = face.plane;
+		Vector3f faceNormal = new Vector3f(plane.x, plane.y, plane.z);
+		transA.basis.transform(faceNormal);
+
+		Vector3f a = new Vector3f(), b = new Vector3f(), edge = new Vector3f(), sideNormal = new Vector3f();
+		int numVerts = face.indices.length;
+		for (int i=0; i<numVerts && count > 0; i++) {
+			a.set(hullA.vertices.get(face.indices[i]));
+			b.set(hullA.vertices.get(face.indices[(i + 1) % numVerts]));
+			transA.transform(a);
+			transA.transform(b);
+			edge.sub(b, a);
+			sideNormal.cross(edge, faceNormal);
+
+			ensureCapacity(count + 1);
+			count = clipFace(polygon1, count, polygon2, sideNormal, sideNormal.dot(a));
+
+			float[] tmp = polygon1;
+			polygon1 = polygon2;
+			polygon2 = tmp;
+		}
+
+		// keep points below the reference face:
+		Vector3f point = new Vector3f();
+		a.set(hullA.vertices.get(face.indices[0]));
+		transA.transform(a);
+		float planeDist = faceNormal.dot(a);
+		float margin = marginA + marginB;
+		for (int i=0; i<count; i++) {
+			point.set(polygon1[i*3+0], polygon1[i*3+1], polygon1[i*3+2]);
+			float depth = faceNormal.dot(point) - planeDist;
+			if (depth < minDist) {
+				depth = minDist;
+			}
+			depth -= margin;
+			if (depth <= maxDist) {
+				// move the point to the surface of B including margin:
+				point.scaleAdd(marginB, separatingNormal, point);
+				resultOut.addContactPoint(separatingNormal, point, depth);
+			}
+		}
+	}
+
+	/**
+	 * Clips polygon by plane, keeping the part behind it (including points on the plane).
+	 * 
+	 * @return number of output vertices
+	 */
+	private static int clipFace(float[] in, int numIn, float[] out, Vector3f planeNormal, float planeDist) {
+		if (numIn < 2) {
+			return 0;
+		}
+
+		int numOut = 0;
+		float nx = planeNormal.x, ny = planeNormal.y, nz = planeNormal.z;
+
+		int prev = numIn - 1;
+		float prevDist = nx * in[prev*3] + ny * in[prev*3+1] + nz * in[prev*3+2] - planeDist;
+		for (int i=0; i<numIn; i++) {
+			float dist = nx * in[i*3] + ny * in[i*3+1] + nz * in[i*3+2] - planeDist;
+
+			if ((prevDist < 0f && dist > 0f) || (prevDist > 0f && dist < 0f)) {
+				// edge crosses the plane, add intersection:
+				float t = prevDist / (prevDist - dist);
+				out[numOut*3+0] = in[prev*3+0] + (in[i*3+0] - in[prev*3+0]) * t;
+				out[numOut*3+1] = in[prev*3+1] + (in[i*3+1] - in[prev*3+1]) * t;
+				out[numOut*3+2] = in[prev*3+2] + (in[i*3+2] - in[prev*3+2]) * t;
+				numOut++;
+			}
+			if (dist <= 0f) {
+				out[numOut*3+0] = in[i*3+0];
+				out[numOut*3+1] = in[i*3+1];
+				out[numOut*3+2] = in[i*3+2];
+				numOut++;
+			}
+
+			prev = i;
+			prevDist = dist;
+		}
+		return numOut;
+	}
+
+	private void ensureCapacity(int count) {
+		if (polygon1.length < count * 3) {
+			float[] tmp = new float[count * 6];
+			System.arraycopy(polygon1, 0, tmp, 0, polygon1.length);
+			polygon1 = tmp;
+			polygon2 = new float[count * 6];
+		}
+	}
+
+}
@@ -54,55 +54,66 @@ public class SubsimplexConvexCast extends ConvexCast {
 	private static final int MAX_ITERATIONS = 32;
 	
 	private final SimplexSolverInterface simplexSolver;
-	private final ConvexShape convexA;
-	private final ConvexShape convexB;
+	private ConvexShape convexA;
+	private ConvexShape convexB;
+
+	// timeOfImpact temporaries, a caster can be reused by one thread at a time:
+	private final Vector3f tmp = new Vector3f();
+	private final Vector3f linVelA = new Vector3f();
+	private final Vector3f linVelB = new Vector3f();
+	private final Transform interpolatedTransA = new Transform();
+	private final Transform interpolatedTransB = new Transform();
+	private final Vector3f r = new Vector3f();
+	private final Vector3f v = new Vector3f();
+	private final Vector3f supVertexA = new Vector3f();
+	private final Vector3f supVertexB = new Vector3f();
+	private final Vector3f n = new Vector3f();
+	private final Vector3f w = new Vector3f();
+	private final Vector3f hitA = new Vector3f();
+	private final Vector3f hitB = new Vector3f();
 
 	public SubsimplexConvexCast(ConvexShape shapeA, ConvexShape shapeB, SimplexSolverInterface simplexSolver) {
 		this.convexA = shapeA;
 		this.convexB = shapeB;
 		this.simplexSolver = simplexSolver;
 	}
+
+	/**
+	 * Replaces the cast shapes, so that the caster can be reused for another query.
+	 */
+	public void init(ConvexShape shapeA, ConvexShape shapeB) {
+		this.convexA = shapeA;
+		this.convexB = shapeB;
+	}
 	
 	public boolean timeOfImpact(Transform fromA, Transform toA, Transform fromB, Transform toB, CastResult result) {
-		Vector3f tmp = new Vector3f();
-		
 		simplexSolver.reset();
 
-		Vector3f linVelA = new Vector3f();
-		Vector3f linVelB = new Vector3f();
 		linVelA.sub(toA.origin, fromA.origin);
 		linVelB.sub(toB.origin, fromB.origin);
 		
 		float lambda = 0f;
 		
-		Transform interpolatedTransA = new Transform(fromA);
-		Transform interpolatedTransB = new Transform(fromB);
+		interpolatedTransA.set(fromA);
+		interpolatedTransB.set(fromB);
 
 		// take relative motion
-		Vector3f r = new Vector3f();
 		r.sub(linVelA, linVelB);
 		
-		Vector3f v = new Vector3f();
-
 		tmp.negate(r);
 		MatrixUtil.transposeTransform(tmp, tmp, fromA.basis);
-		Vector3f supVertexA = convexA.localGetSupportingVertex(tmp, new Vector3f());
+		convexA.localGetSupportingVertex(tmp, supVertexA);
 		fromA.transform(supVertexA);
 		
 		MatrixUtil.transposeTransform(tmp, r, fromB.basis);
-		Vector3f supVertexB = convexB.localGetSupportingVertex(tmp, new Vector3f());
+		convexB.localGetSupportingVertex(tmp, supVertexB);
 		fromB.transform(supVertexB);
 		
 		v.sub(supVertexA, supVertexB);
 		
 		int maxIter = MAX_ITERATIONS;
 
-		Vector3f n = new Vector3f();
 		n.set(0f, 0f, 0f);
-		boolean hasResult = false;
-		Vector3f c = new Vector3f();
-
-		float lastLambda = lambda;
 
 		float dist2 = v.lengthSquared();
 		//#ifdef BT_USE_DOUBLE_PRECISION
@@ -110,7 +121,6 @@ public class SubsimplexConvexCast extends ConvexCast {
 		//#else
 		float epsilon = 0.0001f;
 		//#endif
-		Vector3f w = new Vector3f(), p = new Vector3f();
 		float VdotR;
 
 		while ((dist2 > epsilon) && (maxIter--) != 0) {
@@ -181,8 +191,6 @@ public class SubsimplexConvexCast extends ConvexCast {
 		if (result.normal.dot(r) >= -result.allowedPenetration)
 			return false;
 
-		Vector3f hitA = new Vector3f();
-		Vector3f hitB = new Vector3f();
 		simplexSolver.compute_points(hitA,hitB);
 		result.hitPoint.set(hitB);
 		return true;
@@ -41,7 +41,27 @@ public abstract class TriangleRaycastCallback extends TriangleCallback {
 
 	public float hitFraction;
 
+	// processTriangle temporaries:
+	private final Vector3f v10 = new Vector3f();
+	private final Vector3f v20 = new Vector3f();
+	private final Vector3f triangleNormal = new Vector3f();
+	private final Vector3f point = new Vector3f();
+	private final Vector3f v0p = new Vector3f();
+	private final Vector3f v1p = new Vector3f();
+	private final Vector3f v2p = new Vector3f();
+	private final Vector3f cp0 = new Vector3f();
+	private final Vector3f cp1 = new Vector3f();
+	private final Vector3f cp2 = new Vector3f();
+	private final Vector3f tmp = new Vector3f();
+
 	public TriangleRaycastCallback(Vector3f from, Vector3f to) {
+		init(from, to);
+	}
+
+	/**
+	 * Sets the ray and resets the hit fraction, so that the callback can be reused for another query.
+	 */
+	public void init(Vector3f from, Vector3f to) {
 		this.from.set(from);
 		this.to.set(to);
 		this.hitFraction = 1f;
@@ -52,13 +72,10 @@ public abstract class TriangleRaycastCallback extends TriangleCallback {
 		Vector3f vert1 = triangle[1];
 		Vector3f vert2 = triangle[2];
 
-		Vector3f v10 = new Vector3f();
 		v10.sub(vert1, vert0);
 
-		Vector3f v20 = new Vector3f();
 		v20.sub(vert2, vert0);
 
-		Vector3f triangleNormal = new Vector3f();
 		triangleNormal.cross(v10, v20);
 
 		float dist = vert0.dot(triangleNormal);
@@ -81,23 +98,16 @@ public abstract class TriangleRaycastCallback extends TriangleCallback {
 		if (distance < hitFraction) {
 			float edge_tolerance = triangleNormal.lengthSquared();
 			edge_tolerance *= -0.0001f;
-			Vector3f point = new Vector3f();
 			VectorUtil.setInterpolate3(point, from, to, distance);
 			{
-				Vector3f v0p = new Vector3f();
 				v0p.sub(vert0, point);
-				Vector3f v1p = new Vector3f();
 				v1p.sub(vert1, point);
-				Vector3f cp0 = new Vector3f();
 				cp0.cross(v0p, v1p);
 
 				if (cp0.dot(triangleNormal) >= edge_tolerance) {
-					Vector3f v2p = new Vector3f();
 					v2p.sub(vert2, point);
-					Vector3f cp1 = new Vector3f();
 					cp1.cross(v1p, v2p);
 					if (cp1.dot(triangleNormal) >= edge_tolerance) {
-						Vector3f cp2 = new Vector3f();
 						cp2.cross(v2p, v0p);
 
 						if (cp2.dot(triangleNormal) >= edge_tolerance) {
@@ -106,7 +116,6 @@ public abstract class TriangleRaycastCallback extends TriangleCallback {
 								hitFraction = reportHit(triangleNormal, distance, partId, triangleIndex);
 							}
 							else {
-								Vector3f tmp = new Vector3f();
 								tmp.negate(triangleNormal);
 								hitFraction = reportHit(tmp, distance, partId, triangleIndex);
 							}
@@ -61,6 +61,29 @@ public class VoronoiSimplexSolver extends SimplexSolverInterface {
 
 	private final SubSimplexClosestResult cachedBC = new SubSimplexClosestResult();
 
+	// temporaries of the closest point computations, a solver is used by one thread at a time:
+	private final Vector3f origin = new Vector3f();
+	private final Vector3f tmpVec = new Vector3f();
+	private final Vector3f nearest = new Vector3f();
+	private final Vector3f diff = new Vector3f();
+	private final Vector3f segment = new Vector3f();
+	private final Vector3f tmp1 = new Vector3f();
+	private final Vector3f tmp2 = new Vector3f();
+	private final Vector3f tmp3 = new Vector3f();
+	private final Vector3f tmp4 = new Vector3f();
+	private final Vector3f ab = new Vector3f();
+	private final Vector3f ac = new Vector3f();
+	private final Vector3f ap = new Vector3f();
+	private final Vector3f bp = new Vector3f();
+	private final Vector3f cp = new Vector3f();
+	private final Vector3f bc = new Vector3f();
+	private final Vector3f abScaled = new Vector3f();
+	private final Vector3f acScaled = new Vector3f();
+	private final Vector3f planeTmp = new Vector3f();
+	private final Vector3f planeNormal = new Vector3f();
+	private final Vector3f tetraTmp = new Vector3f();
+	private final Vector3f q = new Vector3f();
+
 	private boolean needsUpdate;
 	
 	{
@@ -110,19 +133,17 @@ public class VoronoiSimplexSolver extends SimplexSolverInterface {
 					cachedValidClosest = cachedBC.isValid();
 				}
 				case 2 -> {
-					Vector3f tmp = new Vector3f();
+					Vector3f tmp = tmpVec;
 
 					//closest point origin from line segment
 					Vector3f from = simplexVectorW[0];
 					Vector3f to = simplexVectorW[1];
-					Vector3f nearest = new Vector3f();
 
-					Vector3f p = new Vector3f();
+					Vector3f p = origin;
 					p.set(0f, 0f, 0f);
-					Vector3f diff = new Vector3f();
 					diff.sub(p, from);
 
-					Vector3f v = new Vector3f();
+					Vector3f v = segment;
 					v.sub(to, from);
 
 					float t = v.dot(diff);
@@ -167,7 +188,7 @@ public class VoronoiSimplexSolver extends SimplexSolverInterface {
 				case 3 -> {
 
 					// closest point origin from triangle
-					Vector3f p = new Vector3f();
+					Vector3f p = origin;
 					p.set(0f, 0f, 0f);
 
 					Vector3f a = simplexVectorW[0];
@@ -176,10 +197,6 @@ public class VoronoiSimplexSolver extends SimplexSolverInterface {
 
 					closestPtPointTriangle(p, a, b, c, cachedBC);
 
-					Vector3f tmp1 = new Vector3f();
-					Vector3f tmp2 = new Vector3f();
-					Vector3f tmp3 = new Vector3f();
-
 					tmp1.scale(cachedBC.barycentricCoords[0], simplexPointsP[0]);
 					tmp2.scale(cachedBC.barycentricCoords[1], simplexPointsP[1]);
 					tmp3.scale(cachedBC.barycentricCoords[2], simplexPointsP[2]);
@@ -198,7 +215,7 @@ public class VoronoiSimplexSolver extends SimplexSolverInterface {
 				}
 				case 4 -> {
 
-					Vector3f p = new Vector3f();
+					Vector3f p = origin;
 					p.set(0f, 0f, 0f);
 
 					Vector3f a = simplexVectorW[0];
@@ -209,10 +226,6 @@ public class VoronoiSimplexSolver extends SimplexSolverInterface {
 					boolean hasSeperation = closestPtPointTetrahedron(p, a, b, c, d, cachedBC);
 
 					if (hasSeperation) {
-						Vector3f tmp1 = new Vector3f();
-						Vector3f tmp2 = new Vector3f();
-						Vector3f tmp3 = new Vector3f();
-						Vector3f tmp4 = new Vector3f();
 						tmp1.scale(cachedBC.barycentricCoords[0], simplexPointsP[0]);
 						tmp2.scale(cachedBC.barycentricCoords[1], simplexPointsP[1]);
 						tmp3.scale(cachedBC.barycentricCoords[2], simplexPointsP[2]);
@@ -251,17 +264,12 @@ public class VoronoiSimplexSolver extends SimplexSolverInterface {
 		return cachedValidClosest;
 	}
 
-	private static boolean closestPtPointTriangle(Vector3f p, Vector3f a, Vector3f b, Vector3f c, SubSimplexClosestResult result) {
+	private boolean closestPtPointTriangle(Vector3f p, Vector3f a, Vector3f b, Vector3f c, SubSimplexClosestResult result) {
 		result.usedVertices.reset();
 
 		// Check if P in vertex region outside A
-		Vector3f ab = new Vector3f();
 		ab.sub(b, a);
-
-		Vector3f ac = new Vector3f();
 		ac.sub(c, a);
-
-		Vector3f ap = new Vector3f();
 		ap.sub(p, a);
 
 		float d1 = ab.dot(ap);
@@ -276,7 +284,6 @@ public class VoronoiSimplexSolver extends SimplexSolverInterface {
 		}
 
 		// Check if P in vertex region outside B
-		Vector3f bp = new Vector3f();
 		bp.sub(p, b);
 
 		float d3 = ab.dot(bp);
@@ -304,7 +311,6 @@ public class VoronoiSimplexSolver extends SimplexSolverInterface {
 		}
 
 		// Check if P in vertex region outside C
-		Vector3f cp = new Vector3f();
 		cp.sub(p, c);
 
 		float d5 = ab.dot(cp);
@@ -335,7 +341,7 @@ public class VoronoiSimplexSolver extends SimplexSolverInterface {
 		if (va <= 0f && (d4 - d3) >= 0f && (d5 - d6) >= 0f) {
 			float w = (d4 - d3) / ((d4 - d3) + (d5 - d6));
 
-			Vector3f tmp = new Vector3f();
+			Vector3f tmp = bc;
 			tmp.sub(c, b);
 			result.closestPointOnSimplex.scaleAdd(w, tmp, b);
 
@@ -351,8 +357,8 @@ public class VoronoiSimplexSolver extends SimplexSolverInterface {
 		float v = vb * denom;
 		float w = vc * denom;
 
-		Vector3f tmp1 = new Vector3f();
-		Vector3f tmp2 = new Vector3f();
+		Vector3f tmp1 = abScaled;
+		Vector3f tmp2 = acScaled;
 
 		tmp1.scale(v, ab);
 		tmp2.scale(w, ac);
@@ -367,11 +373,11 @@ public class VoronoiSimplexSolver extends SimplexSolverInterface {
 	}
 	
 	/// Test if point p and d lie on opposite sides of plane through abc
-	private static int pointOutsideOfPlane(Vector3f p, Vector3f a, Vector3f b, Vector3f c, Vector3f d)
+	private int pointOutsideOfPlane(Vector3f p, Vector3f a, Vector3f b, Vector3f c, Vector3f d)
 	{
-		Vector3f tmp = new Vector3f();
+		Vector3f tmp = planeTmp;
 
-		Vector3f normal = new Vector3f();
+		Vector3f normal = planeNormal;
 		normal.sub(b, a);
 		tmp.sub(c, a);
 		normal.cross(normal, tmp);
@@ -405,8 +411,7 @@ public class VoronoiSimplexSolver extends SimplexSolverInterface {
 		SubSimplexClosestResult tempResult = subsimplexResultsPool.get();
 		tempResult.reset();
 		try {
-			Vector3f tmp = new Vector3f();
-			Vector3f q = new Vector3f();
+			Vector3f tmp = tetraTmp;
 
 			// Start out assuming point inside all halfspaces, so closest to itself
 			finalResult.closestPointOnSimplex.set(p);
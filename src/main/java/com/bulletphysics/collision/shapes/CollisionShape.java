@@ -61,7 +61,7 @@ public abstract class CollisionShape {
     }
 
     ///getAngularMotionDisc returns the maximus radius needed for Conservative Advancement to handle time-of-impact with rotations.
-    private float getAngularMotionDisc() {
+    public float getAngularMotionDisc() {
         Vector3f center = new Vector3f();
         float[] disc = new float[1]; // TODO: stack
         getBoundingSphere(center, disc);
@@ -0,0 +1,139 @@
+/*
+ * Bullet Continuous Collision Detection and Physics Library
+ * Copyright (c) 2003-2008 Erwin Coumans  http://www.bulletphysics.com/
+ *
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from
+ * the use of this software.
+ * 
+ * Permission is granted to anyone to use this software for any purpose, 
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ * 
+ * 1. The origin of this software must not be misrepresented; you must not
+ *    claim that you wrote the original software. If you use this software
+ *    in a product, an acknowledgment in the product documentation would be
+ *    appreciated but is not required.
+ * 2. Altered source versions must be plainly marked as such, and must not be
+ *    misrepresented as being the original software.
+ * 3. This notice may not be removed or altered from any source distribution.
+ */
+
+package com.bulletphysics.collision.shapes.convex;
+
+import com.bulletphysics.linearmath.MatrixUtil;
+import com.bulletphysics.linearmath.Transform;
+import com.bulletphysics.util.ObjectArrayList;
+
+import javax.vecmath.Vector3f;
+import javax.vecmath.Vector4f;
+
+/**
+ * ConvexPolyhedron is a boundary representation of a convex polyhedral shape: vertices,
+ * polygonal faces with their planes and edge directions without duplicates. It is used
+ * for separating axis test and contact clipping, see {@link PolyhedralConvexShape#initializePolyhedralFeatures}.
+ */
+public class ConvexPolyhedron {
+
+	public final ObjectArrayList<Vector3f> vertices = new ObjectArrayList<>();
+	public final ObjectArrayList<Face> faces = new ObjectArrayList<>();
+	public final ObjectArrayList<Vector3f> uniqueEdges = new ObjectArrayList<>();
+
+	public final Vector3f localCenter = new Vector3f();
+	public float radius;
+
+	/**
+	 * Computes unique edges, center and radius from vertices and faces.
+	 */
+	public void initialize() {
+		uniqueEdges.clear();
+
+		Vector3f edge = new Vector3f();
+		for (int i=0; i<faces.size(); i++) {
+			int[] indices = faces.get(i).indices;
+			for (int j=0; j<indices.length; j++) {
+				edge.sub(vertices.get(indices[(j + 1) % indices.length]), vertices.get(indices[j]));
+				edge.normalize();
+
+				boolean found = false;
+				for (int k=0; k<uniqueEdges.size(); k++) {
+					Vector3f e = uniqueEdges.get(k);
+					// opposite edge directions are the same axis:
+					if (Math.abs(e.dot(edge)) > 1f - 1e-5f) {
+						found = true;
+						break;
+					}
+				}
+
+				if (!found) {
+					uniqueEdges.add(new Vector3f(edge));
+				}
+			}
+		}
+
+		// area weighted center of the faces:
+		localCenter.set(0f, 0f, 0f);
+		float totalArea = 0f;
+		Vector3f e0 = new Vector3f(), e1 = new Vector3f(), tmp = new Vector3f();
+		for (int i=0; i<faces.size(); i++) {
+			int[] indices = faces.get(i).indices;
+			Vector3f v0 = vertices.get(indices[0]);
+			for (int j=2; j<indices.length; j++) {
+				Vector3f v1 = vertices.get(indices[j - 1]);
+				Vector3f v2 = vertices.get(indices[j]);
+				e0.sub(v1, v0);
+				e1.sub(v2, v0);
+				tmp.cross(e0, e1);
+				float area = tmp.length() * 0.5f;
+
+				tmp.add(v0, v1);
+				tmp.add(v2);
+				localCenter.scaleAdd(area / 3f, tmp, localCenter);
+				totalArea += area;
+			}
+		}
+		if (totalArea > 0f) {
+			localCenter.scale(1f / totalArea);
+		}
+
+		radius = Float.MAX_VALUE;
+		for (int i=0; i<faces.size(); i++) {
+			Vector4f plane = faces.get(i).plane;
+			float dist = Math.abs(plane.x * localCenter.x + plane.y * localCenter.y + plane.z * localCenter.z + plane.w);
+			if (dist < radius) {
+				radius = dist;
+			}
+		}
+	}
+
+	/**
+	 * Projects the vertices transformed by given transform to the direction.
+	 * 
+	 * @param minMax output minimum (index 0) and maximum (index 1) of the projection
+	 */
+	public void project(Transform trans, Vector3f dir, float[] minMax) {
+		Vector3f localDir = new Vector3f();
+		MatrixUtil.transposeTransform(localDir, dir, trans.basis);
+		float offset = trans.origin.dot(dir);
+
+		float min = Float.MAX_VALUE;
+		float max = -Float.MAX_VALUE;
+		for (int i=0; i<vertices.size(); i++) {
+			float dp = vertices.get(i).dot(localDir);
+			if (dp < min) min = dp;
+			if (dp > max) max = dp;
+		}
+		minMax[0] = min + offset;
+		minMax[1] = max + offset;
+	}
+
+	////////////////////////////////////////////////////////////////////////////
+
+	public static class Face {
+		/** Vertex indices in counter-clockwise order when viewed from outside. */
+		public int[] indices;
+		/** Outward normal and distance, points on the face satisfy <code>normal.dot(point) + w = 0</code>. */
+		public final Vector4f plane = new Vector4f();
+	}
+
+}
@@ -0,0 +1,353 @@
+package com.bulletphysics.collision.shapes.convex;
+
+import com.bulletphysics.BulletGlobals;
+import com.bulletphysics.collision.broadphase.BroadphaseNativeType;
+import com.bulletphysics.linearmath.convexhull.HullDesc;
+import com.bulletphysics.linearmath.convexhull.HullFlags;
+import com.bulletphysics.linearmath.convexhull.HullLibrary;
+import com.bulletphysics.linearmath.convexhull.HullResult;
+import com.bulletphysics.util.ObjectArrayList;
+
+import javax.vecmath.Vector3f;
+import java.util.Arrays;
+
+/**
+ * OptimizedConvexHullShape is a convex hull of an array of vertices with fast support
+ * mapping for hulls with many vertices.<p>
+ *
+ * The hull is computed once using {@link HullLibrary} and only its vertices are kept,
+ * in a flat float array with local scaling already applied. Support vertex is found by
+ * hill-climbing over the vertex adjacency graph of the hull, which visits only a small part
+ * of the vertices. Callers that query the same shape repeatedly with slowly changing
+ * directions (such as {@link com.bulletphysics.collision.narrowphase.GjkPairDetector})
+ * can pass the previously found vertex as a starting point using {@link #getSupportingVertexIndex}.<p>
+ *
+ * Unlike {@link ConvexHullShape} points can't be added after construction. Points lying
+ * outside of the hull by less than HullLibrary tolerance (0.1% of the extents) are dropped.
+ * When the hull can't be computed (eg. for flat point clouds) all points are kept and
+ * searched linearly.
+ */
+public class OptimizedConvexHullShape extends PolyhedralConvexShape {
+
+    private final ObjectArrayList<Vector3f> points = new ObjectArrayList<>();
+    private int numVertices;
+    /** Vertices with local scaling applied, stored as x, y, z triples. */
+    private float[] vertices;
+
+    // adjacency of vertices: neighbours of vertex i are adjacency[adjacencyOffsets[i]] .. adjacency[adjacencyOffsets[i+1]-1],
+    // null when the hull couldn't be computed:
+    private int[] adjacencyOffsets;
+    private int[] adjacency;
+
+    /** Extreme vertices in directions +X, +Y, +Z, -X, -Y, -Z, used as starting points for hill-climbing. */
+    private final int[] axisVertices = new int[6];
+
+    public OptimizedConvexHullShape(ObjectArrayList<Vector3f> points) {
+        final int n = points.size();
+
+        HullDesc hd = new HullDesc(HullFlags.TRIANGLES, n, points);
+        hd.maxVertices = Math.max(n, 4);
+
+        HullLibrary hl = new HullLibrary();
+        HullResult hr = new HullResult();
+        if (n >= 4 && hl.createConvexHull(hd, hr) && buildAdjacency(points, hr)) {
+            for (int i = 0; i < numVertices; i++) {
+                this.points.add(new Vector3f(hr.outputVertices.get(i)));
+            }
+        }
+        else {
+            // linear search fallback:
+            adjacencyOffsets = null;
+            adjacency = null;
+            numVertices = n;
+            for (int i = 0; i < n; i++) {
+                this.points.add(new Vector3f(points.get(i)));
+            }
+        }
+        HullLibrary.releaseResult(hr);
+
+        vertices = new float[numVertices * 3];
+        updateScaledVertices();
+    }
+
+    /**
+     * Snaps hull vertices back to the original points (HullLibrary rescales the points
+     * when removing duplicates) and builds the adjacency from hull triangles.
+     */
+    private boolean buildAdjacency(ObjectArrayList<Vector3f> points, HullResult hr) {
+        final int n = points.size();
+        final int nv = hr.numOutputVertices;
+        if (nv < 4) {
+            return false;
+        }
+
+        Vector3f aabbMin = new Vector3f(1e30f, 1e30f, 1e30f);
+        Vector3f aabbMax = new Vector3f(-1e30f, -1e30f, -1e30f);
+        for (int i = 0; i < n; i++) {
+            Vector3f p = points.get(i);
+            aabbMin.x = Math.min(aabbMin.x, p.x); aabbMax.x = Math.max(aabbMax.x, p.x);
+            aabbMin.y = Math.min(aabbMin.y, p.y); aabbMax.y = Math.max(aabbMax.y, p.y);
+            aabbMin.z = Math.min(aabbMin.z, p.z); aabbMax.z = Math.max(aabbMax.z, p.z);
+        }
+        Vector3f extents = new Vector3f();
+        extents.sub(aabbMax, aabbMin);
+        float tolerance = 0.001f * Math.max(extents.x, Math.max(extents.y, extents.z));
+        float tolerance2 = tolerance * tolerance;
+
+        // the hull is replaced by a box for flat point clouds, it doesn't match the points in such case:
+        boolean[] used = new boolean[n];
+        Vector3f diff = new Vector3f();
+        for (int i = 0; i < nv; i++) {
+            Vector3f v = hr.outputVertices.get(i);
+            int nearest = -1;
+            float nearestDist2 = Float.MAX_VALUE;
+            for (int j = 0; j < n; j++) {
+                diff.sub(points.get(j), v);
+                float dist2 = diff.lengthSquared();
+                if (dist2 < nearestDist2) {
+                    nearestDist2 = dist2;
+                    nearest = j;
+                }
+            }
+            if (nearestDist2 > tolerance2 || used[nearest]) {
+                return false;
+            }
+            used[nearest] = true;
+            v.set(points.get(nearest));
+        }
+
+        // collect directed edges of all triangles, sort them and remove duplicates:
+        final int numIndices = hr.numIndices;
+        long[] edges = new long[numIndices * 2];
+        int numEdges = 0;
+        for (int i = 0; i < numIndices; i += 3) {
+            for (int j = 0; j < 3; j++) {
+                long a = hr.indices.get(i + j);
+                long b = hr.indices.get(i + (j + 1) % 3);
+                edges[numEdges++] = (a << 32) | b;
+                edges[numEdges++] = (b << 32) | a;
+            }
+        }
+        Arrays.sort(edges, 0, numEdges);
+
+        numVertices = nv;
+        adjacencyOffsets = new int[nv + 1];
+        adjacency = new int[numEdges];
+        int count = 0;
+        for (int i = 0; i < numEdges; i++) {
+            if (i > 0 && edges[i] == edges[i - 1]) {
+                continue;
+            }
+            int from = (int) (edges[i] >>> 32);
+            adjacency[count++] = (int) edges[i];
+            adjacencyOffsets[from + 1] = count;
+        }
+        for (int i = 0; i < nv; i++) {
+            // vertices without edges keep offset of the previous vertex:
+            if (adjacencyOffsets[i + 1] < adjacencyOffsets[i]) {
+                adjacencyOffsets[i + 1] = adjacencyOffsets[i];
+            }
+        }
+        adjacency = Arrays.copyOf(adjacency, count);
+        return true;
+    }
+
+    private void updateScaledVertices() {
+        for (int i = 0; i < numVertices; i++) {
+            Vector3f p = points.get(i);
+            vertices[i * 3 + 0] = p.x * localScaling.x;
+            vertices[i * 3 + 1] = p.y * localScaling.y;
+            vertices[i * 3 + 2] = p.z * localScaling.z;
+        }
+
+        for (int axis = 0; axis < 3; axis++) {
+            int maxIndex = 0, minIndex = 0;
+            for (int i = 1; i < numVertices; i++) {
+                float c = vertices[i * 3 + axis];
+                if (c > vertices[maxIndex * 3 + axis]) {
+                    maxIndex = i;
+                }
+                if (c < vertices[minIndex * 3 + axis]) {
+                    minIndex = i;
+                }
+            }
+            axisVertices[axis] = maxIndex;
+            axisVertices[axis + 3] = minIndex;
+        }
+
+        recalcLocalAabb();
+    }
+
+    @Override
+    public void setLocalScaling(Vector3f scaling) {
+        localScaling.set(scaling);
+        updateScaledVertices();
+    }
+
+    /**
+     * Returns the hull vertices (without local scaling).
+     */
+    public ObjectArrayList<Vector3f> getPoints() {
+        return points;
+    }
+
+    public int getNumPoints() {
+        return numVertices;
+    }
+
+    /**
+     * Returns index of supporting vertex (without margin) in given direction.
+     *
+     * @param vec         direction, doesn't need to be normalized
+     * @param startVertex vertex to start the search from (typically result of previous query), or -1
+     * @return index of the vertex, use {@link #getVertex} to get its position
+     */
+    public int getSupportingVertexIndex(Vector3f vec, int startVertex) {
+        float dx = vec.x, dy = vec.y, dz = vec.z;
+        if (dx * dx + dy * dy + dz * dz < 0.0001f) {
+            dx = 1f;
+            dy = 0f;
+            dz = 0f;
+        }
+
+        final float[] vertices = this.vertices;
+
+        if (adjacency == null) {
+            int best = 0;
+            float maxDot = -1e30f;
+            for (int i = 0; i < numVertices; i++) {
+                float dot = dx * vertices[i * 3] + dy * vertices[i * 3 + 1] + dz * vertices[i * 3 + 2];
+                if (dot > maxDot) {
+                    maxDot = dot;
+                    best = i;
+                }
+            }
+            return best;
+        }
+
+        int current = startVertex;
+        if (current < 0 || current >= numVertices) {
+            // start from extreme vertex of the dominant axis:
+            float ax = Math.abs(dx), ay = Math.abs(dy), az = Math.abs(dz);
+            if (ax >= ay && ax >= az) {
+                current = axisVertices[dx >= 0f ? 0 : 3];
+            }
+            else if (ay >= az) {
+                current = axisVertices[dy >= 0f ? 1 : 4];
+            }
+            else {
+                current = axisVertices[dz >= 0f ? 2 : 5];
+            }
+        }
+
+        // on convex hull every vertex that is not the supporting vertex has neighbour with greater dot product:
+        float maxDot = dx * vertices[current * 3] + dy * vertices[current * 3 + 1] + dz * vertices[current * 3 + 2];
+        for (;;) {
+            int best = current;
+            for (int e = adjacencyOffsets[current], end = adjacencyOffsets[current + 1]; e < end; e++) {
+                int i = adjacency[e];
+                float dot = dx * vertices[i * 3] + dy * vertices[i * 3 + 1] + dz * vertices[i * 3 + 2];
+                if (dot > maxDot) {
+                    maxDot = dot;
+                    best = i;
+                }
+            }
+            if (best == current) {
+                return current;
+            }
+            current = best;
+        }
+    }
+
+    @Override
+    public Vector3f localGetSupportingVertexWithoutMargin(Vector3f vec, Vector3f out) {
+        getVertex(getSupportingVertexIndex(vec, -1), out);
+        return out;
+    }
+
+    @Override
+    public void batchedUnitVectorGetSupportingVertexWithoutMargin(Vector3f[] vectors, Vector3f[] supportVerticesOut, int numVectors) {
+        int index = -1;
+        for (int i = 0; i < numVectors; i++) {
+            index = getSupportingVertexIndex(vectors[i], index);
+            getVertex(index, supportVerticesOut[i]);
+        }
+    }
+
+    @Override
+    public Vector3f localGetSupportingVertex(Vector3f vec, Vector3f out) {
+        Vector3f supVertex = localGetSupportingVertexWithoutMargin(vec, out);
+
+        if (getMargin() != 0f) {
+            Vector3f vecnorm = new Vector3f(vec);
+            if (vecnorm.lengthSquared() < (BulletGlobals.FLT_EPSILON * BulletGlobals.FLT_EPSILON)) {
+                vecnorm.set(-1f, -1f, -1f);
+            }
+            vecnorm.normalize();
+            supVertex.scaleAdd(getMargin(), vecnorm, supVertex);
+        }
+        return out;
+    }
+
+    @Override
+    public int getNumVertices() {
+        return numVertices;
+    }
+
+    @Override
+    public int getNumEdges() {
+        return adjacency != null ? adjacency.length / 2 : numVertices;
+    }
+
+    @Override
+    public void getEdge(int i, Vector3f pa, Vector3f pb) {
+        if (adjacency == null) {
+            getVertex(i % numVertices, pa);
+            getVertex((i + 1) % numVertices, pb);
+            return;
+        }
+
+        // each edge is stored twice, report it from the vertex with lower index:
+        for (int v = 0; v < numVertices; v++) {
+            for (int e = adjacencyOffsets[v], end = adjacencyOffsets[v + 1]; e < end; e++) {
+                if (adjacency[e] > v && i-- == 0) {
+                    getVertex(v, pa);
+                    getVertex(adjacency[e], pb);
+                    return;
+                }
+            }
+        }
+    }
+
+    @Override
+    public void getVertex(int i, Vector3f vtx) {
+        vtx.set(vertices[i * 3], vertices[i * 3 + 1], vertices[i * 3 + 2]);
+    }
+
+    @Override
+    public int getNumPlanes() {
+        return 0;
+    }
+
+    @Override
+    public void getPlane(Vector3f planeNormal, Vector3f planeSupport, int i) {
+        assert false;
+    }
+
+    @Override
+    public boolean isInside(Vector3f pt, float tolerance) {
+        assert false;
+        return false;
+    }
+
+    @Override
+    public BroadphaseNativeType getShapeType() {
+        return BroadphaseNativeType.CONVEX_HULL_SHAPE_PROXYTYPE;
+    }
+
+    @Override
+    public String getName() {
+        return "OptimizedConvexHull";
+    }
+
+}
@@ -25,9 +25,17 @@ package com.bulletphysics.collision.shapes.convex;
 
 import com.bulletphysics.linearmath.AabbUtil2;
 import com.bulletphysics.linearmath.Transform;
+import com.bulletphysics.linearmath.TransformUtil;
 import com.bulletphysics.linearmath.VectorUtil;
+import com.bulletphysics.linearmath.convexhull.HullDesc;
+import com.bulletphysics.linearmath.convexhull.HullFlags;
+import com.bulletphysics.linearmath.convexhull.HullLibrary;
+import com.bulletphysics.linearmath.convexhull.HullResult;
+import com.bulletphysics.util.IntArrayList;
+import com.bulletphysics.util.ObjectArrayList;
 
 import javax.vecmath.Vector3f;
+import javax.vecmath.Vector4f;
 
 /**
  * PolyhedralConvexShape is an internal interface class for polyhedral convex shapes.
@@ -60,6 +68,169 @@ public abstract class PolyhedralConvexShape extends ConvexInternalShape {
 
 //	/** optional Hull is for optional Separating Axis Test Hull collision detection, see Hull.cpp */
 //	public Hull optionalHull = null;
+
+	private ConvexPolyhedron polyhedron;
+
+	/**
+	 * Computes faces and edges of the shape (in local space, including local scaling but without
+	 * margin) used for contact clipping of polyhedral pairs. Must be called again after change
+	 * of local scaling.
+	 * 
+	 * @return false when the polyhedron can't be computed (eg. for flat shapes)
+	 */
+	public boolean initializePolyhedralFeatures() {
+		polyhedron = null;
+
+		int numVertices = getNumVertices();
+		ObjectArrayList<Vector3f> points = new ObjectArrayList<>();
+		for (int i=0; i<numVertices; i++) {
+			Vector3f v = new Vector3f();
+			getVertex(i, v);
+			points.add(v);
+		}
+
+		HullDesc hd = new HullDesc(HullFlags.TRIANGLES, numVertices, points);
+		hd.maxVertices = Math.max(numVertices, 4);
+		HullResult hr = new HullResult();
+		HullLibrary hl = new HullLibrary();
+		if (numVertices < 4 || !hl.createConvexHull(hd, hr) || hr.numOutputVertices < 4) {
+			return false;
+		}
+
+		ConvexPolyhedron poly = new ConvexPolyhedron();
+		Vector3f center = new Vector3f();
+		for (int i=0; i<hr.numOutputVertices; i++) {
+			Vector3f v = new Vector3f(hr.outputVertices.get(i));
+			poly.vertices.add(v);
+			center.add(v);
+		}
+		center.scale(1f / hr.numOutputVertices);
+
+		// HullLibrary produces triangles, merge coplanar ones into polygonal faces:
+		int numTriangles = hr.numIndices / 3;
+		Vector3f[] normals = new Vector3f[numTriangles];
+		Vector3f e0 = new Vector3f(), e1 = new Vector3f();
+		for (int t=0; t<numTriangles; t++) {
+			Vector3f v0 = poly.vertices.get(hr.indices.get(t*3+0));
+			Vector3f v1 = poly.vertices.get(hr.indices.get(t*3+1));
+			Vector3f v2 = poly.vertices.get(hr.indices.get(t*3+2));
+			e0.sub(v1, v0);
+			e1.sub(v2, v0);
+			Vector3f n = new Vector3f();
+			n.cross(e0, e1);
+			n.normalize();
+			e0.sub(v0, center);
+			if (n.dot(e0) < 0f) {
+				n.negate();
+			}
+			normals[t] = n;
+		}
+
+		float planeTolerance = 1e-3f * getMaxVertexDistance(poly.vertices, center);
+		boolean[] merged = new boolean[numTriangles];
+		IntArrayList faceIndices = new IntArrayList();
+		for (int t=0; t<numTriangles; t++) {
+			if (merged[t]) continue;
+
+			Vector3f n = normals[t];
+			float d = -n.dot(poly.vertices.get(hr.indices.get(t*3)));
+
+			faceIndices.clear();
+			for (int u=t; u<numTriangles; u++) {
+				if (merged[u] || n.dot(normals[u]) < 1f - 1e-4f) continue;
+
+				boolean coplanar = true;
+				for (int k=0; k<3; k++) {
+					if (Math.abs(n.dot(poly.vertices.get(hr.indices.get(u*3+k))) + d) > planeTolerance) {
+						coplanar = false;
+					}
+				}
+				if (!coplanar) continue;
+
+				merged[u] = true;
+				for (int k=0; k<3; k++) {
+					int index = hr.indices.get(u*3+k);
+					if (indexOf(faceIndices, index) < 0) {
+						faceIndices.add(index);
+					}
+				}
+			}
+
+			ConvexPolyhedron.Face face = new ConvexPolyhedron.Face();
+			face.indices = sortFaceVertices(poly.vertices, faceIndices, n);
+			// all vertices of the face must be behind the plane:
+			float maxDot = -Float.MAX_VALUE;
+			for (int k=0; k<face.indices.length; k++) {
+				maxDot = Math.max(maxDot, n.dot(poly.vertices.get(face.indices[k])));
+			}
+			face.plane.set(n.x, n.y, n.z, -maxDot);
+			poly.faces.add(face);
+		}
+
+		poly.initialize();
+		polyhedron = poly;
+		return true;
+	}
+
+	public ConvexPolyhedron getConvexPolyhedron() {
+		return polyhedron;
+	}
+
+	private static int indexOf(IntArrayList list, int value) {
+		for (int i=0; i<list.size(); i++) {
+			if (list.get(i) == value) return i;
+		}
+		return -1;
+	}
+
+	private static float getMaxVertexDistance(ObjectArrayList<Vector3f> vertices, Vector3f center) {
+		float max = 0f;
+		Vector3f tmp = new Vector3f();
+		for (int i=0; i<vertices.size(); i++) {
+			tmp.sub(vertices.get(i), center);
+			max = Math.max(max, tmp.length());
+		}
+		return max;
+	}
+
+	/**
+	 * Orders vertices of convex face counter-clockwise around the face normal.
+	 */
+	private static int[] sortFaceVertices(ObjectArrayList<Vector3f> vertices, IntArrayList faceIndices, Vector3f normal) {
+		int count = faceIndices.size();
+		Vector3f faceCenter = new Vector3f();
+		for (int i=0; i<count; i++) {
+			faceCenter.add(vertices.get(faceIndices.get(i)));
+		}
+		faceCenter.scale(1f / count);
+
+		Vector3f u = new Vector3f(), v = new Vector3f();
+		TransformUtil.planeSpace1(normal, u, v);
+
+		float[] angles = new float[count];
+		int[] result = new int[count];
+		Vector3f tmp = new Vector3f();
+		for (int i=0; i<count; i++) {
+			tmp.sub(vertices.get(faceIndices.get(i)), faceCenter);
+			angles[i] = (float) Math.atan2(tmp.dot(v), tmp.dot(u));
+			result[i] = faceIndices.get(i);
+		}
+
+		// insertion sort, faces have few vertices:
+		for (int i=1; i<count; i++) {
+			float angle = angles[i];
+			int index = result[i];
+			int j = i - 1;
+			while (j >= 0 && angles[j] > angle) {
+				angles[j + 1] = angles[j];
+				result[j + 1] = result[j];
+				j--;
+			}
+			angles[j + 1] = angle;
+			result[j + 1] = index;
+		}
+		return result;
+	}
 	
 	@Override
 	public Vector3f localGetSupportingVertexWithoutMargin(Vector3f vec0, Vector3f out) {
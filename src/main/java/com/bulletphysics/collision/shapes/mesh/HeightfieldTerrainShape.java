@@ -0,0 +1,457 @@
+/*
+ * Bullet Continuous Collision Detection and Physics Library
+ * Copyright (c) 2003-2008 Erwin Coumans  http://www.bulletphysics.com/
+ *
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from
+ * the use of this software.
+ * 
+ * Permission is granted to anyone to use this software for any purpose, 
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ * 
+ * 1. The origin of this software must not be misrepresented; you must not
+ *    claim that you wrote the original software. If you use this software
+ *    in a product, an acknowledgment in the product documentation would be
+ *    appreciated but is not required.
+ * 2. Altered source versions must be plainly marked as such, and must not be
+ *    misrepresented as being the original software.
+ * 3. This notice may not be removed or altered from any source distribution.
+ */
+
+package com.bulletphysics.collision.shapes.mesh;
+
+import com.bulletphysics.collision.broadphase.BroadphaseNativeType;
+import com.bulletphysics.collision.narrowphase.TriangleRaycastCallback;
+import com.bulletphysics.collision.shapes.convex.ConcaveShape;
+import com.bulletphysics.collision.shapes.util.ScalarType;
+import com.bulletphysics.collision.shapes.util.TriangleCallback;
+import com.bulletphysics.linearmath.MatrixUtil;
+import com.bulletphysics.linearmath.Transform;
+import com.bulletphysics.linearmath.VectorUtil;
+
+import javax.vecmath.Matrix3f;
+import javax.vecmath.Vector3f;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * HeightfieldTerrainShape simulates a 2D heightfield terrain.<p>
+ *
+ * The heights are read directly from a {@link FloatBuffer} or {@link ShortBuffer}
+ * (row-major, {@code heightStickWidth} samples per row) and triangles are generated
+ * on demand, only for the grid cells overlapping the queried AABB or ray. No copy
+ * of the height data is made, so the buffer may be a memory-mapped file
+ * (see {@link #mapFile}) and changes to it are picked up immediately.<p>
+ *
+ * The shape is centered around its local origin: the grid spans
+ * {@code [-width/2, width/2]} and {@code [-length/2, length/2]} along the two
+ * horizontal axes and the height range {@code [minHeight, maxHeight]} is centered
+ * along the up axis, all multiplied by the local scaling.
+ */
+public class HeightfieldTerrainShape extends ConcaveShape {
+
+	private final int heightStickWidth;
+	private final int heightStickLength;
+	private final float minHeight;
+	private final float maxHeight;
+	private final float heightScale;
+	private final FloatBuffer floatHeights;
+	private final ShortBuffer shortHeights;
+
+	private final int upAxis;
+	private final int gridAxisX;
+	private final int gridAxisY;
+	// true when (gridAxisX, gridAxisY, upAxis) is left-handed, triangles are then flipped to face up:
+	private final boolean flipWinding;
+
+	private boolean flipQuadEdges;
+	private boolean useDiamondSubdivision;
+
+	// bounds in unscaled grid space (heights as stored, horizontal axes in cell units):
+	private final Vector3f gridAabbMin = new Vector3f();
+	private final Vector3f gridAabbMax = new Vector3f();
+	private final Vector3f localOrigin = new Vector3f();
+	private final Vector3f localScaling = new Vector3f(1f, 1f, 1f);
+
+	/**
+	 * Creates heightfield from float heights, used as is.
+	 */
+	public HeightfieldTerrainShape(int heightStickWidth, int heightStickLength, FloatBuffer heights, float minHeight, float maxHeight, int upAxis, boolean flipQuadEdges) {
+		this(heightStickWidth, heightStickLength, heights, null, 1f, minHeight, maxHeight, upAxis, flipQuadEdges);
+	}
+
+	/**
+	 * Creates heightfield from short heights, each sample is multiplied by {@code heightScale}.
+	 */
+	public HeightfieldTerrainShape(int heightStickWidth, int heightStickLength, ShortBuffer heights, float heightScale, float minHeight, float maxHeight, int upAxis, boolean flipQuadEdges) {
+		this(heightStickWidth, heightStickLength, null, heights, heightScale, minHeight, maxHeight, upAxis, flipQuadEdges);
+	}
+
+	private HeightfieldTerrainShape(int heightStickWidth, int heightStickLength, FloatBuffer floatHeights, ShortBuffer shortHeights, float heightScale, float minHeight, float maxHeight, int upAxis, boolean flipQuadEdges) {
+		if (heightStickWidth < 2 || heightStickLength < 2) {
+			throw new IllegalArgumentException("heightfield must have at least 2x2 samples");
+		}
+		if (upAxis < 0 || upAxis > 2) {
+			throw new IllegalArgumentException("up axis must be 0, 1 or 2");
+		}
+		if (minHeight > maxHeight) {
+			throw new IllegalArgumentException("minHeight must not be greater than maxHeight");
+		}
+		int remaining = floatHeights != null? floatHeights.remaining() : shortHeights.remaining();
+		if (remaining < heightStickWidth * heightStickLength) {
+			throw new IllegalArgumentException("height buffer is too small for " + heightStickWidth + "x" + heightStickLength + " samples");
+		}
+
+		this.heightStickWidth = heightStickWidth;
+		this.heightStickLength = heightStickLength;
+		this.minHeight = minHeight;
+		this.maxHeight = maxHeight;
+		this.heightScale = heightScale;
+		// JAVA NOTE: slices are used so that absolute indexing starts at the current position
+		// and the caller's buffer position is never touched
+		this.floatHeights = floatHeights != null? floatHeights.slice() : null;
+		this.shortHeights = shortHeights != null? shortHeights.slice() : null;
+		this.upAxis = upAxis;
+		this.flipQuadEdges = flipQuadEdges;
+
+		switch (upAxis) {
+			case 0 -> { gridAxisX = 1; gridAxisY = 2; }
+			case 1 -> { gridAxisX = 0; gridAxisY = 2; }
+			default -> { gridAxisX = 0; gridAxisY = 1; }
+		}
+		flipWinding = (upAxis == 1);
+
+		VectorUtil.coord(gridAabbMin, gridAxisX, 0f);
+		VectorUtil.coord(gridAabbMin, gridAxisY, 0f);
+		VectorUtil.coord(gridAabbMin, upAxis, minHeight);
+		VectorUtil.coord(gridAabbMax, gridAxisX, heightStickWidth - 1);
+		VectorUtil.coord(gridAabbMax, gridAxisY, heightStickLength - 1);
+		VectorUtil.coord(gridAabbMax, upAxis, maxHeight);
+
+		localOrigin.add(gridAabbMin, gridAabbMax);
+		localOrigin.scale(0.5f);
+	}
+
+	/**
+	 * Creates heightfield backed by a read-only memory mapping of the given file. The file
+	 * must contain {@code heightStickWidth * heightStickLength} samples of type
+	 * {@link ScalarType#FLOAT} or {@link ScalarType#SHORT} stored in the given byte order.
+	 * The mapping stays valid after this method returns, the file itself is closed.
+	 */
+	public static HeightfieldTerrainShape mapFile(File file, int heightStickWidth, int heightStickLength, ScalarType heightDataType, ByteOrder order,
+			float heightScale, float minHeight, float maxHeight, int upAxis, boolean flipQuadEdges) throws IOException {
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+			MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			buf.order(order);
+
+			return switch (heightDataType) {
+				case FLOAT -> new HeightfieldTerrainShape(heightStickWidth, heightStickLength, buf.asFloatBuffer(), minHeight, maxHeight, upAxis, flipQuadEdges);
+				case SHORT -> new HeightfieldTerrainShape(heightStickWidth, heightStickLength, buf.asShortBuffer(), heightScale, minHeight, maxHeight, upAxis, flipQuadEdges);
+				default -> throw new IllegalArgumentException("height data type must be FLOAT or SHORT");
+			};
+		}
+	}
+
+	/**
+	 * Alternates the quad diagonal in a checkerboard pattern, which gives more
+	 * symmetric terrain than the default of splitting every quad the same way.
+	 */
+	public void setUseDiamondSubdivision(boolean useDiamondSubdivision) {
+		this.useDiamondSubdivision = useDiamondSubdivision;
+	}
+
+	public boolean isUseDiamondSubdivision() {
+		return useDiamondSubdivision;
+	}
+
+	public int getHeightStickWidth() {
+		return heightStickWidth;
+	}
+
+	public int getHeightStickLength() {
+		return heightStickLength;
+	}
+
+	public int getUpAxis() {
+		return upAxis;
+	}
+
+	/**
+	 * Returns height sample in the stored units (scaled by heightScale for short data),
+	 * without the local origin offset and the local scaling applied.
+	 */
+	public float getRawHeight(int x, int y) {
+		int index = y * heightStickWidth + x;
+		if (floatHeights != null) {
+			return floatHeights.get(index);
+		}
+		return shortHeights.get(index) * heightScale;
+	}
+
+	/**
+	 * Returns vertex of the grid in local space.
+	 */
+	public Vector3f getVertex(int x, int y, Vector3f out) {
+		return getGridVertex(x, y, getRawHeight(x, y), out);
+	}
+
+	private Vector3f getGridVertex(int x, int y, float height, Vector3f out) {
+		VectorUtil.coord(out, gridAxisX, x);
+		VectorUtil.coord(out, gridAxisY, y);
+		VectorUtil.coord(out, upAxis, height);
+		out.sub(localOrigin);
+		VectorUtil.mul(out, out, localScaling);
+		return out;
+	}
+
+	/**
+	 * Converts local coordinate along given axis to grid space.
+	 */
+	private float toGrid(Vector3f v, int axis) {
+		return VectorUtil.coord(v, axis) / VectorUtil.coord(localScaling, axis) + VectorUtil.coord(localOrigin, axis);
+	}
+
+	@Override
+	public void getAabb(Transform trans, Vector3f aabbMin, Vector3f aabbMax) {
+		Vector3f tmp = new Vector3f();
+
+		Vector3f localHalfExtents = new Vector3f();
+		localHalfExtents.sub(gridAabbMax, gridAabbMin);
+		localHalfExtents.scale(0.5f);
+		VectorUtil.mul(localHalfExtents, localHalfExtents, localScaling);
+		localHalfExtents.absolute();
+
+		Matrix3f abs_b = new Matrix3f(trans.basis);
+		MatrixUtil.absolute(abs_b);
+
+		Vector3f center = trans.origin;
+
+		Vector3f extent = new Vector3f();
+		abs_b.getRow(0, tmp);
+		extent.x = tmp.dot(localHalfExtents);
+		abs_b.getRow(1, tmp);
+		extent.y = tmp.dot(localHalfExtents);
+		abs_b.getRow(2, tmp);
+		extent.z = tmp.dot(localHalfExtents);
+
+		Vector3f margin = new Vector3f();
+		margin.set(getMargin(), getMargin(), getMargin());
+		extent.add(margin);
+
+		aabbMin.sub(center, extent);
+		aabbMax.add(center, extent);
+	}
+
+	/**
+	 * Processes only the triangles of grid cells overlapping the given AABB, cells whose
+	 * height range lies completely above or below the AABB are skipped as well.
+	 */
+	@Override
+	public void processAllTriangles(TriangleCallback callback, Vector3f aabbMin, Vector3f aabbMax) {
+		float x0 = toGrid(aabbMin, gridAxisX), x1 = toGrid(aabbMax, gridAxisX);
+		float y0 = toGrid(aabbMin, gridAxisY), y1 = toGrid(aabbMax, gridAxisY);
+		float h0 = toGrid(aabbMin, upAxis), h1 = toGrid(aabbMax, upAxis);
+
+		// negative scaling swaps the bounds:
+		float minUp = Math.min(h0, h1);
+		float maxUp = Math.max(h0, h1);
+		if (minUp > maxHeight || maxUp < minHeight) {
+			return;
+		}
+
+		int startX = clampCell((float) Math.floor(Math.min(x0, x1)), heightStickWidth);
+		int endX = clampCell((float) Math.ceil(Math.max(x0, x1)), heightStickWidth);
+		int startY = clampCell((float) Math.floor(Math.min(y0, y1)), heightStickLength);
+		int endY = clampCell((float) Math.ceil(Math.max(y0, y1)), heightStickLength);
+
+		Vector3f[] triangle = new Vector3f[] { new Vector3f(), new Vector3f(), new Vector3f() };
+		for (int y = startY; y < endY; y++) {
+			for (int x = startX; x < endX; x++) {
+				processCell(callback, triangle, x, y, minUp, maxUp);
+			}
+		}
+	}
+
+	/**
+	 * Clamps grid coordinate to valid vertex range, cells are then in range [start, end).
+	 */
+	private static int clampCell(float coord, int sticks) {
+		if (coord <= 0f) {
+			return 0;
+		}
+		if (coord >= sticks - 1) {
+			return sticks - 1;
+		}
+		return (int) coord;
+	}
+
+	private void processCell(TriangleCallback callback, Vector3f[] triangle, int x, int y, float minUp, float maxUp) {
+		float h00 = getRawHeight(x, y);
+		float h10 = getRawHeight(x + 1, y);
+		float h01 = getRawHeight(x, y + 1);
+		float h11 = getRawHeight(x + 1, y + 1);
+
+		float cellMin = Math.min(Math.min(h00, h10), Math.min(h01, h11));
+		float cellMax = Math.max(Math.max(h00, h10), Math.max(h01, h11));
+		if (cellMin > maxUp || cellMax < minUp) {
+			return;
+		}
+
+		int index = (y * heightStickWidth + x) * 2;
+		Vector3f a = triangle[0];
+		Vector3f b = triangle[flipWinding? 2 : 1];
+		Vector3f c = triangle[flipWinding? 1 : 2];
+
+		if (flipQuadEdges || (useDiamondSubdivision && ((x + y) & 1) == 0)) {
+			// split along (x+1,y)-(x,y+1) diagonal:
+			getGridVertex(x, y, h00, a);
+			getGridVertex(x + 1, y, h10, b);
+			getGridVertex(x, y + 1, h01, c);
+			callback.processTriangle(triangle, 0, index);
+
+			getGridVertex(x + 1, y, h10, a);
+			getGridVertex(x + 1, y + 1, h11, b);
+			getGridVertex(x, y + 1, h01, c);
+			callback.processTriangle(triangle, 0, index + 1);
+		}
+		else {
+			// split along (x,y)-(x+1,y+1) diagonal:
+			getGridVertex(x, y, h00, a);
+			getGridVertex(x + 1, y, h10, b);
+			getGridVertex(x + 1, y + 1, h11, c);
+			callback.processTriangle(triangle, 0, index);
+
+			getGridVertex(x, y, h00, a);
+			getGridVertex(x + 1, y + 1, h11, b);
+			getGridVertex(x, y + 1, h01, c);
+			callback.processTriangle(triangle, 0, index + 1);
+		}
+	}
+
+	/**
+	 * Performs raycast in local space by walking the grid cells along the ray (3D-DDA in
+	 * the horizontal plane), so only the cells the ray passes over are processed, nearest
+	 * first. When the callback is {@link TriangleRaycastCallback} the walk stops as soon
+	 * as the remaining cells can't produce closer hit.
+	 */
+	public void performRaycast(TriangleCallback callback, Vector3f raySource, Vector3f rayTarget) {
+		float ax = toGrid(raySource, gridAxisX), ay = toGrid(raySource, gridAxisY), aUp = toGrid(raySource, upAxis);
+		float dx = toGrid(rayTarget, gridAxisX) - ax;
+		float dy = toGrid(rayTarget, gridAxisY) - ay;
+		float dUp = toGrid(rayTarget, upAxis) - aUp;
+
+		int cellsX = heightStickWidth - 1;
+		int cellsY = heightStickLength - 1;
+
+		// clip the ray to the grid bounds:
+		float[] range = new float[] { 0f, 1f };
+		if (!clipSlab(ax, dx, 0f, cellsX, range) ||
+				!clipSlab(ay, dy, 0f, cellsY, range) ||
+				!clipSlab(aUp, dUp, minHeight, maxHeight, range)) {
+			return;
+		}
+		float tMin = range[0];
+		float tMax = range[1];
+
+		int x = Math.min(Math.max((int) Math.floor(ax + dx * tMin), 0), cellsX - 1);
+		int y = Math.min(Math.max((int) Math.floor(ay + dy * tMin), 0), cellsY - 1);
+
+		int stepX = dx > 0f? 1 : -1;
+		int stepY = dy > 0f? 1 : -1;
+		float tDeltaX = dx != 0f? Math.abs(1f / dx) : Float.POSITIVE_INFINITY;
+		float tDeltaY = dy != 0f? Math.abs(1f / dy) : Float.POSITIVE_INFINITY;
+		float tMaxX = dx > 0f? (x + 1 - ax) / dx : dx < 0f? (x - ax) / dx : Float.POSITIVE_INFINITY;
+		float tMaxY = dy > 0f? (y + 1 - ay) / dy : dy < 0f? (y - ay) / dy : Float.POSITIVE_INFINITY;
+
+		TriangleRaycastCallback raycastCallback = callback instanceof TriangleRaycastCallback? (TriangleRaycastCallback) callback : null;
+		Vector3f[] triangle = new Vector3f[] { new Vector3f(), new Vector3f(), new Vector3f() };
+
+		float t = tMin;
+		while (true) {
+			if (raycastCallback != null && raycastCallback.hitFraction < t) {
+				// cells further along the ray can't produce closer hit:
+				break;
+			}
+
+			float tNext = Math.min(Math.min(tMaxX, tMaxY), tMax);
+			float up0 = aUp + dUp * t;
+			float up1 = aUp + dUp * tNext;
+			processCell(callback, triangle, x, y, Math.min(up0, up1), Math.max(up0, up1));
+
+			if (tNext >= tMax) {
+				break;
+			}
+
+			if (tMaxX < tMaxY) {
+				x += stepX;
+				t = tMaxX;
+				tMaxX += tDeltaX;
+				if (x < 0 || x >= cellsX) {
+					break;
+				}
+			}
+			else {
+				y += stepY;
+				t = tMaxY;
+				tMaxY += tDeltaY;
+				if (y < 0 || y >= cellsY) {
+					break;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Intersects parametric range with slab {@code [min, max]} along one axis.
+	 */
+	private static boolean clipSlab(float start, float delta, float min, float max, float[] range) {
+		if (delta == 0f) {
+			return start >= min && start <= max;
+		}
+		float t0 = (min - start) / delta;
+		float t1 = (max - start) / delta;
+		if (t0 > t1) {
+			float tmp = t0;
+			t0 = t1;
+			t1 = tmp;
+		}
+		range[0] = Math.max(range[0], t0);
+		range[1] = Math.min(range[1], t1);
+		return range[0] <= range[1];
+	}
+
+	@Override
+	public void calculateLocalInertia(float mass, Vector3f inertia) {
+		// moving concave objects not supported
+		inertia.set(0f, 0f, 0f);
+	}
+
+	@Override
+	public void setLocalScaling(Vector3f scaling) {
+		localScaling.set(scaling);
+	}
+
+	@Override
+	public Vector3f getLocalScaling(Vector3f out) {
+		out.set(localScaling);
+		return out;
+	}
+
+	@Override
+	public BroadphaseNativeType getShapeType() {
+		return BroadphaseNativeType.TERRAIN_SHAPE_PROXYTYPE;
+	}
+
+	@Override
+	public String getName() {
+		return "HEIGHTFIELD";
+	}
+
+}
@@ -45,6 +45,11 @@ public class TriangleIndexVertexArray extends StridingMeshInterface {
 
 	private final ByteBufferVertexData data = new ByteBufferVertexData();
 
+	// JAVA NOTE: the mesh can be queried from several threads during parallel
+	// narrowphase, other threads than the creating one get their own VertexData
+	private final Thread ownerThread = Thread.currentThread();
+	private final ThreadLocal<ByteBufferVertexData> threadData = ThreadLocal.withInitial(ByteBufferVertexData::new);
+
 	public TriangleIndexVertexArray() {
 	}
 
@@ -79,6 +84,7 @@ public class TriangleIndexVertexArray extends StridingMeshInterface {
 
 		IndexedMesh mesh = indexedMeshes.get(subpart);
 
+		ByteBufferVertexData data = getData();
 		data.vertexCount = mesh.numVertices;
 		data.vertexData = mesh.vertexBase;
 		//#ifdef BT_USE_DOUBLE_PRECISION
@@ -107,6 +113,7 @@ public class TriangleIndexVertexArray extends StridingMeshInterface {
 	 */
 	@Override
 	public void unLockVertexBase(int subpart) {
+		ByteBufferVertexData data = getData();
 		data.vertexData = null;
 		data.indexData = null;
 	}
@@ -125,6 +132,10 @@ public class TriangleIndexVertexArray extends StridingMeshInterface {
 		return indexedMeshes.size();
 	}
 
+	private ByteBufferVertexData getData() {
+		return Thread.currentThread() == ownerThread ? data : threadData.get();
+	}
+
 	public ObjectArrayList<IndexedMesh> getIndexedMeshArray() {
 		return indexedMeshes;
 	}
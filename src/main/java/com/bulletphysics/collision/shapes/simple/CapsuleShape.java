@@ -191,16 +191,16 @@ public class CapsuleShape extends ConvexInternalShape {
         return "CapsuleShape";
     }
 
-    private int getUpAxis() {
+    public int getUpAxis() {
         return upAxis;
     }
 
-    private float getRadius() {
+    public float getRadius() {
         int radiusAxis = (upAxis + 2) % 3;
         return VectorUtil.coord(implicitShapeDimensions, radiusAxis);
     }
 
-    private float getHalfHeight() {
+    public float getHalfHeight() {
         return VectorUtil.coord(implicitShapeDimensions, upAxis);
     }
 
@@ -25,6 +25,7 @@ package com.bulletphysics.collision.shapes.util;
 
 import com.bulletphysics.collision.shapes.convex.ConcaveShape;
 import com.bulletphysics.collision.shapes.mesh.BvhTriangleMeshShape;
+import com.bulletphysics.collision.shapes.mesh.HeightfieldTerrainShape;
 import com.bulletphysics.collision.shapes.simple.StaticPlaneShape;
 
 import javax.vecmath.Vector3f;
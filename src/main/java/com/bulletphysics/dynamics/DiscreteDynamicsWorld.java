@@ -35,11 +35,19 @@ import com.bulletphysics.dynamics.constraintsolver.ContactSolverInfo;
 import com.bulletphysics.dynamics.constraintsolver.SequentialImpulseConstraintSolver;
 import com.bulletphysics.dynamics.constraintsolver.TypedConstraint;
 import com.bulletphysics.dynamics.vehicle.RaycastVehicle;
+import com.bulletphysics.jfr.CalculateSimulationIslandsEvent;
+import com.bulletphysics.jfr.IntegrateTransformsEvent;
+import com.bulletphysics.jfr.InternalStepEvent;
+import com.bulletphysics.jfr.SlowStepEvent;
+import com.bulletphysics.jfr.SolveConstraintsEvent;
+import com.bulletphysics.jfr.StepSimulationEvent;
 import com.bulletphysics.linearmath.*;
 import com.bulletphysics.util.ObjectArrayList;
 
 import javax.vecmath.Vector3f;
-import java.util.Comparator;
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * DiscreteDynamicsWorld provides discrete rigid body simulation.
@@ -48,12 +56,17 @@ import java.util.Comparator;
  */
 public class DiscreteDynamicsWorld extends DynamicsWorld {
 
-    private static final Comparator<TypedConstraint> sortConstraintOnIslandPredicate = (lhs, rhs) -> {
-        int rIslandId0, lIslandId0;
-        rIslandId0 = getConstraintIslandId(rhs);
-        lIslandId0 = getConstraintIslandId(lhs);
-        return lIslandId0 < rIslandId0 ? -1 : +1;
-    };
+    private static final ProfileSection PROFILE_STEP_SIMULATION = ProfileSection.get("stepSimulation");
+    private static final ProfileSection PROFILE_INTERNAL_SINGLE_STEP_SIMULATION = ProfileSection.get("internalSingleStepSimulation");
+    private static final ProfileSection PROFILE_UPDATE_ACTIONS = ProfileSection.get("updateActions");
+    private static final ProfileSection PROFILE_UPDATE_VEHICLES = ProfileSection.get("updateVehicles");
+    private static final ProfileSection PROFILE_UPDATE_ACTIVATION_STATE = ProfileSection.get("updateActivationState");
+    private static final ProfileSection PROFILE_SOLVE_CONSTRAINTS = ProfileSection.get("solveConstraints");
+    private static final ProfileSection PROFILE_CALCULATE_SIMULATION_ISLANDS = ProfileSection.get("calculateSimulationIslands");
+    private static final ProfileSection PROFILE_INTEGRATE_TRANSFORMS = ProfileSection.get("integrateTransforms");
+    private static final ProfileSection PROFILE_CCD_MOTION_CLAMPING = ProfileSection.get("CCD motion clamping");
+    private static final ProfileSection PROFILE_PREDICT_UNCONSTRAINT_MOTION = ProfileSection.get("predictUnconstraintMotion");
+
     private final SimulationIslandManager islandManager;
     private final ObjectArrayList<TypedConstraint> constraints = new ObjectArrayList<>();
     private final Vector3f gravity = new Vector3f(0f, -10f, 0f);
@@ -62,12 +75,21 @@ public class DiscreteDynamicsWorld extends DynamicsWorld {
     private final ObjectArrayList<RaycastVehicle> vehicles = new ObjectArrayList<>();
     private final ObjectArrayList<ActionInterface> actions = new ObjectArrayList<>();
     private final ObjectArrayList<TypedConstraint> sortedConstraints = new ObjectArrayList<>();
+    // island id of each constraint and start offsets of islands in sortedConstraints, indexed by islandId + 1:
+    private int[] constraintIslandIds = new int[16];
+    private int[] islandConstraintOffsets = new int[16];
     private final InplaceSolverIslandCallback solverCallback = new InplaceSolverIslandCallback();
     private ConstraintSolver constraintSolver;
     //for variable timesteps
     private float localTime = 1f / 60f;
     private boolean ownsConstraintSolver;
     protected int profileTimings = 0;
+    private int numTasks = 1;
+    private Executor taskExecutor;
+    // total number of clamped CCD motions, used for JFR events:
+    private int numClampedCcdMotions = 0;
+    // pair type timing enabled for SlowStepEvent:
+    private CollisionDispatcher pairTypeTimingDispatcher;
 
     public DiscreteDynamicsWorld(BroadphaseInterface pairCache) {
         this(pairCache, new DefaultCollisionConfiguration());
@@ -302,7 +324,15 @@ public class DiscreteDynamicsWorld extends DynamicsWorld {
 
         long t0 = System.nanoTime();
 
-        BulletStats.pushProfile("stepSimulation");
+        StepSimulationEvent stepEvent = new StepSimulationEvent();
+        SlowStepEvent slowStepEvent = new SlowStepEvent();
+        stepEvent.begin();
+        slowStepEvent.begin();
+        int ccdClamps0 = numClampedCcdMotions;
+        updatePairTypeTiming(slowStepEvent.isEnabled());
+
+        Profiler prevProfiler = Profiler.enter(getProfiler());
+        BulletStats.pushProfile(PROFILE_STEP_SIMULATION);
         try {
             int numSimulationSubSteps = 0;
 
@@ -352,15 +382,71 @@ public class DiscreteDynamicsWorld extends DynamicsWorld {
             CProfileManager.incrementFrameCounter();
             //#endif //BT_NO_PROFILE
 
+            commitStepEvents(stepEvent, slowStepEvent, timeStep, numSimulationSubSteps, numClampedCcdMotions - ccdClamps0);
+
             return numSimulationSubSteps;
         } finally {
             BulletStats.popProfile();
+            Profiler.exit(prevProfiler);
+        }
+    }
+
+    private void commitStepEvents(StepSimulationEvent stepEvent, SlowStepEvent slowStepEvent, float timeStep, int numSimulationSubSteps, int ccdClamps) {
+        stepEvent.end();
+        if (stepEvent.shouldCommit()) {
+            stepEvent.timeStep = timeStep;
+            stepEvent.subSteps = numSimulationSubSteps;
+            stepEvent.collisionObjects = collisionObjects.size();
+            stepEvent.ccdClamps = ccdClamps;
+            stepEvent.commit();
+        }
+
+        slowStepEvent.end();
+        if (slowStepEvent.shouldCommit()) {
+            slowStepEvent.subSteps = numSimulationSubSteps;
+            slowStepEvent.collisionObjects = collisionObjects.size();
+            slowStepEvent.pairs = broadphase().getOverlappingPairCache().getNumOverlappingPairs();
+            slowStepEvent.manifolds = dispatcher().getNumManifolds();
+            slowStepEvent.contacts = dispatcher().getNumContacts();
+            slowStepEvent.islands = islandManager.getNumActiveIslands();
+            slowStepEvent.largestIslandBodies = islandManager.getLargestIslandBodies();
+            slowStepEvent.largestIslandManifolds = islandManager.getLargestIslandManifolds();
+            slowStepEvent.ccdClamps = ccdClamps;
+            if (pairTypeTimingDispatcher != null) {
+                slowStepEvent.expensivePairTypes = pairTypeTimingDispatcher.getMostExpensivePairTypes(5);
+            }
+            slowStepEvent.commit();
+        }
+    }
 
+    /**
+     * Measures narrowphase time per pair of shape types while {@link SlowStepEvent}
+     * is enabled. Timing enabled by the user is left untouched.
+     */
+    private void updatePairTypeTiming(boolean enabled) {
+        if (enabled && pairTypeTimingDispatcher == null && dispatcher() instanceof CollisionDispatcher) {
+            CollisionDispatcher collisionDispatcher = (CollisionDispatcher) dispatcher();
+            if (!collisionDispatcher.isPairTypeTimingEnabled()) {
+                collisionDispatcher.setPairTypeTimingEnabled(true);
+                pairTypeTimingDispatcher = collisionDispatcher;
+            }
+        }
+        else if (!enabled && pairTypeTimingDispatcher != null) {
+            pairTypeTimingDispatcher.setPairTypeTimingEnabled(false);
+            pairTypeTimingDispatcher = null;
+        }
+
+        if (pairTypeTimingDispatcher != null) {
+            pairTypeTimingDispatcher.resetPairTypeTimes();
         }
     }
 
     private void internalSingleStepSimulation(float timeStep) {
-        BulletStats.pushProfile("internalSingleStepSimulation");
+        InternalStepEvent event = new InternalStepEvent();
+        event.begin();
+        int ccdClamps0 = numClampedCcdMotions;
+
+        BulletStats.pushProfile(PROFILE_INTERNAL_SINGLE_STEP_SIMULATION);
         try {
             // apply gravity, predict motion
             predictUnconstraintMotion(timeStep);
@@ -397,6 +483,18 @@ public class DiscreteDynamicsWorld extends DynamicsWorld {
             if (internalTickCallback != null) {
                 internalTickCallback.internalTick(this, timeStep);
             }
+
+            event.end();
+            if (event.shouldCommit()) {
+                event.timeStep = timeStep;
+                event.pairs = broadphase().getOverlappingPairCache().getNumOverlappingPairs();
+                event.manifolds = dispatcher().getNumManifolds();
+                event.contacts = dispatcher().getNumContacts();
+                event.islands = islandManager.getNumActiveIslands();
+                event.iterations = getSolverInfo().numIterations;
+                event.ccdClamps = numClampedCcdMotions - ccdClamps0;
+                event.commit();
+            }
         } finally {
             BulletStats.popProfile();
         }
@@ -451,7 +549,7 @@ public class DiscreteDynamicsWorld extends DynamicsWorld {
     }
 
     private void updateActions(float timeStep) {
-        BulletStats.pushProfile("updateActions");
+        BulletStats.pushProfile(PROFILE_UPDATE_ACTIONS);
         try {
             for (int i = 0; i < actions.size(); i++) {
                 actions.get(i).updateAction(this, timeStep);
@@ -462,7 +560,7 @@ public class DiscreteDynamicsWorld extends DynamicsWorld {
     }
 
     private void updateVehicles(float timeStep) {
-        BulletStats.pushProfile("updateVehicles");
+        BulletStats.pushProfile(PROFILE_UPDATE_VEHICLES);
         try {
             for (int i = 0; i < vehicles.size(); i++) {
                 RaycastVehicle vehicle = vehicles.get(i);
@@ -474,7 +572,7 @@ public class DiscreteDynamicsWorld extends DynamicsWorld {
     }
 
     private void updateActivationState(float timeStep) {
-        BulletStats.pushProfile("updateActivationState");
+        BulletStats.pushProfile(PROFILE_UPDATE_ACTIVATION_STATE);
         try {
             Vector3f tmp = new Vector3f();
 
@@ -545,32 +643,52 @@ public class DiscreteDynamicsWorld extends DynamicsWorld {
         vehicles.remove(vehicle);
     }
 
-    private void solveConstraints(ContactSolverInfo solverInfo) {
-        BulletStats.pushProfile("solveConstraints");
+    protected void solveConstraints(ContactSolverInfo solverInfo) {
+        SolveConstraintsEvent event = new SolveConstraintsEvent();
+        event.begin();
+
+        BulletStats.pushProfile(PROFILE_SOLVE_CONSTRAINTS);
         try {
             // sorted version of all btTypedConstraint, based on islandId
-            sortedConstraints.clear();
-            sortedConstraints.addAll(constraints);
-            //Collections.sort(sortedConstraints, sortConstraintOnIslandPredicate);
-            MiscUtil.quickSort(sortedConstraints, sortConstraintOnIslandPredicate);
+            int numIslandKeys = sortConstraintsOnIslands();
 
             ObjectArrayList<TypedConstraint> constraintsPtr = getNumConstraints() != 0 ? sortedConstraints : null;
 
-            solverCallback.init(solverInfo, constraintSolver, constraintsPtr, sortedConstraints.size(), debugDrawer/*,m_stackAlloc*/, dispatcher);
+            solverCallback.init(solverInfo, constraintSolver, constraintsPtr, sortedConstraints.size(), islandConstraintOffsets, numIslandKeys, debugDrawer/*,m_stackAlloc*/, dispatcher);
 
             constraintSolver.prepareSolve(getCollisionWorld().getNumCollisionObjects(), getCollisionWorld().dispatcher().getNumManifolds());
 
             // solve all the constraints for this island
-            islandManager.buildAndProcessIslands(getCollisionWorld().dispatcher(), getCollisionWorld().getCollisionObjectArray(), solverCallback);
+            if (numTasks > 1 && solverCallback.initParallel(numTasks)) {
+                islandManager.buildAndProcessIslands(getCollisionWorld().dispatcher(), getCollisionWorld().getCollisionObjectArray(), solverCallback, taskExecutor, numTasks);
+                solverCallback.finishParallel();
+            } else {
+                islandManager.buildAndProcessIslands(getCollisionWorld().dispatcher(), getCollisionWorld().getCollisionObjectArray(), solverCallback);
+            }
 
             constraintSolver.allSolved(solverInfo, debugDrawer/*, m_stackAlloc*/);
+
+            event.end();
+            if (event.shouldCommit()) {
+                event.manifolds = dispatcher().getNumManifolds();
+                event.contacts = dispatcher().getNumContacts();
+                event.constraints = constraints.size();
+                event.islands = islandManager.getNumActiveIslands();
+                event.largestIslandBodies = islandManager.getLargestIslandBodies();
+                event.iterations = solverInfo.numIterations;
+                event.tasks = numTasks;
+                event.commit();
+            }
         } finally {
             BulletStats.popProfile();
         }
     }
 
-    private void calculateSimulationIslands() {
-        BulletStats.pushProfile("calculateSimulationIslands");
+    protected void calculateSimulationIslands() {
+        CalculateSimulationIslandsEvent event = new CalculateSimulationIslandsEvent();
+        event.begin();
+
+        BulletStats.pushProfile(PROFILE_CALCULATE_SIMULATION_ISLANDS);
         try {
             getSimulationIslandManager().updateActivationState(getCollisionWorld(), getCollisionWorld().dispatcher());
 
@@ -594,13 +712,25 @@ public class DiscreteDynamicsWorld extends DynamicsWorld {
 
             // Store the island id in each body
             getSimulationIslandManager().storeIslandActivationState(getCollisionWorld());
+
+            event.end();
+            if (event.shouldCommit()) {
+                event.collisionObjects = collisionObjects.size();
+                event.manifolds = dispatcher().getNumManifolds();
+                event.constraints = constraints.size();
+                event.commit();
+            }
         } finally {
             BulletStats.popProfile();
         }
     }
 
-    private void integrateTransforms(float timeStep) {
-        BulletStats.pushProfile("integrateTransforms");
+    protected void integrateTransforms(float timeStep) {
+        IntegrateTransformsEvent event = new IntegrateTransformsEvent();
+        event.begin();
+        int ccdClamps0 = numClampedCcdMotions;
+
+        BulletStats.pushProfile(PROFILE_INTEGRATE_TRANSFORMS);
         try {
             Vector3f tmp = new Vector3f();
             Transform tmpTrans = new Transform();
@@ -619,10 +749,12 @@ public class DiscreteDynamicsWorld extends DynamicsWorld {
                         float squareMotion = tmp.lengthSquared();
 
                         if (body.getCcdSquareMotionThreshold() != 0f && body.getCcdSquareMotionThreshold() < squareMotion) {
-                            BulletStats.pushProfile("CCD motion clamping");
+                            BulletStats.pushProfile(PROFILE_CCD_MOTION_CLAMPING);
                             try {
                                 if (body.getCollisionShape().isConvex()) {
                                     BulletStats.gNumClampedCcdMotions++;
+                                    Profiler.count(ProfileCounter.CLAMPED_CCD_MOTIONS);
+                                    numClampedCcdMotions++;
 
                                     ClosestNotMeConvexResultCallback sweepResults = new ClosestNotMeConvexResultCallback(body, body.getWorldTransform(tmpTrans).origin, predictedTrans.origin, broadphase().getOverlappingPairCache(), dispatcher());
                                     //ConvexShape convexShape = (ConvexShape)body.getCollisionShape();
@@ -649,13 +781,20 @@ public class DiscreteDynamicsWorld extends DynamicsWorld {
                     }
                 }
             }
+
+            event.end();
+            if (event.shouldCommit()) {
+                event.collisionObjects = collisionObjects.size();
+                event.ccdClamps = numClampedCcdMotions - ccdClamps0;
+                event.commit();
+            }
         } finally {
             BulletStats.popProfile();
         }
     }
 
-    private void predictUnconstraintMotion(float timeStep) {
-        BulletStats.pushProfile("predictUnconstraintMotion");
+    protected void predictUnconstraintMotion(float timeStep) {
+        BulletStats.pushProfile(PROFILE_PREDICT_UNCONSTRAINT_MOTION);
         try {
             Transform tmpTrans = new Transform();
 
@@ -974,7 +1113,100 @@ public class DiscreteDynamicsWorld extends DynamicsWorld {
         return DynamicsWorldType.DISCRETE_DYNAMICS_WORLD;
     }
 
+    /**
+     * Sets number of tasks used for solving simulation islands in parallel, using
+     * the common {@link ForkJoinPool}. See {@link #setNumTasks(int, Executor)}.
+     */
     public void setNumTasks(int numTasks) {
+        setNumTasks(numTasks, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Sets number of tasks used for solving simulation islands in parallel. The calling
+     * thread is one of the tasks, the rest is run by given executor. Each task uses its
+     * own copy of {@link SequentialImpulseConstraintSolver} and the random seeds are
+     * assigned to islands in the serial order, so the results are identical to solving
+     * with single task. Other solvers are always run serially.<p>
+     * <p>
+     * When the dispatcher is {@link CollisionDispatcher}, the narrowphase is run
+     * in parallel too (see {@link CollisionDispatcher#setDispatchExecutor}). The same
+     * applies to pair finding of {@link DbvtBroadphase} (see {@link DbvtBroadphase#setCollideExecutor}).
+     *
+     * @param numTasks number of tasks, 1 disables parallel processing
+     * @param executor executor for running the tasks
+     */
+    public void setNumTasks(int numTasks, Executor executor) {
+        if (numTasks < 1) {
+            throw new IllegalArgumentException("number of tasks must be positive");
+        }
+        if (numTasks > 1 && executor == null) {
+            throw new IllegalArgumentException("executor must be provided for multiple tasks");
+        }
+
+        this.numTasks = numTasks;
+        this.taskExecutor = numTasks > 1 ? executor : null;
+
+        if (dispatcher instanceof CollisionDispatcher) {
+            ((CollisionDispatcher) dispatcher).setDispatchExecutor(taskExecutor, numTasks);
+        }
+        if (broadphase() instanceof DbvtBroadphase) {
+            ((DbvtBroadphase) broadphase()).setCollideExecutor(taskExecutor, numTasks);
+        }
+    }
+
+    /**
+     * Sorts constraints into sortedConstraints by island id using counting sort and
+     * stores start offsets of each island into islandConstraintOffsets, island id
+     * -1 (constraints between static objects) is sorted first. The order of constraints
+     * within an island is preserved.
+     *
+     * @return number of island keys, the constraints of island id are stored at
+     *         islandConstraintOffsets[id + 1] (inclusive) to islandConstraintOffsets[id + 2] (exclusive)
+     */
+    private int sortConstraintsOnIslands() {
+        int numConstraints = constraints.size();
+        if (constraintIslandIds.length < numConstraints) {
+            constraintIslandIds = new int[Math.max(numConstraints, constraintIslandIds.length * 2)];
+        }
+
+        // island ids are indices of collision objects, so the range is small and dense:
+        int numIslandKeys = 0;
+        for (int i = 0; i < numConstraints; i++) {
+            int key = getConstraintIslandId(constraints.get(i)) + 1;
+            constraintIslandIds[i] = key;
+            if (key >= numIslandKeys) {
+                numIslandKeys = key + 1;
+            }
+        }
+
+        if (islandConstraintOffsets.length < numIslandKeys + 1) {
+            islandConstraintOffsets = new int[Math.max(numIslandKeys + 1, islandConstraintOffsets.length * 2)];
+        }
+        int[] offsets = islandConstraintOffsets;
+        Arrays.fill(offsets, 0, numIslandKeys + 1, 0);
+        for (int i = 0; i < numConstraints; i++) {
+            offsets[constraintIslandIds[i] + 1]++;
+        }
+        for (int k = 1; k <= numIslandKeys; k++) {
+            offsets[k] += offsets[k - 1];
+        }
+
+        sortedConstraints.clear();
+        for (int i = 0; i < numConstraints; i++) {
+            sortedConstraints.add(null);
+        }
+        // scatter using offsets as cursors, afterwards each offset points to the start of the next key:
+        for (int i = 0; i < numConstraints; i++) {
+            sortedConstraints.setQuick(offsets[constraintIslandIds[i]]++, constraints.get(i));
+        }
+        System.arraycopy(offsets, 0, offsets, 1, numIslandKeys);
+        offsets[0] = 0;
+
+        return numIslandKeys;
+    }
+
+    public int getNumTasks() {
+        return numTasks;
     }
 
     ////////////////////////////////////////////////////////////////////////////
@@ -984,20 +1216,82 @@ public class DiscreteDynamicsWorld extends DynamicsWorld {
         ConstraintSolver solver;
         ObjectArrayList<TypedConstraint> sortedConstraints;
         int numConstraints;
+        int[] islandConstraintOffsets;
+        int numIslandKeys;
         IDebugDraw debugDrawer;
         //public StackAlloc* m_stackAlloc;
         Dispatcher dispatcher;
 
-        void init(ContactSolverInfo solverInfo, ConstraintSolver solver, ObjectArrayList<TypedConstraint> sortedConstraints, int numConstraints, IDebugDraw debugDrawer, Dispatcher dispatcher) {
+        // parallel solving:
+        final ObjectArrayList<SequentialImpulseConstraintSolver> taskSolvers = new ObjectArrayList<>();
+        long[] islandSeeds = new long[16];
+        long randSeed;
+
+        void init(ContactSolverInfo solverInfo, ConstraintSolver solver, ObjectArrayList<TypedConstraint> sortedConstraints, int numConstraints, int[] islandConstraintOffsets, int numIslandKeys, IDebugDraw debugDrawer, Dispatcher dispatcher) {
             this.solverInfo = solverInfo;
             this.solver = solver;
             this.sortedConstraints = sortedConstraints;
             this.numConstraints = numConstraints;
+            this.islandConstraintOffsets = islandConstraintOffsets;
+            this.numIslandKeys = numIslandKeys;
             this.debugDrawer = debugDrawer;
             this.dispatcher = dispatcher;
         }
 
+        /**
+         * Prepares solvers for given number of tasks, returns false when the solver
+         * doesn't support parallel solving. The per-island random seeds can be replayed
+         * only in cache friendly mode, otherwise the islands are solved serially.
+         */
+        boolean initParallel(int numTasks) {
+            if (!(solver instanceof SequentialImpulseConstraintSolver)) {
+                return false;
+            }
+
+            SequentialImpulseConstraintSolver sequentialSolver = (SequentialImpulseConstraintSolver) solver;
+            if (!sequentialSolver.canReplayRandSeed(solverInfo)) {
+                return false;
+            }
+            if (taskSolvers.size() == 0 || taskSolvers.get(0) != sequentialSolver) {
+                taskSolvers.clear();
+                taskSolvers.add(sequentialSolver);
+            }
+            while (taskSolvers.size() < numTasks) {
+                taskSolvers.add(new SequentialImpulseConstraintSolver(sequentialSolver));
+            }
+
+            randSeed = sequentialSolver.getRandSeed();
+            return true;
+        }
+
+        void finishParallel() {
+            // continue with the seed the serial solving would end with:
+            ((SequentialImpulseConstraintSolver) solver).setRandSeed(randSeed);
+        }
+
+        @Override
+        public void prepareIsland(int islandIndex, ObjectArrayList<CollisionObject> bodies, int numBodies, ObjectArrayList<PersistentManifold> manifolds, int manifolds_offset, int numManifolds, int islandId) {
+            if (islandIndex >= islandSeeds.length) {
+                long[] newSeeds = new long[Math.max(islandIndex + 1, islandSeeds.length * 2)];
+                System.arraycopy(islandSeeds, 0, newSeeds, 0, islandSeeds.length);
+                islandSeeds = newSeeds;
+            }
+            islandSeeds[islandIndex] = randSeed;
+            randSeed = taskSolvers.get(0).getRandSeedAfterGroup(randSeed, manifolds, manifolds_offset, numManifolds, solverInfo);
+        }
+
+        @Override
+        public void processIsland(int taskIndex, int islandIndex, ObjectArrayList<CollisionObject> bodies, int numBodies, ObjectArrayList<PersistentManifold> manifolds, int manifolds_offset, int numManifolds, int islandId) {
+            SequentialImpulseConstraintSolver taskSolver = taskSolvers.get(taskIndex);
+            taskSolver.setRandSeed(islandSeeds[islandIndex]);
+            solveIsland(taskSolver, bodies, numBodies, manifolds, manifolds_offset, numManifolds, islandId);
+        }
+
         public void processIsland(ObjectArrayList<CollisionObject> bodies, int numBodies, ObjectArrayList<PersistentManifold> manifolds, int manifolds_offset, int numManifolds, int islandId) {
+            solveIsland(solver, bodies, numBodies, manifolds, manifolds_offset, numManifolds, islandId);
+        }
+
+        private void solveIsland(ConstraintSolver solver, ObjectArrayList<CollisionObject> bodies, int numBodies, ObjectArrayList<PersistentManifold> manifolds, int manifolds_offset, int numManifolds, int islandId) {
             if (islandId < 0) {
                 // we don't split islands, so all constraints/contact manifolds/bodies are passed into the solver regardless the island id
                 solver.solveGroup(bodies, numBodies, manifolds, manifolds_offset, numManifolds, sortedConstraints, 0, numConstraints, solverInfo, debugDrawer/*,m_stackAlloc*/, dispatcher);
@@ -1006,21 +1300,14 @@ public class DiscreteDynamicsWorld extends DynamicsWorld {
                 //ObjectArrayList<TypedConstraint> startConstraint = null;
                 int startConstraint_idx = -1;
                 int numCurConstraints = 0;
-                int i;
 
-                // find the first constraint for this island
-                for (i = 0; i < numConstraints; i++) {
-                    if (getConstraintIslandId(sortedConstraints.get(i)) == islandId) {
+                // JAVA NOTE: constraints are sorted by counting sort, the island range is looked up directly
+                int key = islandId + 1;
+                if (key < numIslandKeys) {
+                    numCurConstraints = islandConstraintOffsets[key + 1] - islandConstraintOffsets[key];
+                    if (numCurConstraints > 0) {
                         //startConstraint = &m_sortedConstraints[i];
-                        //startConstraint = sortedConstraints.subList(i, sortedConstraints.size());
-                        startConstraint_idx = i;
-                        break;
-                    }
-                }
-                // count the number of constraints in this island
-                for (; i < numConstraints; i++) {
-                    if (getConstraintIslandId(sortedConstraints.get(i)) == islandId) {
-                        numCurConstraints++;
+                        startConstraint_idx = islandConstraintOffsets[key];
                     }
                 }
 
@@ -154,7 +154,7 @@ public abstract class DynamicsWorld extends CollisionWorld {
         this.worldUserInfo = worldUserInfo;
     }
 
-    ContactSolverInfo getSolverInfo() {
+    public ContactSolverInfo getSolverInfo() {
         return solverInfo;
     }
 
@@ -360,19 +360,26 @@ public class RigidBody extends CollisionObject {
     }
 
     public void applyTorqueImpulse(Vector3f torque) {
-        Vector3f tmp = new Vector3f(torque);
-        invInertiaTensorWorld.transform(tmp);
-        angularVelocity.add(tmp);
+        applyTorqueImpulse(torque.x, torque.y, torque.z);
+    }
+
+    // scalar form, so that the impulse methods don't allocate in the constraint solver:
+    private void applyTorqueImpulse(float x, float y, float z) {
+        Matrix3f m = invInertiaTensorWorld;
+        angularVelocity.x += m.m00 * x + m.m01 * y + m.m02 * z;
+        angularVelocity.y += m.m10 * x + m.m11 * y + m.m12 * z;
+        angularVelocity.z += m.m20 * x + m.m21 * y + m.m22 * z;
     }
 
     public void applyImpulse(Vector3f impulse, Vector3f rel_pos) {
         if (inverseMass != 0f) {
             applyCentralImpulse(impulse);
             if (angularFactor != 0f) {
-                Vector3f tmp = new Vector3f();
-                tmp.cross(rel_pos, impulse);
-                tmp.scale(angularFactor);
-                applyTorqueImpulse(tmp);
+                // rel_pos x impulse, scaled by angularFactor
+                float x = (rel_pos.y * impulse.z - rel_pos.z * impulse.y) * angularFactor;
+                float y = (impulse.x * rel_pos.z - impulse.z * rel_pos.x) * angularFactor;
+                float z = (rel_pos.x * impulse.y - rel_pos.y * impulse.x) * angularFactor;
+                applyTorqueImpulse(x, y, z);
             }
         }
     }
@@ -50,6 +50,10 @@ public class ContactSolverInfo {
     }
 
     public ContactSolverInfo(ContactSolverInfo g) {
+        set(g);
+    }
+
+    public void set(ContactSolverInfo g) {
         tau = g.tau;
         damping = g.damping;
         friction = g.friction;
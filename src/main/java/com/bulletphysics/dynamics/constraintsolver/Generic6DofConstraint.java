@@ -103,6 +103,22 @@ public class Generic6DofConstraint extends TypedConstraint {
     private final boolean useLinearReferenceFrameA;
     private float timeStep;
 
+    // temporaries reused across calls, the constraint is solved by one thread at a time:
+    private final Transform tmpTransA = new Transform();
+    private final Transform tmpTransB = new Transform();
+    private final Matrix3f tmpMat = new Matrix3f();
+    private final Matrix3f relativeFrame = new Matrix3f();
+    private final Vector3f tmpVec = new Vector3f();
+    private final Vector3f tmp1 = new Vector3f();
+    private final Vector3f tmp2 = new Vector3f();
+    private final Vector3f invInertiaA = new Vector3f();
+    private final Vector3f invInertiaB = new Vector3f();
+    private final Vector3f axis0 = new Vector3f();
+    private final Vector3f axis2 = new Vector3f();
+    private final Vector3f normalWorld = new Vector3f();
+    private final Vector3f linearAxis = new Vector3f();
+    private final Vector3f angularAxis = new Vector3f();
+
     public Generic6DofConstraint() {
         super(TypedConstraintType.D6_CONSTRAINT_TYPE);
         useLinearReferenceFrameA = true;
@@ -157,14 +173,12 @@ public class Generic6DofConstraint extends TypedConstraint {
      * Calcs the euler angles between the two bodies.
      */
     private void calculateAngleInfo() {
-        Matrix3f mat = new Matrix3f();
-
-        Matrix3f relative_frame = new Matrix3f();
+        Matrix3f mat = tmpMat;
         mat.set(calculatedTransformA.basis);
         MatrixUtil.invert(mat);
-        relative_frame.mul(mat, calculatedTransformB.basis);
+        relativeFrame.mul(mat, calculatedTransformB.basis);
 
-        matrixToEulerXYZ(relative_frame, calculatedAxisAngleDiff);
+        matrixToEulerXYZ(relativeFrame, calculatedAxisAngleDiff);
 
         // in euler angle mode we do not actually constrain the angular velocity
         // along the axes axis[0] and axis[2] (although we do use axis[1]) :
@@ -181,10 +195,7 @@ public class Generic6DofConstraint extends TypedConstraint {
         // easier to take the euler rate expression for d(angle[2])/dt with respect
         // to the components of w and set that to 0.
 
-        Vector3f axis0 = new Vector3f();
         calculatedTransformB.basis.getColumn(0, axis0);
-
-        Vector3f axis2 = new Vector3f();
         calculatedTransformA.basis.getColumn(2, axis2);
 
         calculatedAxis[1].cross(axis2, axis0);
@@ -220,18 +231,13 @@ public class Generic6DofConstraint extends TypedConstraint {
     }
 
     private void buildLinearJacobian(/*JacobianEntry jacLinear*/int jacLinear_index, Vector3f normalWorld, Vector3f pivotAInW, Vector3f pivotBInW) {
-        Matrix3f mat1 = rbA.getCenterOfMassTransform(new Transform()).basis;
+        Matrix3f mat1 = rbA.getCenterOfMassTransform(tmpTransA).basis;
         mat1.transpose();
 
-        Matrix3f mat2 = rbB.getCenterOfMassTransform(new Transform()).basis;
+        Matrix3f mat2 = rbB.getCenterOfMassTransform(tmpTransB).basis;
         mat2.transpose();
 
-        Vector3f tmpVec = new Vector3f();
-
-        Vector3f tmp1 = new Vector3f();
         tmp1.sub(pivotAInW, rbA.getCenterOfMassPosition(tmpVec));
-
-        Vector3f tmp2 = new Vector3f();
         tmp2.sub(pivotBInW, rbB.getCenterOfMassPosition(tmpVec));
 
         jacLinear[jacLinear_index].init(
@@ -240,24 +246,24 @@ public class Generic6DofConstraint extends TypedConstraint {
                 tmp1,
                 tmp2,
                 normalWorld,
-                rbA.getInvInertiaDiagLocal(new Vector3f()),
+                rbA.getInvInertiaDiagLocal(invInertiaA),
                 rbA.getInvMass(),
-                rbB.getInvInertiaDiagLocal(new Vector3f()),
+                rbB.getInvInertiaDiagLocal(invInertiaB),
                 rbB.getInvMass());
     }
 
     private void buildAngularJacobian(/*JacobianEntry jacAngular*/int jacAngular_index, Vector3f jointAxisW) {
-        Matrix3f mat1 = rbA.getCenterOfMassTransform(new Transform()).basis;
+        Matrix3f mat1 = rbA.getCenterOfMassTransform(tmpTransA).basis;
         mat1.transpose();
 
-        Matrix3f mat2 = rbB.getCenterOfMassTransform(new Transform()).basis;
+        Matrix3f mat2 = rbB.getCenterOfMassTransform(tmpTransB).basis;
         mat2.transpose();
 
         jacAng[jacAngular_index].init(jointAxisW,
                 mat1,
                 mat2,
-                rbA.getInvInertiaDiagLocal(new Vector3f()),
-                rbB.getInvInertiaDiagLocal(new Vector3f()));
+                rbA.getInvInertiaDiagLocal(invInertiaA),
+                rbB.getInvInertiaDiagLocal(invInertiaB));
     }
 
     /**
@@ -284,19 +290,17 @@ public class Generic6DofConstraint extends TypedConstraint {
         // calculates transform
         calculateTransforms();
 
-        Vector3f tmpVec = new Vector3f();
-
         //  const btVector3& pivotAInW = m_calculatedTransformA.getOrigin();
         //  const btVector3& pivotBInW = m_calculatedTransformB.getOrigin();
         calcAnchorPos();
-        Vector3f pivotAInW = new Vector3f(anchorPos);
-        Vector3f pivotBInW = new Vector3f(anchorPos);
+        Vector3f pivotAInW = anchorPos;
+        Vector3f pivotBInW = anchorPos;
 
         // not used here
         //    btVector3 rel_pos1 = pivotAInW - m_rbA.getCenterOfMassPosition();
         //    btVector3 rel_pos2 = pivotBInW - m_rbB.getCenterOfMassPosition();
 
-        Vector3f normalWorld = new Vector3f();
+        Vector3f normalWorld = this.normalWorld;
         // linear part
         for (int i = 0; i < 3; i++) {
             if (linearLimits.isLimited(i)) {
@@ -334,11 +338,11 @@ public class Generic6DofConstraint extends TypedConstraint {
 
         // linear
 
-        Vector3f pointInA = new Vector3f(calculatedTransformA.origin);
-        Vector3f pointInB = new Vector3f(calculatedTransformB.origin);
+        Vector3f pointInA = calculatedTransformA.origin;
+        Vector3f pointInB = calculatedTransformB.origin;
 
         float jacDiagABInv;
-        Vector3f linear_axis = new Vector3f();
+        Vector3f linear_axis = linearAxis;
         for (i = 0; i < 3; i++) {
             if (linearLimits.isLimited(i)) {
                 jacDiagABInv = 1f / jacLinear[i].getDiagonal();
@@ -360,7 +364,7 @@ public class Generic6DofConstraint extends TypedConstraint {
         }
 
         // angular
-        Vector3f angular_axis = new Vector3f();
+        Vector3f angular_axis = angularAxis;
         float angularJacDiagABInv;
         for (i = 0; i < 3; i++) {
             if (angularLimits[i].needApplyTorques()) {
@@ -498,9 +502,6 @@ public class Generic6DofConstraint extends TypedConstraint {
         Vector3f pA = calculatedTransformA.origin;
         Vector3f pB = calculatedTransformB.origin;
 
-        Vector3f tmp1 = new Vector3f();
-        Vector3f tmp2 = new Vector3f();
-
         tmp1.scale(weight, pA);
         tmp2.scale(1f - weight, pB);
         anchorPos.add(tmp1, tmp2);
@@ -58,6 +58,11 @@ public class RotationalLimitMotor {
     private int currentLimit;//!< 0=free, 1=at lo limit, 2=at hi limit
     public float accumulatedImpulse;
 
+    // temporaries reused across calls to solveAngularLimits:
+    private final Vector3f vel_diff = new Vector3f();
+    private final Vector3f tmpVec = new Vector3f();
+    private final Vector3f motorImp = new Vector3f();
+
     public RotationalLimitMotor() {
         accumulatedImpulse = 0.f;
         targetVelocity = 0;
@@ -144,9 +149,9 @@ public class RotationalLimitMotor {
         maxMotorForce *= timeStep;
 
         // current velocity difference
-        Vector3f vel_diff = body0.getAngularVelocity(new Vector3f());
+        body0.getAngularVelocity(vel_diff);
         if (body1 != null) {
-            vel_diff.sub(body1.getAngularVelocity(new Vector3f()));
+            vel_diff.sub(body1.getAngularVelocity(tmpVec));
         }
 
         float rel_vel = axis.dot(vel_diff);
@@ -181,7 +186,6 @@ public class RotationalLimitMotor {
 
         clippedMotorImpulse = accumulatedImpulse - oldaccumImpulse;
 
-        Vector3f motorImp = new Vector3f();
         motorImp.scale(clippedMotorImpulse, axis);
 
         body0.applyTorqueImpulse(motorImp);
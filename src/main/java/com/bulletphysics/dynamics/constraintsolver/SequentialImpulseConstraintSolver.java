@@ -33,6 +33,9 @@ import com.bulletphysics.collision.narrowphase.PersistentManifold;
 import com.bulletphysics.dynamics.RigidBody;
 import com.bulletphysics.linearmath.IDebugDraw;
 import com.bulletphysics.linearmath.MiscUtil;
+import com.bulletphysics.linearmath.ProfileCounter;
+import com.bulletphysics.linearmath.ProfileSection;
+import com.bulletphysics.linearmath.Profiler;
 import com.bulletphysics.linearmath.Transform;
 import com.bulletphysics.linearmath.TransformUtil;
 import com.bulletphysics.util.IntArrayList;
@@ -55,6 +58,10 @@ import javax.vecmath.Vector3f;
  */
 public class SequentialImpulseConstraintSolver extends ConstraintSolver {
 
+    private static final ProfileSection PROFILE_SOLVE_GROUP_CACHE_FRIENDLY_SETUP = ProfileSection.get("solveGroupCacheFriendlySetup");
+    private static final ProfileSection PROFILE_SOLVE_GROUP_CACHE_FRIENDLY_ITERATIONS = ProfileSection.get("solveGroupCacheFriendlyIterations");
+    private static final ProfileSection PROFILE_SOLVE_GROUP = ProfileSection.get("solveGroup");
+
     private static final int MAX_CONTACT_SOLVER_TYPES = ContactConstraintEnum.MAX_CONTACT_SOLVER_TYPES.ordinal();
 
     private static final int SEQUENTIAL_IMPULSE_MAX_SOLVER_POINTS = 16384;
@@ -76,6 +83,33 @@ public class SequentialImpulseConstraintSolver extends ConstraintSolver {
     private long btSeed2 = 0L;
     private int totalCpd = 0;
 
+    // JAVA NOTE: temporary objects are allocated once per solver instance to keep the
+    // per-contact code free of allocations, a solver must not be used by several threads at once
+    private final ContactSolverInfo tmpInfo = new ContactSolverInfo();
+    private final Transform tmpTrans = new Transform();
+    private final Transform tmpTrans2 = new Transform();
+    private final Matrix3f tmpMat = new Matrix3f();
+    private final Vector3f tmpVec = new Vector3f();
+    private final Vector3f tmpVec2 = new Vector3f();
+    private final Vector3f tmpImpulse = new Vector3f();
+    private final Vector3f pos1 = new Vector3f();
+    private final Vector3f pos2 = new Vector3f();
+    private final Vector3f rel_pos1 = new Vector3f();
+    private final Vector3f rel_pos2 = new Vector3f();
+    private final Vector3f vel = new Vector3f();
+    private final Vector3f vel1 = new Vector3f();
+    private final Vector3f vel2 = new Vector3f();
+    private final Vector3f torqueAxis0 = new Vector3f();
+    private final Vector3f torqueAxis1 = new Vector3f();
+    private final Vector3f ftorqueAxis0 = new Vector3f();
+    private final Vector3f ftorqueAxis1 = new Vector3f();
+    private final Vector3f totalImpulse = new Vector3f();
+
+    // used by addFrictionConstraint, called while the above are in use
+    private final Matrix3f frictionTmpMat = new Matrix3f();
+    private final Vector3f frictionTorqueAxis = new Vector3f();
+    private final Vector3f frictionVec = new Vector3f();
+
     {
         for (int i = 0; i < gOrder.length; i++) {
             gOrder[i] = new OrderIndex();
@@ -104,11 +138,25 @@ public class SequentialImpulseConstraintSolver extends ConstraintSolver {
         }
     }
 
-    private static void initSolverBody(SolverBody solverBody, CollisionObject collisionObject) {
+    /**
+     * Creates solver with the same contact and friction solver functions as given solver.
+     * Used for solving simulation islands in parallel, each task needs its own solver.
+     */
+    public SequentialImpulseConstraintSolver(SequentialImpulseConstraintSolver solver) {
+        // JAVA NOTE: doesn't register ContactDestroyedCallback, it's global and the
+        // persistent data is released by the original solver
+        for (int i = 0; i < MAX_CONTACT_SOLVER_TYPES; i++) {
+            System.arraycopy(solver.contactDispatch[i], 0, contactDispatch[i], 0, MAX_CONTACT_SOLVER_TYPES);
+            System.arraycopy(solver.frictionDispatch[i], 0, frictionDispatch[i], 0, MAX_CONTACT_SOLVER_TYPES);
+        }
+        btSeed2 = solver.btSeed2;
+    }
+
+    private void initSolverBody(SolverBody solverBody, CollisionObject collisionObject) {
         RigidBody rb = RigidBody.upcast(collisionObject);
         if (rb != null) {
             rb.getAngularVelocity(solverBody.angularVelocity);
-            solverBody.centerOfMassPosition.set(collisionObject.getWorldTransform(new Transform()).origin);
+            solverBody.centerOfMassPosition.set(collisionObject.getWorldTransform(tmpTrans).origin);
             solverBody.friction = collisionObject.getFriction();
             solverBody.invMass = rb.getInvMass();
             rb.getLinearVelocity(solverBody.linearVelocity);
@@ -116,7 +164,7 @@ public class SequentialImpulseConstraintSolver extends ConstraintSolver {
             solverBody.angularFactor = rb.getAngularFactor();
         } else {
             solverBody.angularVelocity.set(0f, 0f, 0f);
-            solverBody.centerOfMassPosition.set(collisionObject.getWorldTransform(new Transform()).origin);
+            solverBody.centerOfMassPosition.set(collisionObject.getWorldTransform(tmpTrans).origin);
             solverBody.friction = collisionObject.getFriction();
             solverBody.invMass = 0f;
             solverBody.linearVelocity.set(0f, 0f, 0f);
@@ -132,7 +180,7 @@ public class SequentialImpulseConstraintSolver extends ConstraintSolver {
         return restitution * -rel_vel;
     }
 
-    private static void resolveSplitPenetrationImpulseCacheFriendly(
+    private void resolveSplitPenetrationImpulseCacheFriendly(
             SolverBody body1,
             SolverBody body2,
             SolverConstraint contactConstraint,
@@ -140,6 +188,7 @@ public class SequentialImpulseConstraintSolver extends ConstraintSolver {
 
         if (contactConstraint.penetration < solverInfo.splitImpulsePenetrationThreshold) {
             BulletStats.gNumSplitImpulseRecoveries++;
+            Profiler.count(ProfileCounter.SPLIT_IMPULSE_RECOVERIES);
             float normalImpulse;
 
             //  Optimized version of projected relative velocity, use precomputed cross products with normal
@@ -170,7 +219,7 @@ public class SequentialImpulseConstraintSolver extends ConstraintSolver {
 
             normalImpulse = contactConstraint.appliedPushImpulse - oldNormalImpulse;
 
-            Vector3f tmp = new Vector3f();
+            Vector3f tmp = tmpImpulse;
 
             tmp.scale(body1.invMass, contactConstraint.contactNormal);
             body1.internalApplyPushImpulse(tmp, contactConstraint.angularComponentA, normalImpulse);
@@ -184,7 +233,7 @@ public class SequentialImpulseConstraintSolver extends ConstraintSolver {
      * velocity + friction
      * response  between two dynamic objects with friction
      */
-    private static float resolveSingleCollisionCombinedCacheFriendly(
+    private float resolveSingleCollisionCombinedCacheFriendly(
             SolverBody body1,
             SolverBody body2,
             SolverConstraint contactConstraint,
@@ -224,7 +273,7 @@ public class SequentialImpulseConstraintSolver extends ConstraintSolver {
 
             normalImpulse = contactConstraint.appliedImpulse - oldNormalImpulse;
 
-            Vector3f tmp = new Vector3f();
+            Vector3f tmp = tmpImpulse;
 
             tmp.scale(body1.invMass, contactConstraint.contactNormal);
             body1.internalApplyImpulse(tmp, contactConstraint.angularComponentA, normalImpulse);
@@ -236,7 +285,7 @@ public class SequentialImpulseConstraintSolver extends ConstraintSolver {
         return normalImpulse;
     }
 
-    private static float resolveSingleFrictionCacheFriendly(
+    private float resolveSingleFrictionCacheFriendly(
             SolverBody body1,
             SolverBody body2,
             SolverConstraint contactConstraint,
@@ -287,7 +336,7 @@ public class SequentialImpulseConstraintSolver extends ConstraintSolver {
                 //GEN_set_max(contactConstraint.m_appliedImpulse, -limit);
             }
 
-            Vector3f tmp = new Vector3f();
+            Vector3f tmp = tmpImpulse;
 
             tmp.scale(body1.invMass, contactConstraint.contactNormal);
             body1.internalApplyImpulse(tmp, contactConstraint.angularComponentA, j1);
@@ -345,8 +394,12 @@ public class SequentialImpulseConstraintSolver extends ConstraintSolver {
         return 0f;
     }
 
+    private static long nextRandSeed(long seed) {
+        return (1664525L * seed + 1013904223L) & 0xffffffff;
+    }
+
     private long rand2() {
-        btSeed2 = (1664525L * btSeed2 + 1013904223L) & 0xffffffff;
+        btSeed2 = nextRandSeed(btSeed2);
         return btSeed2;
     }
 
@@ -398,25 +451,22 @@ public class SequentialImpulseConstraintSolver extends ConstraintSolver {
         solverConstraint.appliedPushImpulse = 0f;
         solverConstraint.penetration = 0f;
 
-        Vector3f ftorqueAxis1 = new Vector3f();
-        Matrix3f tmpMat = new Matrix3f();
-
         {
-            ftorqueAxis1.cross(rel_pos1, solverConstraint.contactNormal);
-            solverConstraint.relpos1CrossNormal.set(ftorqueAxis1);
+            frictionTorqueAxis.cross(rel_pos1, solverConstraint.contactNormal);
+            solverConstraint.relpos1CrossNormal.set(frictionTorqueAxis);
             if (body0 != null) {
-                solverConstraint.angularComponentA.set(ftorqueAxis1);
-                body0.getInvInertiaTensorWorld(tmpMat).transform(solverConstraint.angularComponentA);
+                solverConstraint.angularComponentA.set(frictionTorqueAxis);
+                body0.getInvInertiaTensorWorld(frictionTmpMat).transform(solverConstraint.angularComponentA);
             } else {
                 solverConstraint.angularComponentA.set(0f, 0f, 0f);
             }
         }
         {
-            ftorqueAxis1.cross(rel_pos2, solverConstraint.contactNormal);
-            solverConstraint.relpos2CrossNormal.set(ftorqueAxis1);
+            frictionTorqueAxis.cross(rel_pos2, solverConstraint.contactNormal);
+            solverConstraint.relpos2CrossNormal.set(frictionTorqueAxis);
             if (body1 != null) {
-                solverConstraint.angularComponentB.set(ftorqueAxis1);
-                body1.getInvInertiaTensorWorld(tmpMat).transform(solverConstraint.angularComponentB);
+                solverConstraint.angularComponentB.set(frictionTorqueAxis);
+                body1.getInvInertiaTensorWorld(frictionTmpMat).transform(solverConstraint.angularComponentB);
             } else {
                 solverConstraint.angularComponentB.set(0f, 0f, 0f);
             }
@@ -426,16 +476,15 @@ public class SequentialImpulseConstraintSolver extends ConstraintSolver {
         //	btScalar denom0 = rb0->computeImpulseDenominator(pos1,solverConstraint.m_contactNormal);
         //	btScalar denom1 = rb1->computeImpulseDenominator(pos2,solverConstraint.m_contactNormal);
         //#else
-        Vector3f vec = new Vector3f();
         float denom0 = 0f;
         float denom1 = 0f;
         if (body0 != null) {
-            vec.cross(solverConstraint.angularComponentA, rel_pos1);
-            denom0 = body0.getInvMass() + normalAxis.dot(vec);
+            frictionVec.cross(solverConstraint.angularComponentA, rel_pos1);
+            denom0 = body0.getInvMass() + normalAxis.dot(frictionVec);
         }
         if (body1 != null) {
-            vec.cross(solverConstraint.angularComponentB, rel_pos2);
-            denom1 = body1.getInvMass() + normalAxis.dot(vec);
+            frictionVec.cross(solverConstraint.angularComponentB, rel_pos2);
+            denom1 = body1.getInvMass() + normalAxis.dot(frictionVec);
         }
         //#endif //COMPUTE_IMPULSE_DENOM
 
@@ -443,7 +492,7 @@ public class SequentialImpulseConstraintSolver extends ConstraintSolver {
     }
 
     private float solveGroupCacheFriendlySetup(ObjectArrayList<CollisionObject> bodies, int numBodies, ObjectArrayList<PersistentManifold> manifoldPtr, int manifold_offset, int numManifolds, ObjectArrayList<TypedConstraint> constraints, int constraints_offset, int numConstraints, ContactSolverInfo infoGlobal, IDebugDraw debugDrawer/*,btStackAlloc* stackAlloc*/) {
-        BulletStats.pushProfile("solveGroupCacheFriendlySetup");
+        BulletStats.pushProfile(PROFILE_SOLVE_GROUP_CACHE_FRIENDLY_SETUP);
         try {
 
             if ((numConstraints + numManifolds) == 0) {
@@ -476,8 +525,6 @@ public class SequentialImpulseConstraintSolver extends ConstraintSolver {
             //		END_PROFILE("refreshManifolds");
             //	//#endif //FORCE_REFESH_CONTACT_MANIFOLDS
 
-            Transform tmpTrans = new Transform();
-
             //int sizeofSB = sizeof(btSolverBody);
             //int sizeofSC = sizeof(btSolverConstraint);
 
@@ -520,22 +567,6 @@ public class SequentialImpulseConstraintSolver extends ConstraintSolver {
                 {
                     int i;
 
-                    Vector3f rel_pos1 = new Vector3f();
-                    Vector3f rel_pos2 = new Vector3f();
-
-                    Vector3f pos1 = new Vector3f();
-                    Vector3f pos2 = new Vector3f();
-                    Vector3f vel = new Vector3f();
-                    Vector3f torqueAxis0 = new Vector3f();
-                    Vector3f torqueAxis1 = new Vector3f();
-                    Vector3f vel1 = new Vector3f();
-                    Vector3f vel2 = new Vector3f();
-                    Vector3f frictionDir1 = new Vector3f();
-                    Vector3f frictionDir2 = new Vector3f();
-                    Vector3f vec = new Vector3f();
-
-                    Matrix3f tmpMat = new Matrix3f();
-
                     for (i = 0; i < numManifolds; i++) {
                         manifold = manifoldPtr.get(manifold_offset + i);
                         colObj0 = (CollisionObject) manifold.getBody0();
@@ -545,6 +576,8 @@ public class SequentialImpulseConstraintSolver extends ConstraintSolver {
                         int solverBodyIdB = -1;
 
                         if (manifold.getNumContacts() != 0) {
+                            Profiler.count(ProfileCounter.CONTACT_POINTS, manifold.getNumContacts());
+
                             if (colObj0.getIslandTag() >= 0) {
                                 if (colObj0.getCompanionId() >= 0) {
                                     // body has already been converted
@@ -639,12 +672,12 @@ public class SequentialImpulseConstraintSolver extends ConstraintSolver {
                                         float denom0 = 0f;
                                         float denom1 = 0f;
                                         if (rb0 != null) {
-                                            vec.cross(solverConstraint.angularComponentA, rel_pos1);
-                                            denom0 = rb0.getInvMass() + cp.normalWorldOnB.dot(vec);
+                                            tmpVec.cross(solverConstraint.angularComponentA, rel_pos1);
+                                            denom0 = rb0.getInvMass() + cp.normalWorldOnB.dot(tmpVec);
                                         }
                                         if (rb1 != null) {
-                                            vec.cross(solverConstraint.angularComponentB, rel_pos2);
-                                            denom1 = rb1.getInvMass() + cp.normalWorldOnB.dot(vec);
+                                            tmpVec.cross(solverConstraint.angularComponentB, rel_pos2);
+                                            denom1 = rb1.getInvMass() + cp.normalWorldOnB.dot(tmpVec);
                                         }
                                         //#endif //COMPUTE_IMPULSE_DENOM
 
@@ -686,7 +719,7 @@ public class SequentialImpulseConstraintSolver extends ConstraintSolver {
                                         solverConstraint.penetration = 0f;
                                     }
 
-                                    Vector3f tmp = new Vector3f();
+                                    Vector3f tmp = tmpImpulse;
 
                                     // warm starting (or zero if disabled)
                                     if ((infoGlobal.solverMode & SolverMode.SOLVER_USE_WARMSTARTING) != 0) {
@@ -804,7 +837,7 @@ public class SequentialImpulseConstraintSolver extends ConstraintSolver {
     }
 
     private float solveGroupCacheFriendlyIterations(ObjectArrayList<CollisionObject> bodies, int numBodies, ObjectArrayList<PersistentManifold> manifoldPtr, int manifold_offset, int numManifolds, ObjectArrayList<TypedConstraint> constraints, int constraints_offset, int numConstraints, ContactSolverInfo infoGlobal, IDebugDraw debugDrawer/*,btStackAlloc* stackAlloc*/) {
-        BulletStats.pushProfile("solveGroupCacheFriendlyIterations");
+        BulletStats.pushProfile(PROFILE_SOLVE_GROUP_CACHE_FRIENDLY_ITERATIONS);
         try {
             int numConstraintPool = tmpSolverConstraintPool.size();
             int numFrictionPool = tmpSolverFrictionConstraintPool.size();
@@ -962,7 +995,7 @@ public class SequentialImpulseConstraintSolver extends ConstraintSolver {
      */
     @Override
     public float solveGroup(ObjectArrayList<CollisionObject> bodies, int numBodies, ObjectArrayList<PersistentManifold> manifoldPtr, int manifold_offset, int numManifolds, ObjectArrayList<TypedConstraint> constraints, int constraints_offset, int numConstraints, ContactSolverInfo infoGlobal, IDebugDraw debugDrawer, Dispatcher dispatcher) {
-        BulletStats.pushProfile("solveGroup");
+        BulletStats.pushProfile(PROFILE_SOLVE_GROUP);
         try {
             // TODO: solver cache friendly
             if ((infoGlobal.solverMode & SolverMode.SOLVER_CACHE_FRIENDLY) != 0) {
@@ -973,7 +1006,8 @@ public class SequentialImpulseConstraintSolver extends ConstraintSolver {
                 return solveGroupCacheFriendly(bodies, numBodies, manifoldPtr, manifold_offset, numManifolds, constraints, constraints_offset, numConstraints, infoGlobal, debugDrawer/*,stackAlloc*/);
             }
 
-            ContactSolverInfo info = new ContactSolverInfo(infoGlobal);
+            ContactSolverInfo info = tmpInfo;
+            info.set(infoGlobal);
 
             int numiter = infoGlobal.numIterations;
 
@@ -1055,22 +1089,7 @@ public class SequentialImpulseConstraintSolver extends ConstraintSolver {
             int numpoints = manifoldPtr.getNumContacts();
 
             BulletStats.gTotalContactPoints += numpoints;
-
-            Vector3f tmpVec = new Vector3f();
-            Matrix3f tmpMat3 = new Matrix3f();
-
-            Vector3f pos1 = new Vector3f();
-            Vector3f pos2 = new Vector3f();
-            Vector3f rel_pos1 = new Vector3f();
-            Vector3f rel_pos2 = new Vector3f();
-            Vector3f vel1 = new Vector3f();
-            Vector3f vel2 = new Vector3f();
-            Vector3f vel = new Vector3f();
-            Vector3f totalImpulse = new Vector3f();
-            Vector3f torqueAxis0 = new Vector3f();
-            Vector3f torqueAxis1 = new Vector3f();
-            Vector3f ftorqueAxis0 = new Vector3f();
-            Vector3f ftorqueAxis1 = new Vector3f();
+            Profiler.count(ProfileCounter.CONTACT_POINTS, numpoints);
 
             for (int i = 0; i < numpoints; i++) {
                 ManifoldPoint cp = manifoldPtr.getContactPoint(i);
@@ -1082,17 +1101,17 @@ public class SequentialImpulseConstraintSolver extends ConstraintSolver {
                     rel_pos2.sub(pos2, body1.getCenterOfMassPosition(tmpVec));
 
                     // this jacobian entry is re-used for all iterations
-                    Matrix3f mat1 = body0.getCenterOfMassTransform(new Transform()).basis;
+                    Matrix3f mat1 = body0.getCenterOfMassTransform(tmpTrans).basis;
                     mat1.transpose();
 
-                    Matrix3f mat2 = body1.getCenterOfMassTransform(new Transform()).basis;
+                    Matrix3f mat2 = body1.getCenterOfMassTransform(tmpTrans2).basis;
                     mat2.transpose();
 
                     JacobianEntry jac = jacobiansPool.get();
                     jac.init(mat1, mat2,
                             rel_pos1, rel_pos2, cp.normalWorldOnB,
-                            body0.getInvInertiaDiagLocal(new Vector3f()), body0.getInvMass(),
-                            body1.getInvInertiaDiagLocal(new Vector3f()), body1.getInvMass());
+                            body0.getInvInertiaDiagLocal(tmpVec), body0.getInvMass(),
+                            body1.getInvInertiaDiagLocal(tmpVec2), body1.getInvMass());
 
                     float jacDiagAB = jac.getDiagonal();
                     jacobiansPool.release(jac);
@@ -1199,36 +1218,36 @@ public class SequentialImpulseConstraintSolver extends ConstraintSolver {
                         torqueAxis0.cross(rel_pos1, cp.normalWorldOnB);
 
                         cpd.angularComponentA.set(torqueAxis0);
-                        body0.getInvInertiaTensorWorld(tmpMat3).transform(cpd.angularComponentA);
+                        body0.getInvInertiaTensorWorld(tmpMat).transform(cpd.angularComponentA);
 
                         torqueAxis1.cross(rel_pos2, cp.normalWorldOnB);
 
                         cpd.angularComponentB.set(torqueAxis1);
-                        body1.getInvInertiaTensorWorld(tmpMat3).transform(cpd.angularComponentB);
+                        body1.getInvInertiaTensorWorld(tmpMat).transform(cpd.angularComponentB);
                     }
                     {
                         ftorqueAxis0.cross(rel_pos1, cpd.frictionWorldTangential0);
 
                         cpd.frictionAngularComponent0A.set(ftorqueAxis0);
-                        body0.getInvInertiaTensorWorld(tmpMat3).transform(cpd.frictionAngularComponent0A);
+                        body0.getInvInertiaTensorWorld(tmpMat).transform(cpd.frictionAngularComponent0A);
                     }
                     {
                         ftorqueAxis1.cross(rel_pos1, cpd.frictionWorldTangential1);
 
                         cpd.frictionAngularComponent1A.set(ftorqueAxis1);
-                        body0.getInvInertiaTensorWorld(tmpMat3).transform(cpd.frictionAngularComponent1A);
+                        body0.getInvInertiaTensorWorld(tmpMat).transform(cpd.frictionAngularComponent1A);
                     }
                     {
                         ftorqueAxis0.cross(rel_pos2, cpd.frictionWorldTangential0);
 
                         cpd.frictionAngularComponent0B.set(ftorqueAxis0);
-                        body1.getInvInertiaTensorWorld(tmpMat3).transform(cpd.frictionAngularComponent0B);
+                        body1.getInvInertiaTensorWorld(tmpMat).transform(cpd.frictionAngularComponent0B);
                     }
                     {
                         ftorqueAxis1.cross(rel_pos2, cpd.frictionWorldTangential1);
 
                         cpd.frictionAngularComponent1B.set(ftorqueAxis1);
-                        body1.getInvInertiaTensorWorld(tmpMat3).transform(cpd.frictionAngularComponent1B);
+                        body1.getInvInertiaTensorWorld(tmpMat).transform(cpd.frictionAngularComponent1B);
                     }
 
                     ///
@@ -1273,6 +1292,46 @@ public class SequentialImpulseConstraintSolver extends ConstraintSolver {
         btSeed2 = seed;
     }
 
+    /**
+     * Returns true when {@link #getRandSeedAfterGroup} can be used with given solver
+     * settings, that is in the cache friendly mode only.
+     */
+    public boolean canReplayRandSeed(ContactSolverInfo infoGlobal) {
+        return (infoGlobal.solverMode & SolverMode.SOLVER_CACHE_FRIENDLY) != 0;
+    }
+
+    /**
+     * Returns random seed the solver would have after solving given group of manifolds
+     * starting with given seed. Allows to solve groups (simulation islands) in parallel
+     * with the same results as when they're solved one after another by single solver.
+     * Only the cache friendly mode is supported, see {@link #canReplayRandSeed}.
+     */
+    public long getRandSeedAfterGroup(long seed, ObjectArrayList<PersistentManifold> manifoldPtr, int manifold_offset, int numManifolds, ContactSolverInfo infoGlobal) {
+        assert ((infoGlobal.solverMode & SolverMode.SOLVER_CACHE_FRIENDLY) != 0);
+
+        if ((infoGlobal.solverMode & SolverMode.SOLVER_RANDMIZE_ORDER) == 0) {
+            return seed;
+        }
+
+        // see solveGroupCacheFriendlySetup, each contact adds one contact and two friction constraints:
+        int numContacts = 0;
+        for (int i = 0; i < numManifolds; i++) {
+            PersistentManifold manifold = manifoldPtr.get(manifold_offset + i);
+            for (int j = 0; j < manifold.getNumContacts(); j++) {
+                if (manifold.getContactPoint(j).getDistance() <= 0f) {
+                    numContacts++;
+                }
+            }
+        }
+
+        // see solveGroupCacheFriendlyIterations, the order is shuffled every 8th iteration:
+        long numCalls = (long) numContacts * 3 * ((infoGlobal.numIterations + 7) / 8);
+        for (long i = 0; i < numCalls; i++) {
+            seed = nextRandSeed(seed);
+        }
+        return seed;
+    }
+
     ////////////////////////////////////////////////////////////////////////////
 
     private static class OrderIndex {
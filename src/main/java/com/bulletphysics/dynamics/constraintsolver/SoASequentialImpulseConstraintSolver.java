@@ -0,0 +1,645 @@
+package com.bulletphysics.dynamics.constraintsolver;
+
+import com.bulletphysics.BulletGlobals;
+import com.bulletphysics.BulletStats;
+import com.bulletphysics.collision.broadphase.Dispatcher;
+import com.bulletphysics.collision.dispatch.CollisionObject;
+import com.bulletphysics.collision.narrowphase.ManifoldPoint;
+import com.bulletphysics.collision.narrowphase.PersistentManifold;
+import com.bulletphysics.dynamics.RigidBody;
+import com.bulletphysics.linearmath.IDebugDraw;
+import com.bulletphysics.linearmath.ProfileCounter;
+import com.bulletphysics.linearmath.ProfileSection;
+import com.bulletphysics.linearmath.Profiler;
+import com.bulletphysics.linearmath.Transform;
+import com.bulletphysics.linearmath.TransformUtil;
+import com.bulletphysics.util.ObjectArrayList;
+
+import javax.vecmath.Matrix3f;
+import javax.vecmath.Vector3f;
+
+/**
+ * Variant of the cache friendly mode of {@link SequentialImpulseConstraintSolver} that
+ * stores solver bodies and contact/friction constraints in flat float arrays indexed
+ * by solver id (structure of arrays) instead of pooled {@link SolverBody} and
+ * {@link SolverConstraint} objects. The solver iterations then run as tight loops
+ * over primitive arrays without any pointer chasing.<p>
+ *
+ * Contacts are solved the same way and in the same (randomized) order as by
+ * {@link SequentialImpulseConstraintSolver}. Split impulse is not supported.
+ */
+public class SoASequentialImpulseConstraintSolver extends ConstraintSolver {
+
+    private static final ProfileSection PROFILE_SOLVE_GROUP = ProfileSection.get("solveGroup");
+    private static final ProfileSection PROFILE_SOLVE_GROUP_CACHE_FRIENDLY_SETUP = ProfileSection.get("solveGroupCacheFriendlySetup");
+    private static final ProfileSection PROFILE_SOLVE_GROUP_CACHE_FRIENDLY_ITERATIONS = ProfileSection.get("solveGroupCacheFriendlyIterations");
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    // solver bodies:
+    private int bodyCount;
+    private float[] bodyLinearVelocity = new float[INITIAL_CAPACITY * 3];
+    private float[] bodyAngularVelocity = new float[INITIAL_CAPACITY * 3];
+    private float[] bodyInvMass = new float[INITIAL_CAPACITY];
+    private float[] bodyAngularFactor = new float[INITIAL_CAPACITY];
+    private RigidBody[] bodyOriginal = new RigidBody[INITIAL_CAPACITY];
+
+    private final ConstraintArrays contacts = new ConstraintArrays();
+    private final ConstraintArrays frictions = new ConstraintArrays();
+
+    private int[] contactOrder = new int[INITIAL_CAPACITY];
+    private int[] frictionOrder = new int[INITIAL_CAPACITY];
+
+    // btSeed2 is used for re-arranging the constraint rows. improves convergence/quality of friction
+    private long btSeed2 = 0L;
+
+    private final Transform tmpTrans = new Transform();
+    private final Matrix3f tmpMat = new Matrix3f();
+    private final Vector3f tmpVec = new Vector3f();
+    private final Vector3f pos1 = new Vector3f();
+    private final Vector3f pos2 = new Vector3f();
+    private final Vector3f rel_pos1 = new Vector3f();
+    private final Vector3f rel_pos2 = new Vector3f();
+    private final Vector3f vel = new Vector3f();
+    private final Vector3f vel1 = new Vector3f();
+    private final Vector3f vel2 = new Vector3f();
+    private final Vector3f relpos1CrossNormal = new Vector3f();
+    private final Vector3f relpos2CrossNormal = new Vector3f();
+    private final Vector3f angularComponentA = new Vector3f();
+    private final Vector3f angularComponentB = new Vector3f();
+
+    public long getRandSeed() {
+        return btSeed2;
+    }
+
+    public void setRandSeed(long seed) {
+        btSeed2 = seed;
+    }
+
+    @Override
+    public void reset() {
+        btSeed2 = 0;
+    }
+
+    /**
+     * Sequentially applies impulses.
+     */
+    @Override
+    public float solveGroup(ObjectArrayList<CollisionObject> bodies, int numBodies, ObjectArrayList<PersistentManifold> manifoldPtr, int manifold_offset, int numManifolds, ObjectArrayList<TypedConstraint> constraints, int constraints_offset, int numConstraints, ContactSolverInfo infoGlobal, IDebugDraw debugDrawer, Dispatcher dispatcher) {
+        BulletStats.pushProfile(PROFILE_SOLVE_GROUP);
+        try {
+            // you need to provide at least some bodies
+            assert (bodies != null);
+            assert (numBodies != 0);
+            assert (!infoGlobal.splitImpulse);
+
+            if ((numConstraints + numManifolds) == 0) {
+                return 0f;
+            }
+
+            setup(manifoldPtr, manifold_offset, numManifolds, constraints, constraints_offset, numConstraints, infoGlobal);
+            iterate(constraints, constraints_offset, numConstraints, infoGlobal);
+            finish();
+            return 0f;
+        } finally {
+            BulletStats.popProfile();
+        }
+    }
+
+    private void setup(ObjectArrayList<PersistentManifold> manifoldPtr, int manifold_offset, int numManifolds, ObjectArrayList<TypedConstraint> constraints, int constraints_offset, int numConstraints, ContactSolverInfo infoGlobal) {
+        BulletStats.pushProfile(PROFILE_SOLVE_GROUP_CACHE_FRIENDLY_SETUP);
+        try {
+            boolean warmstarting = (infoGlobal.solverMode & SolverMode.SOLVER_USE_WARMSTARTING) != 0;
+
+            for (int i = 0; i < numManifolds; i++) {
+                PersistentManifold manifold = manifoldPtr.get(manifold_offset + i);
+                int numContacts = manifold.getNumContacts();
+                if (numContacts == 0) {
+                    continue;
+                }
+                Profiler.count(ProfileCounter.CONTACT_POINTS, numContacts);
+
+                CollisionObject colObj0 = (CollisionObject) manifold.getBody0();
+                CollisionObject colObj1 = (CollisionObject) manifold.getBody1();
+                RigidBody rb0 = RigidBody.upcast(colObj0);
+                RigidBody rb1 = RigidBody.upcast(colObj1);
+
+                int solverBodyIdA = getSolverBody(colObj0);
+                int solverBodyIdB = getSolverBody(colObj1);
+
+                for (int j = 0; j < numContacts; j++) {
+                    ManifoldPoint cp = manifold.getContactPoint(j);
+                    if (cp.getDistance() > 0f) {
+                        continue;
+                    }
+
+                    cp.getPositionWorldOnA(pos1);
+                    cp.getPositionWorldOnB(pos2);
+
+                    rel_pos1.sub(pos1, colObj0.getWorldTransform(tmpTrans).origin);
+                    rel_pos2.sub(pos2, colObj1.getWorldTransform(tmpTrans).origin);
+
+                    float relaxation = 1f;
+
+                    if (rb0 != null) {
+                        rb0.getVelocityInLocalPoint(rel_pos1, vel1);
+                    } else {
+                        vel1.set(0f, 0f, 0f);
+                    }
+
+                    if (rb1 != null) {
+                        rb1.getVelocityInLocalPoint(rel_pos2, vel2);
+                    } else {
+                        vel2.set(0f, 0f, 0f);
+                    }
+
+                    vel.sub(vel1, vel2);
+
+                    float rel_vel = cp.normalWorldOnB.dot(vel);
+
+                    int c = addConstraint(contacts, cp.normalWorldOnB, solverBodyIdA, solverBodyIdB, rel_pos1, rel_pos2, rb0, rb1, relaxation);
+                    contacts.friction[c] = cp.combinedFriction;
+                    contacts.link[c] = frictions.size;
+                    contacts.originalContactPoint[c] = cp;
+
+                    float penetration = Math.min(cp.getDistance() + infoGlobal.linearSlop, 0f);
+                    float restitution = cp.combinedRestitution * -rel_vel;
+                    if (restitution <= 0f) {
+                        restitution = 0f;
+                    }
+
+                    float penVel = -penetration / infoGlobal.timeStep;
+
+                    if (restitution > penVel) {
+                        penetration = 0f;
+                    }
+
+                    contacts.penetration[c] = penetration;
+                    contacts.restitution[c] = restitution;
+
+                    if (!cp.lateralFrictionInitialized) {
+                        cp.lateralFrictionDir1.scale(rel_vel, cp.normalWorldOnB);
+                        cp.lateralFrictionDir1.sub(vel, cp.lateralFrictionDir1);
+
+                        float lat_rel_vel = cp.lateralFrictionDir1.lengthSquared();
+                        if (lat_rel_vel > BulletGlobals.FLT_EPSILON) {
+                            cp.lateralFrictionDir1.scale(1f / (float) Math.sqrt(lat_rel_vel));
+                            addFrictionConstraint(cp.lateralFrictionDir1, c, solverBodyIdA, solverBodyIdB, rb0, rb1, relaxation);
+                            cp.lateralFrictionDir2.cross(cp.lateralFrictionDir1, cp.normalWorldOnB);
+                            cp.lateralFrictionDir2.normalize();
+                        } else {
+                            TransformUtil.planeSpace1(cp.normalWorldOnB, cp.lateralFrictionDir1, cp.lateralFrictionDir2);
+                            addFrictionConstraint(cp.lateralFrictionDir1, c, solverBodyIdA, solverBodyIdB, rb0, rb1, relaxation);
+                        }
+                        addFrictionConstraint(cp.lateralFrictionDir2, c, solverBodyIdA, solverBodyIdB, rb0, rb1, relaxation);
+                        cp.lateralFrictionInitialized = true;
+                    } else {
+                        addFrictionConstraint(cp.lateralFrictionDir1, c, solverBodyIdA, solverBodyIdB, rb0, rb1, relaxation);
+                        addFrictionConstraint(cp.lateralFrictionDir2, c, solverBodyIdA, solverBodyIdB, rb0, rb1, relaxation);
+                    }
+
+                    // warm starting (or zero if disabled)
+                    int f = contacts.link[c];
+                    if (warmstarting) {
+                        warmstart(contacts, c, cp.appliedImpulse * infoGlobal.warmstartingFactor, rb0, rb1);
+                        warmstart(frictions, f, cp.appliedImpulseLateral1 * infoGlobal.warmstartingFactor, rb0, rb1);
+                        warmstart(frictions, f + 1, cp.appliedImpulseLateral2 * infoGlobal.warmstartingFactor, rb0, rb1);
+                    }
+                }
+            }
+
+            for (int j = 0; j < numConstraints; j++) {
+                TypedConstraint constraint = constraints.get(constraints_offset + j);
+                constraint.buildJacobian();
+            }
+
+            contactOrder = ensureCapacity(contactOrder, contacts.size);
+            for (int i = 0; i < contacts.size; i++) {
+                contactOrder[i] = i;
+            }
+            frictionOrder = ensureCapacity(frictionOrder, frictions.size);
+            for (int i = 0; i < frictions.size; i++) {
+                frictionOrder[i] = i;
+            }
+        } finally {
+            BulletStats.popProfile();
+        }
+    }
+
+    private void iterate(ObjectArrayList<TypedConstraint> constraints, int constraints_offset, int numConstraints, ContactSolverInfo infoGlobal) {
+        BulletStats.pushProfile(PROFILE_SOLVE_GROUP_CACHE_FRIENDLY_ITERATIONS);
+        try {
+            int numContacts = contacts.size;
+            int numFrictions = frictions.size;
+            int[] contactOrder = this.contactOrder;
+            int[] frictionOrder = this.frictionOrder;
+            float erp = infoGlobal.erp;
+            float timeStep = infoGlobal.timeStep;
+
+            for (int iteration = 0; iteration < infoGlobal.numIterations; iteration++) {
+                if ((infoGlobal.solverMode & SolverMode.SOLVER_RANDMIZE_ORDER) != 0) {
+                    if ((iteration & 7) == 0) {
+                        shuffle(contactOrder, numContacts);
+                        shuffle(frictionOrder, numFrictions);
+                    }
+                }
+
+                for (int j = 0; j < numConstraints; j++) {
+                    TypedConstraint constraint = constraints.get(constraints_offset + j);
+                    // todo: use solver bodies, so we don't need to copy from/to btRigidBody
+
+                    RigidBody ra = constraint.getRigidBodyA();
+                    if ((ra.getIslandTag() >= 0) && (ra.getCompanionId() >= 0)) {
+                        writebackVelocity(ra.getCompanionId());
+                    }
+                    RigidBody rb = constraint.getRigidBodyB();
+                    if ((rb.getIslandTag() >= 0) && (rb.getCompanionId() >= 0)) {
+                        writebackVelocity(rb.getCompanionId());
+                    }
+
+                    constraint.solveConstraint(timeStep);
+
+                    if ((ra.getIslandTag() >= 0) && (ra.getCompanionId() >= 0)) {
+                        readVelocity(ra.getCompanionId());
+                    }
+                    if ((rb.getIslandTag() >= 0) && (rb.getCompanionId() >= 0)) {
+                        readVelocity(rb.getCompanionId());
+                    }
+                }
+
+                for (int j = 0; j < numContacts; j++) {
+                    resolveContact(contactOrder[j], erp, timeStep);
+                }
+
+                float[] appliedImpulse = contacts.appliedImpulse;
+                int[] frictionLink = frictions.link;
+                for (int j = 0; j < numFrictions; j++) {
+                    int f = frictionOrder[j];
+                    resolveFriction(f, appliedImpulse[frictionLink[f]]);
+                }
+            }
+        } finally {
+            BulletStats.popProfile();
+        }
+    }
+
+    private void finish() {
+        float[] appliedImpulse = frictions.appliedImpulse;
+        for (int c = 0; c < contacts.size; c++) {
+            ManifoldPoint pt = contacts.originalContactPoint[c];
+            assert (pt != null);
+            int f = contacts.link[c];
+            pt.appliedImpulse = contacts.appliedImpulse[c];
+            pt.appliedImpulseLateral1 = appliedImpulse[f];
+            // JAVA NOTE: SequentialImpulseConstraintSolver doesn't store the second lateral impulse
+            pt.appliedImpulseLateral2 = appliedImpulse[f + 1];
+            contacts.originalContactPoint[c] = null;
+        }
+
+        for (int i = 0; i < bodyCount; i++) {
+            writebackVelocity(i);
+            bodyOriginal[i] = null;
+        }
+
+        bodyCount = 0;
+        contacts.size = 0;
+        frictions.size = 0;
+    }
+
+    /**
+     * Velocity + friction response between two dynamic objects with friction.
+     */
+    private void resolveContact(int c, float erp, float timeStep) {
+        ConstraintArrays cs = contacts;
+        float[] lv = bodyLinearVelocity;
+        float[] av = bodyAngularVelocity;
+
+        int a = cs.bodyA[c] * 3;
+        int b = cs.bodyB[c] * 3;
+        int i = c * 3;
+        float[] n = cs.normal;
+        float[] r1 = cs.relpos1CrossNormal;
+        float[] r2 = cs.relpos2CrossNormal;
+
+        //  Optimized version of projected relative velocity, use precomputed cross products with normal
+        float vel1Dotn = (n[i] * lv[a] + n[i + 1] * lv[a + 1] + n[i + 2] * lv[a + 2]) + (r1[i] * av[a] + r1[i + 1] * av[a + 1] + r1[i + 2] * av[a + 2]);
+        float vel2Dotn = (n[i] * lv[b] + n[i + 1] * lv[b + 1] + n[i + 2] * lv[b + 2]) + (r2[i] * av[b] + r2[i + 1] * av[b + 1] + r2[i + 2] * av[b + 2]);
+        float rel_vel = vel1Dotn - vel2Dotn;
+
+        float positionalError = -cs.penetration[c] * erp / timeStep;
+        float velocityError = cs.restitution[c] - rel_vel;
+
+        float penetrationImpulse = positionalError * cs.jacDiagABInv[c];
+        float velocityImpulse = velocityError * cs.jacDiagABInv[c];
+        float normalImpulse = penetrationImpulse + velocityImpulse;
+
+        // See Erin Catto's GDC 2006 paper: Clamp the accumulated impulse
+        float oldNormalImpulse = cs.appliedImpulse[c];
+        float sum = oldNormalImpulse + normalImpulse;
+        cs.appliedImpulse[c] = Math.max(0f, sum);
+
+        normalImpulse = cs.appliedImpulse[c] - oldNormalImpulse;
+
+        applyImpulse(cs.bodyA[c], cs, c, cs.angularComponentA, normalImpulse);
+        applyImpulse(cs.bodyB[c], cs, c, cs.angularComponentB, -normalImpulse);
+    }
+
+    private void resolveFriction(int f, float appliedNormalImpulse) {
+        if (appliedNormalImpulse > 0f) {
+            ConstraintArrays cs = frictions;
+            float[] lv = bodyLinearVelocity;
+            float[] av = bodyAngularVelocity;
+
+            int a = cs.bodyA[f] * 3;
+            int b = cs.bodyB[f] * 3;
+            int i = f * 3;
+            float[] n = cs.normal;
+            float[] r1 = cs.relpos1CrossNormal;
+            float[] r2 = cs.relpos2CrossNormal;
+
+            float limit = appliedNormalImpulse * cs.friction[f];
+
+            float vel1Dotn = (n[i] * lv[a] + n[i + 1] * lv[a + 1] + n[i + 2] * lv[a + 2]) + (r1[i] * av[a] + r1[i + 1] * av[a + 1] + r1[i + 2] * av[a + 2]);
+            float vel2Dotn = (n[i] * lv[b] + n[i + 1] * lv[b + 1] + n[i + 2] * lv[b + 2]) + (r2[i] * av[b] + r2[i + 1] * av[b + 1] + r2[i + 2] * av[b + 2]);
+            float rel_vel = vel1Dotn - vel2Dotn;
+
+            // calculate j that moves us to zero relative velocity
+            float j1 = -rel_vel * cs.jacDiagABInv[f];
+            float oldTangentImpulse = cs.appliedImpulse[f];
+            float tangentImpulse = oldTangentImpulse + j1;
+
+            if (limit < tangentImpulse) {
+                tangentImpulse = limit;
+            } else if (tangentImpulse < -limit) {
+                tangentImpulse = -limit;
+            }
+            cs.appliedImpulse[f] = tangentImpulse;
+            j1 = tangentImpulse - oldTangentImpulse;
+
+            applyImpulse(cs.bodyA[f], cs, f, cs.angularComponentA, j1);
+            applyImpulse(cs.bodyB[f], cs, f, cs.angularComponentB, -j1);
+        }
+    }
+
+    /**
+     * Same as {@link SolverBody#internalApplyImpulse}, linear component is normal of given constraint scaled by inverse mass.
+     */
+    private void applyImpulse(int body, ConstraintArrays cs, int c, float[] angularComponent, float impulseMagnitude) {
+        float invMass = bodyInvMass[body];
+        if (invMass != 0f) {
+            float[] lv = bodyLinearVelocity;
+            float[] av = bodyAngularVelocity;
+            float[] n = cs.normal;
+            int b = body * 3;
+            int i = c * 3;
+            lv[b] = impulseMagnitude * (invMass * n[i]) + lv[b];
+            lv[b + 1] = impulseMagnitude * (invMass * n[i + 1]) + lv[b + 1];
+            lv[b + 2] = impulseMagnitude * (invMass * n[i + 2]) + lv[b + 2];
+
+            float angularImpulse = impulseMagnitude * bodyAngularFactor[body];
+            av[b] = angularImpulse * angularComponent[i] + av[b];
+            av[b + 1] = angularImpulse * angularComponent[i + 1] + av[b + 1];
+            av[b + 2] = angularImpulse * angularComponent[i + 2] + av[b + 2];
+        }
+    }
+
+    private void warmstart(ConstraintArrays cs, int c, float appliedImpulse, RigidBody rb0, RigidBody rb1) {
+        cs.appliedImpulse[c] = appliedImpulse;
+        if (rb0 != null) {
+            applyImpulse(cs.bodyA[c], cs, c, cs.angularComponentA, appliedImpulse);
+        }
+        if (rb1 != null) {
+            applyImpulse(cs.bodyB[c], cs, c, cs.angularComponentB, -appliedImpulse);
+        }
+    }
+
+    private void addFrictionConstraint(Vector3f normalAxis, int contactIndex, int solverBodyIdA, int solverBodyIdB, RigidBody rb0, RigidBody rb1, float relaxation) {
+        int f = addConstraint(frictions, normalAxis, solverBodyIdA, solverBodyIdB, rel_pos1, rel_pos2, rb0, rb1, relaxation);
+        frictions.friction[f] = contacts.friction[contactIndex];
+        frictions.link[f] = contactIndex;
+    }
+
+    private int addConstraint(ConstraintArrays cs, Vector3f normal, int solverBodyIdA, int solverBodyIdB, Vector3f rel_pos1, Vector3f rel_pos2, RigidBody rb0, RigidBody rb1, float relaxation) {
+        relpos1CrossNormal.cross(rel_pos1, normal);
+        relpos2CrossNormal.cross(rel_pos2, normal);
+
+        float denom0 = 0f;
+        float denom1 = 0f;
+        if (rb0 != null) {
+            angularComponentA.set(relpos1CrossNormal);
+            rb0.getInvInertiaTensorWorld(tmpMat).transform(angularComponentA);
+            tmpVec.cross(angularComponentA, rel_pos1);
+            denom0 = rb0.getInvMass() + normal.dot(tmpVec);
+        } else {
+            angularComponentA.set(0f, 0f, 0f);
+        }
+        if (rb1 != null) {
+            angularComponentB.set(relpos2CrossNormal);
+            rb1.getInvInertiaTensorWorld(tmpMat).transform(angularComponentB);
+            tmpVec.cross(angularComponentB, rel_pos2);
+            denom1 = rb1.getInvMass() + normal.dot(tmpVec);
+        } else {
+            angularComponentB.set(0f, 0f, 0f);
+        }
+
+        int c = cs.add();
+        cs.bodyA[c] = solverBodyIdA;
+        cs.bodyB[c] = solverBodyIdB;
+        set(cs.normal, c, normal);
+        set(cs.relpos1CrossNormal, c, relpos1CrossNormal);
+        set(cs.relpos2CrossNormal, c, relpos2CrossNormal);
+        set(cs.angularComponentA, c, angularComponentA);
+        set(cs.angularComponentB, c, angularComponentB);
+        cs.jacDiagABInv[c] = relaxation / (denom0 + denom1);
+        cs.appliedImpulse[c] = 0f;
+        cs.penetration[c] = 0f;
+        cs.restitution[c] = 0f;
+        return c;
+    }
+
+    /**
+     * Returns solver body id for given object, static objects get new solver body each time.
+     */
+    private int getSolverBody(CollisionObject collisionObject) {
+        if (collisionObject.getIslandTag() >= 0) {
+            if (collisionObject.getCompanionId() >= 0) {
+                // body has already been converted
+                return collisionObject.getCompanionId();
+            }
+            int id = addSolverBody(collisionObject);
+            collisionObject.setCompanionId(id);
+            return id;
+        }
+        // create a static body
+        return addSolverBody(collisionObject);
+    }
+
+    private int addSolverBody(CollisionObject collisionObject) {
+        int id = bodyCount++;
+        if (id == bodyInvMass.length) {
+            int capacity = id * 2;
+            bodyLinearVelocity = copyOf(bodyLinearVelocity, capacity * 3);
+            bodyAngularVelocity = copyOf(bodyAngularVelocity, capacity * 3);
+            bodyInvMass = copyOf(bodyInvMass, capacity);
+            bodyAngularFactor = copyOf(bodyAngularFactor, capacity);
+            RigidBody[] original = new RigidBody[capacity];
+            System.arraycopy(bodyOriginal, 0, original, 0, id);
+            bodyOriginal = original;
+        }
+
+        RigidBody rb = RigidBody.upcast(collisionObject);
+        if (rb != null) {
+            set(bodyLinearVelocity, id, rb.getLinearVelocity(tmpVec));
+            set(bodyAngularVelocity, id, rb.getAngularVelocity(tmpVec));
+            bodyInvMass[id] = rb.getInvMass();
+            bodyAngularFactor[id] = rb.getAngularFactor();
+            bodyOriginal[id] = rb;
+        } else {
+            tmpVec.set(0f, 0f, 0f);
+            set(bodyLinearVelocity, id, tmpVec);
+            set(bodyAngularVelocity, id, tmpVec);
+            bodyInvMass[id] = 0f;
+            bodyAngularFactor[id] = 1f;
+            bodyOriginal[id] = null;
+        }
+        return id;
+    }
+
+    private void writebackVelocity(int body) {
+        if (bodyInvMass[body] != 0f) {
+            RigidBody rb = bodyOriginal[body];
+            rb.setLinearVelocity(get(bodyLinearVelocity, body, tmpVec));
+            rb.setAngularVelocity(get(bodyAngularVelocity, body, tmpVec));
+        }
+    }
+
+    private void readVelocity(int body) {
+        if (bodyInvMass[body] != 0f) {
+            RigidBody rb = bodyOriginal[body];
+            set(bodyLinearVelocity, body, rb.getLinearVelocity(tmpVec));
+            set(bodyAngularVelocity, body, rb.getAngularVelocity(tmpVec));
+        }
+    }
+
+    private void shuffle(int[] order, int count) {
+        for (int j = 0; j < count; ++j) {
+            int tmp = order[j];
+            int swapi = randInt2(j + 1);
+            order[j] = order[swapi];
+            order[swapi] = tmp;
+        }
+    }
+
+    private long rand2() {
+        btSeed2 = (1664525L * btSeed2 + 1013904223L) & 0xffffffff;
+        return btSeed2;
+    }
+
+    // See ODE: adam's all-int straightforward(?) dRandInt (0..n-1)
+    private int randInt2(int n) {
+        // seems good; xor-fold and modulus
+        long r = rand2();
+
+        // note: probably more aggressive than it needs to be -- might be
+        //       able to get away without one or two of the innermost branches.
+        if (n <= 0x00010000L) {
+            r ^= (r >>> 16);
+            if (n <= 0x00000100L) {
+                r ^= (r >>> 8);
+                if (n <= 0x00000010L) {
+                    r ^= (r >>> 4);
+                    if (n <= 0x00000004L) {
+                        r ^= (r >>> 2);
+                        if (n <= 0x00000002L) {
+                            r ^= (r >>> 1);
+                        }
+                    }
+                }
+            }
+        }
+
+        return (int) Math.abs(r % n);
+    }
+
+    private static void set(float[] array, int index, Vector3f v) {
+        int i = index * 3;
+        array[i] = v.x;
+        array[i + 1] = v.y;
+        array[i + 2] = v.z;
+    }
+
+    private static Vector3f get(float[] array, int index, Vector3f out) {
+        int i = index * 3;
+        out.set(array[i], array[i + 1], array[i + 2]);
+        return out;
+    }
+
+    private static float[] copyOf(float[] array, int length) {
+        float[] result = new float[length];
+        System.arraycopy(array, 0, result, 0, Math.min(array.length, length));
+        return result;
+    }
+
+    private static int[] copyOf(int[] array, int length) {
+        int[] result = new int[length];
+        System.arraycopy(array, 0, result, 0, Math.min(array.length, length));
+        return result;
+    }
+
+    private static int[] ensureCapacity(int[] array, int length) {
+        if (array.length >= length) {
+            return array;
+        }
+        return new int[Math.max(length, array.length * 2)];
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Contact or friction constraints stored as parallel arrays, vectors are stored
+     * as three consecutive floats.
+     */
+    private static class ConstraintArrays {
+        public int size;
+        public float[] normal = new float[INITIAL_CAPACITY * 3];
+        public float[] relpos1CrossNormal = new float[INITIAL_CAPACITY * 3];
+        public float[] relpos2CrossNormal = new float[INITIAL_CAPACITY * 3];
+        public float[] angularComponentA = new float[INITIAL_CAPACITY * 3];
+        public float[] angularComponentB = new float[INITIAL_CAPACITY * 3];
+        public float[] jacDiagABInv = new float[INITIAL_CAPACITY];
+        public float[] appliedImpulse = new float[INITIAL_CAPACITY];
+        public float[] penetration = new float[INITIAL_CAPACITY];
+        public float[] restitution = new float[INITIAL_CAPACITY];
+        public float[] friction = new float[INITIAL_CAPACITY];
+        public int[] bodyA = new int[INITIAL_CAPACITY];
+        public int[] bodyB = new int[INITIAL_CAPACITY];
+        // contacts: index of first of the two friction constraints, frictions: index of contact
+        public int[] link = new int[INITIAL_CAPACITY];
+        public ManifoldPoint[] originalContactPoint = new ManifoldPoint[INITIAL_CAPACITY];
+
+        public int add() {
+            int index = size++;
+            if (index == jacDiagABInv.length) {
+                int capacity = index * 2;
+                normal = copyOf(normal, capacity * 3);
+                relpos1CrossNormal = copyOf(relpos1CrossNormal, capacity * 3);
+                relpos2CrossNormal = copyOf(relpos2CrossNormal, capacity * 3);
+                angularComponentA = copyOf(angularComponentA, capacity * 3);
+                angularComponentB = copyOf(angularComponentB, capacity * 3);
+                jacDiagABInv = copyOf(jacDiagABInv, capacity);
+                appliedImpulse = copyOf(appliedImpulse, capacity);
+                penetration = copyOf(penetration, capacity);
+                restitution = copyOf(restitution, capacity);
+                friction = copyOf(friction, capacity);
+                bodyA = copyOf(bodyA, capacity);
+                bodyB = copyOf(bodyB, capacity);
+                link = copyOf(link, capacity);
+                ManifoldPoint[] points = new ManifoldPoint[capacity];
+                System.arraycopy(originalContactPoint, 0, points, 0, index);
+                originalContactPoint = points;
+            }
+            return index;
+        }
+    }
+
+}
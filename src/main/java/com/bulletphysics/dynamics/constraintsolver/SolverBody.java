@@ -49,9 +49,12 @@ public class SolverBody {
     public float friction;
     public RigidBody originalBody;
 
+    private final Vector3f tmp = new Vector3f();
+    private final Transform newTransform = new Transform();
+    private final Transform curTrans = new Transform();
+
 
     public void getVelocityInLocalPoint(Vector3f rel_pos, Vector3f velocity) {
-        Vector3f tmp = new Vector3f();
         tmp.cross(angularVelocity, rel_pos);
         velocity.add(linearVelocity, tmp);
     }
@@ -87,8 +90,7 @@ public class SolverBody {
             originalBody.setAngularVelocity(angularVelocity);
 
             // correct the position/orientation based on push/turn recovery
-            Transform newTransform = new Transform();
-            Transform curTrans = originalBody.getWorldTransform(new Transform());
+            originalBody.getWorldTransform(curTrans);
             TransformUtil.integrateTransform(curTrans, pushVelocity, turnVelocity, timeStep, newTransform);
             originalBody.setWorldTransform(newTransform);
 
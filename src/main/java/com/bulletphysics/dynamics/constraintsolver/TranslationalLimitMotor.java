@@ -50,6 +50,16 @@ public class TranslationalLimitMotor {
     private final float damping; //!< Damping for linear limit
     private final float restitution; //! Bounce parameter for linear limit
 
+    // temporaries reused across calls to solveLinearAxis:
+    private final Vector3f tmp = new Vector3f();
+    private final Vector3f tmpVec = new Vector3f();
+    private final Vector3f rel_pos1 = new Vector3f();
+    private final Vector3f rel_pos2 = new Vector3f();
+    private final Vector3f vel1 = new Vector3f();
+    private final Vector3f vel2 = new Vector3f();
+    private final Vector3f vel = new Vector3f();
+    private final Vector3f impulse_vector = new Vector3f();
+
     public TranslationalLimitMotor() {
         lowerLimit.set(0f, 0f, 0f);
         upperLimit.set(0f, 0f, 0f);
@@ -82,21 +92,15 @@ public class TranslationalLimitMotor {
     }
 
     public float solveLinearAxis(float timeStep, float jacDiagABInv, RigidBody body1, Vector3f pointInA, RigidBody body2, Vector3f pointInB, int limit_index, Vector3f axis_normal_on_a, Vector3f anchorPos) {
-        Vector3f tmp = new Vector3f();
-        Vector3f tmpVec = new Vector3f();
-
         // find relative velocity
-        Vector3f rel_pos1 = new Vector3f();
         //rel_pos1.sub(pointInA, body1.getCenterOfMassPosition(tmpVec));
         rel_pos1.sub(anchorPos, body1.getCenterOfMassPosition(tmpVec));
 
-        Vector3f rel_pos2 = new Vector3f();
         //rel_pos2.sub(pointInB, body2.getCenterOfMassPosition(tmpVec));
         rel_pos2.sub(anchorPos, body2.getCenterOfMassPosition(tmpVec));
 
-        Vector3f vel1 = body1.getVelocityInLocalPoint(rel_pos1, new Vector3f());
-        Vector3f vel2 = body2.getVelocityInLocalPoint(rel_pos2, new Vector3f());
-        Vector3f vel = new Vector3f();
+        body1.getVelocityInLocalPoint(rel_pos1, vel1);
+        body2.getVelocityInLocalPoint(rel_pos2, vel2);
         vel.sub(vel1, vel2);
 
         float rel_vel = axis_normal_on_a.dot(vel);
@@ -137,7 +141,6 @@ public class TranslationalLimitMotor {
         VectorUtil.coord(accumulatedImpulse, limit_index, sum > hi ? 0f : sum < lo ? 0f : sum);
         normalImpulse = VectorUtil.coord(accumulatedImpulse, limit_index) - oldNormalImpulse;
 
-        Vector3f impulse_vector = new Vector3f();
         impulse_vector.scale(normalImpulse, axis_normal_on_a);
         body1.applyImpulse(impulse_vector, rel_pos1);
 
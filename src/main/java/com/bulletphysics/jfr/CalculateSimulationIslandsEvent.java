@@ -0,0 +1,29 @@
+package com.bulletphysics.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Union-find of simulation islands and update of activation state (calculateSimulationIslands).
+ */
+@Name("com.bulletphysics.CalculateSimulationIslands")
+@Label("Calculate Simulation Islands")
+@Category({"JBullet", "Simulation"})
+@Description("Union-find of simulation islands and update of activation state (calculateSimulationIslands).")
+@StackTrace(false)
+public class CalculateSimulationIslandsEvent extends Event {
+
+	@Label("Collision Objects")
+	public int collisionObjects;
+
+	@Label("Manifolds")
+	public int manifolds;
+
+	@Label("Constraints")
+	public int constraints;
+
+}
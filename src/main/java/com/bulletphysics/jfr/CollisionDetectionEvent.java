@@ -0,0 +1,32 @@
+package com.bulletphysics.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Broadphase and narrowphase collision detection (performDiscreteCollisionDetection).
+ */
+@Name("com.bulletphysics.CollisionDetection")
+@Label("Collision Detection")
+@Category({"JBullet", "Simulation"})
+@Description("Broadphase and narrowphase collision detection (performDiscreteCollisionDetection).")
+@StackTrace(false)
+public class CollisionDetectionEvent extends Event {
+
+	@Label("Collision Objects")
+	public int collisionObjects;
+
+	@Label("Overlapping Pairs")
+	public int pairs;
+
+	@Label("Manifolds")
+	public int manifolds;
+
+	@Label("Contacts")
+	public int contacts;
+
+}
@@ -0,0 +1,26 @@
+package com.bulletphysics.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Integration of body transforms including CCD motion clamping (integrateTransforms).
+ */
+@Name("com.bulletphysics.IntegrateTransforms")
+@Label("Integrate Transforms")
+@Category({"JBullet", "Simulation"})
+@Description("Integration of body transforms including CCD motion clamping (integrateTransforms).")
+@StackTrace(false)
+public class IntegrateTransformsEvent extends Event {
+
+	@Label("Collision Objects")
+	public int collisionObjects;
+
+	@Label("CCD Clamps")
+	public int ccdClamps;
+
+}
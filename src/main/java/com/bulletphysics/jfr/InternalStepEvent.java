@@ -0,0 +1,42 @@
+package com.bulletphysics.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Single internal simulation substep of fixed length (internalSingleStepSimulation).
+ */
+@Name("com.bulletphysics.InternalStep")
+@Label("Internal Step")
+@Category({"JBullet", "Simulation"})
+@Description("Single internal simulation substep of fixed length (internalSingleStepSimulation).")
+@StackTrace(false)
+public class InternalStepEvent extends Event {
+
+	@Label("Time Step")
+	@Description("Length of the step in seconds")
+	public float timeStep;
+
+	@Label("Overlapping Pairs")
+	public int pairs;
+
+	@Label("Manifolds")
+	public int manifolds;
+
+	@Label("Contacts")
+	public int contacts;
+
+	@Label("Active Islands")
+	public int islands;
+
+	@Label("Solver Iterations")
+	public int iterations;
+
+	@Label("CCD Clamps")
+	public int ccdClamps;
+
+}
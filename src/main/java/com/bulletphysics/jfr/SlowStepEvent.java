@@ -0,0 +1,58 @@
+package com.bulletphysics.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Simulation step that took longer than the threshold (20 ms by default, can be
+ * changed in JFR settings). Records the largest island and the shape type pairs
+ * with the highest narrowphase time to help diagnosing frame spikes after the fact.<p>
+ * 
+ * While this event is enabled, the world measures narrowphase time per pair of
+ * shape types, see {@link com.bulletphysics.collision.dispatch.CollisionDispatcher#setPairTypeTimingEnabled}.
+ */
+@Name("com.bulletphysics.SlowStep")
+@Label("Slow Step")
+@Category({"JBullet", "Simulation"})
+@Description("Simulation step that took longer than the threshold, with the largest island and the most expensive shape type pairs")
+@StackTrace(false)
+@Threshold("20 ms")
+public class SlowStepEvent extends Event {
+
+	@Label("Substeps")
+	public int subSteps;
+
+	@Label("Collision Objects")
+	public int collisionObjects;
+
+	@Label("Overlapping Pairs")
+	public int pairs;
+
+	@Label("Manifolds")
+	public int manifolds;
+
+	@Label("Contacts")
+	public int contacts;
+
+	@Label("Active Islands")
+	public int islands;
+
+	@Label("Largest Island Bodies")
+	public int largestIslandBodies;
+
+	@Label("Largest Island Manifolds")
+	public int largestIslandManifolds;
+
+	@Label("CCD Clamps")
+	public int ccdClamps;
+
+	@Label("Most Expensive Pair Types")
+	@Description("Shape type pairs with the highest total narrowphase time during the step")
+	public String expensivePairTypes;
+
+}
@@ -0,0 +1,41 @@
+package com.bulletphysics.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Building of islands and solving of contact and joint constraints (solveConstraints).
+ */
+@Name("com.bulletphysics.SolveConstraints")
+@Label("Solve Constraints")
+@Category({"JBullet", "Simulation"})
+@Description("Building of islands and solving of contact and joint constraints (solveConstraints).")
+@StackTrace(false)
+public class SolveConstraintsEvent extends Event {
+
+	@Label("Manifolds")
+	public int manifolds;
+
+	@Label("Contacts")
+	public int contacts;
+
+	@Label("Constraints")
+	public int constraints;
+
+	@Label("Active Islands")
+	public int islands;
+
+	@Label("Largest Island Bodies")
+	public int largestIslandBodies;
+
+	@Label("Solver Iterations")
+	public int iterations;
+
+	@Label("Solver Tasks")
+	public int tasks;
+
+}
@@ -0,0 +1,34 @@
+package com.bulletphysics.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Whole DiscreteDynamicsWorld.stepSimulation call, including all internal substeps.
+ */
+@Name("com.bulletphysics.StepSimulation")
+@Label("Step Simulation")
+@Category({"JBullet", "Simulation"})
+@Description("Whole DiscreteDynamicsWorld.stepSimulation call, including all internal substeps.")
+@StackTrace(false)
+public class StepSimulationEvent extends Event {
+
+	@Label("Time Step")
+	@Description("Length of the step in seconds")
+	public float timeStep;
+
+	@Label("Substeps")
+	public int subSteps;
+
+	@Label("Collision Objects")
+	public int collisionObjects;
+	
+	@Label("CCD Clamps")
+	@Description("Number of motions clamped by continuous collision detection in all substeps")
+	public int ccdClamps;
+
+}
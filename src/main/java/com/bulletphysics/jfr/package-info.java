@@ -0,0 +1,7 @@
+/**
+ * JDK Flight Recorder events for the simulation step. Events are emitted by
+ * {@link com.bulletphysics.dynamics.DiscreteDynamicsWorld} and
+ * {@link com.bulletphysics.collision.dispatch.CollisionWorld}, they can be
+ * enabled and configured in JFR settings under the "JBullet" category.
+ */
+package com.bulletphysics.jfr;
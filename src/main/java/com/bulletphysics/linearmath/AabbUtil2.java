@@ -38,57 +38,58 @@ public class AabbUtil2 {
 		aabbMax.add(expansionMax);
 	}
 
-	private static int outcode(Vector3f p, Vector3f halfExtent) {
-		return (p.x < -halfExtent.x ? 0x01 : 0x0) |
-				(p.x > halfExtent.x ? 0x08 : 0x0) |
-				(p.y < -halfExtent.y ? 0x02 : 0x0) |
-				(p.y > halfExtent.y ? 0x10 : 0x0) |
-				(p.z < -halfExtent.z ? 0x4 : 0x0) |
-				(p.z > halfExtent.z ? 0x20 : 0x0);
+	private static int outcode(float px, float py, float pz, float hx, float hy, float hz) {
+		return (px < -hx ? 0x01 : 0x0) |
+				(px > hx ? 0x08 : 0x0) |
+				(py < -hy ? 0x02 : 0x0) |
+				(py > hy ? 0x10 : 0x0) |
+				(pz < -hz ? 0x4 : 0x0) |
+				(pz > hz ? 0x20 : 0x0);
 	}
 	
 	public static boolean rayAabb(Vector3f rayFrom, Vector3f rayTo, Vector3f aabbMin, Vector3f aabbMax, float[] param, Vector3f normal) {
-		Vector3f aabbHalfExtent = new Vector3f();
-		Vector3f aabbCenter = new Vector3f();
-		Vector3f source = new Vector3f();
-		Vector3f target = new Vector3f();
-		Vector3f r = new Vector3f();
-		Vector3f hitNormal = new Vector3f();
+		// computed in scalars, ray tests call this for every candidate object
+		float hx = (aabbMax.x - aabbMin.x) * 0.5f;
+		float hy = (aabbMax.y - aabbMin.y) * 0.5f;
+		float hz = (aabbMax.z - aabbMin.z) * 0.5f;
 
-		aabbHalfExtent.sub(aabbMax, aabbMin);
-		aabbHalfExtent.scale(0.5f);
+		float cx = (aabbMax.x + aabbMin.x) * 0.5f;
+		float cy = (aabbMax.y + aabbMin.y) * 0.5f;
+		float cz = (aabbMax.z + aabbMin.z) * 0.5f;
 
-		aabbCenter.add(aabbMax, aabbMin);
-		aabbCenter.scale(0.5f);
+		float sx = rayFrom.x - cx, sy = rayFrom.y - cy, sz = rayFrom.z - cz;
+		float tx = rayTo.x - cx, ty = rayTo.y - cy, tz = rayTo.z - cz;
 
-		source.sub(rayFrom, aabbCenter);
-		target.sub(rayTo, aabbCenter);
-
-		int sourceOutcode = outcode(source, aabbHalfExtent);
-		int targetOutcode = outcode(target, aabbHalfExtent);
+		int sourceOutcode = outcode(sx, sy, sz, hx, hy, hz);
+		int targetOutcode = outcode(tx, ty, tz, hx, hy, hz);
 		if ((sourceOutcode & targetOutcode) == 0x0) {
 			float lambda_enter = 0f;
 			float lambda_exit = param[0];
-			r.sub(target, source);
+			float rx = tx - sx, ry = ty - sy, rz = tz - sz;
 
 			float normSign = 1f;
-			hitNormal.set(0f, 0f, 0f);
+			int hitAxis = -1;
+			float hitSign = 0f;
 			int bit = 1;
 
 			for (int j = 0; j < 2; j++) {
 				for (int i = 0; i != 3; ++i) {
-					if ((sourceOutcode & bit) != 0) {
-						float lambda = (-VectorUtil.coord(source, i) - VectorUtil.coord(aabbHalfExtent, i) * normSign) / VectorUtil.coord(r, i);
-						if (lambda_enter <= lambda) {
-							lambda_enter = lambda;
-							hitNormal.set(0f, 0f, 0f);
-							VectorUtil.coord(hitNormal, i, normSign);
+					if ((sourceOutcode & bit) != 0 || (targetOutcode & bit) != 0) {
+						float s = i == 0 ? sx : i == 1 ? sy : sz;
+						float h = i == 0 ? hx : i == 1 ? hy : hz;
+						float r = i == 0 ? rx : i == 1 ? ry : rz;
+						float lambda = (-s - h * normSign) / r;
+						if ((sourceOutcode & bit) != 0) {
+							if (lambda_enter <= lambda) {
+								lambda_enter = lambda;
+								hitAxis = i;
+								hitSign = normSign;
+							}
+						}
+						else {
+							//btSetMin(lambda_exit, lambda);
+							lambda_exit = Math.min(lambda_exit, lambda);
 						}
-					}
-					else if ((targetOutcode & bit) != 0) {
-						float lambda = (-VectorUtil.coord(source, i) - VectorUtil.coord(aabbHalfExtent, i) * normSign) / VectorUtil.coord(r, i);
-						//btSetMin(lambda_exit, lambda);
-						lambda_exit = Math.min(lambda_exit, lambda);
 					}
 					bit <<= 1;
 				}
@@ -96,13 +97,51 @@ public class AabbUtil2 {
 			}
 			if (lambda_enter <= lambda_exit) {
 				param[0] = lambda_enter;
-				normal.set(hitNormal);
+				normal.set(0f, 0f, 0f);
+				if (hitAxis >= 0) {
+					VectorUtil.coord(normal, hitAxis, hitSign);
+				}
 				return true;
 			}
 		}
 		return false;
 	}
 	
+	/**
+	 * Slab test of a ray (given by origin, inverse direction and direction signs) against
+	 * an AABB, limited to the parametric range [lambdaMin, lambdaMax] along the normalized direction.
+	 */
+	public static boolean rayAabb2(Vector3f rayFrom, Vector3f rayInvDirection, int[] raySign, Vector3f aabbMin, Vector3f aabbMax, float lambdaMin, float lambdaMax) {
+		float tmin = ((raySign[0] == 0 ? aabbMin.x : aabbMax.x) - rayFrom.x) * rayInvDirection.x;
+		float tmax = ((raySign[0] == 0 ? aabbMax.x : aabbMin.x) - rayFrom.x) * rayInvDirection.x;
+		float tymin = ((raySign[1] == 0 ? aabbMin.y : aabbMax.y) - rayFrom.y) * rayInvDirection.y;
+		float tymax = ((raySign[1] == 0 ? aabbMax.y : aabbMin.y) - rayFrom.y) * rayInvDirection.y;
+
+		if ((tmin > tymax) || (tymin > tmax)) {
+			return false;
+		}
+		if (tymin > tmin) {
+			tmin = tymin;
+		}
+		if (tymax < tmax) {
+			tmax = tymax;
+		}
+
+		float tzmin = ((raySign[2] == 0 ? aabbMin.z : aabbMax.z) - rayFrom.z) * rayInvDirection.z;
+		float tzmax = ((raySign[2] == 0 ? aabbMax.z : aabbMin.z) - rayFrom.z) * rayInvDirection.z;
+
+		if ((tmin > tzmax) || (tzmin > tmax)) {
+			return false;
+		}
+		if (tzmin > tmin) {
+			tmin = tzmin;
+		}
+		if (tzmax < tmax) {
+			tmax = tzmax;
+		}
+		return (tmin < lambdaMax) && (tmax > lambdaMin);
+	}
+	
 	/**
 	 * Conservative test for overlap between two AABBs.
 	 */
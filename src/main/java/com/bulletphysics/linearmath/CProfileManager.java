@@ -45,10 +45,22 @@ public class CProfileManager {
 	private static int frameCounter = 0;
 	private static long resetTime = 0;
 
+	// JAVA NOTE: profile tree is not thread-safe, only the thread that called reset is profiled
+	private static volatile Thread profileThread;
+
+	private static boolean isProfileThread() {
+		Thread thread = profileThread;
+		return thread == null || thread == Thread.currentThread();
+	}
+
 	/**
 	 * @param name must be {@link String#intern interned} String (not needed for String literals)
 	 */
 	public static void startProfile(String name) {
+		if (!isProfileThread()) {
+			return;
+		}
+
 		if (name != currentNode.getName()) {
 			currentNode = currentNode.getSubNode(name);
 		}
@@ -57,6 +69,10 @@ public class CProfileManager {
 	}
 	
 	public static void stopProfile() {
+		if (!isProfileThread()) {
+			return;
+		}
+
 		// Return will indicate whether we should back up to our parent (we may
 		// be profiling a recursive function)
 		if (currentNode.Return()) {
@@ -69,6 +85,7 @@ public class CProfileManager {
 	}
 
 	public static void reset() {
+		profileThread = Thread.currentThread();
 		root.reset();
 		root.call();
 		frameCounter = 0;
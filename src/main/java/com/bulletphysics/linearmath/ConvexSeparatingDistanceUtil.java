@@ -0,0 +1,109 @@
+/*
+ * Bullet Continuous Collision Detection and Physics Library
+ * Copyright (c) 2003-2008 Erwin Coumans  http://www.bulletphysics.com/
+ *
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from
+ * the use of this software.
+ * 
+ * Permission is granted to anyone to use this software for any purpose, 
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ * 
+ * 1. The origin of this software must not be misrepresented; you must not
+ *    claim that you wrote the original software. If you use this software
+ *    in a product, an acknowledgment in the product documentation would be
+ *    appreciated but is not required.
+ * 2. Altered source versions must be plainly marked as such, and must not be
+ *    misrepresented as being the original software.
+ * 3. This notice may not be removed or altered from any source distribution.
+ */
+
+package com.bulletphysics.linearmath;
+
+import com.bulletphysics.BulletGlobals;
+
+import javax.vecmath.Vector3f;
+
+/**
+ * ConvexSeparatingDistanceUtil can help speed up convex collision detection by
+ * conservatively updating a cached separating distance/vector instead of
+ * re-calculating the closest distance. The distance is decreased by the upper
+ * bound of the motion of both objects projected to the separating normal, the
+ * angular motion is bounded using the angular motion disc of the shapes.
+ */
+public class ConvexSeparatingDistanceUtil {
+
+	private final Transform transA = new Transform();
+	private final Transform transB = new Transform();
+	private final Vector3f separatingNormal = new Vector3f();
+
+	private float boundingRadiusA;
+	private float boundingRadiusB;
+	private float separatingDistance;
+
+	public ConvexSeparatingDistanceUtil() {
+	}
+
+	public ConvexSeparatingDistanceUtil(float boundingRadiusA, float boundingRadiusB) {
+		init(boundingRadiusA, boundingRadiusB);
+	}
+
+	public void init(float boundingRadiusA, float boundingRadiusB) {
+		this.boundingRadiusA = boundingRadiusA;
+		this.boundingRadiusB = boundingRadiusB;
+		this.separatingDistance = 0f;
+	}
+
+	public float getConservativeSeparatingDistance() {
+		return separatingDistance;
+	}
+
+	/**
+	 * Decreases the separating distance by the motion of the objects since the last update.
+	 */
+	public void updateSeparatingDistance(Transform transA, Transform transB) {
+		if (separatingDistance > 0f) {
+			Vector3f linVelA = new Vector3f();
+			Vector3f angVelA = new Vector3f();
+			Vector3f linVelB = new Vector3f();
+			Vector3f angVelB = new Vector3f();
+			TransformUtil.calculateVelocity(this.transA, transA, 1f, linVelA, angVelA);
+			TransformUtil.calculateVelocity(this.transB, transB, 1f, linVelB, angVelB);
+
+			float maxAngularProjectedVelocity = angVelA.length() * boundingRadiusA + angVelB.length() * boundingRadiusB;
+			Vector3f relLinVel = new Vector3f();
+			relLinVel.sub(linVelB, linVelA);
+			float relLinVelocLength = relLinVel.dot(separatingNormal);
+			if (relLinVelocLength < 0f) {
+				relLinVelocLength = 0f;
+			}
+
+			float projectedMotion = maxAngularProjectedVelocity + relLinVelocLength;
+			separatingDistance -= projectedMotion;
+		}
+
+		this.transA.set(transA);
+		this.transB.set(transB);
+	}
+
+	/**
+	 * Stores separating distance and vector (pointing from B towards A) computed for given transforms.
+	 */
+	public void initSeparatingDistance(Vector3f separatingVector, float separatingDistance, Transform transA, Transform transB) {
+		this.separatingDistance = separatingDistance;
+
+		if (this.separatingDistance > 0f) {
+			float len = separatingVector.length();
+			if (len > BulletGlobals.FLT_EPSILON) {
+				separatingNormal.scale(1f / len, separatingVector);
+				this.transA.set(transA);
+				this.transB.set(transB);
+			}
+			else {
+				this.separatingDistance = 0f;
+			}
+		}
+	}
+
+}
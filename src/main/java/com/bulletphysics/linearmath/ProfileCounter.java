@@ -0,0 +1,39 @@
+package com.bulletphysics.linearmath;
+
+/**
+ * Event counters collected by {@link Profiler}. These correspond to the global
+ * counters in {@link com.bulletphysics.BulletStats}.
+ */
+public enum ProfileCounter {
+	
+	/** Contact points passed to constraint solver. */
+	CONTACT_POINTS,
+	
+	/** GJK distance queries. */
+	GJK_CHECKS,
+	
+	/** Support point evaluations of GJK distance queries. */
+	GJK_ITERATIONS,
+	
+	/** GJK distance queries skipped thanks to conservative separating distance. */
+	SKIPPED_GJK_CHECKS,
+	
+	/** Penetration depth calculations (EPA). */
+	DEEP_PENETRATION_CHECKS,
+	
+	/** Bodies with split impulse position correction applied. */
+	SPLIT_IMPULSE_RECOVERIES,
+	
+	/** Pairs added to the overlapping pair cache. */
+	ADDED_PAIRS,
+	
+	/** Pairs removed from the overlapping pair cache. */
+	REMOVED_PAIRS,
+	
+	/** Pair lookups in the overlapping pair cache. */
+	FIND_PAIRS,
+	
+	/** Motions clamped by continuous collision detection. */
+	CLAMPED_CCD_MOTIONS
+	
+}
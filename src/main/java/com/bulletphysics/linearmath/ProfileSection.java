@@ -0,0 +1,65 @@
+package com.bulletphysics.linearmath;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Named section of code measured by {@link Profiler}. Each section gets unique
+ * id at registration time, so the profiler can store statistics in plain arrays
+ * instead of looking up the section by name on every call. Sections should be
+ * registered once and stored in static final fields.
+ */
+public final class ProfileSection {
+
+	private static final HashMap<String, ProfileSection> sectionsByName = new HashMap<>();
+	private static final ArrayList<ProfileSection> sections = new ArrayList<>();
+	
+	private final String name;
+	private final int id;
+
+	private ProfileSection(String name, int id) {
+		this.name = name;
+		this.id = id;
+	}
+
+	/**
+	 * Returns section of given name, registering it when used for the first time.
+	 */
+	public static synchronized ProfileSection get(String name) {
+		ProfileSection section = sectionsByName.get(name);
+		if (section == null) {
+			section = new ProfileSection(name, sections.size());
+			sectionsByName.put(name, section);
+			sections.add(section);
+		}
+		return section;
+	}
+
+	/**
+	 * Returns section with given id.
+	 */
+	public static synchronized ProfileSection getById(int id) {
+		return sections.get(id);
+	}
+
+	/**
+	 * Returns number of registered sections.
+	 */
+	public static synchronized int getCount() {
+		return sections.size();
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public int getId() {
+		return id;
+	}
+
+	@Override
+	public String toString() {
+		return name;
+	}
+	
+}
@@ -0,0 +1,120 @@
+package com.bulletphysics.linearmath;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable copy of statistics collected by {@link Profiler}. All times are
+ * in nanoseconds, percentiles are approximated from histogram with relative
+ * error below 13%.
+ */
+public class ProfileSnapshot {
+
+	private final long elapsedTime;
+	private final List<Section> sections;
+	private final long[] counters;
+
+	ProfileSnapshot(long elapsedTime, Section[] sections, long[] counters) {
+		this.elapsedTime = elapsedTime;
+		this.sections = Collections.unmodifiableList(Arrays.asList(sections));
+		this.counters = counters;
+	}
+
+	/**
+	 * Returns time elapsed since creation or reset of the profiler.
+	 */
+	public long getElapsedTime() {
+		return elapsedTime;
+	}
+
+	/**
+	 * Returns statistics of all sections that were measured at least once.
+	 */
+	public List<Section> getSections() {
+		return sections;
+	}
+
+	/**
+	 * Returns statistics of given section or null when not measured.
+	 */
+	public Section getSection(ProfileSection section) {
+		for (int i=0; i<sections.size(); i++) {
+			Section s = sections.get(i);
+			if (s.getSection() == section) {
+				return s;
+			}
+		}
+		return null;
+	}
+
+	public long getCounter(ProfileCounter counter) {
+		return counters[counter.ordinal()];
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		sb.append(String.format("%-40s %10s %12s %10s %10s %10s %10s%n", "section", "calls", "total ms", "mean us", "p50 us", "p99 us", "max us"));
+		for (Section s : sections) {
+			sb.append(String.format("%-40s %10d %12.3f %10.1f %10.1f %10.1f %10.1f%n", s.getSection().getName(), s.getCalls(),
+					s.getTotalTime() / 1e6, s.getMeanTime() / 1e3, s.getP50() / 1e3, s.getP99() / 1e3, s.getMaxTime() / 1e3));
+		}
+		for (ProfileCounter counter : ProfileCounter.values()) {
+			sb.append(String.format("%-40s %10d%n", counter, getCounter(counter)));
+		}
+		return sb.toString();
+	}
+
+	////////////////////////////////////////////////////////////////////////////
+
+	/**
+	 * Statistics of single section, summed over all threads.
+	 */
+	public static class Section {
+		private final ProfileSection section;
+		private final long calls;
+		private final long totalTime;
+		private final long maxTime;
+		private final long p50;
+		private final long p99;
+
+		Section(ProfileSection section, long calls, long totalTime, long maxTime, long p50, long p99) {
+			this.section = section;
+			this.calls = calls;
+			this.totalTime = totalTime;
+			this.maxTime = maxTime;
+			this.p50 = p50;
+			this.p99 = p99;
+		}
+
+		public ProfileSection getSection() {
+			return section;
+		}
+
+		public long getCalls() {
+			return calls;
+		}
+
+		public long getTotalTime() {
+			return totalTime;
+		}
+
+		public long getMeanTime() {
+			return calls != 0? totalTime / calls : 0;
+		}
+
+		public long getMaxTime() {
+			return maxTime;
+		}
+
+		public long getP50() {
+			return p50;
+		}
+
+		public long getP99() {
+			return p99;
+		}
+	}
+	
+}
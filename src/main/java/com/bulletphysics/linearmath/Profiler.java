@@ -0,0 +1,405 @@
+package com.bulletphysics.linearmath;
+
+import java.util.Arrays;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-world profiler. Unlike {@link CProfileManager} it can be used by multiple
+ * worlds and threads at the same time. Each thread records timings into its own
+ * data, indexed by precomputed {@link ProfileSection} ids, so no locking or name
+ * lookups are done while profiling. Counters are backed by {@link LongAdder}.<p>
+ * 
+ * Profiler is bound to current thread by {@link #enter} (done by the world during
+ * simulation step and by worker threads for the tasks they execute). Sections are
+ * then measured by static {@link #start}/{@link #stop} methods, which just check
+ * a single static field when no profiler is enabled.<p>
+ * 
+ * Use {@link #snapshot} to obtain the collected statistics. Statistics of threads
+ * that have terminated are merged together, so pooled worker threads can come and go.
+ */
+public class Profiler {
+	
+	private static final ThreadLocal<ThreadData> current = new ThreadLocal<>();
+	
+	/** Number of enabled profilers, used as fast check in static methods. */
+	private static volatile int enabledCount = 0;
+	
+	private volatile boolean enabled = false;
+	private volatile long resetTime = System.nanoTime();
+	
+	private final ThreadLocal<ThreadData> threadData = ThreadLocal.withInitial(this::createThreadData);
+	private final CopyOnWriteArrayList<ThreadData> threads = new CopyOnWriteArrayList<>();
+	private final ThreadData retired = new ThreadData(this, null);
+	private final LongAdder[] counters = new LongAdder[ProfileCounter.values().length];
+
+	public Profiler() {
+		for (int i=0; i<counters.length; i++) {
+			counters[i] = new LongAdder();
+		}
+	}
+	
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public void setEnabled(boolean enabled) {
+		synchronized (Profiler.class) {
+			if (this.enabled != enabled) {
+				// sections started before the change don't match the stack anymore:
+				for (ThreadData data : threads) {
+					data.discardStack = true;
+				}
+				this.enabled = enabled;
+				enabledCount += enabled? 1 : -1;
+			}
+		}
+	}
+	
+	/**
+	 * Returns true when any profiler is enabled.
+	 */
+	public static boolean isAnyEnabled() {
+		return enabledCount != 0;
+	}
+	
+	/**
+	 * Clears all collected statistics. Threads currently inside of a section
+	 * may still record it after the reset.
+	 */
+	public void reset() {
+		for (ThreadData data : threads) {
+			data.resetRequested = true;
+		}
+		synchronized (retired) {
+			Arrays.fill(retired.sections, null);
+		}
+		for (int i=0; i<counters.length; i++) {
+			counters[i].reset();
+		}
+		resetTime = System.nanoTime();
+	}
+	
+	/**
+	 * Returns copy of statistics collected since creation or last {@link #reset}.<p>
+	 * 
+	 * Per-thread statistics are read without synchronization, values of
+	 * threads that are still running may be slightly out of date.
+	 */
+	public ProfileSnapshot snapshot() {
+		int numSections = ProfileSection.getCount();
+		long[] calls = new long[numSections];
+		long[] totals = new long[numSections];
+		long[] maxs = new long[numSections];
+		long[][] histograms = new long[numSections][];
+		
+		synchronized (retired) {
+			pruneThreads();
+			addSections(retired.sections, calls, totals, maxs, histograms);
+		}
+		for (ThreadData data : threads) {
+			if (data.resetRequested) {
+				continue;
+			}
+			addSections(data.sections, calls, totals, maxs, histograms);
+		}
+
+		long[] counterValues = new long[counters.length];
+		for (int i=0; i<counters.length; i++) {
+			counterValues[i] = counters[i].sum();
+		}
+		
+		ProfileSnapshot.Section[] result = new ProfileSnapshot.Section[numSections];
+		int count = 0;
+		for (int i=0; i<numSections; i++) {
+			if (calls[i] == 0) {
+				continue;
+			}
+			result[count++] = new ProfileSnapshot.Section(ProfileSection.getById(i), calls[i], totals[i], maxs[i],
+					Math.min(percentile(histograms[i], calls[i], 0.50), maxs[i]), Math.min(percentile(histograms[i], calls[i], 0.99), maxs[i]));
+		}
+		return new ProfileSnapshot(System.nanoTime() - resetTime, Arrays.copyOf(result, count), counterValues);
+	}
+	
+	private static void addSections(SectionData[] sections, long[] calls, long[] totals, long[] maxs, long[][] histograms) {
+		for (int i=0; i<sections.length && i<calls.length; i++) {
+			SectionData s = sections[i];
+			if (s == null) {
+				continue;
+			}
+			calls[i] += s.calls;
+			totals[i] += s.totalTime;
+			maxs[i] = Math.max(maxs[i], s.maxTime);
+			if (histograms[i] == null) {
+				histograms[i] = new long[SectionData.HISTOGRAM_SIZE];
+			}
+			for (int j=0; j<SectionData.HISTOGRAM_SIZE; j++) {
+				histograms[i][j] += s.histogram[j];
+			}
+		}
+	}
+	
+	private static long percentile(long[] histogram, long total, double fraction) {
+		long rank = (long)Math.ceil(total * fraction);
+		long sum = 0;
+		for (int i=0; i<histogram.length; i++) {
+			sum += histogram[i];
+			if (sum >= rank) {
+				return SectionData.bucketValue(i);
+			}
+		}
+		return 0;
+	}
+	
+	////////////////////////////////////////////////////////////////////////////
+	
+	/**
+	 * Binds profiler to current thread. Must be paired with {@link #exit} in finally block.
+	 * 
+	 * @param profiler profiler to bind, may be null
+	 * @return previously bound profiler, to be passed to {@link #exit}
+	 */
+	public static Profiler enter(Profiler profiler) {
+		ThreadData prev = current.get();
+		ThreadData data = profiler != null? profiler.threadData.get() : null;
+		if (data != prev) {
+			if (data != null) {
+				data.depth = 0;
+			}
+			current.set(data);
+		}
+		return prev != null? prev.profiler : null;
+	}
+	
+	/**
+	 * Restores profiler returned by {@link #enter}.
+	 */
+	public static void exit(Profiler previous) {
+		ThreadData data = previous != null? previous.threadData.get() : null;
+		if (current.get() != data) {
+			current.set(data);
+		}
+	}
+	
+	/**
+	 * Returns profiler bound to current thread or null.
+	 */
+	public static Profiler getCurrent() {
+		ThreadData data = current.get();
+		return data != null? data.profiler : null;
+	}
+	
+	/**
+	 * Starts measuring of given section. Must be paired with {@link #stop} in finally block.
+	 */
+	public static void start(ProfileSection section) {
+		if (enabledCount == 0) {
+			return;
+		}
+		ThreadData data = current.get();
+		if (data != null && data.profiler.enabled) {
+			data.checkStack();
+			data.push(section.getId());
+		}
+	}
+	
+	/**
+	 * Stops measuring of the most recently started section. Sections started before
+	 * the profiler was enabled or disabled are not recorded.
+	 */
+	public static void stop() {
+		if (enabledCount == 0) {
+			return;
+		}
+		ThreadData data = current.get();
+		if (data != null && data.profiler.enabled && !data.checkStack()) {
+			data.pop();
+		}
+	}
+	
+	/**
+	 * Increments counter of profiler bound to current thread.
+	 */
+	public static void count(ProfileCounter counter) {
+		if (enabledCount == 0) {
+			return;
+		}
+		ThreadData data = current.get();
+		if (data != null && data.profiler.enabled) {
+			data.profiler.counters[counter.ordinal()].increment();
+		}
+	}
+	
+	/**
+	 * Adds value to counter of profiler bound to current thread.
+	 */
+	public static void count(ProfileCounter counter, long value) {
+		if (enabledCount == 0) {
+			return;
+		}
+		ThreadData data = current.get();
+		if (data != null && data.profiler.enabled) {
+			data.profiler.counters[counter.ordinal()].add(value);
+		}
+	}
+	
+	private ThreadData createThreadData() {
+		ThreadData data = new ThreadData(this, Thread.currentThread());
+		synchronized (retired) {
+			pruneThreads();
+		}
+		threads.add(data);
+		return data;
+	}
+	
+	/**
+	 * Merges statistics of terminated threads into retired data and removes them.
+	 * Must be called with lock on retired data.
+	 */
+	private void pruneThreads() {
+		for (ThreadData data : threads) {
+			if (data.thread.isAlive()) {
+				continue;
+			}
+			if (!data.resetRequested) {
+				SectionData[] sections = data.sections;
+				if (retired.sections.length < sections.length) {
+					retired.sections = Arrays.copyOf(retired.sections, sections.length);
+				}
+				for (int i=0; i<sections.length; i++) {
+					SectionData s = sections[i];
+					if (s == null) {
+						continue;
+					}
+					if (retired.sections[i] == null) {
+						retired.sections[i] = new SectionData();
+					}
+					retired.sections[i].add(s);
+				}
+			}
+			threads.remove(data);
+		}
+	}
+	
+	////////////////////////////////////////////////////////////////////////////
+	
+	private static final class ThreadData {
+		final Profiler profiler;
+		final Thread thread;
+		SectionData[] sections = new SectionData[32];
+		int[] stackIds = new int[16];
+		long[] stackStarts = new long[16];
+		int depth;
+		volatile boolean resetRequested;
+		volatile boolean discardStack;
+
+		ThreadData(Profiler profiler, Thread thread) {
+			this.profiler = profiler;
+			this.thread = thread;
+		}
+
+		/**
+		 * Clears the stack when the profiler was enabled or disabled since the
+		 * last call, the started sections are then not recorded.
+		 * 
+		 * @return true when the stack was cleared
+		 */
+		boolean checkStack() {
+			if (!discardStack) {
+				return false;
+			}
+			discardStack = false;
+			depth = 0;
+			return true;
+		}
+
+		void push(int id) {
+			if (depth == stackIds.length) {
+				stackIds = Arrays.copyOf(stackIds, depth*2);
+				stackStarts = Arrays.copyOf(stackStarts, depth*2);
+			}
+			stackIds[depth] = id;
+			stackStarts[depth] = System.nanoTime();
+			depth++;
+		}
+
+		void pop() {
+			// section may have been started before the stack was cleared:
+			if (depth == 0) {
+				return;
+			}
+			depth--;
+			long time = System.nanoTime() - stackStarts[depth];
+			
+			if (resetRequested) {
+				sections = new SectionData[sections.length];
+				resetRequested = false;
+			}
+			
+			int id = stackIds[depth];
+			if (id >= sections.length) {
+				sections = Arrays.copyOf(sections, Math.max(id + 1, sections.length*2));
+			}
+			SectionData s = sections[id];
+			if (s == null) {
+				s = new SectionData();
+				sections[id] = s;
+			}
+			s.record(time);
+		}
+	}
+	
+	private static final class SectionData {
+		// histogram uses 4 linear sub-buckets for each power of two:
+		static final int SUB_BUCKET_BITS = 2;
+		static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+		static final int HISTOGRAM_SIZE = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+		long calls;
+		long totalTime;
+		long maxTime;
+		final long[] histogram = new long[HISTOGRAM_SIZE];
+
+		void record(long time) {
+			calls++;
+			totalTime += time;
+			if (time > maxTime) {
+				maxTime = time;
+			}
+			histogram[bucketIndex(time)]++;
+		}
+
+		void add(SectionData other) {
+			calls += other.calls;
+			totalTime += other.totalTime;
+			maxTime = Math.max(maxTime, other.maxTime);
+			for (int i=0; i<HISTOGRAM_SIZE; i++) {
+				histogram[i] += other.histogram[i];
+			}
+		}
+
+		static int bucketIndex(long value) {
+			if (value < SUB_BUCKETS) {
+				return (int)Math.max(value, 0L);
+			}
+			int exp = 63 - Long.numberOfLeadingZeros(value);
+			int sub = (int)(value >>> (exp - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+			return (exp - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+		}
+
+		/**
+		 * Returns middle value of given bucket.
+		 */
+		static long bucketValue(int index) {
+			if (index < SUB_BUCKETS) {
+				return index;
+			}
+			int exp = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+			int sub = index % SUB_BUCKETS;
+			long low = (long)(SUB_BUCKETS | sub) << (exp - SUB_BUCKET_BITS);
+			long width = 1L << (exp - SUB_BUCKET_BITS);
+			return low + width/2;
+		}
+	}
+	
+}
@@ -30,7 +30,11 @@ import java.util.HashMap;
 import java.util.Map;
 
 /**
- * Object pool for arrays.
+ * Object pool for arrays.<p>
+ *
+ * Pools are per-thread, calls made from other thread than the one that created
+ * the pool are forwarded to the pool of the current thread (see {@link ObjectPool}).
+ * Arrays must be released in the thread that obtained them.
  *
  * @author jezek2
  */
@@ -56,6 +60,7 @@ public class ArrayPool<T> {
     private final ObjectArrayList list = new ObjectArrayList();
     private final Comparator comparator;
     private final IntValue key = new IntValue();
+    private final Thread ownerThread = Thread.currentThread();
 
     /**
      * Creates object pool.
@@ -115,6 +120,9 @@ public class ArrayPool<T> {
      */
     @SuppressWarnings("unchecked")
     public T getFixed(int length) {
+        if (Thread.currentThread() != ownerThread) {
+            return ArrayPool.<T>get(componentType).getFixed(length);
+        }
         key.value = length;
         int index = Collections.binarySearch(list, key, comparator);
         if (index < 0) {
@@ -134,6 +142,9 @@ public class ArrayPool<T> {
      */
     @SuppressWarnings("unchecked")
     public T getAtLeast(int length) {
+        if (Thread.currentThread() != ownerThread) {
+            return ArrayPool.<T>get(componentType).getAtLeast(length);
+        }
         key.value = length;
         int index = Collections.binarySearch(list, key, comparator);
         if (index < 0) {
@@ -154,6 +165,10 @@ public class ArrayPool<T> {
      */
     @SuppressWarnings("unchecked")
     public void release(T array) {
+        if (Thread.currentThread() != ownerThread) {
+            ArrayPool.<T>get(componentType).release(array);
+            return;
+        }
         int index = Collections.binarySearch(list, array, comparator);
         if (index < 0) index = -index - 1;
         list.add(index, array);
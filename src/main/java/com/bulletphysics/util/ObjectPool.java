@@ -27,21 +27,35 @@ import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
- * Object pool.
+ * Object pool.<p>
+ *
+ * Pools are per-thread. When a pool instance is used from other thread than
+ * the one that created it (eg. a pool stored in a field of an object that is
+ * processed in a worker thread), the call is forwarded to the pool of the
+ * current thread. Instances must be released in the thread that obtained them,
+ * otherwise they pile up in the releasing thread.<p>
+ *
+ * Instances obtained and released in different threads (eg. collision algorithms
+ * and manifolds created during parallel narrowphase and freed by the broadphase)
+ * use a shared pool instead, see {@link #getShared}.
  *
  * @author jezek2
  */
 public class ObjectPool<T> {
 
     private static final ThreadLocal<Map> threadLocal = ThreadLocal.withInitial(HashMap::new);
+    private static final Map<Class, ObjectPool> sharedPools = new ConcurrentHashMap<>();
     private final Class<T> cls;
     private final ObjectArrayList<T> list = new ObjectArrayList<>();
     private final Constructor<T> constructor;
+    private final Thread ownerThread;
 
-    private ObjectPool(Class<T> cls) {
+    private ObjectPool(Class<T> cls, Thread ownerThread) {
         this.cls = cls;
+        this.ownerThread = ownerThread;
         try {
             constructor = cls.getConstructor();
         } catch (NoSuchMethodException e) {
@@ -63,13 +77,26 @@ public class ObjectPool<T> {
 
         ObjectPool<T> pool = (ObjectPool<T>) map.get(cls);
         if (pool == null) {
-            pool = new ObjectPool<>(cls);
+            pool = new ObjectPool<>(cls, Thread.currentThread());
             map.put(cls, pool);
         }
 
         return pool;
     }
 
+    /**
+     * Returns object pool for given type shared by all threads, or create one if it
+     * doesn't exist. Shared pools are synchronized, use them for instances that are
+     * released in other thread than the one that obtained them.
+     *
+     * @param cls type
+     * @return shared object pool
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> ObjectPool<T> getShared(Class<T> cls) {
+        return sharedPools.computeIfAbsent(cls, c -> new ObjectPool<>(c, null));
+    }
+
     public static void cleanCurrentThread() {
         threadLocal.remove();
     }
@@ -90,6 +117,17 @@ public class ObjectPool<T> {
      * @return instance
      */
     public T get() {
+        if (ownerThread == null) {
+            synchronized (list) {
+                if (!list.isEmpty()) {
+                    return list.remove(list.size() - 1);
+                }
+            }
+            return create();
+        }
+        if (Thread.currentThread() != ownerThread) {
+            return get(cls).get();
+        }
         if (!list.isEmpty()) {
             return list.remove(list.size() - 1);
         } else {
@@ -103,7 +141,34 @@ public class ObjectPool<T> {
      * @param obj previously obtained instance from pool
      */
     public void release(T obj) {
+        if (ownerThread == null) {
+            synchronized (list) {
+                list.add(obj);
+            }
+            return;
+        }
+        if (Thread.currentThread() != ownerThread) {
+            get(cls).release(obj);
+            return;
+        }
         list.add(obj);
     }
 
+    /**
+     * Returns number of instances available in the pool.
+     *
+     * @return number of pooled instances
+     */
+    public int size() {
+        if (ownerThread == null) {
+            synchronized (list) {
+                return list.size();
+            }
+        }
+        if (Thread.currentThread() != ownerThread) {
+            return get(cls).size();
+        }
+        return list.size();
+    }
+
 }